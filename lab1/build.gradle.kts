@@ -29,6 +29,7 @@ dependencies {
     providedCompile("jakarta.ws.rs:jakarta.ws.rs-api:3.1.0")
     providedCompile("jakarta.servlet:jakarta.servlet-api:6.0.0")
     providedCompile("jakarta.enterprise:jakarta.enterprise.cdi-api:4.0.1")
+    providedCompile("jakarta.enterprise.concurrent:jakarta.enterprise.concurrent-api:3.0.3")
 
     // Lombok
     compileOnly("org.projectlombok:lombok:$lombokVersion")
@@ -61,11 +62,59 @@ dependencies {
     
     // OkHttp для MinIO client (required dependency)
     implementation("com.squareup.okhttp3:okhttp:4.12.0")
+
+    // Jackson streaming API: потоковое чтение JSON импорта и запись NDJSON выгрузки.
+    // Версия совпадает с той, что приходит транзитивно через swagger и arrow
+    implementation("com.fasterxml.jackson.core:jackson-core:2.16.0")
+
+    // Apache Arrow для колоночной выгрузки маршрутов (IPC stream)
+    implementation("org.apache.arrow:arrow-vector:15.0.2")
+    implementation("org.apache.arrow:arrow-memory-unsafe:15.0.2")
+
+    // Тесты запросов на настоящем PostgreSQL: встроенный сервер и схема из миграций Liquibase
+    testImplementation(platform("org.junit:junit-bom:5.10.2"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    testImplementation("io.zonky.test:embedded-postgres:2.0.7")
+    testImplementation(enforcedPlatform("io.zonky.test.postgres:embedded-postgres-binaries-bom:15.6.0"))
+    testImplementation("org.liquibase:liquibase-core:4.25.1")
+    // Тестовый контейнер бинов: транзакционные перехватчики через подклассы, версия та же, что у Hibernate
+    testImplementation("net.bytebuddy:byte-buddy:1.14.7")
 }
 
 
 tasks.test {
     useJUnitPlatform()
+    // Память Arrow читает адрес буфера через java.nio; на сервере тот же флаг нужен в JAVA_OPTS
+    jvmArgs("--add-opens=java.base/java.nio=ALL-UNNAMED")
+    // Внешняя база вместо встроенного PostgreSQL: -Ptest.jdbc.url=jdbc:postgresql://host:port/db
+    listOf("test.jdbc.url", "test.jdbc.user", "test.jdbc.password").forEach { key ->
+        providers.gradleProperty(key).orNull?.let { systemProperty(key, it) }
+    }
+}
+
+// Микробенчмарки JMH: отдельный source set src/jmh поверх main, запуск - gradle jmh.
+// Аргументы JMH передаются через -Pjmh.args, по умолчанию с профилировщиком выделений памяти
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[jmh.implementationConfigurationName].extendsFrom(
+    configurations.implementation.get(), configurations.providedCompile.get())
+configurations[jmh.compileOnlyConfigurationName].extendsFrom(configurations.compileOnly.get())
+
+dependencies {
+    jmh.implementationConfigurationName("org.openjdk.jmh:jmh-core:1.37")
+    jmh.annotationProcessorConfigurationName("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+tasks.register<JavaExec>("jmh") {
+    group = "verification"
+    description = "Runs JMH microbenchmarks from src/jmh"
+    classpath = jmh.runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args((providers.gradleProperty("jmh.args").orNull ?: "-prof gc").split(" ").filter { it.isNotBlank() })
 }
 
 tasks.war {
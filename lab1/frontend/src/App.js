@@ -16,6 +16,9 @@ function App() {
   const [totalPages, setTotalPages] = useState(0);
   const [totalElements, setTotalElements] = useState(0);
   const [currentPage, setCurrentPage] = useState(0);
+  // Курсоры соседних страниц из последнего ответа и курсор, по которому загружена текущая страница
+  const [pageCursors, setPageCursors] = useState({ next: null, prev: null });
+  const [pageAnchor, setPageAnchor] = useState(null);
   const [filterName, setFilterName] = useState("");
   const [sortBy, setSortBy] = useState("id");
   const [sortDirection, setSortDirection] = useState("asc");
@@ -28,27 +31,40 @@ function App() {
 
   const pageSize = 10; // размер страницы
 
-  // Загрузка маршрутов с простой пагинацией
-  const loadRoutes = useCallback(async (page = currentPage, name = filterName, sort = sortBy, direction = sortDirection) => {
+  // Параметры запроса страницы: соседние страницы читаются по курсору, произвольная - по номеру
+  const buildPageParams = (page, name, sort, direction, anchor) => {
+    const params = {
+      page: page,
+      size: pageSize,
+      sortBy: sort,
+      sortDirection: direction,
+      // Точное число из кэша сервера: COUNT(*) выполняется только после изменения маршрутов
+      count: "cached"
+    };
+    if (anchor) {
+      params.cursor = anchor.cursor;
+      params.direction = anchor.direction;
+    }
+    if (name && name.trim()) {
+      params.nameFilter = name.trim();
+    }
+    return params;
+  };
+
+  // Загрузка маршрутов с keyset пагинацией
+  const loadRoutes = useCallback(async (page = currentPage, name = filterName, sort = sortBy, direction = sortDirection, anchor = null) => {
     setLoading(true);
     setError(null);
     try {
-      const params = {
-        page: page,
-        size: pageSize,
-        sortBy: sort,
-        sortDirection: direction
-      };
-      
-      if (name && name.trim()) {
-        params.nameFilter = name.trim();
-      }
+      const params = buildPageParams(page, name, sort, direction, anchor);
       
       const response = await api.get("/routes/paginated", { params });
       
       setRoutes(response.data.content || []);
       setTotalElements(response.data.totalElements || 0);
       setTotalPages(response.data.totalPages || 0);
+      setPageCursors({ next: response.data.nextCursor || null, prev: response.data.prevCursor || null });
+      setPageAnchor(anchor);
       setSortBy(sort);
       setSortDirection(direction);
       setLastUpdateTime(new Date().toLocaleTimeString("ru-RU"));
@@ -57,7 +73,7 @@ function App() {
         page: page,
         totalElements: response.data.totalElements,
         totalPages: response.data.totalPages,
-        performance: 'Simple offset/limit pagination'
+        performance: anchor ? 'Keyset pagination' : 'First page or direct page jump'
       });
       
     } catch (err) {
@@ -66,25 +82,18 @@ function App() {
       setRoutes([]);
       setTotalPages(0);
       setTotalElements(0);
+      setPageCursors({ next: null, prev: null });
     } finally {
       setLoading(false);
     }
-  }, [currentPage, filterName, sortBy, sortDirection, pageSize]);
+  }, [currentPage, filterName, sortBy, sortDirection, pageSize]); // eslint-disable-line react-hooks/exhaustive-deps
 
   // "Тихое" обновление данных для автосинхронизации
   const silentRefresh = useCallback(async () => {
     if (activeSection !== 'main' || !autoRefreshEnabled) return;
     
     try {
-      const params = {
-        page: currentPage,
-        size: pageSize,
-        sortBy: sortBy,
-        sortDirection: sortDirection
-      };
-      if (filterName && filterName.trim()) {
-        params.nameFilter = filterName.trim();
-      }
+      const params = buildPageParams(currentPage, filterName, sortBy, sortDirection, pageAnchor);
       
       const response = await api.get("/routes/paginated", { params });
       const newRoutes = response.data.content || [];
@@ -95,6 +104,7 @@ function App() {
         setRoutes(newRoutes);
         setTotalPages(response.data.totalPages || 0);
         setTotalElements(newTotalElements);
+        setPageCursors({ next: response.data.nextCursor || null, prev: response.data.prevCursor || null });
         setLastUpdateTime(new Date().toLocaleTimeString("ru-RU"));
         
         // Показываем уведомление о обновлении
@@ -109,7 +119,7 @@ function App() {
       console.error("Ошибка автоматического обновления:", err);
       // Не показываем ошибку пользователю для тихого обновления
     }
-  }, [activeSection, autoRefreshEnabled, currentPage, pageSize, sortBy, sortDirection, filterName, routes, totalElements]);
+  }, [activeSection, autoRefreshEnabled, currentPage, pageSize, sortBy, sortDirection, filterName, pageAnchor, routes, totalElements]); // eslint-disable-line react-hooks/exhaustive-deps
 
   // Автоматическое обновление данных каждые 30 секунд
   useAutoRefresh(silentRefresh, 30000, [activeSection, autoRefreshEnabled]);
@@ -124,8 +134,14 @@ function App() {
 
   // Обработка изменения страницы
   const handlePageChange = (page) => {
+    let anchor = null;
+    if (page === currentPage + 1 && pageCursors.next) {
+      anchor = { cursor: pageCursors.next, direction: "next" };
+    } else if (page === currentPage - 1 && pageCursors.prev) {
+      anchor = { cursor: pageCursors.prev, direction: "prev" };
+    }
     setCurrentPage(page);
-    loadRoutes(page, filterName, sortBy, sortDirection);
+    loadRoutes(page, filterName, sortBy, sortDirection, anchor);
   };
 
   // Обработка изменения фильтра
@@ -154,7 +170,7 @@ function App() {
         const pageToLoad = currentPage >= newTotalPages ? Math.max(0, newTotalPages - 1) : currentPage;
         
         setCurrentPage(pageToLoad);
-        loadRoutes(pageToLoad, filterName, sortBy, sortDirection);
+        loadRoutes(pageToLoad, filterName, sortBy, sortDirection, pageToLoad === currentPage ? pageAnchor : null);
       } catch (err) {
         console.error("Ошибка удаления маршрута:", err);
         setError("Не удалось удалить маршрут. Попробуйте еще раз.");
@@ -193,7 +209,7 @@ function App() {
     }
       
       // Перезагрузка данных таблицы
-      loadRoutes(currentPage, filterName, sortBy, sortDirection);
+      loadRoutes(currentPage, filterName, sortBy, sortDirection, pageAnchor);
       
       // Обновление данных формы (координаты и локации)
       if (refreshFormData) {
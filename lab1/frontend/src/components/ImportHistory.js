@@ -12,7 +12,6 @@ import {
   TableRow,
   Paper,
   Chip,
-  Pagination,
   TextField,
   Alert,
   CircularProgress,
@@ -36,30 +35,41 @@ import {
   CalendarToday as DateIcon,
   Assignment as FileIcon,
   TrendingUp as StatsIcon,
-  Download as DownloadIcon
+  Download as DownloadIcon,
+  Replay as ResumeIcon
 } from '@mui/icons-material';
 import api from '../api';
 
+const PROGRESS_POLL_INTERVAL_MS = 2000;
+// Статусы операций, которые еще не завершились
+const ACTIVE_STATUSES = ['QUEUED', 'IN_PROGRESS'];
+const PREVIEW_BYTES = 8192;
+const PREVIEW_LINES = 20;
+
 function ImportHistory() {
   const [operations, setOperations] = useState([]);
   const [loading, setLoading] = useState(false);
   const [error, setError] = useState(null);
   const [currentPage, setCurrentPage] = useState(0);
-  const [totalPages, setTotalPages] = useState(0);
+  // Курсоры начала уже открытых страниц: история листается по курсору, а не по номеру страницы
+  const [pageCursors, setPageCursors] = useState([null]);
+  const [hasNextPage, setHasNextPage] = useState(false);
   const [totalCount, setTotalCount] = useState(0);
   const [username, setUsername] = useState('');
   const [selectedOperation, setSelectedOperation] = useState(null);
   const [showDetails, setShowDetails] = useState(false);
+  const [filePreview, setFilePreview] = useState(null);
   const [stats, setStats] = useState(null);
 
   const pageSize = 10;
 
   // Загрузка истории импорта
-  const loadHistory = useCallback(async (page = 0) => {
+  const loadHistory = useCallback(async (page = 0, cursors = [null]) => {
     // Не загружаем историю если имя пользователя не указано
     if (!username.trim()) {
       setOperations([]);
-      setTotalPages(0);
+      setPageCursors([null]);
+      setHasNextPage(false);
       setTotalCount(0);
       setCurrentPage(0);
       return;
@@ -70,16 +80,25 @@ function ImportHistory() {
     
     try {
       const params = {
-        page,
+        cursor: cursors[page] || undefined,
         size: pageSize,
-        username: username.trim()
+        username: username.trim(),
+        // Общее число операций нужно только для подписи, запрашиваем его с первой страницей
+        withCount: page === 0
       };
       
       const response = await api.get('/import/history', { params });
       
       setOperations(response.data.operations || []);
-      setTotalPages(Math.ceil(response.data.totalCount / pageSize));
-      setTotalCount(response.data.totalCount);
+      setHasNextPage(response.data.hasNext);
+      if (response.data.totalCount != null) {
+        setTotalCount(response.data.totalCount);
+      }
+      const nextCursors = cursors.slice(0, page + 1);
+      if (response.data.nextCursor) {
+        nextCursors.push(response.data.nextCursor);
+      }
+      setPageCursors(nextCursors);
       setCurrentPage(page);
       
     } catch (err) {
@@ -117,6 +136,7 @@ function ImportHistory() {
     try {
       const response = await api.get(`/import/operations/${operationId}`);
       setSelectedOperation(response.data);
+      setFilePreview(null);
       setShowDetails(true);
     } catch (err) {
       console.error('Error loading operation details:', err);
@@ -146,15 +166,76 @@ function ImportHistory() {
     }
   };
 
+  // Предпросмотр первых строк файла: запрашивается только начало файла через заголовок Range
+  const previewFile = async (operationId) => {
+    try {
+      const response = await api.get(`/import/operations/${operationId}/download`, {
+        headers: { Range: `bytes=0-${PREVIEW_BYTES - 1}` },
+        responseType: 'text'
+      });
+      const lines = response.data.split('\n');
+      // Последняя строка могла обрезаться на границе диапазона
+      const complete = response.status === 206 && lines.length > 1 ? lines.slice(0, -1) : lines;
+      setFilePreview(complete.slice(0, PREVIEW_LINES).join('\n'));
+    } catch (err) {
+      console.error('Error loading file preview:', err);
+      setError('Не удалось загрузить предпросмотр файла');
+    }
+  };
+
+  // Продолжение прерванного чанкового импорта с последней контрольной точки
+  const resumeImport = async (operationId) => {
+    try {
+      const response = await api.post(`/import/operations/${operationId}/resume`);
+      setOperations((current) => current.map((operation) =>
+        operation.id === operationId ? { ...operation, ...response.data } : operation
+      ));
+    } catch (err) {
+      console.error('Error resuming import:', err);
+      setError(err.response?.data?.error || 'Не удалось продолжить импорт');
+    }
+  };
+
   // Эффекты
   useEffect(() => {
     loadHistory(0);
     loadStats();
   }, [loadHistory, loadStats]);
 
+  // Отслеживание незавершенных операций через легковесный эндпоинт прогресса, без перезагрузки всей истории
+  useEffect(() => {
+    const activeIds = operations
+      .filter((operation) => ACTIVE_STATUSES.includes(operation.status))
+      .map((operation) => operation.id);
+    if (activeIds.length === 0) {
+      return undefined;
+    }
+
+    const timer = setInterval(async () => {
+      try {
+        const updates = await Promise.all(
+          activeIds.map((id) => api.get(`/import/operations/${id}/progress`).then((response) => response.data))
+        );
+        setOperations((current) => current.map((operation) => {
+          const progress = updates.find((update) => update.id === operation.id);
+          return progress ? { ...operation, ...progress } : operation;
+        }));
+        if (updates.some((progress) => !ACTIVE_STATUSES.includes(progress.status))) {
+          // Операция завершилась - обновляем время окончания и статистику
+          loadHistory(currentPage, pageCursors);
+          loadStats();
+        }
+      } catch (err) {
+        console.error('Error polling import progress:', err);
+      }
+    }, PROGRESS_POLL_INTERVAL_MS);
+
+    return () => clearInterval(timer);
+  }, [operations, currentPage, pageCursors, loadHistory, loadStats]);
+
   // Обработчики
-  const handlePageChange = (event, page) => {
-    loadHistory(page - 1); // Material-UI Pagination начинается с 1
+  const handlePageChange = (page) => {
+    loadHistory(page, pageCursors);
   };
 
   const handleUsernameChange = (event) => {
@@ -199,6 +280,7 @@ function ImportHistory() {
       case 'SUCCESS': return <SuccessIcon color="success" />;
       case 'FAILED': return <ErrorIcon color="error" />;
       case 'IN_PROGRESS': return <InProgressIcon color="warning" />;
+      case 'QUEUED': return <InProgressIcon color="info" />;
       default: return <InProgressIcon />;
     }
   };
@@ -209,6 +291,7 @@ function ImportHistory() {
       case 'SUCCESS': return 'success';
       case 'FAILED': return 'error';
       case 'IN_PROGRESS': return 'warning';
+      case 'QUEUED': return 'info';
       default: return 'default';
     }
   };
@@ -273,6 +356,22 @@ function ImportHistory() {
                   variant="outlined"
                 />
               )}
+              <Chip
+                label={`Импортировано строк: ${stats.importedRows}`}
+                variant="outlined"
+              />
+              {stats.averageRowsPerSecond != null && (
+                <Chip
+                  label={`Скорость: ${Math.round(stats.averageRowsPerSecond)} строк/с`}
+                  variant="outlined"
+                />
+              )}
+              {stats.p95DurationSeconds != null && (
+                <Chip
+                  label={`p95 длительности: ${stats.p95DurationSeconds.toFixed(1)} с`}
+                  variant="outlined"
+                />
+              )}
             </Box>
           </CardContent>
         </Card>
@@ -388,9 +487,15 @@ function ImportHistory() {
                           {getDuration(operation.startTime, operation.endTime)}
                         </TableCell>
                         <TableCell>
-                          {operation.status === 'SUCCESS' && operation.successfulRecords !== undefined
+                          {operation.sourceOperationId
+                            ? `Уже импортирован (#${operation.sourceOperationId})`
+                            : operation.status === 'SUCCESS' && operation.successfulRecords !== undefined
                             ? operation.successfulRecords
-                            : '-'
+                            : operation.status === 'QUEUED'
+                              ? 'В очереди'
+                            : operation.status === 'IN_PROGRESS'
+                              ? `${operation.processedRecords || 0} / ${operation.totalRecords ?? '?'}`
+                              : '-'
                           }
                         </TableCell>
                         <TableCell>
@@ -417,6 +522,15 @@ function ImportHistory() {
                           >
                             Детали
                           </Button>
+                          {operation.status === 'FAILED' && operation.fileKey && operation.lastCommittedLine != null && (
+                            <Button
+                              size="small"
+                              startIcon={<ResumeIcon />}
+                              onClick={() => resumeImport(operation.id)}
+                            >
+                              Продолжить
+                            </Button>
+                          )}
                         </TableCell>
                       </TableRow>
                     ))}
@@ -425,16 +539,25 @@ function ImportHistory() {
               </TableContainer>
 
               {/* Пагинация */}
-              {totalPages > 1 && (
-                <Box sx={{ display: 'flex', justifyContent: 'center', mt: 3 }}>
-                  <Pagination
-                    count={totalPages}
-                    page={currentPage + 1}
-                    onChange={handlePageChange}
-                    color="primary"
-                    showFirstButton
-                    showLastButton
-                  />
+              {(currentPage > 0 || hasNextPage) && (
+                <Box sx={{ display: 'flex', justifyContent: 'center', alignItems: 'center', gap: 2, mt: 3 }}>
+                  <Button
+                    variant="outlined"
+                    disabled={currentPage === 0}
+                    onClick={() => handlePageChange(currentPage - 1)}
+                  >
+                    Назад
+                  </Button>
+                  <Typography variant="body2">
+                    Страница {currentPage + 1} из {Math.max(1, Math.ceil(totalCount / pageSize))}
+                  </Typography>
+                  <Button
+                    variant="outlined"
+                    disabled={!hasNextPage}
+                    onClick={() => handlePageChange(currentPage + 1)}
+                  >
+                    Вперед
+                  </Button>
                 </Box>
               )}
 
@@ -491,6 +614,23 @@ function ImportHistory() {
                             >
                               Скачать файл
                             </Button>
+                            <Button
+                              size="small"
+                              startIcon={<ViewIcon />}
+                              onClick={() => previewFile(selectedOperation.id)}
+                              sx={{ mt: 1, ml: 1 }}
+                              variant="outlined"
+                            >
+                              Предпросмотр
+                            </Button>
+                            {filePreview !== null && (
+                              <Box
+                                component="pre"
+                                sx={{ mt: 1, p: 1, bgcolor: 'grey.100', fontSize: 12, overflowX: 'auto', maxHeight: 240 }}
+                              >
+                                {filePreview}
+                              </Box>
+                            )}
                           </>
                         )}
                       </Box>
@@ -8,6 +8,7 @@ import {
   TextField,
   Alert,
   CircularProgress,
+  LinearProgress,
   Paper,
   Chip,
   List,
@@ -18,7 +19,9 @@ import {
   Dialog,
   DialogTitle,
   DialogContent,
-  DialogActions
+  DialogActions,
+  FormControlLabel,
+  Checkbox
 } from '@mui/material';
 import {
   CloudUpload as UploadIcon,
@@ -30,6 +33,10 @@ import {
 } from '@mui/icons-material';
 import api from '../api';
 
+const PROGRESS_POLL_INTERVAL_MS = 1000;
+// Статусы операций, которые еще не завершились
+const ACTIVE_STATUSES = ['QUEUED', 'IN_PROGRESS'];
+
 function ImportRoutes() {
   const [selectedFile, setSelectedFile] = useState(null);
   const [username, setUsername] = useState('');
@@ -37,6 +44,8 @@ function ImportRoutes() {
   const [importResult, setImportResult] = useState(null);
   const [error, setError] = useState(null);
   const [showInstructions, setShowInstructions] = useState(false);
+  const [chunked, setChunked] = useState(false);
+  const [force, setForce] = useState(false);
 
   // Образец CSV файла
   const csvSample = `name,coordinates_x,coordinates_y,from_x,from_y,from_name,to_x,to_y,to_name,distance,rating
@@ -47,8 +56,9 @@ function ImportRoutes() {
   const handleFileSelect = useCallback((event) => {
     const file = event.target.files[0];
     if (file) {
-      if (file.type !== 'text/csv' && !file.name.endsWith('.csv')) {
-        setError('Пожалуйста, выберите CSV файл');
+      const supportedFile = /\.(csv|json|ndjson|jsonl)$/i.test(file.name);
+      if (file.type !== 'text/csv' && file.type !== 'application/json' && !supportedFile) {
+        setError('Пожалуйста, выберите CSV или JSON файл');
         return;
       }
       if (file.size > 5 * 1024 * 1024) { // 5MB
@@ -60,6 +70,31 @@ function ImportRoutes() {
     }
   }, []);
 
+  // Опрос прогресса фоновой операции импорта до её завершения
+  const pollImportProgress = useCallback(async (operationId) => {
+    for (;;) {
+      const { data: progress } = await api.get(`/import/operations/${operationId}/progress`);
+      const result = {
+        operationId,
+        status: progress.status,
+        totalRecords: progress.totalRecords,
+        processedRecords: progress.processedRecords,
+        successfulRecords: progress.successfulRecords,
+        errors: progress.errorMessage ? [progress.errorMessage] : [],
+        message: progress.status === 'QUEUED'
+          ? 'Импорт ожидает в очереди: одновременно выполняется ограниченное число импортов'
+          : progress.status === 'IN_PROGRESS'
+          ? `Импорт выполняется: обработано ${progress.processedRecords || 0} из ${progress.totalRecords || '?'}`
+          : progress.status === 'SUCCESS' ? 'Импорт успешно завершен' : 'Импорт завершился с ошибкой'
+      };
+      if (!ACTIVE_STATUSES.includes(progress.status)) {
+        return result;
+      }
+      setImportResult(result);
+      await new Promise((resolve) => setTimeout(resolve, PROGRESS_POLL_INTERVAL_MS));
+    }
+  }, []);
+
   const handleImport = useCallback(async () => {
     if (!selectedFile) {
       setError('Пожалуйста, выберите файл для импорта');
@@ -91,11 +126,15 @@ function ImportRoutes() {
         fileContent: fileContent
       };
 
-      const response = await api.post('/import/routes', requestData);
-      setImportResult(response.data);
+      // Сервер принимает импорт (202) и выполняет его в фоне - дальше опрашиваем прогресс
+      const response = await api.post('/import/routes', requestData, {
+        params: { mode: chunked ? 'chunked' : 'transactional', force }
+      });
+      const finalResult = await pollImportProgress(response.data.id);
+      setImportResult(finalResult);
       
       // Очищаем форму при успешном импорте
-      if (response.data.status === 'SUCCESS') {
+      if (finalResult.status === 'SUCCESS') {
         setSelectedFile(null);
         setUsername('');
         // Сбрасываем input file
@@ -124,7 +163,7 @@ function ImportRoutes() {
     } finally {
       setImporting(false);
     }
-  }, [selectedFile, username]);
+  }, [selectedFile, username, chunked, force, pollImportProgress]);
 
   const downloadSample = useCallback(() => {
     const blob = new Blob([csvSample], { type: 'text/csv;charset=utf-8;' });
@@ -143,6 +182,7 @@ function ImportRoutes() {
       case 'SUCCESS': return 'success';
       case 'FAILED': return 'error';
       case 'IN_PROGRESS': return 'warning';
+      case 'QUEUED': return 'info';
       default: return 'default';
     }
   };
@@ -151,7 +191,8 @@ function ImportRoutes() {
     switch (status) {
       case 'SUCCESS': return <SuccessIcon />;
       case 'FAILED': return <ErrorIcon />;
-      case 'IN_PROGRESS': return <CircularProgress size={16} />;
+      case 'IN_PROGRESS':
+      case 'QUEUED': return <CircularProgress size={16} />;
       default: return <InfoIcon />;
     }
   };
@@ -163,7 +204,7 @@ function ImportRoutes() {
       </Typography>
       
       <Typography variant="body1" color="text.secondary" align="center" sx={{ mb: 4 }}>
-        Массовое добавление маршрутов из CSV файла
+        Массовое добавление маршрутов из CSV или JSON файла
       </Typography>
 
       {/* Инструкции */}
@@ -200,6 +241,9 @@ function ImportRoutes() {
               name, coordinates_x, coordinates_y, from_x, from_y, from_name, to_x, to_y, to_name, distance, rating
             </Typography>
           </Paper>
+          <Typography variant="body2" color="text.secondary" sx={{ mt: 1 }}>
+            JSON файл (.json, .ndjson) - массив объектов или объекты по одному на строку с теми же полями
+          </Typography>
         </CardContent>
       </Card>
 
@@ -221,10 +265,36 @@ function ImportRoutes() {
             disabled={importing}
           />
 
+          {/* Чанковый режим: уже записанные части не откатываются, прерванный импорт можно продолжить из истории */}
+          <FormControlLabel
+            control={
+              <Checkbox
+                checked={chunked}
+                onChange={(e) => setChunked(e.target.checked)}
+                disabled={importing}
+              />
+            }
+            label="Импортировать по частям (можно продолжить после сбоя)"
+            sx={{ mb: 2 }}
+          />
+
+          {/* Повторный импорт: такой же файл уже импортирован, но его маршруты с тех пор удалены */}
+          <FormControlLabel
+            control={
+              <Checkbox
+                checked={force}
+                onChange={(e) => setForce(e.target.checked)}
+                disabled={importing}
+              />
+            }
+            label="Импортировать заново, даже если такой файл уже импортирован"
+            sx={{ mb: 2 }}
+          />
+
           {/* Выбор файла */}
           <Box sx={{ mb: 2 }}>
             <input
-              accept=".csv"
+              accept=".csv,.json,.ndjson,.jsonl"
               style={{ display: 'none' }}
               id="file-input"
               type="file"
@@ -240,7 +310,7 @@ function ImportRoutes() {
                 sx={{ mb: 1 }}
                 disabled={importing}
               >
-                Выбрать CSV файл
+                Выбрать файл
               </Button>
             </label>
             
@@ -295,6 +365,16 @@ function ImportRoutes() {
               {importResult.message}
             </Typography>
 
+            {importResult.status === 'IN_PROGRESS' && (
+              <LinearProgress
+                variant={importResult.totalRecords ? 'determinate' : 'indeterminate'}
+                value={importResult.totalRecords
+                  ? Math.min(100, (100 * (importResult.processedRecords || 0)) / importResult.totalRecords)
+                  : 0}
+                sx={{ mb: 2 }}
+              />
+            )}
+
             {/* Статистика */}
             <Box sx={{ display: 'flex', gap: 2, mb: 2, flexWrap: 'wrap' }}>
               <Chip 
@@ -0,0 +1,87 @@
+package org.example.domain.import_history.service;
+
+import org.example.domain.import_history.repository.RouteBulkImportRepositoryMB.BulkRouteRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор чанка строк CSV импорта: split с trim и парсерами JDK, токенизатор с новым объектом строки на каждую
+ * строку и токенизатор с объектами строк, переиспользуемыми от чанка к чанку. Строки без кавычек, чтобы split
+ * разбирал их так же. Значения - на одну строку
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(CsvRowParsingBenchmark.CHUNK_SIZE)
+public class CsvRowParsingBenchmark {
+
+    static final int CHUNK_SIZE = 1000;
+    private static final int COLUMNS = 11;
+
+    private final String[] lines = new String[CHUNK_SIZE];
+    private final BulkRouteRow[] rowBuffer = new BulkRouteRow[CHUNK_SIZE];
+    private final CsvLineTokenizer tokenizer = new CsvLineTokenizer(COLUMNS);
+
+    @Setup
+    public void generateLines() {
+        Random random = new Random(42);
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            lines[i] = String.format(Locale.ROOT, "Route %d, %.2f, %.3f, %.4f, %.4f, Location %d, %.4f, %.4f, Location %d, %d, %d",
+                    i, random.nextFloat() * 500, -random.nextDouble() * 800,
+                    random.nextDouble() * 1000, random.nextDouble() * 1000, i,
+                    random.nextDouble() * 1000, random.nextDouble() * 1000, i + 1,
+                    2 + random.nextInt(10_000), 1 + random.nextInt(100));
+            rowBuffer[i] = new BulkRouteRow();
+        }
+    }
+
+    @Benchmark
+    public void splitNewRow(Blackhole blackhole) {
+        for (String line : lines) {
+            String[] parts = line.split(",", -1);
+            blackhole.consume(new BulkRouteRow(
+                    parts[0].trim(),
+                    Float.parseFloat(parts[1].trim()),
+                    Double.parseDouble(parts[2].trim()),
+                    Double.parseDouble(parts[3].trim()),
+                    Double.parseDouble(parts[4].trim()),
+                    parts[5].trim(),
+                    Double.parseDouble(parts[6].trim()),
+                    Double.parseDouble(parts[7].trim()),
+                    parts[8].trim(),
+                    Long.parseLong(parts[9].trim()),
+                    Long.parseLong(parts[10].trim())));
+        }
+    }
+
+    @Benchmark
+    public void tokenizerNewRow(Blackhole blackhole) {
+        for (String line : lines) {
+            blackhole.consume(RouteImportService.parseCSVLine(tokenizer, line, new BulkRouteRow()));
+        }
+    }
+
+    @Benchmark
+    public void tokenizerReusedRow(Blackhole blackhole) {
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            blackhole.consume(RouteImportService.parseCSVLine(tokenizer, lines[i], rowBuffer[i]));
+        }
+    }
+}
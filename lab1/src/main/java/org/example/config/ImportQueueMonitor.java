@@ -0,0 +1,87 @@
+package org.example.config;
+
+import org.example.service.FairImportQueue;
+
+/**
+ * Реализация MBean для мониторинга очереди импорта: глубина очереди, занятые слоты и время ожидания
+ */
+public class ImportQueueMonitor implements ImportQueueMonitorMBean {
+
+    private final FairImportQueue queue;
+
+    public ImportQueueMonitor(FairImportQueue queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public int getRunningImports() {
+        return queue.getRunning();
+    }
+
+    @Override
+    public int getQueuedImports() {
+        return queue.getQueued();
+    }
+
+    @Override
+    public int getQueuedUsers() {
+        return queue.getQueuedUsers();
+    }
+
+    @Override
+    public int getMaxConcurrentImports() {
+        return queue.getMaxRunning();
+    }
+
+    @Override
+    public int getMaxQueuedImports() {
+        return queue.getMaxQueued();
+    }
+
+    @Override
+    public long getStartedImports() {
+        return queue.getStartedCount();
+    }
+
+    @Override
+    public long getInlineStartedImports() {
+        return queue.getInlineStartedCount();
+    }
+
+    @Override
+    public long getRejectedImports() {
+        return queue.getRejectedCount();
+    }
+
+    @Override
+    public long getAverageWaitMillis() {
+        return queue.getAverageWaitMillis();
+    }
+
+    @Override
+    public long getMaxWaitMillis() {
+        return queue.getMaxWaitMillis();
+    }
+
+    @Override
+    public long getOldestWaitMillis() {
+        return queue.getOldestWaitMillis();
+    }
+
+    @Override
+    public String getQueueStatistics() {
+        return String.format(
+            "Import Queue Stats: Running=%d/%d, Queued=%d/%d, Users=%d, Started=%d, Inline=%d, Rejected=%d, AvgWait=%dms, MaxWait=%dms",
+            getRunningImports(),
+            getMaxConcurrentImports(),
+            getQueuedImports(),
+            getMaxQueuedImports(),
+            getQueuedUsers(),
+            getStartedImports(),
+            getInlineStartedImports(),
+            getRejectedImports(),
+            getAverageWaitMillis(),
+            getMaxWaitMillis()
+        );
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.config;
+
+/**
+ * MBean интерфейс для мониторинга очереди импорта
+ */
+public interface ImportQueueMonitorMBean {
+
+    int getRunningImports();
+    int getQueuedImports();
+    int getQueuedUsers();
+    int getMaxConcurrentImports();
+    int getMaxQueuedImports();
+
+    long getStartedImports();
+    long getInlineStartedImports();
+    long getRejectedImports();
+    long getAverageWaitMillis();
+    long getMaxWaitMillis();
+    long getOldestWaitMillis();
+
+    String getQueueStatistics();
+}
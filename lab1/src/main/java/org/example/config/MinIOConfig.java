@@ -18,6 +18,8 @@ public class MinIOConfig {
     private String endpoint = "http://localhost:9000";
     private String accessKey = "minioadmin";
     private String secretKey = "minioadmin123";
+    // Сжатие сохраняемых файлов импорта: "gzip" или null, чтобы хранить файлы как есть
+    private String fileCompression = "gzip";
 
     @PostConstruct
     public void init() {
@@ -43,4 +45,8 @@ public class MinIOConfig {
     public String getBucketName() {
         return bucketName;
     }
+
+    public String getFileCompression() {
+        return fileCompression;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package org.example.domain;
+
+import java.util.Locale;
+
+/**
+ * Шаблоны LIKE для поиска по имени в репозиториях. Условие в запросе пишется как
+ * LOWER(x.name) LIKE :pattern ESCAPE '\', чтобы его мог использовать триграммный индекс по lower(name)
+ */
+public final class LikePatterns {
+
+    private LikePatterns() {
+    }
+
+    /**
+     * Шаблон поиска подстроки: значение приводится к нижнему регистру на стороне приложения, а % и _ из ввода
+     * пользователя экранируются и ищутся как обычные символы
+     */
+    public static String containsPattern(String term) {
+        String escaped = term.trim().toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.domain.import_history.controller;
+
+import java.util.Locale;
+
+/**
+ * Разбор заголовка Accept-Encoding (RFC 9110, 12.5.3): кодеки через запятую с необязательным весом q.
+ * Кодек с q=0 явно отклонен; без упоминания кодека его принимает только "*" с ненулевым весом
+ */
+final class AcceptEncoding {
+
+    private AcceptEncoding() {
+    }
+
+    static boolean accepts(String header, String coding) {
+        if (header == null || coding == null) {
+            return false;
+        }
+        Double wildcard = null;
+        for (String element : header.split(",")) {
+            String[] parts = element.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double weight = weight(parts);
+            if (name.equals(coding.toLowerCase(Locale.ROOT))) {
+                return weight > 0;
+            }
+            if (name.equals("*")) {
+                wildcard = weight;
+            }
+        }
+        return wildcard != null && wildcard > 0;
+    }
+
+    private static double weight(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.length() > 2 && (parameter.charAt(0) == 'q' || parameter.charAt(0) == 'Q')
+                    && parameter.charAt(1) == '=') {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    // Некорректный вес не отклоняет кодек явно
+                    return 1;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.domain.import_history.controller;
+
+/**
+ * Один диапазон байт из заголовка Range (включительно с обеих сторон).
+ * Поддерживаются формы bytes=a-b, bytes=a- и bytes=-n; несколько диапазонов не поддерживаются
+ */
+record ByteRange(long start, long end) {
+
+    /**
+     * Разбирает заголовок для файла заданного размера. Возвращает null, если заголовок отсутствует
+     * или не поддерживается - тогда отдается весь файл, как разрешает RFC 9110.
+     * Если диапазон начинается за концом файла, бросает IllegalStateException (ответ 416)
+     */
+    static ByteRange parse(String header, long size) {
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // Суффикс: последние n байт; у пустого файла их нет
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    throw new IllegalStateException("Unsatisfiable range: " + header);
+                }
+                return new ByteRange(Math.max(0, size - suffix), size - 1);
+            }
+
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start < 0 || start > end) {
+                if (start >= size) {
+                    throw new IllegalStateException("Unsatisfiable range: " + header);
+                }
+                return null;
+            }
+            return new ByteRange(start, end);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    long length() {
+        return end - start + 1;
+    }
+
+    String contentRange(long size) {
+        return "bytes " + start + "-" + end + "/" + size;
+    }
+}
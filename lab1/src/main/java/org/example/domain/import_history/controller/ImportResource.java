@@ -4,16 +4,26 @@ import jakarta.inject.Inject;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.core.UriInfo;
 import lombok.extern.slf4j.Slf4j;
+import org.example.domain.import_history.dto.ImportHistoryCursor;
 import org.example.domain.import_history.dto.ImportOperationDto;
+import org.example.domain.import_history.dto.ImportProgressDto;
 import org.example.domain.import_history.dto.ImportRequestDto;
 import org.example.domain.import_history.dto.ImportResultDto;
+import org.example.domain.import_history.entity.ImportStatus;
+import org.example.domain.import_history.service.ImportFormat;
 import org.example.domain.import_history.service.ImportOperationServiceMB;
 import org.example.domain.import_history.service.RouteImportService;
 
+import java.io.InputStream;
+import java.net.URI;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @Path("/import")
 @Produces(MediaType.APPLICATION_JSON)
@@ -21,6 +31,10 @@ import java.util.List;
 @Slf4j
 public class ImportResource {
 
+    private static final int DOWNLOAD_BUFFER_SIZE = 64 * 1024;
+    private static final int IMPORT_RETRY_AFTER_SECONDS = 30;
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+
     @Inject
     private RouteImportService routeImportService;
 
@@ -28,17 +42,27 @@ public class ImportResource {
     private ImportOperationServiceMB importOperationService;
 
     @Inject
-    private org.example.service.TransactionalFileImportService transactionalFileImportService;
+    private org.example.service.ImportJobService importJobService;
 
     @Inject
     private org.example.service.MinIOService minIOService;
 
+    @Inject
+    private org.example.service.TransactionalFileImportService transactionalFileImportService;
+
+    @Context
+    private UriInfo uriInfo;
+
     /**
-     * Импорт маршрутов из CSV файла
+     * Импорт маршрутов из CSV файла: возвращает 202 с операцией, сам импорт выполняется в фоне
      */
     @POST
     @Path("/routes")
-    public Response importRoutes(ImportRequestDto request, @Context HttpServletRequest httpRequest) {
+    public Response importRoutes(
+            ImportRequestDto request,
+            @QueryParam("mode") @DefaultValue("transactional") String mode,
+            @QueryParam("force") @DefaultValue("false") boolean force,
+            @Context HttpServletRequest httpRequest) {
         try {
             log.info("Received import request for file: {} from user: {}", request.filename(), request.username());
             
@@ -60,17 +84,23 @@ public class ImportResource {
                     .entity("{\"error\":\"File content is required\"}")
                     .build();
             }
-
-            // Выполнение транзакционного импорта с сохранением файла
-            ImportResultDto result = transactionalFileImportService.importRoutesWithFileStorage(request);
             
-            if (result.status().name().equals("SUCCESS")) {
-                return Response.ok(result).build();
-            } else {
+            if (!"transactional".equals(mode) && !"chunked".equals(mode)) {
                 return Response.status(Response.Status.BAD_REQUEST)
-                    .entity(result)
+                    .entity("{\"error\":\"Import mode must be 'transactional' or 'chunked'\"}")
                     .build();
             }
+
+            // Импорт выполняется в фоне, клиент отслеживает его по ID операции.
+            // В режиме chunked каждый чанк коммитится отдельно, и прерванный импорт можно продолжить
+            ImportOperationDto operation = importJobService.submitImport(request, "chunked".equals(mode), force);
+            
+            return Response.accepted(operation)
+                .location(progressUri(operation.id()))
+                .build();
+            
+        } catch (RejectedExecutionException e) {
+            return importQueueFull(e);
             
         } catch (Exception e) {
             log.error("Error during import", e);
@@ -81,38 +111,90 @@ public class ImportResource {
     }
 
     /**
-     * Получение истории импорта для конкретного пользователя
+     * Потоковый импорт маршрутов: тело запроса - сам CSV или JSON файл, без загрузки его целиком в память.
+     * Файл сохраняется в MinIO по ходу разбора. Необязательный sha256 сверяется с хешем полученного тела:
+     * если пользователь уже импортировал такой файл, тело только хешируется и не разбирается,
+     * а при несовпадении хешей импорт отклоняется. force=true импортирует файл заново, даже если он уже
+     * был импортирован (например, маршруты того импорта с тех пор удалены).
+     * JSON определяется по Content-Type (application/json, application/x-ndjson) или расширению файла
      */
-    @GET
-    @Path("/history")
-    public Response getImportHistory(
-            @QueryParam("page") @DefaultValue("0") int page,
-            @QueryParam("size") @DefaultValue("20") int size,
-            @QueryParam("username") String username) {
-        
+    @POST
+    @Path("/routes/stream")
+    @Consumes({"text/csv", MediaType.TEXT_PLAIN, MediaType.APPLICATION_OCTET_STREAM,
+            MediaType.APPLICATION_JSON, "application/x-ndjson"})
+    public Response importRoutesStream(
+            @QueryParam("username") String username,
+            @QueryParam("filename") String filename,
+            @QueryParam("sha256") String sha256,
+            @QueryParam("force") @DefaultValue("false") boolean force,
+            @HeaderParam(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream inputStream) {
         try {
-            // Пользователь видит только свои операции
+            log.info("Received streaming import request for file: {} from user: {}", filename, username);
+            
             if (username == null || username.trim().isEmpty()) {
                 return Response.status(Response.Status.BAD_REQUEST)
                     .entity("{\"error\":\"Username is required\"}")
                     .build();
             }
             
-            List<ImportOperationDto> operations = importOperationService.findByUsernameWithPagination(username, page, size);
-            long totalCount = importOperationService.countByUsername(username);
+            if (filename == null || filename.trim().isEmpty()) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\":\"Filename is required\"}")
+                    .build();
+            }
             
-            return Response.ok()
-                .entity(new ImportHistoryResponse(operations, totalCount, page, size))
-                .build();
+            // Потоковый импорт выполняется в потоке запроса, но занимает тот же слот, что и фоновые импорты
+            if (!importJobService.tryStartInlineImport()) {
+                return importQueueFull(new RejectedExecutionException("All import slots are busy"));
+            }
+            ImportResultDto result;
+            try {
+                ImportFormat format = ImportFormat.detect(contentType, filename.trim());
+                result = transactionalFileImportService.importRoutesFromStreamWithFileStorage(
+                    username.trim(), filename.trim(), format, inputStream,
+                    sha256 != null && !sha256.isBlank() ? sha256.trim().toLowerCase() : null, force);
+            } finally {
+                importJobService.finishInlineImport();
+            }
+            
+            if (result.status() == ImportStatus.SUCCESS) {
+                return Response.ok(result).build();
+            } else {
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(result)
+                    .build();
+            }
             
         } catch (Exception e) {
-            log.error("Error getting import history", e);
+            log.error("Error during streaming import", e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                 .entity("{\"error\":\"Internal server error: " + e.getMessage() + "\"}")
                 .build();
         }
     }
 
+    /**
+     * Получение истории импорта для конкретного пользователя, от новых операций к старым.
+     * Следующая страница запрашивается по nextCursor из предыдущего ответа; общее число - по withCount=true
+     */
+    @GET
+    @Path("/history")
+    public Response getImportHistory(
+            @QueryParam("cursor") String cursor,
+            @QueryParam("size") @DefaultValue("20") int size,
+            @QueryParam("withCount") @DefaultValue("false") boolean withCount,
+            @QueryParam("username") String username) {
+        
+        // Пользователь видит только свои операции
+        if (username == null || username.trim().isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity("{\"error\":\"Username is required\"}")
+                .build();
+        }
+        return historyPage(username, cursor, size, withCount);
+    }
+
     /**
      * Получение истории импорта для конкретного пользователя
      */
@@ -120,19 +202,30 @@ public class ImportResource {
     @Path("/history/{username}")
     public Response getUserImportHistory(
             @PathParam("username") String username,
-            @QueryParam("page") @DefaultValue("0") int page,
-            @QueryParam("size") @DefaultValue("20") int size) {
-        
+            @QueryParam("cursor") String cursor,
+            @QueryParam("size") @DefaultValue("20") int size,
+            @QueryParam("withCount") @DefaultValue("false") boolean withCount) {
+        return historyPage(username, cursor, size, withCount);
+    }
+
+    private Response historyPage(String username, String cursor, int size, boolean withCount) {
+        if (size < 1 || size > MAX_HISTORY_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity("{\"error\":\"Page size must be between 1 and " + MAX_HISTORY_PAGE_SIZE + "\"}")
+                .build();
+        }
         try {
-            List<ImportOperationDto> operations = importOperationService.findByUsernameWithPagination(username, page, size);
-            long totalCount = importOperationService.countByUsername(username);
-            
+            ImportHistoryCursor position = ImportHistoryCursor.decode(cursor);
             return Response.ok()
-                .entity(new ImportHistoryResponse(operations, totalCount, page, size))
+                .entity(importOperationService.findHistoryPage(username, position, size, withCount))
                 .build();
             
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity("{\"error\":\"" + e.getMessage() + "\"}")
+                .build();
         } catch (Exception e) {
-            log.error("Error getting user import history for user: {}", username, e);
+            log.error("Error getting import history for user: {}", username, e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                 .entity("{\"error\":\"Internal server error: " + e.getMessage() + "\"}")
                 .build();
@@ -162,6 +255,62 @@ public class ImportResource {
         }
     }
 
+    /**
+     * Легковесный опрос прогресса операции импорта
+     */
+    @GET
+    @Path("/operations/{operationId}/progress")
+    public Response getImportProgress(@PathParam("operationId") Integer operationId) {
+        try {
+            ImportProgressDto progress = importOperationService.getProgress(operationId);
+            return Response.ok(progress).build();
+            
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.NOT_FOUND)
+                .entity("{\"error\":\"Import operation not found\"}")
+                .build();
+                
+        } catch (Exception e) {
+            log.error("Error getting import progress: {}", operationId, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity("{\"error\":\"Internal server error: " + e.getMessage() + "\"}")
+                .build();
+        }
+    }
+
+    /**
+     * Продолжение прерванного чанкового импорта с последней закоммиченной строки
+     */
+    @POST
+    @Path("/operations/{operationId}/resume")
+    public Response resumeImport(@PathParam("operationId") Integer operationId) {
+        try {
+            ImportOperationDto operation = importJobService.resumeImport(operationId);
+            return Response.accepted(operation)
+                .location(progressUri(operation.id()))
+                .build();
+            
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.NOT_FOUND)
+                .entity("{\"error\":\"Import operation not found\"}")
+                .build();
+                
+        } catch (IllegalStateException e) {
+            return Response.status(Response.Status.CONFLICT)
+                .entity("{\"error\":\"" + e.getMessage() + "\"}")
+                .build();
+                
+        } catch (RejectedExecutionException e) {
+            return importQueueFull(e);
+                
+        } catch (Exception e) {
+            log.error("Error resuming import operation: {}", operationId, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity("{\"error\":\"Internal server error: " + e.getMessage() + "\"}")
+                .build();
+        }
+    }
+
     /**
      * Получение статистики импорта
      */
@@ -176,17 +325,8 @@ public class ImportResource {
                     .build();
             }
             
-            List<ImportOperationDto> userOperations = importOperationService.findByUsername(username);
-            long totalOperations = userOperations.size();
-            long successfulOperations = userOperations.stream()
-                .mapToLong(op -> "SUCCESS".equals(op.status().name()) ? 1 : 0)
-                .sum();
-            long failedOperations = userOperations.stream()
-                .mapToLong(op -> "FAILED".equals(op.status().name()) ? 1 : 0)
-                .sum();
-            
             return Response.ok()
-                .entity(new ImportStatsResponse(totalOperations, successfulOperations, failedOperations))
+                .entity(importOperationService.getStats(username))
                 .build();
                 
         } catch (Exception e) {
@@ -198,12 +338,17 @@ public class ImportResource {
     }
 
     /**
-     * Скачивание файла операции импорта
+     * Скачивание файла операции импорта: объект передается из MinIO в ответ потоком через буфер фиксированного
+     * размера. Поддерживается заголовок Range (206 Partial Content), например для предпросмотра начала файла;
+     * для сжатого файла - только если клиент принимает его кодек
      */
     @GET
     @Path("/operations/{operationId}/download")
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
-    public Response downloadImportFile(@PathParam("operationId") Integer operationId) {
+    public Response downloadImportFile(
+            @PathParam("operationId") Integer operationId,
+            @HeaderParam("Range") String rangeHeader,
+            @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding) {
         try {
             // Получаем информацию об операции импорта
             ImportOperationDto operation = importOperationService.findById(operationId);
@@ -215,19 +360,57 @@ public class ImportResource {
                     .build();
             }
             
-            // Скачиваем файл из MinIO
-            org.example.service.MinIOService.FileDownloadResult fileResult =
-                minIOService.downloadFile(operation.fileKey());
+            // Сжатый файл отдается как есть с Content-Encoding, если клиент принимает кодек; диапазон тогда
+            // относится к сжатым байтам. Распакованный на лету файл отдается только целиком - Range игнорируется
+            String encoding = operation.fileContentEncoding();
+            boolean acceptsEncoding = encoding != null && AcceptEncoding.accepts(acceptEncoding, encoding);
+
+            // Размеры исходного и хранимого сжатого файла записаны в операции, поэтому диапазон проверяется
+            // без запроса к MinIO. Если размер неизвестен (файлы, сохраненные до его записи), файл отдается целиком
+            Long representationSize = encoding == null ? operation.fileSize() : operation.fileStoredSize();
+            boolean rangesSupported = representationSize != null && (encoding == null || acceptsEncoding);
+            ByteRange range = null;
+            if (rangeHeader != null && rangesSupported) {
+                try {
+                    range = ByteRange.parse(rangeHeader, representationSize);
+                } catch (IllegalStateException e) {
+                    return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header("Content-Range", "bytes */" + representationSize)
+                        .build();
+                }
+            }
+            
+            org.example.service.MinIOService.FileDownloadResult fileResult = range != null
+                ? minIOService.openDownload(operation.fileKey(), operation.fileContentEncoding(),
+                    range.start(), range.length(), acceptsEncoding)
+                : minIOService.openDownload(operation.fileKey(), operation.fileContentEncoding(),
+                    0, null, acceptsEncoding);
             
             // Определяем имя файла для скачивания
             String downloadFilename = operation.filename() != null ? operation.filename() : "import_file.csv";
             
-            return Response.ok(fileResult.content())
+            Response.ResponseBuilder response = (range != null ? Response.status(Response.Status.PARTIAL_CONTENT) : Response.ok())
+                    .entity(streamContent(fileResult.content()))
                     .header("Content-Disposition", "attachment; filename=\"" + downloadFilename + "\"")
                     .header("Content-Type", fileResult.contentType() != null ?
                             fileResult.contentType() : MediaType.APPLICATION_OCTET_STREAM)
-                    .header("Content-Length", String.valueOf(fileResult.size()))
-                    .build();
+                    .header("Accept-Ranges", rangesSupported ? "bytes" : "none")
+                    .header("ETag", fileResult.etag())
+                    .header("Last-Modified", fileResult.lastModified())
+                    .header("Vary", HttpHeaders.ACCEPT_ENCODING);
+            if (fileResult.contentEncoding() != null) {
+                response.header("Content-Encoding", fileResult.contentEncoding());
+            }
+            if (fileResult.contentLength() >= 0) {
+                response.header("Content-Length", String.valueOf(fileResult.contentLength()));
+            } else if (fileResult.contentEncoding() == null && operation.fileSize() != null) {
+                // Файл распаковывается на лету: длина ответа - исходный размер файла
+                response.header("Content-Length", String.valueOf(operation.fileSize()));
+            }
+            if (range != null) {
+                response.header("Content-Range", range.contentRange(representationSize));
+            }
+            return response.build();
                     
         } catch (IllegalArgumentException e) {
             return Response.status(Response.Status.NOT_FOUND)
@@ -245,21 +428,38 @@ public class ImportResource {
     }
 
     /**
-     * Класс ответа для истории импорта с пагинацией
+     * Адрес прогресса операции от корня приложения, а не от жестко заданного /api
      */
-    public record ImportHistoryResponse(
-        List<ImportOperationDto> operations,
-        long totalCount,
-        int currentPage,
-        int pageSize
-    ) {}
+    private URI progressUri(Integer operationId) {
+        return uriInfo.getBaseUriBuilder()
+                .path(ImportResource.class)
+                .path(ImportResource.class, "getImportProgress")
+                .build(operationId);
+    }
 
     /**
-     * Класс ответа для статистики импорта
+     * Очередь импорта заполнена: клиенту предлагается повторить запрос позже
      */
-    public record ImportStatsResponse(
-        long totalOperations,
-        long successfulOperations,
-        long failedOperations
-    ) {}
-}
\ No newline at end of file
+    private Response importQueueFull(RejectedExecutionException e) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+            .header("Retry-After", IMPORT_RETRY_AFTER_SECONDS)
+            .entity("{\"error\":\"" + e.getMessage() + "\"}")
+            .build();
+    }
+
+    /**
+     * Копирует поток MinIO в ответ буфером фиксированного размера и всегда закрывает соединение с MinIO
+     */
+    private StreamingOutput streamContent(InputStream content) {
+        return output -> {
+            try (InputStream input = content) {
+                byte[] buffer = new byte[DOWNLOAD_BUFFER_SIZE];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                }
+                output.flush();
+            }
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.domain.import_history.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+
+/**
+ * Позиция в истории импорта, упорядоченной по (start_time DESC, id DESC): последняя показанная операция.
+ * Клиенту передается непрозрачной Base64 строкой
+ */
+public record ImportHistoryCursor(ZonedDateTime startTime, Integer id) {
+
+    public static ImportHistoryCursor after(ImportOperationDto operation) {
+        return new ImportHistoryCursor(operation.startTime(), operation.id());
+    }
+
+    public String encode() {
+        String value = startTime.toInstant() + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ImportHistoryCursor decode(String encoded) {
+        if (encoded == null || encoded.isBlank()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            int separator = value.indexOf('|');
+            return new ImportHistoryCursor(
+                    Instant.parse(value.substring(0, separator)).atZone(ZoneOffset.UTC),
+                    Integer.valueOf(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor format", e);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.example.domain.import_history.dto;
+
+import java.util.List;
+
+/**
+ * Страница истории импорта; totalCount заполняется только по запросу и берется из кэша статистики
+ */
+public record ImportHistoryPageDto(
+        List<ImportOperationDto> operations,
+        String nextCursor,
+        boolean hasNext,
+        int pageSize,
+        Long totalCount
+) {}
@@ -16,5 +16,10 @@ public record ImportOperationDto(
         String errorMessage,
         String fileKey,
         Long fileSize,
-        String fileContentType
+        Long fileStoredSize,
+        String fileContentType,
+        String fileContentEncoding,
+        Integer lastCommittedLine,
+        String fileHash,
+        Integer sourceOperationId
 ) {}
\ No newline at end of file
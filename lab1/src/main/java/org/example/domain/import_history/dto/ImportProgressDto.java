@@ -0,0 +1,12 @@
+package org.example.domain.import_history.dto;
+
+import org.example.domain.import_history.entity.ImportStatus;
+
+public record ImportProgressDto(
+        Integer id,
+        ImportStatus status,
+        Integer totalRecords,
+        Integer processedRecords,
+        Integer successfulRecords,
+        String errorMessage
+) {}
@@ -0,0 +1,17 @@
+package org.example.domain.import_history.dto;
+
+import org.example.domain.import_history.entity.SagaStepStatus;
+
+import java.time.ZonedDateTime;
+
+public record ImportSagaStepDto(
+        Long id,
+        String transactionId,
+        Integer operationId,
+        String fileKey,
+        SagaStepStatus status,
+        int attempts,
+        String lastError,
+        ZonedDateTime createdAt,
+        ZonedDateTime updatedAt
+) {}
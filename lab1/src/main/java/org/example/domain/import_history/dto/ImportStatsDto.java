@@ -0,0 +1,15 @@
+package org.example.domain.import_history.dto;
+
+/**
+ * Статистика импортов пользователя. Строки, скорость и длительность считаются по успешным импортам,
+ * которые сами разбирали файл; averageRowsPerSecond и p95DurationSeconds равны null, пока таких импортов нет
+ */
+public record ImportStatsDto(
+        long totalOperations,
+        long successfulOperations,
+        long failedOperations,
+        long activeOperations,
+        long importedRows,
+        Double averageRowsPerSecond,
+        Double p95DurationSeconds
+) {}
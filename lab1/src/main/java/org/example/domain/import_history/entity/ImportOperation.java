@@ -69,9 +69,24 @@ public class ImportOperation {
     @Column(name = "file_size")
     private Long fileSize; // Размер файла в байтах
 
+    @Column(name = "file_stored_size")
+    private Long fileStoredSize; // Размер объекта в хранилище в байтах (для сжатого файла - сжатый)
+
     @Column(name = "file_content_type", length = 100)
     private String fileContentType; // MIME тип файла
 
+    @Column(name = "file_content_encoding", length = 20)
+    private String fileContentEncoding; // Кодек сжатия файла в хранилище (null - без сжатия)
+
+    @Column(name = "last_committed_line")
+    private Integer lastCommittedLine; // Последняя строка файла, закоммиченная чанковым импортом
+
+    @Column(name = "file_hash", length = 64)
+    private String fileHash; // SHA-256 содержимого файла
+
+    @Column(name = "source_operation_id")
+    private Integer sourceOperationId; // Операция, которая уже импортировала такой же файл
+
     @PrePersist
     protected void onCreate() {
         if (startTime == null) {
@@ -1,6 +1,7 @@
 package org.example.domain.import_history.entity;
 
 public enum ImportStatus {
+    QUEUED,         // Ожидает свободного слота в очереди импорта
     IN_PROGRESS,    // В процессе выполнения
     SUCCESS,        // Успешно завершен
     FAILED         // Завершен с ошибкой
@@ -0,0 +1,9 @@
+package org.example.domain.import_history.entity;
+
+public enum SagaStepStatus {
+    PENDING,        // Шаг выполнен, транзакция импорта еще не завершилась
+    COMMITTED,      // Транзакция завершилась, компенсация не нужна
+    COMPENSATE,     // Транзакция откачена, шаг ждет компенсации
+    COMPENSATED,    // Компенсация выполнена
+    FAILED          // Компенсация не удалась после всех попыток, нужна ручная проверка
+}
@@ -1,6 +1,7 @@
 package org.example.domain.import_history.mapper;
 
 import org.example.domain.import_history.dto.ImportOperationDto;
+import org.example.domain.import_history.dto.ImportProgressDto;
 import org.example.domain.import_history.entity.ImportOperation;
 
 public class ImportOperationMapper {
@@ -23,7 +24,27 @@ public class ImportOperationMapper {
                 entity.getErrorMessage(),
                 entity.getFileKey(),
                 entity.getFileSize(),
-                entity.getFileContentType()
+                entity.getFileStoredSize(),
+                entity.getFileContentType(),
+                entity.getFileContentEncoding(),
+                entity.getLastCommittedLine(),
+                entity.getFileHash(),
+                entity.getSourceOperationId()
+        );
+    }
+
+    public static ImportProgressDto toProgressDto(ImportOperation entity) {
+        if (entity == null) {
+            return null;
+        }
+        
+        return new ImportProgressDto(
+                entity.getId(),
+                entity.getStatus(),
+                entity.getTotalRecords(),
+                entity.getProcessedRecords(),
+                entity.getSuccessfulRecords(),
+                entity.getErrorMessage()
         );
     }
 
@@ -45,7 +66,12 @@ public class ImportOperationMapper {
                 .errorMessage(dto.errorMessage())
                 .fileKey(dto.fileKey())
                 .fileSize(dto.fileSize())
+                .fileStoredSize(dto.fileStoredSize())
                 .fileContentType(dto.fileContentType())
+                .fileContentEncoding(dto.fileContentEncoding())
+                .lastCommittedLine(dto.lastCommittedLine())
+                .fileHash(dto.fileHash())
+                .sourceOperationId(dto.sourceOperationId())
                 .build();
     }
 }
\ No newline at end of file
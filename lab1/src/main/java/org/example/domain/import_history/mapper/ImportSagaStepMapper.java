@@ -0,0 +1,25 @@
+package org.example.domain.import_history.mapper;
+
+import org.example.domain.import_history.dto.ImportSagaStepDto;
+import org.example.domain.import_history.entity.ImportSagaStep;
+
+public class ImportSagaStepMapper {
+
+    public static ImportSagaStepDto toDto(ImportSagaStep entity) {
+        if (entity == null) {
+            return null;
+        }
+
+        return new ImportSagaStepDto(
+                entity.getId(),
+                entity.getTransactionId(),
+                entity.getOperationId(),
+                entity.getFileKey(),
+                entity.getStatus(),
+                entity.getAttempts(),
+                entity.getLastError(),
+                entity.getCreatedAt(),
+                entity.getUpdatedAt()
+        );
+    }
+}
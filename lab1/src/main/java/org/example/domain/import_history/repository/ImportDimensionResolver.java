@@ -0,0 +1,207 @@
+package org.example.domain.import_history.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.domain.import_history.repository.RouteBulkImportRepositoryMB.BulkRouteRow;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Кэш координат и локаций в рамках одного импорта: все различные кортежи пачки
+ * ищутся и создаются несколькими запросами, после чего каждая строка получает ID из памяти
+ */
+@Slf4j
+public class ImportDimensionResolver {
+
+    // Ограничение на размер кэша, чтобы потоковый импорт не держал в памяти все точки файла
+    private static final int MAX_CACHED_KEYS = 200_000;
+
+    private static final String SELECT_COORDINATES_SQL = """
+            SELECT c.id, c.x, c.y
+            FROM coordinates c
+            JOIN unnest(?::float8[], ?::float8[]) AS k(x, y) ON c.x = k.x AND c.y = k.y
+            """;
+
+    private static final String INSERT_COORDINATES_SQL = """
+            INSERT INTO coordinates (x, y)
+            SELECT * FROM unnest(?::float8[], ?::float8[])
+            ON CONFLICT (x, y) DO NOTHING
+            RETURNING id, x, y
+            """;
+
+    // UNIQUE(x, y, name) допускает несколько локаций с NULL именем - берём самую раннюю
+    private static final String SELECT_LOCATIONS_SQL = """
+            SELECT MIN(l.id) AS id, k.x, k.y, k.name
+            FROM unnest(?::float8[], ?::float8[], ?::text[]) AS k(x, y, name)
+            JOIN locations l ON l.x = k.x AND l.y = k.y AND (l.name = k.name OR (l.name IS NULL AND k.name IS NULL))
+            GROUP BY k.x, k.y, k.name
+            """;
+
+    private static final String INSERT_LOCATIONS_SQL = """
+            INSERT INTO locations (x, y, name)
+            SELECT * FROM unnest(?::float8[], ?::float8[], ?::text[])
+            ON CONFLICT (x, y, name) DO NOTHING
+            RETURNING id, x, y, name
+            """;
+
+    private final Map<CoordinatesKey, Integer> coordinatesIds = new HashMap<>();
+    private final Map<LocationKey, Integer> locationIds = new HashMap<>();
+    // Локации с именем, созданные с последнего drainInsertedLocationNames(), для индекса имен
+    private Map<Integer, String> insertedLocationNames = new HashMap<>();
+
+    /**
+     * Находит или создает все координаты и локации, на которые ссылаются строки пачки
+     */
+    void resolve(Connection connection, List<BulkRouteRow> rows) throws SQLException {
+        if (coordinatesIds.size() + locationIds.size() > MAX_CACHED_KEYS) {
+            coordinatesIds.clear();
+            locationIds.clear();
+        }
+
+        Set<CoordinatesKey> missingCoordinates = new LinkedHashSet<>();
+        Set<LocationKey> missingLocations = new LinkedHashSet<>();
+        for (BulkRouteRow row : rows) {
+            CoordinatesKey coordinates = new CoordinatesKey(row.coordinatesX(), row.coordinatesY());
+            if (!coordinatesIds.containsKey(coordinates)) {
+                missingCoordinates.add(coordinates);
+            }
+            LocationKey from = new LocationKey(row.fromX(), row.fromY(), row.fromName());
+            if (!locationIds.containsKey(from)) {
+                missingLocations.add(from);
+            }
+            LocationKey to = new LocationKey(row.toX(), row.toY(), row.toName());
+            if (!locationIds.containsKey(to)) {
+                missingLocations.add(to);
+            }
+        }
+
+        resolveCoordinates(connection, missingCoordinates);
+        resolveLocations(connection, missingLocations);
+        log.debug("Resolved {} coordinates and {} locations for import batch of {} rows",
+                missingCoordinates.size(), missingLocations.size(), rows.size());
+    }
+
+    Integer coordinatesId(BulkRouteRow row) {
+        return coordinatesIds.get(new CoordinatesKey(row.coordinatesX(), row.coordinatesY()));
+    }
+
+    Integer fromLocationId(BulkRouteRow row) {
+        return locationIds.get(new LocationKey(row.fromX(), row.fromY(), row.fromName()));
+    }
+
+    Integer toLocationId(BulkRouteRow row) {
+        return locationIds.get(new LocationKey(row.toX(), row.toY(), row.toName()));
+    }
+
+    /**
+     * Имена локаций, созданных с прошлого вызова
+     */
+    Map<Integer, String> drainInsertedLocationNames() {
+        Map<Integer, String> drained = insertedLocationNames;
+        insertedLocationNames = new HashMap<>();
+        return drained;
+    }
+
+    private void resolveCoordinates(Connection connection, Set<CoordinatesKey> keys) throws SQLException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        // Сначала ищем существующие, затем создаем недостающие; повторный поиск ловит вставки параллельных импортов
+        readCoordinates(connection, SELECT_COORDINATES_SQL, keys);
+        keys.removeIf(coordinatesIds::containsKey);
+        if (!keys.isEmpty()) {
+            readCoordinates(connection, INSERT_COORDINATES_SQL, keys);
+            keys.removeIf(coordinatesIds::containsKey);
+        }
+        if (!keys.isEmpty()) {
+            readCoordinates(connection, SELECT_COORDINATES_SQL, keys);
+        }
+    }
+
+    private void readCoordinates(Connection connection, String sql, Set<CoordinatesKey> keys) throws SQLException {
+        Double[] xs = new Double[keys.size()];
+        Double[] ys = new Double[keys.size()];
+        int i = 0;
+        for (CoordinatesKey key : keys) {
+            // float -> double даёт то же значение, что Hibernate записывает в coordinates.x
+            xs[i] = (double) key.x();
+            ys[i] = key.y();
+            i++;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setArray(1, connection.createArrayOf("float8", xs));
+            statement.setArray(2, connection.createArrayOf("float8", ys));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    coordinatesIds.put(new CoordinatesKey((float) rs.getDouble("x"), rs.getDouble("y")), rs.getInt("id"));
+                }
+            }
+        }
+    }
+
+    private void resolveLocations(Connection connection, Set<LocationKey> keys) throws SQLException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        readLocations(connection, SELECT_LOCATIONS_SQL, keys, false);
+        keys.removeIf(locationIds::containsKey);
+        if (!keys.isEmpty()) {
+            readLocations(connection, INSERT_LOCATIONS_SQL, keys, true);
+            keys.removeIf(locationIds::containsKey);
+        }
+        if (!keys.isEmpty()) {
+            readLocations(connection, SELECT_LOCATIONS_SQL, keys, false);
+        }
+    }
+
+    private void readLocations(Connection connection, String sql, Set<LocationKey> keys, boolean inserting) throws SQLException {
+        List<LocationKey> ordered = new ArrayList<>(keys);
+        Double[] xs = new Double[ordered.size()];
+        Double[] ys = new Double[ordered.size()];
+        String[] names = new String[ordered.size()];
+        for (int i = 0; i < ordered.size(); i++) {
+            xs[i] = ordered.get(i).x();
+            ys[i] = ordered.get(i).y();
+            names[i] = ordered.get(i).name();
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setArray(1, connection.createArrayOf("float8", xs));
+            statement.setArray(2, connection.createArrayOf("float8", ys));
+            statement.setArray(3, connection.createArrayOf("text", names));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    String name = rs.getString("name");
+                    locationIds.put(new LocationKey(rs.getDouble("x"), rs.getDouble("y"), name), rs.getInt("id"));
+                    if (inserting && name != null) {
+                        insertedLocationNames.put(rs.getInt("id"), name);
+                    }
+                }
+            }
+        }
+    }
+
+    // + 0.0 приводит -0.0 к 0.0: в БД они равны, а в ключах записей - нет
+    private record CoordinatesKey(float x, double y) {
+        CoordinatesKey {
+            x = x + 0.0f;
+            y = y + 0.0;
+        }
+    }
+
+    private record LocationKey(double x, double y, String name) {
+        LocationKey {
+            x = x + 0.0;
+            y = y + 0.0;
+        }
+    }
+}
@@ -3,9 +3,12 @@ package org.example.domain.import_history.repository;
 import jakarta.ejb.Stateless;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
 import org.example.domain.import_history.entity.ImportOperation;
 import org.example.domain.import_history.entity.ImportStatus;
 
+import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Stateless
@@ -24,17 +27,93 @@ public class ImportOperationRepositoryMB {
                 .getResultList();
     }
 
-    public List<ImportOperation> findByUsernameWithPagination(String username, int offset, int limit) {
-        return em.createQuery("SELECT io FROM ImportOperation io WHERE io.username = :username ORDER BY io.startTime DESC", ImportOperation.class)
+    /**
+     * Страница истории после позиции (startTime, id) в порядке (start_time DESC, id DESC); без позиции - первая.
+     * Сравнение кортежей (start_time, id) < (...) PostgreSQL превращает в границу диапазона по индексу
+     * (username, start_time DESC, id DESC), поэтому страница читается с позиции и глубина не важна
+     */
+    public List<ImportOperation> findByUsernameAfter(String username, ZonedDateTime startTime, Integer id, int limit) {
+        String jpql = "SELECT io FROM ImportOperation io WHERE io.username = :username" +
+                (id != null ? " AND (io.startTime, io.id) < (:startTime, :id)" : "") +
+                " ORDER BY io.startTime DESC, io.id DESC";
+        TypedQuery<ImportOperation> query = em.createQuery(jpql, ImportOperation.class)
+                .setParameter("username", username)
+                .setMaxResults(limit);
+        if (id != null) {
+            query.setParameter("startTime", startTime).setParameter("id", id);
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * Агрегаты по операциям пользователя одним запросом с GROUP BY status. Длительности считаются только
+     * по операциям, которые сами разбирали файл: повторы уже импортированного файла завершаются мгновенно
+     */
+    public List<StatusAggregate> aggregateByStatus(String username) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = em.createNativeQuery(
+                        "SELECT status, COUNT(*), COALESCE(SUM(successful_records), 0), " +
+                        "COALESCE(SUM(EXTRACT(EPOCH FROM (end_time - start_time))) " +
+                        "FILTER (WHERE source_operation_id IS NULL), 0), " +
+                        "PERCENTILE_CONT(0.95) WITHIN GROUP (ORDER BY EXTRACT(EPOCH FROM (end_time - start_time))) " +
+                        "FILTER (WHERE source_operation_id IS NULL) " +
+                        "FROM import_operations WHERE username = :username GROUP BY status")
                 .setParameter("username", username)
-                .setFirstResult(offset)
-                .setMaxResults(limit)
                 .getResultList();
+        return rows.stream()
+                .map(row -> new StatusAggregate(
+                        ImportStatus.valueOf((String) row[0]),
+                        ((Number) row[1]).longValue(),
+                        ((Number) row[2]).longValue(),
+                        ((Number) row[3]).doubleValue(),
+                        row[4] != null ? ((Number) row[4]).doubleValue() : null))
+                .toList();
     }
 
-    public long countByUsername(String username) {
-        return em.createQuery("SELECT COUNT(io) FROM ImportOperation io WHERE io.username = :username", Long.class)
+    /**
+     * Последняя успешная операция пользователя, которая сама импортировала файл с таким содержимым
+     */
+    public ImportOperation findLatestSuccessfulByFileHash(String username, String fileHash) {
+        return em.createQuery("SELECT io FROM ImportOperation io WHERE io.fileHash = :fileHash AND io.username = :username " +
+                        "AND io.status = :status AND io.sourceOperationId IS NULL ORDER BY io.endTime DESC", ImportOperation.class)
+                .setParameter("fileHash", fileHash)
                 .setParameter("username", username)
+                .setParameter("status", ImportStatus.SUCCESS)
+                .setMaxResults(1)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Блокировка ключа файла до конца транзакции: запись ссылки на объект и удаление объекта без ссылок
+     * не должны чередоваться
+     */
+    public void lockFileKey(String fileKey) {
+        em.createNativeQuery("SELECT 1 FROM (SELECT pg_advisory_xact_lock(hashtextextended(:fileKey, 0))) l", Integer.class)
+                .setParameter("fileKey", fileKey)
+                .getSingleResult();
+    }
+
+    public long countByFileKey(String fileKey) {
+        return em.createQuery("SELECT COUNT(io) FROM ImportOperation io WHERE io.fileKey = :fileKey", Long.class)
+                .setParameter("fileKey", fileKey)
+                .getSingleResult();
+    }
+
+    /**
+     * Какие из ключей файлов упоминаются хотя бы в одной операции
+     */
+    public List<String> findReferencedFileKeys(Collection<String> fileKeys) {
+        return em.createQuery("SELECT DISTINCT io.fileKey FROM ImportOperation io WHERE io.fileKey IN :fileKeys", String.class)
+                .setParameter("fileKeys", fileKeys)
+                .getResultList();
+    }
+
+    public long countByFileKeyExcludingOperation(String fileKey, Integer operationId) {
+        return em.createQuery("SELECT COUNT(io) FROM ImportOperation io WHERE io.fileKey = :fileKey AND io.id <> :operationId", Long.class)
+                .setParameter("fileKey", fileKey)
+                .setParameter("operationId", operationId)
                 .getSingleResult();
     }
 
@@ -68,4 +147,10 @@ public class ImportOperationRepositoryMB {
                 .setParameter("status", status)
                 .getResultList();
     }
-}
\ No newline at end of file
+
+    /**
+     * Строка агрегата по одному статусу; длительности в секундах
+     */
+    public record StatusAggregate(ImportStatus status, long operations, long successfulRecords,
+                                  double totalDurationSeconds, Double p95DurationSeconds) {}
+}
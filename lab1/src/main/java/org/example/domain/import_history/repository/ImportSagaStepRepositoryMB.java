@@ -0,0 +1,66 @@
+package org.example.domain.import_history.repository;
+
+import jakarta.ejb.Stateless;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.example.domain.import_history.entity.ImportSagaStep;
+import org.example.domain.import_history.entity.SagaStepStatus;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+@Stateless
+public class ImportSagaStepRepositoryMB {
+
+    @PersistenceContext(unitName = "RoutesPU")
+    private EntityManager em;
+
+    public ImportSagaStep findById(Long id) {
+        return em.find(ImportSagaStep.class, id);
+    }
+
+    public ImportSagaStep save(ImportSagaStep step) {
+        if (step.getId() == null) {
+            em.persist(step);
+            return step;
+        } else {
+            return em.merge(step);
+        }
+    }
+
+    /**
+     * Переводит шаги транзакции из одного статуса в другой одним UPDATE
+     */
+    public int updateStatusByTransaction(String transactionId, SagaStepStatus from, SagaStepStatus to) {
+        return em.createQuery("UPDATE ImportSagaStep s SET s.status = :to, s.updatedAt = :now " +
+                        "WHERE s.transactionId = :transactionId AND s.status = :from")
+                .setParameter("to", to)
+                .setParameter("now", ZonedDateTime.now())
+                .setParameter("transactionId", transactionId)
+                .setParameter("from", from)
+                .executeUpdate();
+    }
+
+    /**
+     * Шаги, ожидающие компенсации, и шаги, брошенные незавершенной транзакцией (например, при падении сервера)
+     */
+    public List<ImportSagaStep> findCompensationBatch(ZonedDateTime abandonedBefore, int limit) {
+        return em.createQuery("SELECT s FROM ImportSagaStep s WHERE s.status = :compensate " +
+                        "OR (s.status = :pending AND s.updatedAt < :abandonedBefore) ORDER BY s.id", ImportSagaStep.class)
+                .setParameter("compensate", SagaStepStatus.COMPENSATE)
+                .setParameter("pending", SagaStepStatus.PENDING)
+                .setParameter("abandonedBefore", abandonedBefore)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Удаляет записи о завершенных шагах старше заданного момента, чтобы журнал не рос бесконечно
+     */
+    public int deleteFinishedBefore(ZonedDateTime before) {
+        return em.createQuery("DELETE FROM ImportSagaStep s WHERE s.status IN :statuses AND s.updatedAt < :before")
+                .setParameter("statuses", List.of(SagaStepStatus.COMMITTED, SagaStepStatus.COMPENSATED))
+                .setParameter("before", before)
+                .executeUpdate();
+    }
+}
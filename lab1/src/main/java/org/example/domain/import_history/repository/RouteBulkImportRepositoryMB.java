@@ -0,0 +1,269 @@
+package org.example.domain.import_history.repository;
+
+import jakarta.ejb.Stateless;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.example.domain.coordinates.entity.Coordinates;
+import org.example.domain.location.entity.Location;
+import org.example.domain.route.entity.Route;
+import org.example.service.NameIndexService;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Пакетная запись маршрутов при импорте: вместо createRoute на каждую строку
+ * координаты и локации берутся из {@link ImportDimensionResolver}, а маршруты и владельцы
+ * пишутся одним set-based запросом на пачку строк
+ */
+@Slf4j
+@Stateless
+public class RouteBulkImportRepositoryMB {
+
+    // Размер пачки строк, передаваемой в один запрос в виде массивов
+    public static final int BATCH_SIZE = 5000;
+
+    // Владельцем становится последний по порядку маршрут, как при последовательных createRoute.
+    // NOT EXISTS отсеивает имена, занятые параллельным импортом после RouteRepositoryMB.findExistingNames
+    private static final String INSERT_ROUTES_SQL = """
+            WITH input AS (
+                SELECT * FROM unnest(?::text[], ?::int4[], ?::int4[], ?::int4[], ?::int8[], ?::int8[])
+                    WITH ORDINALITY AS v(name, coordinates_id, from_location_id, to_location_id, distance, rating, ord)
+                WHERE NOT EXISTS (SELECT 1 FROM routes r WHERE r.name = v.name)
+            ), inserted AS (
+                INSERT INTO routes (name, coordinates_id, from_location_id, to_location_id, distance, rating)
+                SELECT i.name, i.coordinates_id, i.from_location_id, i.to_location_id, i.distance, i.rating
+                FROM input i
+                ORDER BY i.ord
+                RETURNING id, name, coordinates_id, from_location_id, to_location_id
+            ), coordinates_owners AS (
+                UPDATE coordinates c SET owner_route_id = o.route_id, version = c.version + 1
+                FROM (SELECT coordinates_id, MAX(id) AS route_id FROM inserted GROUP BY coordinates_id) o
+                WHERE c.id = o.coordinates_id
+                RETURNING c.id
+            ), location_owners AS (
+                UPDATE locations l SET owner_route_id = o.route_id, version = l.version + 1
+                FROM (
+                    SELECT u.location_id, MAX(u.route_id) AS route_id FROM (
+                        SELECT from_location_id AS location_id, id AS route_id FROM inserted
+                        UNION ALL
+                        SELECT to_location_id, id FROM inserted
+                    ) u GROUP BY u.location_id
+                ) o
+                WHERE l.id = o.location_id
+                RETURNING l.id
+            )
+            SELECT id, name FROM inserted
+            """;
+
+    @PersistenceContext(unitName = "RoutesPU")
+    private EntityManager em;
+
+    @Inject
+    private NameIndexService nameIndex;
+
+    /**
+     * Вставка маршрутов пачками. Вызывающий код заранее отбрасывает занятые имена;
+     * имена, занятые параллельно, пропускаются и возвращаются в skippedNames.
+     * Резолвер живёт всё время импорта, поэтому повторяющиеся точки ищутся в БД один раз
+     */
+    public BulkInsertResult insertRoutes(List<BulkRouteRow> rows, ImportDimensionResolver resolver) {
+        // Отложенные изменения из контекста должны попасть в БД до прямых JDBC запросов
+        em.flush();
+
+        int insertedCount = 0;
+        List<String> skippedNames = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            List<BulkRouteRow> batch = rows.subList(from, Math.min(from + BATCH_SIZE, rows.size()));
+            BulkInsertResult batchResult = em.unwrap(Session.class)
+                .doReturningWork(connection -> insertBatch(connection, batch, resolver));
+            insertedCount += batchResult.insertedCount();
+            skippedNames.addAll(batchResult.skippedNames());
+        }
+
+        // Hibernate не видит изменений, сделанных в обход него, поэтому сбрасываем контекст и L2 кэш
+        em.clear();
+        evictCaches();
+
+        log.info("Bulk import inserted {} routes, skipped {} existing names", insertedCount, skippedNames.size());
+        return new BulkInsertResult(insertedCount, skippedNames);
+    }
+
+    private BulkInsertResult insertBatch(Connection connection, List<BulkRouteRow> batch,
+                                         ImportDimensionResolver resolver) throws SQLException {
+        resolver.resolve(connection, batch);
+        Map<Integer, String> insertedLocations = resolver.drainInsertedLocationNames();
+        Map<Integer, String> inserted = insertCandidates(connection, batch, resolver);
+        // Вставки в обход JPA не вызывают слушателей сущностей; индекс изменится только после коммита
+        nameIndex.locationsSaved(insertedLocations);
+        nameIndex.routesSaved(inserted);
+
+        Set<String> insertedNames = new HashSet<>(inserted.values());
+
+        List<String> skippedNames = new ArrayList<>();
+        for (BulkRouteRow row : batch) {
+            if (!insertedNames.contains(row.name())) {
+                skippedNames.add(row.name());
+            }
+        }
+        return new BulkInsertResult(insertedNames.size(), skippedNames);
+    }
+
+    private Map<Integer, String> insertCandidates(Connection connection, List<BulkRouteRow> candidates,
+                                         ImportDimensionResolver resolver) throws SQLException {
+        int size = candidates.size();
+        String[] names = new String[size];
+        Integer[] coordinatesIds = new Integer[size];
+        Integer[] fromIds = new Integer[size];
+        Integer[] toIds = new Integer[size];
+        Long[] distances = new Long[size];
+        Long[] ratings = new Long[size];
+
+        for (int i = 0; i < size; i++) {
+            BulkRouteRow row = candidates.get(i);
+            names[i] = row.name();
+            coordinatesIds[i] = requireResolved(resolver.coordinatesId(row), "coordinates", row);
+            fromIds[i] = requireResolved(resolver.fromLocationId(row), "from location", row);
+            toIds[i] = requireResolved(resolver.toLocationId(row), "to location", row);
+            distances[i] = row.distance();
+            ratings[i] = row.rating();
+        }
+
+        Map<Integer, String> inserted = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_ROUTES_SQL)) {
+            statement.setArray(1, connection.createArrayOf("text", names));
+            statement.setArray(2, connection.createArrayOf("int4", coordinatesIds));
+            statement.setArray(3, connection.createArrayOf("int4", fromIds));
+            statement.setArray(4, connection.createArrayOf("int4", toIds));
+            statement.setArray(5, connection.createArrayOf("int8", distances));
+            statement.setArray(6, connection.createArrayOf("int8", ratings));
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    inserted.put(rs.getInt(1), rs.getString(2));
+                }
+            }
+        }
+        return inserted;
+    }
+
+    private Integer requireResolved(Integer id, String dimension, BulkRouteRow row) {
+        if (id == null) {
+            throw new IllegalStateException("Failed to resolve " + dimension + " for route: " + row.name());
+        }
+        return id;
+    }
+
+    private void evictCaches() {
+        em.getEntityManagerFactory().getCache().evict(Route.class);
+        em.getEntityManagerFactory().getCache().evict(Coordinates.class);
+        em.getEntityManagerFactory().getCache().evict(Location.class);
+        em.getEntityManagerFactory().unwrap(SessionFactory.class).getCache().evictQueryRegions();
+    }
+
+    /**
+     * Строка импорта, уже прошедшая валидацию; пустые имена локаций передаются как null.
+     * Изменяемая: разбор CSV заполняет одни и те же объекты заново для каждого чанка, поэтому ссылки
+     * на строку не хранятся дольше записи чанка
+     */
+    public static final class BulkRouteRow {
+        private String name;
+        private float coordinatesX;
+        private double coordinatesY;
+        private double fromX;
+        private double fromY;
+        private String fromName;
+        private double toX;
+        private double toY;
+        private String toName;
+        private long distance;
+        private long rating;
+
+        public BulkRouteRow() {
+        }
+
+        public BulkRouteRow(String name, float coordinatesX, double coordinatesY, double fromX, double fromY,
+                            String fromName, double toX, double toY, String toName, long distance, long rating) {
+            set(name, coordinatesX, coordinatesY, fromX, fromY, fromName, toX, toY, toName, distance, rating);
+        }
+
+        public BulkRouteRow set(String name, float coordinatesX, double coordinatesY, double fromX, double fromY,
+                                String fromName, double toX, double toY, String toName, long distance, long rating) {
+            this.name = name;
+            this.coordinatesX = coordinatesX;
+            this.coordinatesY = coordinatesY;
+            this.fromX = fromX;
+            this.fromY = fromY;
+            this.fromName = fromName;
+            this.toX = toX;
+            this.toY = toY;
+            this.toName = toName;
+            this.distance = distance;
+            this.rating = rating;
+            return this;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public float coordinatesX() {
+            return coordinatesX;
+        }
+
+        public double coordinatesY() {
+            return coordinatesY;
+        }
+
+        public double fromX() {
+            return fromX;
+        }
+
+        public double fromY() {
+            return fromY;
+        }
+
+        public String fromName() {
+            return fromName;
+        }
+
+        public double toX() {
+            return toX;
+        }
+
+        public double toY() {
+            return toY;
+        }
+
+        public String toName() {
+            return toName;
+        }
+
+        public long distance() {
+            return distance;
+        }
+
+        public long rating() {
+            return rating;
+        }
+    }
+
+    /**
+     * Результат пакетной вставки: число новых маршрутов и имена, которые уже существовали
+     */
+    public record BulkInsertResult(
+        int insertedCount,
+        List<String> skippedNames
+    ) {}
+}
@@ -0,0 +1,261 @@
+package org.example.domain.import_history.service;
+
+/**
+ * Разбор строки CSV без split и trim: запоминаются только границы полей, числа читаются прямо из символов строки.
+ * Поддерживает поля в кавычках ("Москва, центр", экранирование "" внутри). Объект изменяемый и переиспользуется
+ * для всех строк пачки, поэтому не потокобезопасен
+ */
+public class CsvLineTokenizer {
+
+    // Степени десяти, точно представимые в double (до 1e22) и во float (до 1e10)
+    private static final double[] DOUBLE_POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final float[] FLOAT_POWERS_OF_TEN = {
+        1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+    // Сколько значащих цифр мантиссы гарантированно помещается без округления
+    private static final int MAX_DOUBLE_DIGITS = 15;
+    private static final int MAX_FLOAT_DIGITS = 7;
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final int expectedFields;
+    private final int[] starts;
+    private final int[] ends;
+    private final boolean[] escaped;
+    private String line;
+
+    public CsvLineTokenizer(int expectedFields) {
+        this.expectedFields = expectedFields;
+        this.starts = new int[expectedFields];
+        this.ends = new int[expectedFields];
+        this.escaped = new boolean[expectedFields];
+    }
+
+    /**
+     * Находит границы полей строки; число полей должно совпадать с ожидаемым
+     */
+    public void tokenize(String line) {
+        this.line = line;
+        int length = line.length();
+        int position = 0;
+        int field = 0;
+
+        while (true) {
+            if (field == expectedFields) {
+                throw new IllegalArgumentException("Line must have exactly " + expectedFields + " columns");
+            }
+            position = skipWhitespace(position, length);
+
+            if (position < length && line.charAt(position) == '"') {
+                position = readQuotedField(field, position, length);
+            } else {
+                int end = position;
+                while (end < length && line.charAt(end) != ',') {
+                    end++;
+                }
+                starts[field] = position;
+                ends[field] = trimEnd(position, end);
+                escaped[field] = false;
+                position = end;
+            }
+            field++;
+
+            if (position >= length) {
+                break;
+            }
+            position++; // запятая
+        }
+
+        if (field != expectedFields) {
+            throw new IllegalArgumentException("Line must have exactly " + expectedFields + " columns");
+        }
+    }
+
+    /**
+     * Текст поля без окружающих пробелов и кавычек
+     */
+    public String text(int field) {
+        if (!escaped[field]) {
+            return line.substring(starts[field], ends[field]);
+        }
+        StringBuilder unescaped = new StringBuilder(ends[field] - starts[field]);
+        for (int i = starts[field]; i < ends[field]; i++) {
+            char c = line.charAt(i);
+            unescaped.append(c);
+            if (c == '"') {
+                i++; // "" внутри кавычек означает одну кавычку
+            }
+        }
+        return unescaped.toString();
+    }
+
+    public long longField(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+        if (i == end || end - i > MAX_LONG_DIGITS) {
+            return parseLongSlow(field);
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return parseLongSlow(field);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    public double doubleField(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean anyDigit = false;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                anyDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                if (digits > MAX_DOUBLE_DIGITS) {
+                    return parseDoubleSlow(field);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                // Экспонента, NaN, Infinity и ошибки формата - стандартным разбором
+                return parseDoubleSlow(field);
+            }
+        }
+        if (!anyDigit || fractionDigits >= DOUBLE_POWERS_OF_TEN.length) {
+            return parseDoubleSlow(field);
+        }
+
+        // Мантисса и степень десяти точны, поэтому одно деление дает корректно округленный результат
+        double value = mantissa / DOUBLE_POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    public float floatField(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+
+        int mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean anyDigit = false;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                anyDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                if (digits > MAX_FLOAT_DIGITS) {
+                    return parseFloatSlow(field);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                return parseFloatSlow(field);
+            }
+        }
+        if (!anyDigit || fractionDigits >= FLOAT_POWERS_OF_TEN.length) {
+            return parseFloatSlow(field);
+        }
+
+        // Деление во float, а не через double: двойное округление могло бы дать другое значение, чем Float.parseFloat
+        float value = mantissa / FLOAT_POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    private int readQuotedField(int field, int quote, int length) {
+        boolean hasEscapes = false;
+        int i = quote + 1;
+        while (true) {
+            if (i >= length) {
+                throw new IllegalArgumentException("Unterminated quoted field in column " + (field + 1));
+            }
+            if (line.charAt(i) == '"') {
+                if (i + 1 < length && line.charAt(i + 1) == '"') {
+                    hasEscapes = true;
+                    i += 2;
+                    continue;
+                }
+                break;
+            }
+            i++;
+        }
+        starts[field] = quote + 1;
+        ends[field] = i;
+        escaped[field] = hasEscapes;
+
+        int position = skipWhitespace(i + 1, length);
+        if (position < length && line.charAt(position) != ',') {
+            throw new IllegalArgumentException("Unexpected character after quoted field in column " + (field + 1));
+        }
+        return position;
+    }
+
+    // Пробельными считаются те же символы, что убирает String.trim()
+    private int skipWhitespace(int position, int length) {
+        while (position < length && line.charAt(position) <= ' ') {
+            position++;
+        }
+        return position;
+    }
+
+    private int trimEnd(int start, int end) {
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private long parseLongSlow(int field) {
+        return Long.parseLong(text(field));
+    }
+
+    private double parseDoubleSlow(int field) {
+        return Double.parseDouble(text(field));
+    }
+
+    private float parseFloatSlow(int field) {
+        return Float.parseFloat(text(field));
+    }
+}
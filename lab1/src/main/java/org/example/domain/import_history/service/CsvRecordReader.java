@@ -0,0 +1,92 @@
+package org.example.domain.import_history.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Чтение CSV по записям: пропускает пустые строки и склеивает запись, если поле в кавычках
+ * содержит перевод строки. Номера строк физические, как их видит пользователь в редакторе
+ */
+public class CsvRecordReader implements ImportRecordSource {
+
+    private final BufferedReader reader;
+    private int lineNumber;
+    private int recordLineNumber;
+
+    public CsvRecordReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+    }
+
+    /**
+     * Читает первую строку файла и проверяет, что это ожидаемый заголовок
+     */
+    public void readHeader(String... expectedHeaders) throws IOException {
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            throw new IllegalArgumentException("CSV file is empty");
+        }
+        lineNumber = 1;
+
+        String[] actualHeaders = headerLine.split(",");
+        if (actualHeaders.length != expectedHeaders.length) {
+            throw new IllegalArgumentException("CSV must have exactly " + expectedHeaders.length + " columns: " +
+                String.join(", ", expectedHeaders));
+        }
+        for (int i = 0; i < expectedHeaders.length; i++) {
+            if (!actualHeaders[i].trim().equalsIgnoreCase(expectedHeaders[i])) {
+                throw new IllegalArgumentException("Invalid header at column " + (i + 1) +
+                    ". Expected: " + expectedHeaders[i] + ", Found: " + actualHeaders[i].trim());
+            }
+        }
+    }
+
+    @Override
+    public ImportRecord next() throws IOException {
+        String record = nextLine();
+        return record != null ? new ImportRecord.CsvLine(recordLineNumber, record) : null;
+    }
+
+    /**
+     * Следующая непустая запись как текст или null в конце файла
+     */
+    private String nextLine() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (line.isBlank());
+        recordLineNumber = lineNumber;
+
+        if (!hasOddQuotes(line)) {
+            return line;
+        }
+        // Незакрытая кавычка - дочитываем строки, пока поле не закроется; незакрытое до конца файла отклонит токенизатор
+        StringBuilder record = new StringBuilder(line);
+        boolean open = true;
+        while (open && (line = reader.readLine()) != null) {
+            lineNumber++;
+            record.append('\n').append(line);
+            open = hasOddQuotes(line) != open;
+        }
+        return record.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static boolean hasOddQuotes(String line) {
+        boolean odd = false;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                odd = !odd;
+            }
+        }
+        return odd;
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.domain.import_history.service;
+
+import java.util.Locale;
+
+/**
+ * Формат файла импорта. JSON - массив объектов или объекты по одному на строку (NDJSON)
+ */
+public enum ImportFormat {
+    CSV,
+    JSON;
+
+    /**
+     * Формат по Content-Type запроса, а если он не говорит о JSON - по расширению файла
+     */
+    public static ImportFormat detect(String contentType, String filename) {
+        if (contentType != null) {
+            String mediaType = contentType.toLowerCase(Locale.ROOT);
+            if (mediaType.startsWith("application/json") || mediaType.startsWith("application/x-ndjson")) {
+                return JSON;
+            }
+        }
+        return fromFilename(filename);
+    }
+
+    public static ImportFormat fromFilename(String filename) {
+        if (filename == null) {
+            return CSV;
+        }
+        String lowerFilename = filename.toLowerCase(Locale.ROOT);
+        if (lowerFilename.endsWith(".json") || lowerFilename.endsWith(".ndjson") || lowerFilename.endsWith(".jsonl")) {
+            return JSON;
+        }
+        return CSV;
+    }
+}
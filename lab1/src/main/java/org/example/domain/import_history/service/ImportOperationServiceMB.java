@@ -1,16 +1,25 @@
 package org.example.domain.import_history.service;
 
 import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
+import org.example.domain.import_history.dto.ImportHistoryCursor;
+import org.example.domain.import_history.dto.ImportHistoryPageDto;
 import org.example.domain.import_history.dto.ImportOperationDto;
+import org.example.domain.import_history.dto.ImportProgressDto;
+import org.example.domain.import_history.dto.ImportStatsDto;
 import org.example.domain.import_history.entity.ImportOperation;
 import org.example.domain.import_history.entity.ImportStatus;
 import org.example.domain.import_history.mapper.ImportOperationMapper;
 import org.example.domain.import_history.repository.ImportOperationRepositoryMB;
 
 import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -20,6 +29,9 @@ public class ImportOperationServiceMB {
     @Inject
     private ImportOperationRepositoryMB importOperationRepository;
 
+    @Inject
+    private ImportStatsCache statsCache;
+
     public ImportOperationDto findById(Integer id) {
         ImportOperation operation = importOperationRepository.findById(id);
         if (operation == null) {
@@ -28,27 +40,86 @@ public class ImportOperationServiceMB {
         return ImportOperationMapper.toDto(operation);
     }
 
+    /**
+     * Текущий прогресс операции для опроса клиентом
+     */
+    public ImportProgressDto getProgress(Integer id) {
+        ImportOperation operation = importOperationRepository.findById(id);
+        if (operation == null) {
+            throw new IllegalArgumentException("Import operation not found with id: " + id);
+        }
+        return ImportOperationMapper.toProgressDto(operation);
+    }
+
     public List<ImportOperationDto> findByUsername(String username) {
         return importOperationRepository.findByUsername(username).stream()
                 .map(ImportOperationMapper::toDto)
                 .collect(Collectors.toList());
     }
 
-    public List<ImportOperationDto> findByUsernameWithPagination(String username, int page, int size) {
-        int offset = page * size;
-        return importOperationRepository.findByUsernameWithPagination(username, offset, size).stream()
+    /**
+     * Страница истории по курсору: читается только pageSize + 1 строк, чтобы узнать, есть ли следующая страница.
+     * Общее число операций дорогое на больших историях, поэтому считается только по запросу
+     */
+    public ImportHistoryPageDto findHistoryPage(String username, ImportHistoryCursor cursor, int pageSize,
+            boolean withCount) {
+        List<ImportOperationDto> operations = importOperationRepository.findByUsernameAfter(username,
+                        cursor != null ? cursor.startTime() : null, cursor != null ? cursor.id() : null, pageSize + 1)
+                .stream()
                 .map(ImportOperationMapper::toDto)
                 .collect(Collectors.toList());
+
+        boolean hasNext = operations.size() > pageSize;
+        if (hasNext) {
+            operations = operations.subList(0, pageSize);
+        }
+        String nextCursor = hasNext ? ImportHistoryCursor.after(operations.get(pageSize - 1)).encode() : null;
+        Long totalCount = withCount ? getStats(username).totalOperations() : null;
+        return new ImportHistoryPageDto(operations, nextCursor, hasNext, pageSize, totalCount);
     }
 
-    public long countByUsername(String username) {
-        return importOperationRepository.countByUsername(username);
+    /**
+     * Статистика импортов пользователя из одного агрегирующего запроса, кэшируется на короткое время
+     */
+    public ImportStatsDto getStats(String username) {
+        return statsCache.get(username, () -> calculateStats(username));
+    }
+
+    private ImportStatsDto calculateStats(String username) {
+        long total = 0;
+        long successful = 0;
+        long failed = 0;
+        long active = 0;
+        long importedRows = 0;
+        Double rowsPerSecond = null;
+        Double p95DurationSeconds = null;
+        for (ImportOperationRepositoryMB.StatusAggregate aggregate : importOperationRepository.aggregateByStatus(username)) {
+            total += aggregate.operations();
+            switch (aggregate.status()) {
+                case SUCCESS -> {
+                    successful = aggregate.operations();
+                    importedRows = aggregate.successfulRecords();
+                    if (aggregate.totalDurationSeconds() > 0) {
+                        rowsPerSecond = aggregate.successfulRecords() / aggregate.totalDurationSeconds();
+                    }
+                    p95DurationSeconds = aggregate.p95DurationSeconds();
+                }
+                case FAILED -> failed = aggregate.operations();
+                case QUEUED, IN_PROGRESS -> active += aggregate.operations();
+            }
+        }
+        return new ImportStatsDto(total, successful, failed, active, importedRows, rowsPerSecond, p95DurationSeconds);
     }
 
     /**
      * Создает новую операцию импорта
      */
     public ImportOperationDto createImportOperation(String username, String filename, Integer totalRecords) {
+        return createImportOperation(username, filename, totalRecords, ImportStatus.IN_PROGRESS);
+    }
+
+    private ImportOperationDto createImportOperation(String username, String filename, Integer totalRecords,
+            ImportStatus status) {
         log.info("Creating import operation for user {} with file {}", username, filename);
         
         ImportOperation operation = ImportOperation.builder()
@@ -57,11 +128,12 @@ public class ImportOperationServiceMB {
                 .totalRecords(totalRecords)
                 .processedRecords(0)
                 .successfulRecords(0)
-                .status(ImportStatus.IN_PROGRESS)
+                .status(status)
                 .startTime(ZonedDateTime.now())
                 .build();
 
         ImportOperation saved = importOperationRepository.save(operation);
+        statsCache.invalidate(username);
         return ImportOperationMapper.toDto(saved);
     }
 
@@ -87,13 +159,47 @@ public class ImportOperationServiceMB {
                 .build();
 
         ImportOperation saved = importOperationRepository.save(operation);
+        statsCache.invalidate(username);
         return ImportOperationMapper.toDto(saved);
     }
 
+    /**
+     * Создает операцию потокового импорта в отдельной транзакции, чтобы она была видна до завершения импорта
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public ImportOperationDto startImportOperation(String username, String filename) {
+        return createImportOperation(username, filename, null);
+    }
+
+    /**
+     * Создает операцию фонового импорта, ожидающую своей очереди
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public ImportOperationDto queueImportOperation(String username, String filename) {
+        return createImportOperation(username, filename, null, ImportStatus.QUEUED);
+    }
+
+    /**
+     * Переводит операцию из очереди в работу, когда для нее освободился слот
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public ImportOperationDto markImportStarted(Integer operationId) {
+        ImportOperation operation = importOperationRepository.findById(operationId);
+        if (operation == null) {
+            throw new IllegalArgumentException("Import operation not found with id: " + operationId);
+        }
+
+        operation.setStatus(ImportStatus.IN_PROGRESS);
+        ImportOperation updated = importOperationRepository.save(operation);
+        statsCache.invalidate(operation.getUsername());
+        return ImportOperationMapper.toDto(updated);
+    }
+
     /**
      * Обновляет информацию о файле в операции импорта
      */
-    public ImportOperationDto updateFileInfo(Integer operationId, String fileKey, Long fileSize, String fileContentType) {
+    public ImportOperationDto updateFileInfo(Integer operationId, String fileKey, Long fileSize, String fileContentType,
+            String fileContentEncoding, String fileHash) {
         ImportOperation operation = importOperationRepository.findById(operationId);
         if (operation == null) {
             throw new IllegalArgumentException("Import operation not found with id: " + operationId);
@@ -102,7 +208,126 @@ public class ImportOperationServiceMB {
         operation.setFileKey(fileKey);
         operation.setFileSize(fileSize);
         operation.setFileContentType(fileContentType);
+        operation.setFileContentEncoding(fileContentEncoding);
+        operation.setFileHash(fileHash);
         
+        ImportOperation updated = importOperationRepository.save(operation);
+        statsCache.invalidate(operation.getUsername());
+        return ImportOperationMapper.toDto(updated);
+    }
+
+    /**
+     * Записывает размер файла в хранилище, когда он стал известен после загрузки; по нему проверяются
+     * диапазоны скачивания сжатого файла без запроса к MinIO
+     */
+    public void updateStoredSize(Integer operationId, long storedSize) {
+        ImportOperation operation = importOperationRepository.findById(operationId);
+        if (operation == null) {
+            throw new IllegalArgumentException("Import operation not found with id: " + operationId);
+        }
+        operation.setFileStoredSize(storedSize);
+        importOperationRepository.save(operation);
+    }
+
+    /**
+     * Записывает в операцию ссылку на файл под блокировкой ключа, отдельной транзакцией. Ссылка пишется
+     * до загрузки или переиспользования объекта: после ее фиксации компенсация объект не удалит,
+     * а удаление, начатое раньше, завершится до фиксации
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public ImportOperationDto attachFileIndependently(Integer operationId, String fileKey, Long fileSize,
+            String fileContentType, String fileContentEncoding, String fileHash) {
+        return attachFile(operationId, fileKey, fileSize, fileContentType, fileContentEncoding, fileHash);
+    }
+
+    /**
+     * Записывает в операцию ссылку на файл под блокировкой ключа в текущей транзакции. Нужен, когда операция
+     * уже изменена в этой транзакции: отдельная транзакция записала бы ссылку, а коммит текущей затер бы ее
+     * устаревшим состоянием операции. Блокировка держится до коммита, и удаление объекта дождется ссылки
+     */
+    public ImportOperationDto attachFile(Integer operationId, String fileKey, Long fileSize,
+            String fileContentType, String fileContentEncoding, String fileHash) {
+        importOperationRepository.lockFileKey(fileKey);
+        return updateFileInfo(operationId, fileKey, fileSize, fileContentType, fileContentEncoding, fileHash);
+    }
+
+    /**
+     * Блокирует ключ файла до конца текущей транзакции
+     */
+    public void lockFileKey(String fileKey) {
+        importOperationRepository.lockFileKey(fileKey);
+    }
+
+    /**
+     * Успешная операция пользователя, уже импортировавшая файл с таким SHA-256, или null
+     */
+    public ImportOperationDto findImportedByFileHash(String username, String fileHash) {
+        return ImportOperationMapper.toDto(importOperationRepository.findLatestSuccessfulByFileHash(username, fileHash));
+    }
+
+    /**
+     * Ссылаются ли на объект в MinIO другие операции: такой файл нельзя удалять при откате
+     */
+    public boolean isFileSharedWithOtherOperations(String fileKey, Integer operationId) {
+        long references = operationId != null
+                ? importOperationRepository.countByFileKeyExcludingOperation(fileKey, operationId)
+                : importOperationRepository.countByFileKey(fileKey);
+        return references > 0;
+    }
+
+    /**
+     * Ключи из переданных, на которые ссылается хотя бы одна операция
+     */
+    public Set<String> findReferencedFileKeys(Collection<String> fileKeys) {
+        if (fileKeys.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(importOperationRepository.findReferencedFileKeys(fileKeys));
+    }
+
+    /**
+     * Убирает из операции ссылку на файл, удаленный из хранилища
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public ImportOperationDto detachFileIndependently(Integer operationId) {
+        return updateFileInfo(operationId, null, null, null, null, null);
+    }
+
+    /**
+     * Завершает операцию без разбора файла: такой же файл уже импортирован операцией source.
+     * Ссылка на файл не копируется - операция не хранит файл и не дает его скачать, файл доступен через source
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public ImportOperationDto completeAsAlreadyImported(Integer operationId, ImportOperationDto source) {
+        ImportOperation operation = importOperationRepository.findById(operationId);
+        if (operation == null) {
+            throw new IllegalArgumentException("Import operation not found with id: " + operationId);
+        }
+
+        operation.setStatus(ImportStatus.SUCCESS);
+        operation.setEndTime(ZonedDateTime.now());
+        operation.setTotalRecords(source.totalRecords());
+        operation.setProcessedRecords(source.totalRecords());
+        operation.setSuccessfulRecords(0);
+        operation.setFileHash(source.fileHash());
+        operation.setSourceOperationId(source.id());
+
+        ImportOperation updated = importOperationRepository.save(operation);
+        statsCache.invalidate(operation.getUsername());
+        return ImportOperationMapper.toDto(updated);
+    }
+
+    /**
+     * Фиксирует общее число записей в отдельной транзакции, как только файл разобран
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public ImportOperationDto updateTotalRecordsIndependently(Integer operationId, Integer totalRecords) {
+        ImportOperation operation = importOperationRepository.findById(operationId);
+        if (operation == null) {
+            throw new IllegalArgumentException("Import operation not found with id: " + operationId);
+        }
+
+        operation.setTotalRecords(totalRecords);
         ImportOperation updated = importOperationRepository.save(operation);
         return ImportOperationMapper.toDto(updated);
     }
@@ -123,6 +348,51 @@ public class ImportOperationServiceMB {
         return ImportOperationMapper.toDto(updated);
     }
 
+    /**
+     * Публикует прогресс в отдельной транзакции, не дожидаясь коммита самого импорта
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public ImportOperationDto reportProgress(Integer operationId, Integer processedRecords, Integer successfulRecords) {
+        return updateProgress(operationId, processedRecords, successfulRecords);
+    }
+
+    /**
+     * Сохраняет контрольную точку чанкового импорта в транзакции чанка
+     */
+    public ImportOperationDto saveCheckpoint(Integer operationId, Integer lastCommittedLine,
+            Integer processedRecords, Integer successfulRecords) {
+        ImportOperation operation = importOperationRepository.findById(operationId);
+        if (operation == null) {
+            throw new IllegalArgumentException("Import operation not found with id: " + operationId);
+        }
+
+        operation.setLastCommittedLine(lastCommittedLine);
+        operation.setProcessedRecords(processedRecords);
+        operation.setSuccessfulRecords(successfulRecords);
+
+        ImportOperation updated = importOperationRepository.save(operation);
+        return ImportOperationMapper.toDto(updated);
+    }
+
+    /**
+     * Возвращает прерванную операцию в очередь перед возобновлением с контрольной точки
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public ImportOperationDto restartImportOperation(Integer operationId) {
+        ImportOperation operation = importOperationRepository.findById(operationId);
+        if (operation == null) {
+            throw new IllegalArgumentException("Import operation not found with id: " + operationId);
+        }
+
+        operation.setStatus(ImportStatus.QUEUED);
+        operation.setEndTime(null);
+        operation.setErrorMessage(null);
+
+        ImportOperation updated = importOperationRepository.save(operation);
+        statsCache.invalidate(operation.getUsername());
+        return ImportOperationMapper.toDto(updated);
+    }
+
     /**
      * Завершает операцию импорта с успехом
      */
@@ -140,9 +410,44 @@ public class ImportOperationServiceMB {
         operation.setProcessedRecords(operation.getTotalRecords());
 
         ImportOperation updated = importOperationRepository.save(operation);
+        statsCache.invalidate(operation.getUsername());
         return ImportOperationMapper.toDto(updated);
     }
 
+    /**
+     * Завершает операцию потокового импорта, общее число записей становится известно только в конце
+     */
+    public ImportOperationDto completeImportOperation(Integer operationId, Integer totalRecords, Integer successfulRecords) {
+        ImportOperation operation = importOperationRepository.findById(operationId);
+        if (operation == null) {
+            throw new IllegalArgumentException("Import operation not found with id: " + operationId);
+        }
+
+        operation.setTotalRecords(totalRecords);
+        importOperationRepository.save(operation);
+        return completeImportOperation(operationId, successfulRecords);
+    }
+
+    /**
+     * Завершает операцию импорта с ошибкой в отдельной транзакции, которая переживает откат самого импорта.
+     * totalRecords может быть null, если файл не удалось разобрать
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public ImportOperationDto failImportOperationIndependently(Integer operationId, Integer totalRecords, String errorMessage) {
+        ImportOperation operation = importOperationRepository.findById(operationId);
+        if (operation == null) {
+            throw new IllegalArgumentException("Import operation not found with id: " + operationId);
+        }
+
+        if (totalRecords != null) {
+            operation.setTotalRecords(totalRecords);
+            operation.setProcessedRecords(totalRecords);
+        }
+        operation.setSuccessfulRecords(0);
+        importOperationRepository.save(operation);
+        return failImportOperation(operationId, errorMessage);
+    }
+
     /**
      * Завершает операцию импорта с ошибкой
      */
@@ -159,6 +464,7 @@ public class ImportOperationServiceMB {
         operation.setErrorMessage(errorMessage);
 
         ImportOperation updated = importOperationRepository.save(operation);
+        statsCache.invalidate(operation.getUsername());
         return ImportOperationMapper.toDto(updated);
     }
 
@@ -0,0 +1,33 @@
+package org.example.domain.import_history.service;
+
+/**
+ * Публикует прогресс импорта не чаще заданного интервала, чтобы не нагружать БД на каждой пачке
+ */
+public class ImportProgressReporter {
+
+    private static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+    private final ImportOperationServiceMB importOperationService;
+    private final Integer operationId;
+    private final long intervalNanos;
+    private long lastReportNanos;
+
+    public ImportProgressReporter(ImportOperationServiceMB importOperationService, Integer operationId) {
+        this.importOperationService = importOperationService;
+        this.operationId = operationId;
+        this.intervalNanos = DEFAULT_INTERVAL_MILLIS * 1_000_000L;
+        this.lastReportNanos = System.nanoTime();
+    }
+
+    /**
+     * Записывает прогресс, если с прошлой записи прошло больше интервала
+     */
+    public void report(int processedRecords, int successfulRecords) {
+        long now = System.nanoTime();
+        if (now - lastReportNanos < intervalNanos) {
+            return;
+        }
+        lastReportNanos = now;
+        importOperationService.reportProgress(operationId, processedRecords, successfulRecords);
+    }
+}
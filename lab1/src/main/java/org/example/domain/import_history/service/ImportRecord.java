@@ -0,0 +1,35 @@
+package org.example.domain.import_history.service;
+
+import org.example.domain.import_history.repository.RouteBulkImportRepositoryMB.BulkRouteRow;
+
+/**
+ * Запись файла импорта до проверки. CSV строки разбираются уже в пуле проверки,
+ * объекты JSON разбираются потоковым парсером при чтении
+ */
+public sealed interface ImportRecord permits ImportRecord.CsvLine, ImportRecord.Parsed, ImportRecord.Rejected {
+
+    /**
+     * Порядковая позиция записи в файле, по ней ставится контрольная точка чанкового импорта:
+     * номер строки для CSV, номер объекта для JSON
+     */
+    int position();
+
+    /**
+     * Номер строки файла, с которой начинается запись, - для сообщений об ошибках
+     */
+    int lineNumber();
+
+    record CsvLine(int lineNumber, String text) implements ImportRecord {
+        @Override
+        public int position() {
+            return lineNumber;
+        }
+    }
+
+    record Parsed(int position, int lineNumber, BulkRouteRow data) implements ImportRecord {}
+
+    /**
+     * Запись, которую не удалось разобрать; ошибка попадет в общий список ошибок проверки
+     */
+    record Rejected(int position, int lineNumber, String error) implements ImportRecord {}
+}
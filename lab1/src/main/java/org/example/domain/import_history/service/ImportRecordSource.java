@@ -0,0 +1,15 @@
+package org.example.domain.import_history.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Потоковый источник записей импорта: файл читается по одной записи, без загрузки целиком
+ */
+public interface ImportRecordSource extends Closeable {
+
+    /**
+     * Следующая запись или null в конце файла
+     */
+    ImportRecord next() throws IOException;
+}
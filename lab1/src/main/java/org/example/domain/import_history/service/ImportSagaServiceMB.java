@@ -0,0 +1,120 @@
+package org.example.domain.import_history.service;
+
+import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.example.domain.import_history.dto.ImportSagaStepDto;
+import org.example.domain.import_history.entity.ImportSagaStep;
+import org.example.domain.import_history.entity.SagaStepStatus;
+import org.example.domain.import_history.mapper.ImportSagaStepMapper;
+import org.example.domain.import_history.repository.ImportSagaStepRepositoryMB;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Журнал шагов саги импорта. Все записи идут отдельными транзакциями: журнал должен сохраниться,
+ * даже если транзакция самого импорта откатится или сервер упадет посреди импорта
+ */
+@Slf4j
+@Stateless
+public class ImportSagaServiceMB {
+
+    // После стольких неудачных попыток компенсация останавливается до ручной проверки
+    private static final int MAX_COMPENSATION_ATTEMPTS = 5;
+
+    @Inject
+    private ImportSagaStepRepositoryMB sagaStepRepository;
+
+    /**
+     * Записывает загрузку файла до ее начала, чтобы файл можно было удалить после сбоя
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public ImportSagaStepDto recordFileUpload(String transactionId, Integer operationId, String fileKey) {
+        ImportSagaStep step = ImportSagaStep.builder()
+                .transactionId(transactionId)
+                .operationId(operationId)
+                .fileKey(fileKey)
+                .status(SagaStepStatus.PENDING)
+                .build();
+        return ImportSagaStepMapper.toDto(sagaStepRepository.save(step));
+    }
+
+    /**
+     * Транзакция импорта завершилась, ее файлы остаются в хранилище
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int markCommitted(String transactionId) {
+        return sagaStepRepository.updateStatusByTransaction(transactionId, SagaStepStatus.PENDING, SagaStepStatus.COMMITTED);
+    }
+
+    /**
+     * Транзакция импорта откачена: ее файлы удалит фоновая компенсация, запрос не ждет хранилище
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int requestCompensation(String transactionId) {
+        return sagaStepRepository.updateStatusByTransaction(transactionId, SagaStepStatus.PENDING, SagaStepStatus.COMPENSATE);
+    }
+
+    /**
+     * Очередная пачка шагов для компенсации, включая шаги транзакций, брошенных раньше abandonedBefore
+     */
+    public List<ImportSagaStepDto> findCompensationBatch(ZonedDateTime abandonedBefore, int limit) {
+        return sagaStepRepository.findCompensationBatch(abandonedBefore, limit).stream()
+                .map(ImportSagaStepMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void markCompensated(Long stepId) {
+        resolve(stepId, SagaStepStatus.COMPENSATED);
+    }
+
+    /**
+     * Шаг считался брошенным, но его импорт на самом деле завершился успешно - файл остается
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void markStepCommitted(Long stepId) {
+        resolve(stepId, SagaStepStatus.COMMITTED);
+    }
+
+    private void resolve(Long stepId, SagaStepStatus status) {
+        ImportSagaStep step = sagaStepRepository.findById(stepId);
+        if (step != null) {
+            step.setStatus(status);
+            step.setLastError(null);
+            sagaStepRepository.save(step);
+        }
+    }
+
+    /**
+     * Фиксирует неудачную попытку компенсации; шаг остается в очереди, пока не исчерпаны попытки
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void markCompensationFailed(Long stepId, String error) {
+        ImportSagaStep step = sagaStepRepository.findById(stepId);
+        if (step == null) {
+            return;
+        }
+        step.setAttempts(step.getAttempts() + 1);
+        step.setLastError(error);
+        // Брошенный шаг (PENDING) после первой попытки переходит в обычную очередь компенсации
+        step.setStatus(step.getAttempts() >= MAX_COMPENSATION_ATTEMPTS ? SagaStepStatus.FAILED : SagaStepStatus.COMPENSATE);
+        if (step.getStatus() == SagaStepStatus.FAILED) {
+            log.error("Saga step {} (file {}) failed after {} attempts: {}",
+                    stepId, step.getFileKey(), step.getAttempts(), error);
+        }
+        sagaStepRepository.save(step);
+    }
+
+    /**
+     * Удаляет из журнала завершенные шаги старше before
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int purgeFinished(ZonedDateTime before) {
+        return sagaStepRepository.deleteFinishedBefore(before);
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.domain.import_history.service;
+
+import jakarta.annotation.Resource;
+import jakarta.ejb.Lock;
+import jakarta.ejb.LockType;
+import jakarta.ejb.Singleton;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.example.domain.import_history.dto.ImportStatsDto;
+import org.example.service.AfterCommitCache;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Короткоживущий кэш статистики импортов по пользователям. Запись сбрасывается при каждой смене статуса
+ * или файла операции пользователя (прогресс работающей операции статистику не меняет), а TTL ограничивает
+ * устаревание при изменениях на других узлах
+ */
+@Singleton
+@Lock(LockType.READ)
+public class ImportStatsCache {
+
+    private static final Duration TTL = Duration.ofSeconds(30);
+    // Одна запись на пользователя, который недавно смотрел статистику
+    private static final int MAX_ENTRIES = 10_000;
+
+    private final AfterCommitCache<String, ImportStatsDto> stats = new AfterCommitCache<>(TTL, MAX_ENTRIES);
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionRegistry;
+
+    public ImportStatsDto get(String username, Supplier<ImportStatsDto> loader) {
+        return stats.get(username, loader);
+    }
+
+    /**
+     * Сбрасывает статистику пользователя после завершения текущей транзакции
+     */
+    public void invalidate(String username) {
+        stats.invalidate(transactionRegistry, username);
+    }
+}
@@ -0,0 +1,195 @@
+package org.example.domain.import_history.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.example.domain.import_history.repository.RouteBulkImportRepositoryMB.BulkRouteRow;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Function;
+
+/**
+ * Потоковое чтение JSON импорта парсером токенов Jackson, без построения дерева документа.
+ * Принимает массив объектов или объекты подряд (NDJSON); поля объекта называются так же, как колонки CSV
+ */
+public class JsonRecordReader implements ImportRecordSource {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonParser parser;
+    private boolean array;
+    private boolean started;
+    private int position;
+
+    public JsonRecordReader(Reader reader) throws IOException {
+        this.parser = JSON_FACTORY.createParser(reader);
+    }
+
+    @Override
+    public ImportRecord next() throws IOException {
+        JsonToken token = parser.nextToken();
+        if (!started) {
+            started = true;
+            if (token == JsonToken.START_ARRAY) {
+                array = true;
+                token = parser.nextToken();
+            }
+        }
+        if (token == null || (array && token == JsonToken.END_ARRAY)) {
+            if (array && parser.nextToken() != null) {
+                throw new IllegalArgumentException("Unexpected content after JSON array at line "
+                    + parser.getTokenLocation().getLineNr());
+            }
+            return null;
+        }
+
+        position++;
+        int lineNumber = parser.getTokenLocation().getLineNr();
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return new ImportRecord.Rejected(position, lineNumber, "Record must be a JSON object");
+        }
+        return readRoute(lineNumber);
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    /**
+     * Читает объект маршрута до конца, даже если в нем ошибка, чтобы парсер остался на границе записи
+     */
+    private ImportRecord readRoute(int lineNumber) throws IOException {
+        String name = null;
+        Float coordinatesX = null;
+        Double coordinatesY = null;
+        Double fromX = null;
+        Double fromY = null;
+        String fromName = null;
+        Double toX = null;
+        Double toY = null;
+        String toName = null;
+        Long distance = null;
+        Long rating = null;
+        String error = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            try {
+                switch (field) {
+                    case "name" -> name = textValue(field, value);
+                    case "coordinates_x" -> coordinatesX = floatValue(field, value);
+                    case "coordinates_y" -> coordinatesY = doubleValue(field, value);
+                    case "from_x" -> fromX = doubleValue(field, value);
+                    case "from_y" -> fromY = doubleValue(field, value);
+                    case "from_name" -> fromName = textValue(field, value);
+                    case "to_x" -> toX = doubleValue(field, value);
+                    case "to_y" -> toY = doubleValue(field, value);
+                    case "to_name" -> toName = textValue(field, value);
+                    case "distance" -> distance = longValue(field, value);
+                    case "rating" -> rating = longValue(field, value);
+                    default -> parser.skipChildren(); // лишние поля выгрузок игнорируются
+                }
+            } catch (IllegalArgumentException e) {
+                if (error == null) {
+                    error = e.getMessage();
+                }
+                parser.skipChildren();
+            }
+        }
+
+        if (error == null) {
+            error = missingField(coordinatesX, "coordinates_x", coordinatesY, "coordinates_y",
+                fromX, "from_x", fromY, "from_y", toX, "to_x", toY, "to_y", distance, "distance", rating, "rating");
+        }
+        if (error != null) {
+            return new ImportRecord.Rejected(position, lineNumber, error);
+        }
+
+        return new ImportRecord.Parsed(position, lineNumber, new BulkRouteRow(
+            name != null ? name.trim() : null,
+            coordinatesX,
+            coordinatesY,
+            fromX,
+            fromY,
+            emptyToNull(fromName),
+            toX,
+            toY,
+            emptyToNull(toName),
+            distance,
+            rating
+        ));
+    }
+
+    private String textValue(String field, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value != JsonToken.VALUE_STRING) {
+            throw new IllegalArgumentException("Field '" + field + "' must be a string");
+        }
+        return parser.getText();
+    }
+
+    // Числа разбираются из текста токена парсерами JDK: быстрый путь CsvLineTokenizer дает те же биты,
+    // поэтому значение из JSON совпадает со значением той же строки из CSV. Переполнение - ошибка поля
+    private Float floatValue(String field, JsonToken value) throws IOException {
+        String text = numberText(field, value);
+        return text != null ? parseNumber(field, text, Float::parseFloat) : null;
+    }
+
+    private Double doubleValue(String field, JsonToken value) throws IOException {
+        String text = numberText(field, value);
+        return text != null ? parseNumber(field, text, Double::parseDouble) : null;
+    }
+
+    private Long longValue(String field, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_FLOAT) {
+            throw new IllegalArgumentException("Field '" + field + "' must be an integer");
+        }
+        String text = numberText(field, value);
+        return text != null ? parseNumber(field, text, Long::parseLong) : null;
+    }
+
+    /**
+     * Текст числа; выгрузки иногда передают числа строками, такие значения тоже принимаются
+     */
+    private String numberText(String field, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value != JsonToken.VALUE_NUMBER_INT && value != JsonToken.VALUE_NUMBER_FLOAT
+                && value != JsonToken.VALUE_STRING) {
+            throw new IllegalArgumentException("Field '" + field + "' must be a number");
+        }
+        return parser.getText().trim();
+    }
+
+    private <N> N parseNumber(String field, String text, Function<String, N> numberParser) {
+        try {
+            return numberParser.apply(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number format in field '" + field + "': " + text);
+        }
+    }
+
+    private String missingField(Object... valuesAndNames) {
+        for (int i = 0; i < valuesAndNames.length; i += 2) {
+            if (valuesAndNames[i] == null) {
+                return "Missing field '" + valuesAndNames[i + 1] + "'";
+            }
+        }
+        return null;
+    }
+
+    private String emptyToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
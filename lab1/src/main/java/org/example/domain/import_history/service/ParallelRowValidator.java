@@ -0,0 +1,141 @@
+package org.example.domain.import_history.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Параллельная стадия проверки строк импорта: строки копятся в пачки, пачки проверяются в пуле потоков,
+ * пока вызывающий поток читает следующие строки. Результаты отдаются строго в порядке поступления строк,
+ * поэтому списки ошибок не зависят от планирования потоков
+ */
+public class ParallelRowValidator<T, R> implements AutoCloseable {
+
+    private final Executor executor;
+    private final Supplier<Function<T, R>> rowValidatorFactory;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+    private final Deque<ChunkTask> inFlight = new ArrayDeque<>();
+    private List<T> pendingRows;
+
+    /**
+     * rowValidatorFactory вызывается один раз на пачку: проверка может переиспользовать свои буферы внутри пачки
+     */
+    public ParallelRowValidator(Executor executor, Supplier<Function<T, R>> rowValidatorFactory,
+                                int chunkSize, int maxChunksInFlight) {
+        this.executor = executor;
+        this.rowValidatorFactory = rowValidatorFactory;
+        this.chunkSize = chunkSize;
+        this.maxChunksInFlight = Math.max(1, maxChunksInFlight);
+        this.pendingRows = new ArrayList<>(chunkSize);
+    }
+
+    /**
+     * Добавляет строку; возвращает результаты уже проверенных пачек в порядке строк (возможно пустой список).
+     * Если в работе слишком много пачек, ждет самую раннюю - так память ограничена при любом размере файла
+     */
+    public List<R> submit(T row) {
+        pendingRows.add(row);
+        if (pendingRows.size() < chunkSize) {
+            return Collections.emptyList();
+        }
+        submitPendingRows();
+
+        List<R> ready = new ArrayList<>();
+        while (inFlight.size() > maxChunksInFlight) {
+            ready.addAll(awaitOldest());
+        }
+        while (!inFlight.isEmpty() && inFlight.peekFirst().result.isDone()) {
+            ready.addAll(awaitOldest());
+        }
+        return ready;
+    }
+
+    /**
+     * Дожидается всех пачек и возвращает оставшиеся результаты в порядке строк
+     */
+    public List<R> finish() {
+        submitPendingRows();
+        List<R> ready = new ArrayList<>();
+        while (!inFlight.isEmpty()) {
+            ready.addAll(awaitOldest());
+        }
+        return ready;
+    }
+
+    /**
+     * Отменяет пачки, которые еще не начали проверяться, если импорт прерван
+     */
+    @Override
+    public void close() {
+        for (ChunkTask task : inFlight) {
+            task.claimed.set(true);
+        }
+        inFlight.clear();
+        pendingRows.clear();
+    }
+
+    private void submitPendingRows() {
+        if (pendingRows.isEmpty()) {
+            return;
+        }
+        ChunkTask task = new ChunkTask(pendingRows);
+        pendingRows = new ArrayList<>(chunkSize);
+        inFlight.addLast(task);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Пул переполнен - пачку проверит вызывающий поток при ожидании
+        }
+    }
+
+    private List<R> awaitOldest() {
+        ChunkTask task = inFlight.pollFirst();
+        // Если пул еще не взял пачку, проверяем ее сами: импорт сам может выполняться в этом же пуле
+        task.run();
+        try {
+            return task.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private class ChunkTask implements Runnable {
+        private final List<T> rows;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<List<R>> result = new CompletableFuture<>();
+
+        ChunkTask(List<T> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                Function<T, R> rowValidator = rowValidatorFactory.get();
+                List<R> validated = new ArrayList<>(rows.size());
+                for (T row : rows) {
+                    validated.add(rowValidator.apply(row));
+                }
+                result.complete(validated);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
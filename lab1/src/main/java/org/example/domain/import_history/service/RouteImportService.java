@@ -1,26 +1,33 @@
 package org.example.domain.import_history.service;
 
+import jakarta.annotation.Resource;
+import jakarta.ejb.SessionContext;
 import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
 import jakarta.inject.Inject;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
 import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
-import org.example.domain.coordinates.dto.CoordinatesDto;
 import org.example.domain.import_history.dto.ImportOperationDto;
 import org.example.domain.import_history.dto.ImportRequestDto;
 import org.example.domain.import_history.dto.ImportResultDto;
-import org.example.domain.import_history.entity.ImportOperation;
 import org.example.domain.import_history.entity.ImportStatus;
-import org.example.domain.location.dto.LocationDto;
-import org.example.domain.route.dto.RouteCreateDto;
-import org.example.domain.route.entity.Route;
-import org.example.domain.route.service.RouteServiceMB;
+import org.example.domain.import_history.repository.ImportDimensionResolver;
+import org.example.domain.import_history.repository.RouteBulkImportRepositoryMB;
+import org.example.domain.import_history.repository.RouteBulkImportRepositoryMB.BulkInsertResult;
+import org.example.domain.import_history.repository.RouteBulkImportRepositoryMB.BulkRouteRow;
 
-import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 @Slf4j
@@ -31,21 +38,50 @@ public class RouteImportService {
     private ImportOperationServiceMB importOperationService;
 
     @Inject
-    private RouteServiceMB routeService;
+    private RouteImportWriter importWriter;
 
     @Inject
     private Validator validator;
 
-    @PersistenceContext(unitName = "RoutesPU")
-    private EntityManager em;
+    @Resource
+    private SessionContext sessionContext;
+
+    @Resource
+    private ManagedExecutorService executor;
 
     // Новые ограничения уникальности для бизнес-логики
     private static final Pattern NAME_PATTERN = Pattern.compile("^[a-zA-Zа-яА-Я0-9\\s_-]+$");
     private static final int MAX_NAME_LENGTH = 100;
     private static final int MIN_NAME_LENGTH = 1;
+    private static final double ZERO_DISTANCE_EPSILON = 1e-6;
+    private static final String[] CSV_HEADERS = {
+        "name", "coordinates_x", "coordinates_y",
+        "from_x", "from_y", "from_name",
+        "to_x", "to_y", "to_name",
+        "distance", "rating"
+    };
+    private static final int CSV_COLUMNS = CSV_HEADERS.length;
+    
+    // Параллельная проверка строк: размер пачки и сколько пачек одновременно в работе
+    private static final int VALIDATION_CHUNK_SIZE = 1000;
+    private static final int VALIDATION_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    
+    // Чанковый импорт: сколько строк коммитится одной транзакцией
+    private static final int IMPORT_CHUNK_SIZE = 5000;
     
+    // Потоковый импорт: размер пачки для вставки, сколько ошибок возвращать
+    private static final int STREAM_PROGRESS_INTERVAL = 1000;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    
+    /**
+     * Колонки CSV в том порядке, в котором их ожидает импорт; по ним же строится выгрузка маршрутов
+     */
+    public static String[] csvHeaders() {
+        return CSV_HEADERS.clone();
+    }
+
     /**
-     * Основной метод импорта маршрутов из CSV файла
+     * Основной метод импорта маршрутов из CSV или JSON файла
      */
     @Transactional
     public ImportResultDto importRoutes(ImportRequestDto request) {
@@ -53,57 +89,41 @@ public class RouteImportService {
     }
 
     /**
-     * Метод импорта маршрутов из CSV файла с указанным ID операции
+     * Метод импорта маршрутов из CSV или JSON файла с указанным ID операции; формат определяется по имени файла
      */
     @Transactional
     public ImportResultDto importRoutesWithOperation(ImportRequestDto request, Integer existingOperationId) {
         log.info("Starting import process for user {} with file {}", request.username(), request.filename());
         
         List<String> errors = new ArrayList<>();
-        List<RouteImportData> validRoutes = new ArrayList<>();
+        List<BulkRouteRow> validRoutes = new ArrayList<>();
         Integer operationId = existingOperationId;
         
         try {
-            // Парсинг CSV данных
-            List<RouteImportData> parsedRoutes = parseCSV(request.fileContent());
+            // Чтение записей; CSV строки разбираются уже на стадии проверки
+            List<ImportRecord> parsedRoutes = readRecords(ImportFormat.fromFilename(request.filename()), request.fileContent());
             
-            // Создание операции импорта только если не передан existingOperationId
+            // Операция и её счетчики пишутся отдельными транзакциями: так прогресс виден во время импорта,
+            // а строка операции не блокируется транзакцией импорта
             if (operationId == null) {
-                ImportOperationDto operation = importOperationService.createImportOperation(
-                    request.username(),
-                    request.filename(),
-                    parsedRoutes.size()
-                );
-                operationId = operation.id();
-            } else {
-                // Обновляем существующую операцию с количеством записей
-                ImportOperationDto operation = importOperationService.findById(operationId);
-                if (operation.totalRecords() == null) {
-                    importOperationService.updateProgress(operationId, 0, 0);
-                    // Устанавливаем totalRecords через обновление операции
-                    ImportOperation entity = em.find(ImportOperation.class, operationId);
-                    if (entity != null) {
-                        entity.setTotalRecords(parsedRoutes.size());
-                        em.merge(entity);
-                    }
-                }
+                operationId = importOperationService.startImportOperation(request.username(), request.filename()).id();
             }
+            importOperationService.updateTotalRecordsIndependently(operationId, parsedRoutes.size());
             
-            // Валидация каждой записи
-            for (int i = 0; i < parsedRoutes.size(); i++) {
-                RouteImportData routeData = parsedRoutes.get(i);
-                List<String> validationErrors = validateRouteData(routeData, i + 2); // +2 для учета заголовка и нумерации с 1
-                
-                if (validationErrors.isEmpty()) {
-                    // Проверка дополнительных бизнес-правил
-                    List<String> businessErrors = validateBusinessRules(routeData, i + 2);
-                    if (businessErrors.isEmpty()) {
-                        validRoutes.add(routeData);
-                    } else {
-                        errors.addAll(businessErrors);
-                    }
+            // Валидация записей пачками в пуле потоков, результаты приходят в порядке строк
+            List<ValidatedRow> validatedRows;
+            try (ParallelRowValidator<ImportRecord, ValidatedRow> rowValidator = newRowValidator(true)) {
+                validatedRows = new ArrayList<>(parsedRoutes.size());
+                for (ImportRecord record : parsedRoutes) {
+                    validatedRows.addAll(rowValidator.submit(record));
+                }
+                validatedRows.addAll(rowValidator.finish());
+            }
+            for (ValidatedRow row : validatedRows) {
+                if (row.errors().isEmpty()) {
+                    validRoutes.add(row.data());
                 } else {
-                    errors.addAll(validationErrors);
+                    errors.addAll(row.errors());
                 }
             }
             
@@ -125,7 +145,7 @@ public class RouteImportService {
             
             // Проверка уникальности имен маршрутов в рамках импорта
             Set<String> uniqueNames = new HashSet<>();
-            for (RouteImportData routeData : validRoutes) {
+            for (BulkRouteRow routeData : validRoutes) {
                 if (!uniqueNames.add(routeData.name().toLowerCase())) {
                     errors.add("Duplicate route name in import file: " + routeData.name());
                 }
@@ -146,29 +166,30 @@ public class RouteImportService {
                 );
             }
             
-            // Импорт валидных записей в одной транзакции
-            int successfulCount = importValidRoutes(validRoutes);
+            // Импорт валидных записей в одной транзакции, существующие имена пропускаются
+            List<String> duplicateErrors = new ArrayList<>();
+            ImportProgressReporter progress = new ImportProgressReporter(importOperationService, operationId);
+            int successfulCount = importValidRoutes(validRoutes, duplicateErrors, progress);
             
             // Завершение операции импорта
             importOperationService.completeImportOperation(operationId, successfulCount);
             
-            log.info("Import completed successfully. {} routes imported", successfulCount);
-            
             return new ImportResultDto(
                 operationId,
                 ImportStatus.SUCCESS,
                 parsedRoutes.size(),
                 successfulCount,
-                0,
-                Collections.emptyList(),
-                "Import completed successfully"
+                duplicateErrors.size(),
+                duplicateErrors,
+                completionMessage(successfulCount, duplicateErrors.size())
             );
             
         } catch (Exception e) {
             log.error("Import failed with exception", e);
             
             if (operationId != null) {
-                importOperationService.failImportOperation(operationId, e.getMessage());
+                sessionContext.setRollbackOnly();
+                importOperationService.failImportOperationIndependently(operationId, null, e.getMessage());
             }
             
             return new ImportResultDto(
@@ -184,96 +205,441 @@ public class RouteImportService {
     }
     
     /**
-     * Парсинг CSV файла
+     * Потоковый импорт маршрутов из CSV или JSON: записи читаются, валидируются и сохраняются по одной,
+     * поэтому память не зависит от размера файла
      */
-    private List<RouteImportData> parseCSV(String csvContent) throws Exception {
-        List<RouteImportData> routes = new ArrayList<>();
+    public ImportResultDto importRoutesFromStream(String username, String filename, ImportFormat format,
+                                                  InputStream inputStream) {
+        log.info("Starting streaming import for user {} with file {}", username, filename);
+        
+        Integer operationId = importOperationService.startImportOperation(username, filename).id();
+        List<String> errors = new ArrayList<>();
+        int errorCount = 0;
+        int processedCount = 0;
+        int successfulCount = 0;
+        int duplicateCount = 0;
+        List<String> duplicateErrors = new ArrayList<>();
+        // Храним только имена для проверки дубликатов внутри файла и одну пачку строк для вставки
+        Set<String> uniqueNames = new HashSet<>();
+        List<BulkRouteRow> pendingRows = new ArrayList<>(STREAM_PROGRESS_INTERVAL);
+        ImportDimensionResolver dimensionResolver = new ImportDimensionResolver();
+        ImportProgressReporter progress = new ImportProgressReporter(importOperationService, operationId);
         
-        try (BufferedReader reader = new BufferedReader(new StringReader(csvContent))) {
-            String headerLine = reader.readLine();
-            if (headerLine == null) {
-                throw new IllegalArgumentException("CSV file is empty");
+        try (ImportRecordSource source = openSource(format, new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+             ParallelRowValidator<ImportRecord, ValidatedRow> rowValidator = newRowValidator(true)) {
+            // Разбор и проверка строк идут в пуле потоков, пока этот поток читает файл и пишет проверенные пачки
+            boolean endOfFile = false;
+            while (!endOfFile) {
+                ImportRecord record = source.next();
+                List<ValidatedRow> validatedRows;
+                if (record == null) {
+                    endOfFile = true;
+                    validatedRows = rowValidator.finish();
+                } else {
+                    validatedRows = rowValidator.submit(record);
+                }
+                
+                for (ValidatedRow row : validatedRows) {
+                    processedCount++;
+                    List<String> rowErrors = checkUniqueName(row, uniqueNames);
+                    
+                    if (!rowErrors.isEmpty()) {
+                        errorCount += rowErrors.size();
+                        for (String rowError : rowErrors) {
+                            if (errors.size() < MAX_REPORTED_ERRORS) {
+                                errors.add(rowError);
+                            }
+                        }
+                    } else if (errorCount == 0) {
+                        // После первой ошибки строки только валидируются - транзакция всё равно будет откачена
+                        pendingRows.add(row.data());
+                    }
+                    
+                    if (processedCount % STREAM_PROGRESS_INTERVAL == 0) {
+                        BulkInsertResult flushed = flushPendingRows(pendingRows, dimensionResolver, errorCount);
+                        successfulCount += flushed.insertedCount();
+                        duplicateCount += collectDuplicateErrors(flushed, duplicateErrors);
+                        progress.report(processedCount, successfulCount);
+                    }
+                }
             }
+            BulkInsertResult flushed = flushPendingRows(pendingRows, dimensionResolver, errorCount);
+            successfulCount += flushed.insertedCount();
+            duplicateCount += collectDuplicateErrors(flushed, duplicateErrors);
             
-            // Проверка заголовков CSV
-            validateCSVHeaders(headerLine);
-            
-            String line;
-            int lineNumber = 2; // Начинаем с 2, так как первая строка - заголовки
+            if (processedCount == 0) {
+                throw new IllegalArgumentException("No valid data rows found in CSV file");
+            }
             
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) {
-                    continue; // Пропускаем пустые строки
-                }
-                
-                try {
-                    RouteImportData routeData = parseCSVLine(line, lineNumber);
-                    routes.add(routeData);
-                } catch (Exception e) {
-                    throw new IllegalArgumentException("Error parsing line " + lineNumber + ": " + e.getMessage());
+            if (errorCount > 0) {
+                if (errorCount > errors.size()) {
+                    errors.add("... and " + (errorCount - errors.size()) + " more errors");
                 }
+                sessionContext.setRollbackOnly();
+                importOperationService.failImportOperationIndependently(operationId, processedCount,
+                    "Validation failed: " + String.join("; ", errors));
                 
-                lineNumber++;
+                return new ImportResultDto(
+                    operationId,
+                    ImportStatus.FAILED,
+                    processedCount,
+                    0,
+                    processedCount,
+                    errors,
+                    "Import failed due to validation errors"
+                );
             }
             
-            if (routes.isEmpty()) {
-                throw new IllegalArgumentException("No valid data rows found in CSV file");
+            importOperationService.completeImportOperation(operationId, processedCount, successfulCount);
+            log.info("Streaming import completed. {} of {} routes imported, {} duplicates skipped",
+                successfulCount, processedCount, duplicateCount);
+            
+            if (duplicateCount > duplicateErrors.size()) {
+                duplicateErrors.add("... and " + (duplicateCount - duplicateErrors.size()) + " more duplicates");
             }
+            return new ImportResultDto(
+                operationId,
+                ImportStatus.SUCCESS,
+                processedCount,
+                successfulCount,
+                duplicateCount,
+                duplicateErrors,
+                completionMessage(successfulCount, duplicateCount)
+            );
+            
+        } catch (Exception e) {
+            log.error("Streaming import failed with exception", e);
+            sessionContext.setRollbackOnly();
+            importOperationService.failImportOperationIndependently(operationId, processedCount, e.getMessage());
             
+            return new ImportResultDto(
+                operationId,
+                ImportStatus.FAILED,
+                processedCount,
+                0,
+                processedCount,
+                Arrays.asList(e.getMessage()),
+                "Import failed due to system error"
+            );
         }
-        
-        return routes;
     }
     
     /**
-     * Валидация заголовков CSV файла
+     * Чанковый импорт из сохраненного файла: каждые IMPORT_CHUNK_SIZE строк коммитятся отдельной транзакцией
+     * вместе с контрольной точкой, поэтому сбой не откатывает уже записанные чанки, а импорт можно продолжить
+     * с последней закоммиченной строки. Файл читается дважды: сначала целиком валидируется, затем записывается
      */
-    private void validateCSVHeaders(String headerLine) {
-        String[] expectedHeaders = {
-            "name", "coordinates_x", "coordinates_y", 
-            "from_x", "from_y", "from_name",
-            "to_x", "to_y", "to_name",
-            "distance", "rating"
-        };
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public ImportResultDto importRoutesChunked(Integer operationId, ImportFormat format, Callable<InputStream> fileSource) {
+        ImportOperationDto operation = importOperationService.findById(operationId);
+        boolean resuming = operation.lastCommittedLine() != null;
+        int checkpoint = resuming ? operation.lastCommittedLine() : 1;
+        int successfulCount = resuming && operation.successfulRecords() != null ? operation.successfulRecords() : 0;
+        int processedCount = 0;
+        int duplicateCount = 0;
+        List<String> duplicateErrors = new ArrayList<>();
+        log.info("Starting chunked {} import {} after position {}", format, operationId, checkpoint);
         
-        String[] actualHeaders = headerLine.split(",");
-        
-        if (actualHeaders.length != expectedHeaders.length) {
-            throw new IllegalArgumentException("CSV must have exactly " + expectedHeaders.length + " columns: " + 
-                String.join(", ", expectedHeaders));
+        try {
+            // Проход 1: валидация всего файла до первого коммита, как и в обычном режиме
+            List<String> errors = new ArrayList<>();
+            int totalRecords;
+            try (ImportRecordSource source = openSource(format, fileSource)) {
+                totalRecords = validateRecords(source, errors);
+            }
+            if (!errors.isEmpty()) {
+                importOperationService.failImportOperation(operationId, "Validation failed: " + String.join("; ", errors));
+                return new ImportResultDto(
+                    operationId,
+                    ImportStatus.FAILED,
+                    totalRecords,
+                    0,
+                    totalRecords,
+                    errors,
+                    "Import failed due to validation errors"
+                );
+            }
+            importOperationService.updateTotalRecordsIndependently(operationId, totalRecords);
+            
+            // Проход 2: запись чанками, строки до контрольной точки уже закоммичены.
+            // Кэш координат и локаций у каждого чанка свой: чанки коммитятся отдельно, и между ними
+            // закэшированные строки могут удалить (очистка неиспользуемых) или откатить
+            List<BulkRouteRow> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+            // Строки CSV каждого чанка разбираются в те же объекты: writeChunk не хранит строки после записи
+            BulkRouteRow[] rowBuffer = new BulkRouteRow[IMPORT_CHUNK_SIZE];
+            CsvLineTokenizer tokenizer = new CsvLineTokenizer(CSV_COLUMNS);
+            try (ImportRecordSource source = openSource(format, fileSource)) {
+                ImportRecord record;
+                int lastPosition = checkpoint;
+                while ((record = source.next()) != null) {
+                    processedCount++;
+                    if (record.position() <= checkpoint) {
+                        continue;
+                    }
+                    
+                    chunk.add(toRow(tokenizer, record, reusableRow(rowBuffer, chunk.size())));
+                    lastPosition = record.position();
+                    if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                        BulkInsertResult written = importWriter.writeChunk(operationId, chunk, new ImportDimensionResolver(),
+                            lastPosition, processedCount, successfulCount);
+                        successfulCount += written.insertedCount();
+                        duplicateCount += collectDuplicateErrors(written, duplicateErrors);
+                        checkpoint = lastPosition;
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    BulkInsertResult written = importWriter.writeChunk(operationId, chunk, new ImportDimensionResolver(),
+                        lastPosition, processedCount, successfulCount);
+                    successfulCount += written.insertedCount();
+                    duplicateCount += collectDuplicateErrors(written, duplicateErrors);
+                    checkpoint = lastPosition;
+                }
+            }
+            
+            importOperationService.completeImportOperation(operationId, totalRecords, successfulCount);
+            log.info("Chunked import {} completed. {} of {} routes imported", operationId, successfulCount, totalRecords);
+            
+            if (duplicateCount > duplicateErrors.size()) {
+                duplicateErrors.add("... and " + (duplicateCount - duplicateErrors.size()) + " more duplicates");
+            }
+            return new ImportResultDto(
+                operationId,
+                ImportStatus.SUCCESS,
+                totalRecords,
+                successfulCount,
+                duplicateCount,
+                duplicateErrors,
+                completionMessage(successfulCount, duplicateCount)
+            );
+            
+        } catch (Exception e) {
+            log.error("Chunked import {} failed after position {}", operationId, checkpoint, e);
+            // Счетчики и контрольная точка остаются от последнего закоммиченного чанка
+            importOperationService.failImportOperation(operationId,
+                e.getMessage() + " (resumable after position " + checkpoint + ")");
+            
+            return new ImportResultDto(
+                operationId,
+                ImportStatus.FAILED,
+                processedCount,
+                successfulCount,
+                processedCount - successfulCount,
+                Arrays.asList(e.getMessage()),
+                "Import interrupted, committed chunks are kept and the import can be resumed"
+            );
+        }
+    }
+    
+    private ImportRecordSource openSource(ImportFormat format, Callable<InputStream> fileSource) throws Exception {
+        return openSource(format, new InputStreamReader(fileSource.call(), StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Источник записей нужного формата; у CSV сразу проверяется заголовок
+     */
+    private ImportRecordSource openSource(ImportFormat format, Reader reader) throws IOException {
+        if (format == ImportFormat.JSON) {
+            return new JsonRecordReader(reader);
+        }
+        CsvRecordReader csvReader = new CsvRecordReader(reader);
+        try {
+            csvReader.readHeader(CSV_HEADERS);
+        } catch (IOException | RuntimeException e) {
+            csvReader.close();
+            throw e;
+        }
+        return csvReader;
+    }
+    
+    /**
+     * Потоковая валидация всего файла без записи, возвращает число записей
+     */
+    private int validateRecords(ImportRecordSource source, List<String> errors) throws Exception {
+        Set<String> uniqueNames = new HashSet<>();
+        int errorCount = 0;
+        int rowCount = 0;
+        try (ParallelRowValidator<ImportRecord, ValidatedRow> rowValidator = newRowValidator(false)) {
+            boolean endOfFile = false;
+            while (!endOfFile) {
+                ImportRecord record = source.next();
+                List<ValidatedRow> validatedRows;
+                if (record == null) {
+                    endOfFile = true;
+                    validatedRows = rowValidator.finish();
+                } else {
+                    validatedRows = rowValidator.submit(record);
+                }
+                
+                for (ValidatedRow row : validatedRows) {
+                    rowCount++;
+                    List<String> rowErrors = checkUniqueName(row, uniqueNames);
+                    for (String rowError : rowErrors) {
+                        if (errors.size() < MAX_REPORTED_ERRORS) {
+                            errors.add(rowError);
+                        }
+                    }
+                    errorCount += rowErrors.size();
+                }
+            }
         }
         
-        for (int i = 0; i < expectedHeaders.length; i++) {
-            if (!actualHeaders[i].trim().equalsIgnoreCase(expectedHeaders[i])) {
-                throw new IllegalArgumentException("Invalid header at column " + (i + 1) + 
-                    ". Expected: " + expectedHeaders[i] + ", Found: " + actualHeaders[i].trim());
+        if (rowCount == 0) {
+            throw new IllegalArgumentException("No valid data rows found in import file");
+        }
+        if (errorCount > errors.size()) {
+            errors.add("... and " + (errorCount - errors.size()) + " more errors");
+        }
+        return rowCount;
+    }
+    
+    /**
+     * Запись накопленной пачки строк потокового импорта
+     */
+    private BulkInsertResult flushPendingRows(List<BulkRouteRow> pendingRows, ImportDimensionResolver dimensionResolver,
+                                              int errorCount) {
+        if (pendingRows.isEmpty() || errorCount > 0) {
+            pendingRows.clear();
+            return new BulkInsertResult(0, Collections.emptyList());
+        }
+        BulkInsertResult result = importWriter.insertSkippingExisting(pendingRows, dimensionResolver);
+        pendingRows.clear();
+        return result;
+    }
+    
+    /**
+     * Добавляет сообщения о пропущенных дубликатах пачки, не больше MAX_REPORTED_ERRORS всего
+     */
+    private int collectDuplicateErrors(BulkInsertResult result, List<String> duplicateErrors) {
+        for (String skippedName : result.skippedNames()) {
+            if (duplicateErrors.size() < MAX_REPORTED_ERRORS) {
+                duplicateErrors.add(duplicateError(skippedName));
             }
         }
+        return result.skippedNames().size();
+    }
+    
+    /**
+     * Параллельная стадия проверки строк на управляемом пуле сервера. keepRows - нужны ли разобранные строки
+     * после проверки; если нет, строки CSV каждой пачки разбираются в один и тот же объект
+     */
+    private ParallelRowValidator<ImportRecord, ValidatedRow> newRowValidator(boolean keepRows) {
+        return new ParallelRowValidator<>(executor, () -> newRecordValidator(keepRows),
+            VALIDATION_CHUNK_SIZE, VALIDATION_PARALLELISM);
+    }
+    
+    /**
+     * Проверка записей с одним токенизатором CSV на пачку
+     */
+    private Function<ImportRecord, ValidatedRow> newRecordValidator(boolean keepRows) {
+        CsvLineTokenizer tokenizer = new CsvLineTokenizer(CSV_COLUMNS);
+        if (keepRows) {
+            return record -> validateRecord(tokenizer, record, new BulkRouteRow(), true);
+        }
+        BulkRouteRow scratch = new BulkRouteRow();
+        return record -> validateRecord(tokenizer, record, scratch, false);
+    }
+    
+    /**
+     * Разбор и проверка одной записи; выполняется в потоках пула, поэтому не трогает общее состояние
+     */
+    private ValidatedRow validateRecord(CsvLineTokenizer tokenizer, ImportRecord record, BulkRouteRow target,
+                                        boolean keepRow) {
+        BulkRouteRow routeData;
+        try {
+            routeData = toRow(tokenizer, record, target);
+        } catch (IllegalArgumentException e) {
+            return new ValidatedRow(record.lineNumber(), null, null,
+                List.of("Error parsing line " + record.lineNumber() + ": " + e.getMessage()));
+        }
+        return validateParsedRow(record.lineNumber(), routeData, keepRow);
+    }
+    
+    /**
+     * Объект строки из буфера чанка, создается при первом обращении к позиции
+     */
+    private static BulkRouteRow reusableRow(BulkRouteRow[] buffer, int index) {
+        if (buffer[index] == null) {
+            buffer[index] = new BulkRouteRow();
+        }
+        return buffer[index];
+    }
+    
+    /**
+     * Строка вставки из записи любого формата: CSV разбирается в target, JSON уже разобран при чтении.
+     * Запись, которую не удалось разобрать, дает IllegalArgumentException
+     */
+    private BulkRouteRow toRow(CsvLineTokenizer tokenizer, ImportRecord record, BulkRouteRow target) {
+        if (record instanceof ImportRecord.CsvLine csvLine) {
+            return parseCSVLine(tokenizer, csvLine.text(), target);
+        }
+        if (record instanceof ImportRecord.Parsed parsed) {
+            return parsed.data();
+        }
+        throw new IllegalArgumentException(((ImportRecord.Rejected) record).error());
+    }
+    
+    /**
+     * Проверка ограничений предметной области и бизнес-правил для разобранной строки
+     */
+    private ValidatedRow validateParsedRow(int lineNumber, BulkRouteRow routeData, boolean keepRow) {
+        List<String> rowErrors = validateRouteData(routeData, lineNumber);
+        if (rowErrors.isEmpty()) {
+            rowErrors = validateBusinessRules(routeData, lineNumber);
+        }
+        return new ValidatedRow(lineNumber, routeData.name(), keepRow ? routeData : null, rowErrors);
+    }
+    
+    /**
+     * Дубликаты имён внутри файла зависят от порядка строк, поэтому проверяются последовательно после пула
+     */
+    private List<String> checkUniqueName(ValidatedRow row, Set<String> uniqueNames) {
+        if (row.errors().isEmpty() && !uniqueNames.add(row.name().trim().toLowerCase())) {
+            return List.of("Line " + row.lineNumber() + ": Duplicate route name in import file: " + row.name());
+        }
+        return row.errors();
     }
     
     /**
-     * Парсинг одной строки CSV
+     * Чтение всех записей файла, переданного в теле запроса
      */
-    private RouteImportData parseCSVLine(String line, int lineNumber) throws Exception {
-        String[] parts = line.split(",", -1); // -1 чтобы сохранить пустые поля в конце
+    private List<ImportRecord> readRecords(ImportFormat format, String fileContent) throws Exception {
+        List<ImportRecord> records = new ArrayList<>();
+        
+        try (ImportRecordSource source = openSource(format, new StringReader(fileContent))) {
+            ImportRecord record;
+            while ((record = source.next()) != null) {
+                records.add(record);
+            }
+        }
         
-        if (parts.length != 11) {
-            throw new IllegalArgumentException("Line must have exactly 11 columns");
+        if (records.isEmpty()) {
+            throw new IllegalArgumentException("No valid data rows found in import file");
         }
+        return records;
+    }
+    
+    /**
+     * Парсинг одной строки CSV сразу в примитивные поля строки вставки target, пустые имена локаций становятся null
+     */
+    static BulkRouteRow parseCSVLine(CsvLineTokenizer tokenizer, String line, BulkRouteRow target) {
+        tokenizer.tokenize(line);
         
         try {
-            return new RouteImportData(
-                parts[0].trim(),                           // name
-                Float.parseFloat(parts[1].trim()),         // coordinates_x
-                Double.parseDouble(parts[2].trim()),       // coordinates_y
-                Double.parseDouble(parts[3].trim()),       // from_x
-                Double.parseDouble(parts[4].trim()),       // from_y
-                parts[5].trim(),                           // from_name (может быть пустым)
-                Double.parseDouble(parts[6].trim()),       // to_x
-                Double.parseDouble(parts[7].trim()),       // to_y
-                parts[8].trim(),                           // to_name (может быть пустым)
-                Long.parseLong(parts[9].trim()),          // distance
-                Long.parseLong(parts[10].trim())          // rating
+            String fromName = tokenizer.text(5);
+            String toName = tokenizer.text(8);
+            return target.set(
+                tokenizer.text(0),                         // name
+                tokenizer.floatField(1),                   // coordinates_x
+                tokenizer.doubleField(2),                  // coordinates_y
+                tokenizer.doubleField(3),                  // from_x
+                tokenizer.doubleField(4),                  // from_y
+                fromName.isEmpty() ? null : fromName,      // from_name (может быть пустым)
+                tokenizer.doubleField(6),                  // to_x
+                tokenizer.doubleField(7),                  // to_y
+                toName.isEmpty() ? null : toName,          // to_name (может быть пустым)
+                tokenizer.longField(9),                    // distance
+                tokenizer.longField(10)                    // rating
             );
         } catch (NumberFormatException e) {
             throw new IllegalArgumentException("Invalid number format: " + e.getMessage());
@@ -283,7 +649,7 @@ public class RouteImportService {
     /**
      * Валидация данных маршрута согласно ограничениям предметной области
      */
-    private List<String> validateRouteData(RouteImportData routeData, int lineNumber) {
+    private List<String> validateRouteData(BulkRouteRow routeData, int lineNumber) {
         List<String> errors = new ArrayList<>();
         String linePrefix = "Line " + lineNumber + ": ";
         
@@ -300,29 +666,20 @@ public class RouteImportService {
             }
         }
         
+        // Числовые поля примитивные: пустое значение отклоняется еще при разборе строки
+        
         // Валидация координат Y (ограничение <= 807)
-        if (routeData.coordinatesY() == null) {
-            errors.add(linePrefix + "Coordinates Y cannot be null");
-        } else if (routeData.coordinatesY() > 807) {
+        if (routeData.coordinatesY() > 807) {
             errors.add(linePrefix + "Coordinates Y must be <= 807, found: " + routeData.coordinatesY());
         }
         
-        // Валидация локации from X (не null)
-        if (routeData.fromX() == null) {
-            errors.add(linePrefix + "From location X cannot be null");
-        }
-        
         // Валидация расстояния (>= 2)
-        if (routeData.distance() == null) {
-            errors.add(linePrefix + "Distance cannot be null");
-        } else if (routeData.distance() < 2) {
+        if (routeData.distance() < 2) {
             errors.add(linePrefix + "Distance must be >= 2, found: " + routeData.distance());
         }
         
         // Валидация рейтинга (> 0)
-        if (routeData.rating() == null) {
-            errors.add(linePrefix + "Rating cannot be null");
-        } else if (routeData.rating() <= 0) {
+        if (routeData.rating() <= 0) {
             errors.add(linePrefix + "Rating must be > 0, found: " + routeData.rating());
         }
         
@@ -332,110 +689,88 @@ public class RouteImportService {
     /**
      * Валидация дополнительных бизнес-правил
      */
-    private List<String> validateBusinessRules(RouteImportData routeData, int lineNumber) {
+    private List<String> validateBusinessRules(BulkRouteRow routeData, int lineNumber) {
         List<String> errors = new ArrayList<>();
         String linePrefix = "Line " + lineNumber + ": ";
         
-        // УБРАНО: Проверка уникальности имени маршрута - теперь делается только в RouteServiceMB.createRoute()
-        // Это устраняет race conditions между двумя проверками
+        // Уникальность имени маршрута проверяется при пакетной вставке - существующие имена пропускаются
         
         // Дополнительная валидация: from и to локации не должны быть одинаковыми
-        if (Objects.equals(routeData.fromX(), routeData.toX()) &&
-            Objects.equals(routeData.fromY(), routeData.toY()) &&
+        if (Double.compare(routeData.fromX(), routeData.toX()) == 0 &&
+            Double.compare(routeData.fromY(), routeData.toY()) == 0 &&
             Objects.equals(routeData.fromName(), routeData.toName())) {
             errors.add(linePrefix + "From and To locations cannot be identical");
+        } else if (isZeroDistance(routeData)) {
+            // То же правило, что RouteServiceMB.validateZeroDistanceRoute, пакетная вставка его не вызывает
+            errors.add(linePrefix + "Route start and end points cannot be identical");
         }
         
         return errors;
     }
     
     /**
-     * Импорт валидных маршрутов с правильной обработкой дубликатов
+     * Импорт валидных маршрутов пакетной вставкой, существующие имена пропускаются
      */
-    private int importValidRoutes(List<RouteImportData> validRoutes) {
-        int successCount = 0;
+    private int importValidRoutes(List<BulkRouteRow> validRoutes, List<String> duplicateErrors,
+                                  ImportProgressReporter progress) {
+        ImportDimensionResolver dimensionResolver = new ImportDimensionResolver();
+        int insertedCount = 0;
         int skippedCount = 0;
         
-        for (RouteImportData routeData : validRoutes) {
-            try {
-                // Создание DTO для координат
-                CoordinatesDto coordinatesDto = new CoordinatesDto(
-                    null,
-                    routeData.coordinatesX(),
-                    routeData.coordinatesY(),
-                    null,
-                    null
-                );
-                
-                // Создание DTO для from локации
-                LocationDto fromDto = new LocationDto(
-                    null,
-                    routeData.fromX(),
-                    routeData.fromY(),
-                    routeData.fromName().isEmpty() ? null : routeData.fromName(),
-                    null,
-                    null
-                );
-                
-                // Создание DTO для to локации
-                LocationDto toDto = new LocationDto(
-                    null,
-                    routeData.toX(),
-                    routeData.toY(),
-                    routeData.toName().isEmpty() ? null : routeData.toName(),
-                    null,
-                    null
-                );
-                
-                // Создание DTO для маршрута
-                RouteCreateDto routeCreateDto = new RouteCreateDto(
-                    routeData.name().trim(),
-                    coordinatesDto,
-                    fromDto,
-                    toDto,
-                    routeData.distance(),
-                    routeData.rating()
-                );
-                
-                // Создание маршрута через сервис - теперь обрабатываем дубликаты
-                routeService.createRoute(routeCreateDto);
-                successCount++;
-                log.debug("Successfully imported route: {}", routeData.name());
-                
-            } catch (org.example.exception.RouteNameAlreadyExistsException e) {
-                // Это нормально - маршрут уже существует, пропускаем
-                skippedCount++;
-                log.info("Skipped duplicate route: {}", routeData.name());
-            } catch (Exception e) {
-                log.error("Failed to import route: {} - {}", routeData.name(), e.getMessage());
-                // При других ошибках выбрасываем исключение для отката транзакции
-                throw new RuntimeException("Failed to import route '" + routeData.name() + "': " + e.getMessage());
+        // Пачками, чтобы между ними публиковать прогресс
+        for (int from = 0; from < validRoutes.size(); from += RouteBulkImportRepositoryMB.BATCH_SIZE) {
+            int to = Math.min(from + RouteBulkImportRepositoryMB.BATCH_SIZE, validRoutes.size());
+            List<BulkRouteRow> rows = validRoutes.subList(from, to);
+            
+            BulkInsertResult result = importWriter.insertSkippingExisting(rows, dimensionResolver);
+            for (String skippedName : result.skippedNames()) {
+                duplicateErrors.add(duplicateError(skippedName));
             }
+            insertedCount += result.insertedCount();
+            skippedCount += result.skippedNames().size();
+            progress.report(to, insertedCount);
         }
         
         if (skippedCount > 0) {
-            log.info("Import completed with {} routes imported and {} duplicates skipped", successCount, skippedCount);
+            log.info("Import completed with {} routes imported and {} duplicates skipped", insertedCount, skippedCount);
         } else {
-            log.info("Import completed successfully. {} routes imported", successCount);
+            log.info("Import completed successfully. {} routes imported", insertedCount);
         }
         
-        return successCount;
+        return insertedCount;
+    }
+    
+    /**
+     * Сообщение о пропущенном маршруте, имя которого уже занято
+     */
+    private String duplicateError(String routeName) {
+        return "Route '" + routeName + "' already exists - skipped";
+    }
+    
+    /**
+     * Сообщение о результатах импорта с учетом пропущенных дубликатов
+     */
+    private String completionMessage(int successCount, int duplicateCount) {
+        if (duplicateCount > 0 && successCount > 0) {
+            return String.format("Import completed: %d routes imported, %d routes skipped (already exist)",
+                successCount, duplicateCount);
+        } else if (duplicateCount > 0) {
+            return String.format("No new routes imported: all %d routes already exist", duplicateCount);
+        }
+        return "Import completed successfully";
+    }
+    
+    /**
+     * Совпадают ли начальная и конечная точки маршрута с учетом погрешности
+     */
+    private boolean isZeroDistance(BulkRouteRow routeData) {
+        double diffX = routeData.fromX() - routeData.toX();
+        double diffY = routeData.fromY() - routeData.toY();
+        return Math.sqrt(diffX * diffX + diffY * diffY) < ZERO_DISTANCE_EPSILON;
     }
     
     /**
-     * Внутренний класс для хранения данных импорта
+     * Результат проверки строки; data равно null, если строку не удалось разобрать или она не нужна после проверки
      */
-    private record RouteImportData(
-        String name,
-        Float coordinatesX,
-        Double coordinatesY,
-        Double fromX,
-        Double fromY,
-        String fromName,
-        Double toX,
-        Double toY,
-        String toName,
-        Long distance,
-        Long rating
-    ) {}
+    private record ValidatedRow(int lineNumber, String name, BulkRouteRow data, List<String> errors) {}
 }
\ No newline at end of file
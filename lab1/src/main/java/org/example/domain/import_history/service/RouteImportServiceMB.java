@@ -8,17 +8,16 @@ import jakarta.transaction.Transactional;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
-import org.example.domain.coordinates.dto.CoordinatesDto;
 import org.example.domain.coordinates.entity.Coordinates;
 import org.example.domain.import_history.dto.ImportOperationDto;
 import org.example.domain.import_history.dto.ImportRequestDto;
 import org.example.domain.import_history.dto.ImportResultDto;
 import org.example.domain.import_history.entity.ImportStatus;
-import org.example.domain.location.dto.LocationDto;
+import org.example.domain.import_history.repository.ImportDimensionResolver;
+import org.example.domain.import_history.repository.RouteBulkImportRepositoryMB.BulkInsertResult;
+import org.example.domain.import_history.repository.RouteBulkImportRepositoryMB.BulkRouteRow;
 import org.example.domain.location.entity.Location;
-import org.example.domain.route.dto.RouteCreateDto;
 import org.example.domain.route.entity.Route;
-import org.example.domain.route.service.RouteServiceMB;
 
 import java.io.BufferedReader;
 import java.io.StringReader;
@@ -33,7 +32,7 @@ public class RouteImportServiceMB {
     private ImportOperationServiceMB importOperationService;
 
     @Inject
-    private RouteServiceMB routeService;
+    private RouteImportWriter importWriter;
 
     @Inject
     private Validator validator;
@@ -45,6 +44,7 @@ public class RouteImportServiceMB {
     private static final Pattern NAME_PATTERN = Pattern.compile("^[a-zA-Zа-яА-Я0-9\\s_-]+$");
     private static final int MAX_NAME_LENGTH = 100;
     private static final int MIN_NAME_LENGTH = 1;
+    private static final double ZERO_DISTANCE_EPSILON = 1e-6;
     
     /**
      * Основной метод импорта маршрутов из CSV файла
@@ -315,14 +315,16 @@ public class RouteImportServiceMB {
         List<String> errors = new ArrayList<>();
         String linePrefix = "Line " + lineNumber + ": ";
         
-        // УБРАНО: Проверка уникальности имени маршрута - теперь делается только в RouteServiceMB.createRoute()
-        // Это устраняет race conditions между двумя проверками
+        // Уникальность имени маршрута проверяется при пакетной вставке - существующие имена пропускаются
         
         // Дополнительная валидация: from и to локации не должны быть одинаковыми
         if (Objects.equals(routeData.fromX(), routeData.toX()) &&
             Objects.equals(routeData.fromY(), routeData.toY()) &&
             Objects.equals(routeData.fromName(), routeData.toName())) {
             errors.add(linePrefix + "From and To locations cannot be identical");
+        } else if (isZeroDistance(routeData)) {
+            // То же правило, что RouteServiceMB.validateZeroDistanceRoute, пакетная вставка его не вызывает
+            errors.add(linePrefix + "Route start and end points cannot be identical");
         }
         
         return errors;
@@ -332,66 +334,32 @@ public class RouteImportServiceMB {
      * Импорт валидных маршрутов с правильной обработкой дубликатов
      */
     private ImportValidationResult importValidRoutesWithDuplicateHandling(List<RouteImportData> validRoutes) {
-        int successCount = 0;
-        int duplicateCount = 0;
-        List<String> duplicateErrors = new ArrayList<>();
-        
+        List<BulkRouteRow> rows = new ArrayList<>(validRoutes.size());
         for (RouteImportData routeData : validRoutes) {
-            try {
-                // Создание DTO для координат
-                CoordinatesDto coordinatesDto = new CoordinatesDto(
-                    null,
-                    routeData.coordinatesX(),
-                    routeData.coordinatesY(),
-                    null,
-                    null
-                );
-                
-                // Создание DTO для from локации
-                LocationDto fromDto = new LocationDto(
-                    null,
-                    routeData.fromX(),
-                    routeData.fromY(),
-                    routeData.fromName().isEmpty() ? null : routeData.fromName(),
-                    null,
-                    null
-                );
-                
-                // Создание DTO для to локации
-                LocationDto toDto = new LocationDto(
-                    null,
-                    routeData.toX(),
-                    routeData.toY(),
-                    routeData.toName().isEmpty() ? null : routeData.toName(),
-                    null,
-                    null
-                );
-                
-                // Создание DTO для маршрута
-                RouteCreateDto routeCreateDto = new RouteCreateDto(
-                    routeData.name().trim(),
-                    coordinatesDto,
-                    fromDto,
-                    toDto,
-                    routeData.distance(),
-                    routeData.rating()
-                );
-                
-                // Создание маршрута через сервис - теперь обрабатываем дубликаты
-                routeService.createRoute(routeCreateDto);
-                successCount++;
-                log.debug("Successfully imported route: {}", routeData.name());
-                
-            } catch (org.example.exception.RouteNameAlreadyExistsException e) {
-                // Это нормально - маршрут уже существует
-                duplicateCount++;
-                duplicateErrors.add("Route '" + routeData.name() + "' already exists - skipped");
-                log.info("Skipped duplicate route: {}", routeData.name());
-            } catch (Exception e) {
-                log.error("Failed to import route: {} - {}", routeData.name(), e.getMessage());
-                // При других ошибках выбрасываем исключение для отката транзакции
-                throw new RuntimeException("Failed to import route '" + routeData.name() + "': " + e.getMessage());
-            }
+            rows.add(new BulkRouteRow(
+                routeData.name().trim(),
+                routeData.coordinatesX(),
+                routeData.coordinatesY(),
+                routeData.fromX(),
+                routeData.fromY(),
+                routeData.fromName().isEmpty() ? null : routeData.fromName(),
+                routeData.toX(),
+                routeData.toY(),
+                routeData.toName().isEmpty() ? null : routeData.toName(),
+                routeData.distance(),
+                routeData.rating()
+            ));
+        }
+        
+        // Занятые имена ищутся одним запросом на всю пачку, а не SELECT на каждую строку
+        BulkInsertResult bulkResult = importWriter.insertSkippingExisting(rows, new ImportDimensionResolver());
+        int successCount = bulkResult.insertedCount();
+        List<String> skippedNames = bulkResult.skippedNames();
+        
+        int duplicateCount = skippedNames.size();
+        List<String> duplicateErrors = new ArrayList<>();
+        for (String skippedName : skippedNames) {
+            duplicateErrors.add("Route '" + skippedName + "' already exists - skipped");
         }
         
         // Формируем сообщение о результатах
@@ -422,6 +390,19 @@ public class RouteImportServiceMB {
         String message
     ) {}
     
+    /**
+     * Совпадают ли начальная и конечная точки маршрута с учетом погрешности
+     */
+    private boolean isZeroDistance(RouteImportData routeData) {
+        if (routeData.fromX() == null || routeData.fromY() == null
+                || routeData.toX() == null || routeData.toY() == null) {
+            return false;
+        }
+        double diffX = routeData.fromX() - routeData.toX();
+        double diffY = routeData.fromY() - routeData.toY();
+        return Math.sqrt(diffX * diffX + diffY * diffY) < ZERO_DISTANCE_EPSILON;
+    }
+    
     /**
      * Внутренний класс для хранения данных импорта
      */
@@ -0,0 +1,80 @@
+package org.example.domain.import_history.service;
+
+import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.example.domain.import_history.repository.ImportDimensionResolver;
+import org.example.domain.import_history.repository.RouteBulkImportRepositoryMB;
+import org.example.domain.import_history.repository.RouteBulkImportRepositoryMB.BulkInsertResult;
+import org.example.domain.import_history.repository.RouteBulkImportRepositoryMB.BulkRouteRow;
+import org.example.domain.route.repository.RouteRepositoryMB;
+import org.example.domain.route.service.RouteCountCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+@Slf4j
+@Stateless
+public class RouteImportWriter {
+
+    @Inject
+    private RouteBulkImportRepositoryMB bulkImportRepository;
+
+    @Inject
+    private RouteRepositoryMB routeRepository;
+
+    @Inject
+    private ImportOperationServiceMB importOperationService;
+
+    @Inject
+    private RouteCountCache routeCountCache;
+
+    /**
+     * Пакетная вставка с предварительной проверкой имен: занятые имена ищутся одним запросом на пачку,
+     * а не отдельным SELECT на каждую строку. Выполняется в транзакции вызывающего кода
+     */
+    public BulkInsertResult insertSkippingExisting(List<BulkRouteRow> rows, ImportDimensionResolver dimensionResolver) {
+        List<String> names = new ArrayList<>(rows.size());
+        for (BulkRouteRow row : rows) {
+            names.add(row.name());
+        }
+        Set<String> existingNames = routeRepository.findExistingNames(names);
+
+        List<BulkRouteRow> newRows = new ArrayList<>(rows.size());
+        List<String> skippedNames = new ArrayList<>();
+        for (BulkRouteRow row : rows) {
+            if (existingNames.contains(row.name())) {
+                skippedNames.add(row.name());
+            } else {
+                newRows.add(row);
+            }
+        }
+
+        if (newRows.isEmpty()) {
+            return new BulkInsertResult(0, skippedNames);
+        }
+        BulkInsertResult inserted = bulkImportRepository.insertRoutes(newRows, dimensionResolver);
+        if (inserted.insertedCount() > 0) {
+            routeCountCache.invalidate();
+        }
+        skippedNames.addAll(inserted.skippedNames());
+        return new BulkInsertResult(inserted.insertedCount(), skippedNames);
+    }
+
+    /**
+     * Запись одного чанка в собственной транзакции вместе с контрольной точкой:
+     * либо коммитятся и маршруты, и номер последней строки, либо ничего
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public BulkInsertResult writeChunk(Integer operationId, List<BulkRouteRow> rows, ImportDimensionResolver dimensionResolver,
+                                       int lastLine, int processedRecords, int successfulBefore) {
+        BulkInsertResult result = insertSkippingExisting(rows, dimensionResolver);
+        importOperationService.saveCheckpoint(operationId, lastLine, processedRecords,
+                successfulBefore + result.insertedCount());
+        log.debug("Import {} committed chunk up to line {}", operationId, lastLine);
+        return result;
+    }
+}
@@ -13,6 +13,9 @@ import java.util.List;
 @Consumes(MediaType.APPLICATION_JSON)
 public class LocationResource {
 
+    private static final int DEFAULT_AUTOCOMPLETE_LIMIT = 20;
+    private static final int MAX_AUTOCOMPLETE_LIMIT = 100;
+
     @Inject
     private LocationServiceMB locationService;
 
@@ -33,10 +36,20 @@ public class LocationResource {
         return locationService.findAllTo();
     }
 
+    /**
+     * Различные имена локаций в порядке сортировки базы данных; с prefix или limit - автодополнение
+     * без учета регистра по индексу имен (по умолчанию 20 имен)
+     */
     @GET
     @Path("/names")
-    public List<String> getDistinctNames() {
-        return locationService.findDistinctNames();
+    public List<String> getDistinctNames(
+            @QueryParam("prefix") String prefix,
+            @QueryParam("limit") Integer limit) {
+        if (prefix == null && limit == null) {
+            return locationService.findDistinctNames();
+        }
+        int effectiveLimit = limit != null ? Math.max(1, Math.min(limit, MAX_AUTOCOMPLETE_LIMIT)) : DEFAULT_AUTOCOMPLETE_LIMIT;
+        return locationService.findNamesStartingWith(prefix != null ? prefix : "", effectiveLimit);
     }
 
     @GET
@@ -9,6 +9,7 @@ import org.example.domain.route.entity.Route;
 
 @Entity
 @Table(name = "locations")
+@EntityListeners(LocationNameListener.class)
 @Cacheable
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter
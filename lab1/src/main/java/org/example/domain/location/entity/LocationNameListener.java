@@ -0,0 +1,27 @@
+package org.example.domain.location.entity;
+
+import jakarta.inject.Inject;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.example.service.NameIndexService;
+
+/**
+ * Поддерживает индекс имен локаций при изменениях через JPA; пакетный импорт обновляет индекс сам
+ */
+public class LocationNameListener {
+
+    @Inject
+    private NameIndexService nameIndex;
+
+    @PostPersist
+    @PostUpdate
+    void saved(Location location) {
+        nameIndex.locationSaved(location.getId(), location.getName());
+    }
+
+    @PostRemove
+    void removed(Location location) {
+        nameIndex.locationRemoved(location.getId());
+    }
+}
@@ -4,8 +4,11 @@ import jakarta.ejb.Stateless;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
+import org.example.domain.LikePatterns;
 import org.example.domain.location.entity.Location;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,11 +22,26 @@ public class LocationRepositoryMB {
         return em.find(Location.class, id);
     }
 
+    public List<Location> findByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return em.createQuery("SELECT l FROM Location l WHERE l.id IN :ids", Location.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
     public List<Location> findAll() {
         return em.createQuery("SELECT l FROM Location l ORDER BY l.id", Location.class)
                 .getResultList();
     }
 
+    public List<String> findDistinctNames() {
+        return em.createQuery(
+            "SELECT DISTINCT l.name FROM Location l WHERE l.name IS NOT NULL ORDER BY l.name",
+            String.class).getResultList();
+    }
+
     public Optional<Location> findByXAndYAndName(Double x, double y, String name) {
         StringBuilder jpql = new StringBuilder("SELECT l FROM Location l WHERE l.x = :x AND l.y = :y");
         
@@ -67,7 +85,7 @@ public class LocationRepositoryMB {
             jpql.append(" AND l.y = :y");
         }
         if (name != null && !name.trim().isEmpty()) {
-            jpql.append(" AND LOWER(l.name) LIKE LOWER(:name)");
+            jpql.append(" AND LOWER(l.name) LIKE :name ESCAPE '\\'");
         }
         
         TypedQuery<Location> query = em.createQuery(jpql.toString(), Location.class);
@@ -79,7 +97,7 @@ public class LocationRepositoryMB {
             query.setParameter("y", y);
         }
         if (name != null && !name.trim().isEmpty()) {
-            query.setParameter("name", "%" + name.trim() + "%");
+            query.setParameter("name", LikePatterns.containsPattern(name));
         }
         
         return query.getResultList();
@@ -144,12 +162,6 @@ public class LocationRepositoryMB {
         return query.getSingleResult();
     }
 
-    public List<String> findDistinctNames() {
-        return em.createQuery(
-            "SELECT DISTINCT l.name FROM Location l WHERE l.name IS NOT NULL ORDER BY l.name",
-            String.class).getResultList();
-    }
-
     public Location save(Location location) {
         if (location.getId() == null) {
             em.persist(location);
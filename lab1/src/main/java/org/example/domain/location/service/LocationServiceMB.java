@@ -9,8 +9,12 @@ import org.example.domain.location.entity.Location;
 import org.example.domain.location.mapper.LocationMapper;
 import org.example.domain.location.repository.LocationRepositoryMB;
 import org.example.domain.route.entity.Route;
+import org.example.service.NameIndexService;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -20,6 +24,9 @@ public class LocationServiceMB {
     @Inject
     private LocationRepositoryMB locationRepository;
 
+    @Inject
+    private NameIndexService nameIndex;
+
     @PersistenceContext(unitName = "RoutesPU")
     private EntityManager em;
 
@@ -175,10 +182,36 @@ public class LocationServiceMB {
         return locationRepository.countUsagesByValues(x, y, name);
     }
 
+    /**
+     * Полный список имен в порядке сортировки базы данных; автодополнение ниже идет по индексу имен
+     */
     public List<String> findDistinctNames() {
         return locationRepository.findDistinctNames();
     }
 
+    /**
+     * Автодополнение имени локации по префиксу без учета регистра из индекса имен
+     */
+    public List<String> findNamesStartingWith(String prefix, int limit) {
+        return nameIndex.findLocationNamesStartingWith(prefix, limit);
+    }
+
+    /**
+     * Локации, имя которых начинается с префикса, в порядке индекса имен
+     */
+    public List<LocationDto> findByNamePrefix(String prefix, int limit) {
+        List<Integer> ids = nameIndex.findLocationIdsStartingWith(prefix, limit);
+        Map<Integer, Location> locationsById = new HashMap<>();
+        for (Location location : locationRepository.findByIds(ids)) {
+            locationsById.put(location.getId(), location);
+        }
+        return ids.stream()
+                .map(locationsById::get)
+                .filter(Objects::nonNull)
+                .map(LocationMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
     public List<LocationDto> searchByName(String namePattern) {
         if (namePattern == null || namePattern.trim().isEmpty()) {
             return findAll();
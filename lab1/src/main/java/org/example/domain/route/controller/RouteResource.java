@@ -21,7 +21,11 @@ import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.example.domain.route.dto.*;
+import org.example.domain.route.service.RouteCountMode;
+import org.example.domain.route.service.RouteExportFormat;
+import org.example.domain.route.service.RouteExportServiceMB;
 import org.example.domain.route.service.RouteServiceMB;
 import org.example.domain.coordinates.dto.CoordinatesDto;
 import org.example.domain.location.dto.LocationDto;
@@ -45,12 +49,17 @@ import java.util.stream.Collectors;
 @Slf4j
 public class RouteResource {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Inject
     private RouteServiceMB routeService;
     
     @Inject
     private RouteImportServiceMB routeImportService;
 
+    @Inject
+    private RouteExportServiceMB routeExportService;
+
     @GET
     @Operation(summary = "Получить все маршруты", description = "Возвращает список всех доступных маршрутов")
     @ApiResponse(responseCode = "200", description = "Список маршрутов успешно получен")
@@ -60,34 +69,62 @@ public class RouteResource {
 
     @GET
     @Path("/paginated")
-    @Operation(summary = "Получить маршруты с пагинацией", description = "Возвращает маршруты с пагинацией и фильтрацией")
+    @Operation(summary = "Получить маршруты с пагинацией",
+            description = "Возвращает маршруты с фильтрацией и keyset пагинацией: nextCursor/prevCursor ответа передаются " +
+                    "в cursor вместе с direction=next|prev. Без курсора возвращается страница page (переход на произвольную страницу). " +
+                    "count задает подсчет общего числа: exact, cached, estimated (оценка планировщика) или none")
     @ApiResponses({
         @ApiResponse(responseCode = "200", description = "Маршруты получены успешно"),
-        @ApiResponse(responseCode = "400", description = "Неверные параметры пагинации")
+        @ApiResponse(responseCode = "400", description = "Неверные параметры пагинации или курсор")
     })
     public Response getPaginatedRoutes(
-            @Parameter(description = "Номер страницы") @QueryParam("page") @DefaultValue("0") int page,
+            @Parameter(description = "Номер страницы (для отображения и перехода без курсора)") @QueryParam("page") @DefaultValue("0") int page,
             @Parameter(description = "Размер страницы") @QueryParam("size") @DefaultValue("10") int size,
             @Parameter(description = "Фильтр по имени") @QueryParam("nameFilter") String nameFilter,
             @Parameter(description = "Поле сортировки") @QueryParam("sortBy") @DefaultValue("id") String sortBy,
-            @Parameter(description = "Направление сортировки") @QueryParam("sortDirection") @DefaultValue("asc") String sortDirection) {
+            @Parameter(description = "Направление сортировки") @QueryParam("sortDirection") @DefaultValue("asc") String sortDirection,
+            @Parameter(description = "Курсор из nextCursor или prevCursor предыдущего ответа") @QueryParam("cursor") String cursor,
+            @Parameter(description = "Направление перехода от курсора: next или prev") @QueryParam("direction") @DefaultValue("next") String direction,
+            @Parameter(description = "Подсчет общего числа: exact, cached, estimated или none") @QueryParam("count") @DefaultValue("exact") String count) {
+        
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", "page must be >= 0 and size between 1 and " + MAX_PAGE_SIZE))
+                    .build();
+        }
         
         try {
-            List<RouteDto> routes = routeService.findPaginated(page, size, nameFilter, sortBy, sortDirection);
-            long totalElements = routeService.countWithFilter(nameFilter);
-            int totalPages = (int) Math.ceil((double) totalElements / size);
+            RouteCountMode countMode = RouteCountMode.fromString(count);
+            RouteCursorPageDto result;
+            if (cursor != null && !cursor.isBlank()) {
+                result = routeService.findPage(cursor, "prev".equalsIgnoreCase(direction), size, nameFilter, sortBy, sortDirection, countMode);
+            } else if (page == 0) {
+                result = routeService.findPage(null, false, size, nameFilter, sortBy, sortDirection, countMode);
+            } else {
+                result = routeService.findPaginated(page, size, nameFilter, sortBy, sortDirection, countMode);
+            }
+            Integer totalPages = result.totalCount() != null ? (int) Math.ceil((double) result.totalCount() / size) : null;
             
             Map<String, Object> response = new HashMap<>();
-            response.put("content", routes);
+            response.put("content", result.routes());
             response.put("page", page);
             response.put("size", size);
-            response.put("totalElements", totalElements);
+            response.put("totalElements", result.totalCount());
             response.put("totalPages", totalPages);
-            response.put("first", page == 0);
-            response.put("last", page >= totalPages - 1);
+            response.put("totalEstimated", result.totalEstimated());
+            response.put("first", !result.hasPrev());
+            response.put("last", !result.hasNext());
+            response.put("hasNext", result.hasNext());
+            response.put("hasPrev", result.hasPrev());
+            response.put("nextCursor", result.nextCursor());
+            response.put("prevCursor", result.prevCursor());
             
             return Response.ok(response).build();
             
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", e.getMessage()))
+                    .build();
         } catch (Exception e) {
             log.error("Pagination error: {}", e.getMessage(), e);
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -96,6 +133,78 @@ public class RouteResource {
         }
     }
 
+    @GET
+    @Path("/names")
+    @Operation(summary = "Автодополнение имени маршрута",
+            description = "Имена маршрутов, начинающиеся с prefix без учета регистра, из индекса имен в памяти")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Имена в алфавитном порядке"),
+        @ApiResponse(responseCode = "400", description = "Неверный лимит")
+    })
+    public Response getRouteNames(
+            @Parameter(description = "Начало имени") @QueryParam("prefix") @DefaultValue("") String prefix,
+            @Parameter(description = "Максимум имен") @QueryParam("limit") @DefaultValue("20") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", "limit must be between 1 and " + MAX_PAGE_SIZE))
+                    .build();
+        }
+        return Response.ok(routeService.findRouteNamesStartingWith(prefix, limit)).build();
+    }
+
+    @GET
+    @Path("/search")
+    @Operation(summary = "Поиск маршрутов по похожести имени",
+            description = "Ранжированный поиск по триграммам: находит имена с опечатками и частичными совпадениями, " +
+                    "самые похожие первыми")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Найденные маршруты с оценкой похожести"),
+        @ApiResponse(responseCode = "400", description = "Пустой запрос или неверный лимит")
+    })
+    public Response searchRoutes(
+            @Parameter(description = "Строка поиска") @QueryParam("q") String query,
+            @Parameter(description = "Максимум результатов") @QueryParam("limit") @DefaultValue("20") int limit) {
+        if (query == null || query.isBlank()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", "Search query must not be empty"))
+                    .build();
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", "limit must be between 1 and " + MAX_PAGE_SIZE))
+                    .build();
+        }
+        return Response.ok(routeService.searchByName(query, limit)).build();
+    }
+
+    @GET
+    @Path("/export")
+    @Produces({"text/csv", "application/x-ndjson", "application/vnd.apache.arrow.stream", MediaType.APPLICATION_JSON})
+    @Operation(summary = "Выгрузить все маршруты",
+            description = "Потоковая выгрузка всех маршрутов в CSV (колонки импорта), NDJSON или колоночный Arrow IPC stream; " +
+                    "память сервера не зависит от числа маршрутов")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Выгрузка идет потоком"),
+        @ApiResponse(responseCode = "400", description = "Неизвестный формат")
+    })
+    public Response exportRoutes(
+            @Parameter(description = "Формат: csv, ndjson или arrow") @QueryParam("format") @DefaultValue("csv") String format) {
+        RouteExportFormat exportFormat;
+        try {
+            exportFormat = RouteExportFormat.fromString(format);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(Map.of("error", e.getMessage()))
+                    .build();
+        }
+
+        StreamingOutput output = stream -> routeExportService.export(exportFormat, stream);
+        return Response.ok(output, exportFormat.mediaType())
+                .header("Content-Disposition", "attachment; filename=\"routes." + exportFormat.extension() + "\"")
+                .build();
+    }
+
     @GET
     @Path("/{id}")
     @Operation(summary = "Получить маршрут по ID", description = "Возвращает конкретный маршрут по его идентификатору")
@@ -2,6 +2,7 @@ package org.example.domain.route.controller;
 
 import jakarta.inject.Inject;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
@@ -29,6 +30,8 @@ import java.util.Map;
 @Slf4j
 public class SpecialOperationsResource {
 
+    private static final int MAX_AUTOCOMPLETE_LIMIT = 100;
+
     @Inject
     private RouteServiceMB routeService;
 
@@ -126,13 +129,22 @@ public class SpecialOperationsResource {
     }
 
     /**
-     * Получить все локации для автокомплита
+     * Получить локации для автокомплита: все или, если задан prefix, не более limit локаций с таким началом имени
      */
     @GET
     @Path("/all-locations")
-    public Response getAllLocations() {
+    public Response getAllLocations(
+            @QueryParam("prefix") String prefix,
+            @QueryParam("limit") @DefaultValue("20") int limit) {
         try {
-            List<LocationDto> locations = routeService.getAvailableLocations();
+            if (limit < 1 || limit > MAX_AUTOCOMPLETE_LIMIT) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity(Map.of("error", "Параметр limit должен быть от 1 до " + MAX_AUTOCOMPLETE_LIMIT, "error_type", RouteErrorType.INVALID_ARGUMENT))
+                        .build();
+            }
+            List<LocationDto> locations = prefix != null
+                    ? routeService.getAvailableLocationsByNamePrefix(prefix, limit)
+                    : routeService.getAvailableLocations();
             return Response.ok(locations).build();
         } catch (Exception e) {
             log.error("Error loading locations: {}", e.getMessage(), e);
@@ -1,71 +1,87 @@
 package org.example.domain.route.dto;
 
-import com.fasterxml.jackson.annotation.JsonCreator;
-import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.Getter;
-
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.Base64;
 
 /**
- * Композитный cursor для эффективной пагинации без подзапросов
+ * Композитный cursor для keyset пагинации: значение поля сортировки и ID последней показанной строки.
+ * Кодируется компактно - Base64url от "поле|направление|id|значение" с однобуквенными кодами поля и направления,
+ * дата создания хранится в микросекундах эпохи
  *
- * @param sortValue JSON-encoded значение поля сортировки
+ * @param sortValue строковое значение поля сортировки
  */
 public record CompositeCursor(String sortField, String sortValue, Integer id, String sortDirection) {
 
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    public static final String ID = "id";
+    public static final String NAME = "name";
+    public static final String DISTANCE = "distance";
+    public static final String RATING = "rating";
+    public static final String CREATION_DATE = "creationDate";
 
-    @JsonCreator
-    public CompositeCursor(
-            @JsonProperty("sortField") String sortField,
-            @JsonProperty("sortValue") String sortValue,
-            @JsonProperty("id") Integer id,
-            @JsonProperty("sortDirection") String sortDirection) {
-        this.sortField = sortField;
-        this.sortValue = sortValue;
-        this.id = id;
-        this.sortDirection = sortDirection;
-    }
+    private static final String SEPARATOR = "|";
 
     // Фабричные методы для создания cursor'ов
 
     public static CompositeCursor forId(Integer id, String sortDirection) {
-        return new CompositeCursor("id", id != null ? id.toString() : null, id, sortDirection);
+        return new CompositeCursor(ID, null, id, sortDirection);
     }
 
     public static CompositeCursor forName(String name, Integer id, String sortDirection) {
-        return new CompositeCursor("name", name, id, sortDirection);
+        return new CompositeCursor(NAME, name, id, sortDirection);
     }
 
     public static CompositeCursor forDistance(Long distance, Integer id, String sortDirection) {
-        return new CompositeCursor("distance", distance != null ? distance.toString() : null, id, sortDirection);
+        return new CompositeCursor(DISTANCE, distance != null ? distance.toString() : null, id, sortDirection);
     }
 
     public static CompositeCursor forRating(Long rating, Integer id, String sortDirection) {
-        return new CompositeCursor("rating", rating != null ? rating.toString() : null, id, sortDirection);
+        return new CompositeCursor(RATING, rating != null ? rating.toString() : null, id, sortDirection);
     }
 
-    public static CompositeCursor forCreationDate(java.time.LocalDateTime creationDate, Integer id, String sortDirection) {
-        return new CompositeCursor("creationDate",
-                creationDate != null ? creationDate.toString() : null, id, sortDirection);
+    public static CompositeCursor forCreationDate(ZonedDateTime creationDate, Integer id, String sortDirection) {
+        return new CompositeCursor(CREATION_DATE,
+                creationDate != null ? Long.toString(toEpochMicros(creationDate.toInstant())) : null, id, sortDirection);
     }
 
-    public static CompositeCursor forCreationDate(java.time.ZonedDateTime creationDate, Integer id, String sortDirection) {
-        return new CompositeCursor("creationDate",
-                creationDate != null ? creationDate.toString() : null, id, sortDirection);
+    /**
+     * Cursor, указывающий на маршрут в порядке сортировки sortField
+     */
+    public static CompositeCursor of(RouteDto route, String sortField, String sortDirection) {
+        return switch (normalizeSortField(sortField)) {
+            case NAME -> forName(route.name(), route.id(), sortDirection);
+            case DISTANCE -> forDistance(route.distance(), route.id(), sortDirection);
+            case RATING -> forRating(route.rating(), route.id(), sortDirection);
+            case CREATION_DATE -> forCreationDate(route.creationDate(), route.id(), sortDirection);
+            default -> forId(route.id(), sortDirection);
+        };
+    }
+
+    /**
+     * Каноническое имя поля сортировки; неизвестные поля сортируются по ID
+     */
+    public static String normalizeSortField(String sortField) {
+        if (sortField == null) {
+            return ID;
+        }
+        return switch (sortField.toLowerCase()) {
+            case "name" -> NAME;
+            case "distance" -> DISTANCE;
+            case "rating" -> RATING;
+            case "creationdate" -> CREATION_DATE;
+            default -> ID;
+        };
     }
 
-    // Сериализация в Base64-encoded JSON
+    // Компактная сериализация
 
     public String encode() {
-        try {
-            String json = objectMapper.writeValueAsString(this);
-            return Base64.getUrlEncoder().encodeToString(json.getBytes());
-        } catch (JsonProcessingException e) {
-            throw new IllegalStateException("Failed to encode cursor", e);
-        }
+        String raw = fieldCode(sortField) + SEPARATOR + (isDescending() ? "d" : "a") + SEPARATOR + id
+                + SEPARATOR + (sortValue != null ? sortValue : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
     }
 
     public static CompositeCursor decode(String encoded) {
@@ -74,14 +90,59 @@ public record CompositeCursor(String sortField, String sortValue, Integer id, St
         }
 
         try {
-            byte[] decoded = Base64.getUrlDecoder().decode(encoded);
-            String json = new String(decoded);
-            return objectMapper.readValue(json, CompositeCursor.class);
-        } catch (Exception e) {
+            String raw = new String(Base64.getUrlDecoder().decode(encoded.trim()), StandardCharsets.UTF_8);
+            // Значение идет последним и может само содержать разделитель
+            String[] parts = raw.split("\\|", 4);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Expected 4 cursor parts, got " + parts.length);
+            }
+            String field = fieldName(parts[0]);
+            String direction = switch (parts[1]) {
+                case "a" -> "asc";
+                case "d" -> "desc";
+                default -> throw new IllegalArgumentException("Unknown cursor direction: " + parts[1]);
+            };
+            Integer id = Integer.valueOf(parts[2]);
+            String value = ID.equals(field) ? null : parts[3];
+
+            CompositeCursor cursor = new CompositeCursor(field, value, id, direction);
+            // Проверяем значение заранее, чтобы битый cursor не дошел до запроса
+            if (DISTANCE.equals(field) || RATING.equals(field)) {
+                cursor.getLongValue();
+            } else if (CREATION_DATE.equals(field)) {
+                cursor.getZonedDateTimeValue();
+            }
+            return cursor;
+        } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Invalid cursor format", e);
         }
     }
 
+    private static String fieldCode(String sortField) {
+        return switch (normalizeSortField(sortField)) {
+            case NAME -> "n";
+            case DISTANCE -> "d";
+            case RATING -> "r";
+            case CREATION_DATE -> "c";
+            default -> "i";
+        };
+    }
+
+    private static String fieldName(String code) {
+        return switch (code) {
+            case "i" -> ID;
+            case "n" -> NAME;
+            case "d" -> DISTANCE;
+            case "r" -> RATING;
+            case "c" -> CREATION_DATE;
+            default -> throw new IllegalArgumentException("Unknown cursor field: " + code);
+        };
+    }
+
+    private static long toEpochMicros(Instant instant) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+    }
+
     // Методы доступа к типизированным значениям
 
     public String getStringValue() {
@@ -92,20 +153,12 @@ public record CompositeCursor(String sortField, String sortValue, Integer id, St
         return sortValue != null ? Long.parseLong(sortValue) : null;
     }
 
-    public Integer getIntegerValue() {
-        return sortValue != null ? Integer.parseInt(sortValue) : null;
+    public ZonedDateTime getZonedDateTimeValue() {
+        return sortValue != null
+                ? Instant.EPOCH.plus(Long.parseLong(sortValue), ChronoUnit.MICROS).atZone(ZoneOffset.UTC)
+                : null;
     }
 
-    public java.time.LocalDateTime getLocalDateTimeValue() {
-        return sortValue != null ? java.time.LocalDateTime.parse(sortValue) : null;
-    }
-
-    public java.time.ZonedDateTime getZonedDateTimeValue() {
-        return sortValue != null ? java.time.ZonedDateTime.parse(sortValue) : null;
-    }
-
-    // Getters
-
     @Override
     public String toString() {
         return String.format("CompositeCursor{sortField='%s', sortValue='%s', id=%s, direction='%s'}",
@@ -121,4 +174,4 @@ public record CompositeCursor(String sortField, String sortValue, Integer id, St
     public boolean isAscending() {
         return !isDescending();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,22 @@
+package org.example.domain.route.dto;
+
+/**
+ * Общее число маршрутов для страницы списка
+ *
+ * @param total     число маршрутов или null, если подсчет не запрашивался
+ * @param estimated true, если число взято из статистики планировщика и приблизительно
+ */
+public record RouteCountDto(Long total, boolean estimated) {
+
+    public static RouteCountDto exact(long total) {
+        return new RouteCountDto(total, false);
+    }
+
+    public static RouteCountDto estimate(long total) {
+        return new RouteCountDto(total, true);
+    }
+
+    public static RouteCountDto none() {
+        return new RouteCountDto(null, false);
+    }
+}
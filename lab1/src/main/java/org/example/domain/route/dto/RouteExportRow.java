@@ -0,0 +1,22 @@
+package org.example.domain.route.dto;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Плоская строка выгрузки маршрута: читается проекцией без загрузки сущностей в контекст персистентности
+ */
+public record RouteExportRow(
+        Integer id,
+        String name,
+        float coordinatesX,
+        Double coordinatesY,
+        Double fromX,
+        double fromY,
+        String fromName,
+        Double toX,
+        double toY,
+        String toName,
+        Long distance,
+        Long rating,
+        ZonedDateTime creationDate
+) {}
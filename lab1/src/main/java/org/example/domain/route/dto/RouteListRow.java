@@ -0,0 +1,44 @@
+package org.example.domain.route.dto;
+
+import org.example.domain.coordinates.dto.CoordinatesDto;
+import org.example.domain.location.dto.LocationDto;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Плоская строка списка маршрутов: маршрут, его точки и их владельцы, читается проекцией без загрузки сущностей
+ */
+public record RouteListRow(
+        Integer id,
+        String name,
+        ZonedDateTime creationDate,
+        Long distance,
+        Long rating,
+        Integer coordinatesId,
+        float coordinatesX,
+        Double coordinatesY,
+        Integer coordinatesOwnerId,
+        String coordinatesOwnerName,
+        Integer fromId,
+        Double fromX,
+        double fromY,
+        String fromName,
+        Integer fromOwnerId,
+        String fromOwnerName,
+        Integer toId,
+        Double toX,
+        double toY,
+        String toName,
+        Integer toOwnerId,
+        String toOwnerName
+) {
+
+    public RouteDto toDto() {
+        return new RouteDto(id, name,
+                new CoordinatesDto(coordinatesId, coordinatesX, coordinatesY, coordinatesOwnerId, coordinatesOwnerName),
+                creationDate,
+                new LocationDto(fromId, fromX, fromY, fromName, fromOwnerId, fromOwnerName),
+                new LocationDto(toId, toX, toY, toName, toOwnerId, toOwnerName),
+                distance, rating);
+    }
+}
@@ -0,0 +1,8 @@
+package org.example.domain.route.dto;
+
+/**
+ * Результат поиска по похожести имени
+ *
+ * @param score word similarity запроса и имени от 0 до 1
+ */
+public record RouteSearchResultDto(RouteDto route, double score) {}
@@ -5,6 +5,7 @@ import java.time.ZonedDateTime;
 import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EntityResult;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.FieldResult;
@@ -13,6 +14,10 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedEntityGraphs;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.SqlResultSetMapping;
 import jakarta.persistence.SqlResultSetMappings;
@@ -32,8 +37,33 @@ import org.example.domain.location.entity.Location;
 
 @Entity
 @Table(name = "routes")
+@EntityListeners(RouteNameListener.class)
 @Cacheable
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NamedEntityGraphs({
+    // Все, что нужно RouteMapper.toDto: связи и их маршруты-владельцы
+    @NamedEntityGraph(
+        name = Route.GRAPH_FULL,
+        attributeNodes = {
+            @NamedAttributeNode(value = "coordinates", subgraph = "coordinatesOwner"),
+            @NamedAttributeNode(value = "from", subgraph = "locationOwner"),
+            @NamedAttributeNode(value = "to", subgraph = "locationOwner")
+        },
+        subgraphs = {
+            @NamedSubgraph(name = "coordinatesOwner", attributeNodes = @NamedAttributeNode("ownerRoute")),
+            @NamedSubgraph(name = "locationOwner", attributeNodes = @NamedAttributeNode("ownerRoute"))
+        }
+    ),
+    // Связи для передачи владения при удалении: ID владельца берется из внешнего ключа без загрузки маршрута
+    @NamedEntityGraph(
+        name = Route.GRAPH_OWNERSHIP,
+        attributeNodes = {
+            @NamedAttributeNode("coordinates"),
+            @NamedAttributeNode("from"),
+            @NamedAttributeNode("to")
+        }
+    )
+})
 @SqlResultSetMappings({
     @SqlResultSetMapping(
         name = "RouteMapping",
@@ -62,6 +92,9 @@ import org.example.domain.location.entity.Location;
 @NoArgsConstructor
 public class Route {
 
+    public static final String GRAPH_FULL = "route.full";
+    public static final String GRAPH_OWNERSHIP = "route.ownership";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
@@ -72,7 +105,7 @@ public class Route {
 
     @NotNull
     @Valid
-    @ManyToOne(optional = false, fetch = FetchType.EAGER)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @JoinColumn(name = "coordinates_id", nullable = false)
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private Coordinates coordinates;
@@ -83,14 +116,14 @@ public class Route {
 
     @NotNull
     @Valid
-    @ManyToOne(optional = false, fetch = FetchType.EAGER)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @JoinColumn(name = "from_location_id", nullable = false)
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private Location from;
 
     @NotNull
     @Valid
-    @ManyToOne(optional = false, fetch = FetchType.EAGER)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @JoinColumn(name = "to_location_id", nullable = false)
     @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private Location to;
@@ -0,0 +1,27 @@
+package org.example.domain.route.entity;
+
+import jakarta.inject.Inject;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.example.service.NameIndexService;
+
+/**
+ * Поддерживает индекс имен маршрутов при изменениях через JPA; пакетный импорт обновляет индекс сам
+ */
+public class RouteNameListener {
+
+    @Inject
+    private NameIndexService nameIndex;
+
+    @PostPersist
+    @PostUpdate
+    void saved(Route route) {
+        nameIndex.routeSaved(route.getId(), route.getName());
+    }
+
+    @PostRemove
+    void removed(Route route) {
+        nameIndex.routeRemoved(route.getId());
+    }
+}
@@ -3,51 +3,110 @@ package org.example.domain.route.repository;
 import jakarta.ejb.Stateless;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.example.domain.LikePatterns;
 import org.example.domain.route.dto.CompositeCursor;
+import org.example.domain.route.dto.RouteDto;
+import org.example.domain.route.dto.RouteExportRow;
+import org.example.domain.route.dto.RouteListRow;
 import org.example.domain.route.dto.RouteUpdateDto;
 import org.example.domain.route.entity.Route;
 import org.example.domain.route.mapper.RouteMapper;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 @Stateless
 public class RouteRepositoryMB {
 
+    // Сколько имен проверять одним IN-запросом при пакетной проверке уникальности
+    private static final int NAME_LOOKUP_BATCH_SIZE = 1000;
+    private static final String LOAD_GRAPH = "jakarta.persistence.loadgraph";
+
+    // Проекция для списков: маршрут, его точки и их владельцы одним запросом без сущностей в контексте персистентности
+    private static final String ROUTE_DTO_SELECT = "SELECT new org.example.domain.route.dto.RouteListRow(" +
+            "r.id, r.name, r.creationDate, r.distance, r.rating, " +
+            "c.id, c.x, c.y, co.id, co.name, " +
+            "f.id, f.x, f.y, f.name, fo.id, fo.name, " +
+            "t.id, t.x, t.y, t.name, tow.id, tow.name) " +
+            "FROM Route r JOIN r.coordinates c JOIN r.from f JOIN r.to t " +
+            "LEFT JOIN c.ownerRoute co LEFT JOIN f.ownerRoute fo LEFT JOIN t.ownerRoute tow";
+
     @PersistenceContext(unitName = "RoutesPU")
     private EntityManager em;
 
+    /**
+     * Только строка маршрута, связи не загружаются - для проверок существования
+     */
     public Route findById(Integer id) {
         return em.find(Route.class, id);
     }
 
-    public List<Route> findAll() {
-        return em.createQuery("SELECT r FROM Route r ORDER BY r.id", Route.class)
-                .getResultList();
+    /**
+     * Маршрут со всем, что нужно для RouteDto, одним запросом
+     */
+    public Route findFullById(Integer id) {
+        return em.find(Route.class, id, loadGraph(Route.GRAPH_FULL));
     }
 
+    /**
+     * Маршрут с координатами и локациями для передачи владения при удалении
+     */
+    public Route findForOwnershipTransfer(Integer id) {
+        return em.find(Route.class, id, loadGraph(Route.GRAPH_OWNERSHIP));
+    }
+
+    public List<RouteDto> findAll() {
+        return toRouteDtos(em.createQuery(ROUTE_DTO_SELECT + " ORDER BY r.id", RouteListRow.class));
+    }
 
     /**
-     * Простая offset/limit пагинация (заменяет cursor пагинацию)
+     * Серверный курсор по всем маршрутам для выгрузки: драйвер PostgreSQL читает по fetchSize строк за раз
+     * (только внутри транзакции), а проекция не наполняет контекст персистентности, поэтому память не растет
+     * с числом маршрутов. Вызывающий код закрывает результат
      */
-    public List<Route> findPaginated(int page, int size, String nameFilter, String sortBy, String sortDirection) {
-        StringBuilder jpql = new StringBuilder("SELECT r FROM Route r");
+    @SuppressWarnings("unchecked")
+    public ScrollableResults<RouteExportRow> scrollForExport(int fetchSize) {
+        return em.createQuery("SELECT new org.example.domain.route.dto.RouteExportRow(" +
+                        "r.id, r.name, c.x, c.y, f.x, f.y, f.name, t.x, t.y, t.name, r.distance, r.rating, r.creationDate) " +
+                        "FROM Route r JOIN r.coordinates c JOIN r.from f JOIN r.to t ORDER BY r.id", RouteExportRow.class)
+                .unwrap(Query.class)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .setCacheMode(CacheMode.IGNORE)
+                .scroll(ScrollMode.FORWARD_ONLY);
+    }
+
+
+    /**
+     * Offset/limit пагинация для перехода на произвольную страницу; последовательное листание идет по курсору
+     */
+    public List<RouteDto> findPaginated(int offset, int limit, String nameFilter, String sortBy, String sortDirection) {
+        StringBuilder jpql = new StringBuilder(ROUTE_DTO_SELECT);
         
         if (nameFilter != null && !nameFilter.trim().isEmpty()) {
-            jpql.append(" WHERE LOWER(r.name) LIKE LOWER(:nameFilter)");
+            jpql.append(" WHERE LOWER(r.name) LIKE :nameFilter ESCAPE '\\'");
         }
         
         jpql.append(" ORDER BY ");
         appendSortClause(jpql, sortBy, sortDirection);
         
-        var query = em.createQuery(jpql.toString(), Route.class);
+        var query = em.createQuery(jpql.toString(), RouteListRow.class);
         
         if (nameFilter != null && !nameFilter.trim().isEmpty()) {
-            query.setParameter("nameFilter", "%" + nameFilter.trim() + "%");
+            query.setParameter("nameFilter", LikePatterns.containsPattern(nameFilter));
         }
         
-        return query.setFirstResult(page * size)
-                   .setMaxResults(size)
-                   .getResultList();
+        return toRouteDtos(query.setFirstResult(offset).setMaxResults(limit));
     }
 
     public long countAll() {
@@ -57,14 +116,29 @@ public class RouteRepositoryMB {
 
     public long countWithFilter(String nameFilter) {
         if (nameFilter != null && !nameFilter.trim().isEmpty()) {
-            return em.createQuery("SELECT COUNT(r) FROM Route r WHERE LOWER(r.name) LIKE LOWER(:nameFilter)", Long.class)
-                    .setParameter("nameFilter", "%" + nameFilter.trim() + "%")
+            return em.createQuery("SELECT COUNT(r) FROM Route r WHERE LOWER(r.name) LIKE :nameFilter ESCAPE '\\'", Long.class)
+                    .setParameter("nameFilter", LikePatterns.containsPattern(nameFilter))
                     .getSingleResult();
         } else {
             return countAll();
         }
     }
 
+    /**
+     * Оценка числа маршрутов так же, как ее делает планировщик: плотность строк на страницу из последнего
+     * ANALYZE, умноженная на текущий размер таблицы. -1, если таблица еще не анализировалась
+     */
+    public long estimateCount() {
+        Number estimate = (Number) em.createNativeQuery("""
+                SELECT CASE WHEN c.reltuples < 0 OR c.relpages = 0 THEN -1
+                    ELSE (c.reltuples / c.relpages * (pg_relation_size(c.oid) / current_setting('block_size')::int))::bigint
+                END
+                FROM pg_class c
+                WHERE c.oid = 'routes'::regclass
+                """).getSingleResult();
+        return estimate != null ? estimate.longValue() : -1;
+    }
+
 
     public Route save(Route route) {
         if (route.getId() == null) {
@@ -154,11 +228,16 @@ public class RouteRepositoryMB {
 
     // Специальные операции согласно ТЗ
     
+    /**
+     * Маршрут с максимальным по правилам сравнения базы именем: MAX и выборка по имени - два спуска
+     * по индексу idx_routes_name_id
+     */
     public Route findRouteWithMaxName() {
         List<Route> results = em.createQuery(
             "SELECT r FROM Route r WHERE r.name = (SELECT MAX(r2.name) FROM Route r2) ORDER BY r.id",
             Route.class
-        ).setMaxResults(1).getResultList();
+        ).setHint(LOAD_GRAPH, em.getEntityGraph(Route.GRAPH_FULL))
+        .setMaxResults(1).getResultList();
         
         return results.isEmpty() ? null : results.get(0);
     }
@@ -169,14 +248,13 @@ public class RouteRepositoryMB {
                 .getSingleResult();
     }
 
-    public List<Route> findRoutesWithRatingGreaterThan(Long ratingThreshold) {
-        return em.createQuery("SELECT r FROM Route r WHERE r.rating > :threshold ORDER BY r.rating DESC", Route.class)
-                .setParameter("threshold", ratingThreshold)
-                .getResultList();
+    public List<RouteDto> findRoutesWithRatingGreaterThan(Long ratingThreshold) {
+        return toRouteDtos(em.createQuery(ROUTE_DTO_SELECT + " WHERE r.rating > :threshold ORDER BY r.rating DESC", RouteListRow.class)
+                .setParameter("threshold", ratingThreshold));
     }
 
-    public List<Route> findRoutesBetweenLocations(String fromLocationName, String toLocationName, String sortBy) {
-        StringBuilder jpql = new StringBuilder("SELECT r FROM Route r WHERE 1=1");
+    public List<RouteDto> findRoutesBetweenLocations(String fromLocationName, String toLocationName, String sortBy) {
+        StringBuilder jpql = new StringBuilder(ROUTE_DTO_SELECT).append(" WHERE 1=1");
         
         if (fromLocationName != null && !fromLocationName.trim().isEmpty()) {
             String fromLocation = fromLocationName.trim();
@@ -190,16 +268,16 @@ public class RouteRepositoryMB {
                     try {
                         Double x = Double.parseDouble(parts[0].trim());
                         Double y = Double.parseDouble(parts[1].trim());
-                        jpql.append(" AND r.from.x = :fromX AND r.from.y = :fromY");
+                        jpql.append(" AND f.x = :fromX AND f.y = :fromY");
                     } catch (NumberFormatException e) {
                         // Если не удается распарсить, ищем по названию
-                        jpql.append(" AND r.from.name = :fromName");
+                        jpql.append(" AND f.name = :fromName");
                     }
                 } else {
-                    jpql.append(" AND r.from.name = :fromName");
+                    jpql.append(" AND f.name = :fromName");
                 }
             } else {
-                jpql.append(" AND r.from.name = :fromName");
+                jpql.append(" AND f.name = :fromName");
             }
         }
         
@@ -215,16 +293,16 @@ public class RouteRepositoryMB {
                     try {
                         Double x = Double.parseDouble(parts[0].trim());
                         Double y = Double.parseDouble(parts[1].trim());
-                        jpql.append(" AND r.to.x = :toX AND r.to.y = :toY");
+                        jpql.append(" AND t.x = :toX AND t.y = :toY");
                     } catch (NumberFormatException e) {
                         // Если не удается распарсить, ищем по названию
-                        jpql.append(" AND r.to.name = :toName");
+                        jpql.append(" AND t.name = :toName");
                     }
                 } else {
-                    jpql.append(" AND r.to.name = :toName");
+                    jpql.append(" AND t.name = :toName");
                 }
             } else {
-                jpql.append(" AND r.to.name = :toName");
+                jpql.append(" AND t.name = :toName");
             }
         }
         
@@ -243,7 +321,7 @@ public class RouteRepositoryMB {
                 jpql.append(" ORDER BY r.name");
         }
         
-        var query = em.createQuery(jpql.toString(), Route.class);
+        var query = em.createQuery(jpql.toString(), RouteListRow.class);
         
         // Устанавливаем параметры для FROM локации
         if (fromLocationName != null && !fromLocationName.trim().isEmpty()) {
@@ -293,7 +371,7 @@ public class RouteRepositoryMB {
             }
         }
         
-        return query.getResultList();
+        return toRouteDtos(query);
     }
     
     public List<Route> findRoutesBetweenLocations(String fromLocationName, String toLocationName,
@@ -351,7 +429,8 @@ public class RouteRepositoryMB {
                 jpql.append(" ORDER BY r.name");
         }
         
-        var query = em.createQuery(jpql.toString(), Route.class);
+        var query = em.createQuery(jpql.toString(), Route.class)
+                .setHint(LOAD_GRAPH, em.getEntityGraph(Route.GRAPH_FULL));
         
         // Устанавливаем параметры
         if (fromX != null && fromY != null) {
@@ -387,81 +466,112 @@ public class RouteRepositoryMB {
         throw new UnsupportedOperationException("Use RouteService.createRoute() instead for proper entity management");
     }
 
+    /**
+     * Маршруты, имя которых похоже на запрос (оператор pg_trgm word similarity по индексу lower(name)),
+     * от наиболее похожих. Учитываются и опечатки, и совпадение с частью длинного имени
+     */
+    @SuppressWarnings("unchecked")
+    public List<NameMatch> findSimilarByName(String term, int limit) {
+        List<Object[]> rows = em.createNativeQuery("""
+                SELECT r.id, word_similarity(:term, lower(r.name)) AS score
+                FROM routes r
+                WHERE :term <% lower(r.name)
+                ORDER BY score DESC, similarity(:term, lower(r.name)) DESC, r.id
+                LIMIT :limit
+                """)
+                .setParameter("term", term.trim().toLowerCase(Locale.ROOT))
+                .setParameter("limit", limit)
+                .getResultList();
+        List<NameMatch> matches = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            matches.add(new NameMatch(((Number) row[0]).intValue(), ((Number) row[1]).doubleValue()));
+        }
+        return matches;
+    }
+
+    public List<RouteDto> findByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return toRouteDtos(em.createQuery(ROUTE_DTO_SELECT + " WHERE r.id IN :ids", RouteListRow.class)
+                .setParameter("ids", ids));
+    }
+
     // Пагинация (cursor-based с композитными курсорами)
     
     /**
      * Получить первую страницу маршрутов
      */
-    public List<Route> findFirstPage(int limit, String nameFilter, String sortBy, String sortDirection) {
-        StringBuilder jpql = new StringBuilder("SELECT r FROM Route r");
+    public List<RouteDto> findFirstPage(int limit, String nameFilter, String sortBy, String sortDirection) {
+        StringBuilder jpql = new StringBuilder(ROUTE_DTO_SELECT);
         
         if (nameFilter != null && !nameFilter.trim().isEmpty()) {
-            jpql.append(" WHERE LOWER(r.name) LIKE LOWER(:nameFilter)");
+            jpql.append(" WHERE LOWER(r.name) LIKE :nameFilter ESCAPE '\\'");
         }
         
         jpql.append(" ORDER BY ");
         appendSortClause(jpql, sortBy, sortDirection);
         
-        var query = em.createQuery(jpql.toString(), Route.class);
+        var query = em.createQuery(jpql.toString(), RouteListRow.class);
         
         if (nameFilter != null && !nameFilter.trim().isEmpty()) {
-            query.setParameter("nameFilter", "%" + nameFilter.trim() + "%");
+            query.setParameter("nameFilter", LikePatterns.containsPattern(nameFilter));
         }
         
-        return query.setMaxResults(limit).getResultList();
+        return toRouteDtos(query.setMaxResults(limit));
     }
     
     /**
      * Получить следующую страницу после указанного cursor'а (с композитным курсором)
      */
-    public List<Route> findNextPage(CompositeCursor cursor, int limit, String nameFilter) {
-        StringBuilder jpql = new StringBuilder("SELECT r FROM Route r WHERE ");
+    public List<RouteDto> findNextPage(CompositeCursor cursor, int limit, String nameFilter) {
+        StringBuilder jpql = new StringBuilder(ROUTE_DTO_SELECT).append(" WHERE ");
         
         // Условие для cursor (зависит от направления сортировки)
         appendCompositeCursorCondition(jpql, cursor, true);
         
         if (nameFilter != null && !nameFilter.trim().isEmpty()) {
-            jpql.append(" AND LOWER(r.name) LIKE LOWER(:nameFilter)");
+            jpql.append(" AND LOWER(r.name) LIKE :nameFilter ESCAPE '\\'");
         }
         
         jpql.append(" ORDER BY ");
         appendSortClause(jpql, cursor.sortField(), cursor.sortDirection());
         
-        var query = em.createQuery(jpql.toString(), Route.class);
+        var query = em.createQuery(jpql.toString(), RouteListRow.class);
         setCompositeCursorParameters(query, cursor);
         
         if (nameFilter != null && !nameFilter.trim().isEmpty()) {
-            query.setParameter("nameFilter", "%" + nameFilter.trim() + "%");
+            query.setParameter("nameFilter", LikePatterns.containsPattern(nameFilter));
         }
         
-        return query.setMaxResults(limit).getResultList();
+        return toRouteDtos(query.setMaxResults(limit));
     }
     
     /**
      * Получить предыдущую страницу до указанного cursor'а (с композитным курсором)
      */
-    public List<Route> findPrevPage(CompositeCursor cursor, int limit, String nameFilter) {
-        StringBuilder jpql = new StringBuilder("SELECT r FROM Route r WHERE ");
+    public List<RouteDto> findPrevPage(CompositeCursor cursor, int limit, String nameFilter) {
+        StringBuilder jpql = new StringBuilder(ROUTE_DTO_SELECT).append(" WHERE ");
         
         // Условие для cursor (обратное направление)
         appendCompositeCursorCondition(jpql, cursor, false);
         
         if (nameFilter != null && !nameFilter.trim().isEmpty()) {
-            jpql.append(" AND LOWER(r.name) LIKE LOWER(:nameFilter)");
+            jpql.append(" AND LOWER(r.name) LIKE :nameFilter ESCAPE '\\'");
         }
         
         jpql.append(" ORDER BY ");
         // Для предыдущей страницы инвертируем сортировку
         appendSortClause(jpql, cursor.sortField(), invertDirection(cursor.sortDirection()));
         
-        var query = em.createQuery(jpql.toString(), Route.class);
+        var query = em.createQuery(jpql.toString(), RouteListRow.class);
         setCompositeCursorParameters(query, cursor);
         
         if (nameFilter != null && !nameFilter.trim().isEmpty()) {
-            query.setParameter("nameFilter", "%" + nameFilter.trim() + "%");
+            query.setParameter("nameFilter", LikePatterns.containsPattern(nameFilter));
         }
         
-        List<Route> results = query.setMaxResults(limit).getResultList();
+        List<RouteDto> results = toRouteDtos(query.setMaxResults(limit));
         // Переворачиваем результат для правильного порядка
         java.util.Collections.reverse(results);
         return results;
@@ -475,6 +585,7 @@ public class RouteRepositoryMB {
         return em.createQuery(
             "SELECT r FROM Route r WHERE r.coordinates.id = :coordId AND r.id != :excludeId",
             Route.class)
+            .setHint(LOAD_GRAPH, em.getEntityGraph(Route.GRAPH_FULL))
             .setParameter("coordId", coordinatesId)
             .setParameter("excludeId", excludeRouteId)
             .getResultList();
@@ -487,6 +598,7 @@ public class RouteRepositoryMB {
         return em.createQuery(
             "SELECT r FROM Route r WHERE (r.from.id = :locId OR r.to.id = :locId) AND r.id != :excludeId",
             Route.class)
+            .setHint(LOAD_GRAPH, em.getEntityGraph(Route.GRAPH_FULL))
             .setParameter("locId", locationId)
             .setParameter("excludeId", excludeRouteId)
             .getResultList();
@@ -498,22 +610,32 @@ public class RouteRepositoryMB {
      * Найти маршрут по имени
      */
     public Route findByName(String name) {
-        System.out.println("REPO: Searching for route by name: '" + name + "'");
         List<Route> results = em.createQuery(
             "SELECT r FROM Route r WHERE r.name = :name",
             Route.class)
+            .setHint(LOAD_GRAPH, em.getEntityGraph(Route.GRAPH_FULL))
             .setParameter("name", name)
             .setMaxResults(1)
             .getResultList();
         
-        System.out.println("REPO: Found " + results.size() + " routes with name: '" + name + "'");
-        Route result = results.isEmpty() ? null : results.get(0);
-        if (result != null) {
-            System.out.println("REPO: Found existing route - ID: " + result.getId() + ", Name: '" + result.getName() + "'");
-        } else {
-            System.out.println("REPO: No route found with name: '" + name + "'");
+        return results.isEmpty() ? null : results.get(0);
+    }
+    
+    /**
+     * Найти, какие из переданных имен уже заняты, одним запросом на пачку имен
+     */
+    public Set<String> findExistingNames(Collection<String> names) {
+        Set<String> existing = new HashSet<>();
+        List<String> distinctNames = new ArrayList<>(new HashSet<>(names));
+        for (int from = 0; from < distinctNames.size(); from += NAME_LOOKUP_BATCH_SIZE) {
+            List<String> batch = distinctNames.subList(from, Math.min(from + NAME_LOOKUP_BATCH_SIZE, distinctNames.size()));
+            existing.addAll(em.createQuery(
+                "SELECT r.name FROM Route r WHERE r.name IN :names",
+                String.class)
+                .setParameter("names", batch)
+                .getResultList());
         }
-        return result;
+        return existing;
     }
     
     /**
@@ -523,6 +645,7 @@ public class RouteRepositoryMB {
         List<Route> results = em.createQuery(
             "SELECT r FROM Route r WHERE r.name = :name AND r.id != :excludeId",
             Route.class)
+            .setHint(LOAD_GRAPH, em.getEntityGraph(Route.GRAPH_FULL))
             .setParameter("name", name)
             .setParameter("excludeId", excludeRouteId)
             .setMaxResults(1)
@@ -530,8 +653,32 @@ public class RouteRepositoryMB {
         
         return results.isEmpty() ? null : results.get(0);
     }
+
+    /**
+     * Маршрут с таким же именем без учета регистра, исключая маршрут с указанным ID (null - без исключения).
+     * Нужен для деталей конфликта, когда вставку отклонил уникальный индекс
+     */
+    public Route findByNameIgnoreCaseExcluding(String name, Integer excludeRouteId) {
+        TypedQuery<Route> query = em.createQuery(
+            "SELECT r FROM Route r WHERE LOWER(r.name) = LOWER(:name)"
+                + (excludeRouteId != null ? " AND r.id != :excludeId" : ""),
+            Route.class)
+            .setHint(LOAD_GRAPH, em.getEntityGraph(Route.GRAPH_FULL))
+            .setParameter("name", name)
+            .setMaxResults(1);
+        if (excludeRouteId != null) {
+            query.setParameter("excludeId", excludeRouteId);
+        }
+        List<Route> results = query.getResultList();
+
+        return results.isEmpty() ? null : results.get(0);
+    }
     
     
+    private Map<String, Object> loadGraph(String graphName) {
+        return Map.of(LOAD_GRAPH, em.getEntityGraph(graphName));
+    }
+
     // Вспомогательные методы для пагинации
     
     private void appendSortClause(StringBuilder jpql, String sortBy, String sortDirection) {
@@ -559,14 +706,16 @@ public class RouteRepositoryMB {
         }
         
         // Всегда добавляем ID как вторичную сортировку для стабильности cursor'а
-        if (!"id".equals(sortBy)) {
+        if (!"id".equalsIgnoreCase(sortBy)) {
             jpql.append(", r.id ");
             jpql.append("desc".equalsIgnoreCase(sortDirection) ? "DESC" : "ASC");
         }
     }
     
     /**
-     * Добавляет условие для композитного курсора (БЕЗ подзапросов!)
+     * Добавляет условие для композитного курсора сравнением кортежей (значение, id): PostgreSQL превращает
+     * его в границу диапазона по индексу (поле, id), и страница читается с нужного места без просмотра
+     * предыдущих строк. Направления поля и id в ORDER BY всегда совпадают, поэтому кортеж упорядочен так же
      */
     private void appendCompositeCursorCondition(StringBuilder jpql, CompositeCursor cursor, boolean isNext) {
         String operator;
@@ -578,25 +727,17 @@ public class RouteRepositoryMB {
             operator = isDesc ? ">" : "<";
         }
         
-        switch (cursor.sortField().toLowerCase()) {
-            case "name":
-                jpql.append("(r.name ").append(operator).append(" :cursorValue");
-                jpql.append(" OR (r.name = :cursorValue AND r.id ").append(operator).append(" :cursorId))");
-                break;
-            case "distance":
-                jpql.append("(r.distance ").append(operator).append(" :cursorValue");
-                jpql.append(" OR (r.distance = :cursorValue AND r.id ").append(operator).append(" :cursorId))");
-                break;
-            case "rating":
-                jpql.append("(r.rating ").append(operator).append(" :cursorValue");
-                jpql.append(" OR (r.rating = :cursorValue AND r.id ").append(operator).append(" :cursorId))");
-                break;
-            case "creationdate":
-                jpql.append("(r.creationDate ").append(operator).append(" :cursorValue");
-                jpql.append(" OR (r.creationDate = :cursorValue AND r.id ").append(operator).append(" :cursorId))");
-                break;
-            default:
-                jpql.append("r.id ").append(operator).append(" :cursorId");
+        String column = switch (cursor.sortField().toLowerCase()) {
+            case "name" -> "r.name";
+            case "distance" -> "r.distance";
+            case "rating" -> "r.rating";
+            case "creationdate" -> "r.creationDate";
+            default -> null;
+        };
+        if (column == null) {
+            jpql.append("r.id ").append(operator).append(" :cursorId");
+        } else {
+            jpql.append("(").append(column).append(", r.id) ").append(operator).append(" (:cursorValue, :cursorId)");
         }
     }
     
@@ -626,4 +767,17 @@ public class RouteRepositoryMB {
     private String invertDirection(String direction) {
         return "desc".equalsIgnoreCase(direction) ? "asc" : "desc";
     }
-}
\ No newline at end of file
+
+    // Read-model: строки проекции ROUTE_DTO_SELECT
+
+    private static List<RouteDto> toRouteDtos(TypedQuery<RouteListRow> query) {
+        List<RouteListRow> rows = query.getResultList();
+        List<RouteDto> routes = new ArrayList<>(rows.size());
+        for (RouteListRow row : rows) {
+            routes.add(row.toDto());
+        }
+        return routes;
+    }
+
+    public record NameMatch(Integer id, double score) {}
+}
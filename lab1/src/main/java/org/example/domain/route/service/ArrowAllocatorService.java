@@ -0,0 +1,62 @@
+package org.example.domain.route.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.ejb.Lock;
+import jakarta.ejb.LockType;
+import jakarta.ejb.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+
+/**
+ * Общий для приложения корневой аллокатор Arrow; каждая выгрузка получает свой дочерний аллокатор с лимитом.
+ * Корень создается при первой выгрузке в Arrow: без --add-opens=java.base/java.nio=ALL-UNNAMED в JAVA_OPTS
+ * сервера память Arrow не инициализируется, и это не должно ломать остальные форматы
+ */
+@Slf4j
+@Singleton
+@Lock(LockType.READ)
+public class ArrowAllocatorService {
+
+    // Общий лимит прямой памяти всех одновременных выгрузок
+    private static final long ROOT_ALLOCATION_LIMIT = 1024L * 1024 * 1024;
+
+    private volatile RootAllocator root;
+
+    /**
+     * Новый дочерний аллокатор; закрывает его тот, кто получил
+     */
+    public BufferAllocator newChildAllocator(String name, long limit) {
+        return root().newChildAllocator(name, 0, limit);
+    }
+
+    private RootAllocator root() {
+        RootAllocator current = root;
+        if (current == null) {
+            synchronized (this) {
+                current = root;
+                if (current == null) {
+                    try {
+                        current = new RootAllocator(ROOT_ALLOCATION_LIMIT);
+                    } catch (LinkageError e) {
+                        throw new IllegalStateException(
+                                "Arrow memory is unavailable: start the server with --add-opens=java.base/java.nio=ALL-UNNAMED", e);
+                    }
+                    root = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (root != null) {
+            try {
+                root.close();
+            } catch (IllegalStateException e) {
+                log.warn("Arrow allocator closed with outstanding buffers: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.example.domain.route.service;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.example.domain.route.dto.RouteExportRow;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Выгрузка в Arrow IPC stream: строки копятся в колонках примитивных типов и уходят пачками (record batch).
+ * Буферы колонок переиспользуются между пачками, поэтому память ограничена размером одной пачки.
+ * Писатель владеет переданным аллокатором и закрывает его. Маркер конца потока пишется только finish():
+ * оборванная выгрузка не должна выглядеть для клиента как полная
+ */
+public class ArrowRouteExportWriter implements RouteExportWriter {
+
+    private static final int BATCH_SIZE = 8192;
+    public static final long ALLOCATION_LIMIT = 256L * 1024 * 1024;
+
+    private static final ArrowType FLOAT4 = new ArrowType.FloatingPoint(FloatingPointPrecision.SINGLE);
+    private static final ArrowType FLOAT8 = new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+    private static final ArrowType INT32 = new ArrowType.Int(32, true);
+    private static final ArrowType INT64 = new ArrowType.Int(64, true);
+
+    private static final Schema SCHEMA = new Schema(List.of(
+            field("id", INT32, false),
+            field("name", ArrowType.Utf8.INSTANCE, false),
+            field("coordinates_x", FLOAT4, false),
+            field("coordinates_y", FLOAT8, true),
+            field("from_x", FLOAT8, true),
+            field("from_y", FLOAT8, false),
+            field("from_name", ArrowType.Utf8.INSTANCE, true),
+            field("to_x", FLOAT8, true),
+            field("to_y", FLOAT8, false),
+            field("to_name", ArrowType.Utf8.INSTANCE, true),
+            field("distance", INT64, false),
+            field("rating", INT64, false),
+            field("creation_date", new ArrowType.Timestamp(TimeUnit.MICROSECOND, "UTC"), false)
+    ));
+
+    private final BufferAllocator allocator;
+    private final VectorSchemaRoot root;
+    private final ArrowStreamWriter writer;
+
+    private final IntVector id;
+    private final VarCharVector name;
+    private final Float4Vector coordinatesX;
+    private final Float8Vector coordinatesY;
+    private final Float8Vector fromX;
+    private final Float8Vector fromY;
+    private final VarCharVector fromName;
+    private final Float8Vector toX;
+    private final Float8Vector toY;
+    private final VarCharVector toName;
+    private final BigIntVector distance;
+    private final BigIntVector rating;
+    private final TimeStampMicroTZVector creationDate;
+
+    private int rowCount;
+    private boolean finished;
+
+    public ArrowRouteExportWriter(OutputStream output, BufferAllocator allocator) {
+        this.allocator = allocator;
+        try {
+            this.root = VectorSchemaRoot.create(SCHEMA, allocator);
+        } catch (RuntimeException e) {
+            allocator.close();
+            throw e;
+        }
+        // Закрытие писателя закрывает канал, а поток ответа закрывает контейнер
+        OutputStream unclosable = new FilterOutputStream(output) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        this.writer = new ArrowStreamWriter(root, null, Channels.newChannel(unclosable));
+
+        this.id = (IntVector) root.getVector("id");
+        this.name = (VarCharVector) root.getVector("name");
+        this.coordinatesX = (Float4Vector) root.getVector("coordinates_x");
+        this.coordinatesY = (Float8Vector) root.getVector("coordinates_y");
+        this.fromX = (Float8Vector) root.getVector("from_x");
+        this.fromY = (Float8Vector) root.getVector("from_y");
+        this.fromName = (VarCharVector) root.getVector("from_name");
+        this.toX = (Float8Vector) root.getVector("to_x");
+        this.toY = (Float8Vector) root.getVector("to_y");
+        this.toName = (VarCharVector) root.getVector("to_name");
+        this.distance = (BigIntVector) root.getVector("distance");
+        this.rating = (BigIntVector) root.getVector("rating");
+        this.creationDate = (TimeStampMicroTZVector) root.getVector("creation_date");
+    }
+
+    @Override
+    public void writeHeader() throws IOException {
+        writer.start();
+    }
+
+    @Override
+    public void write(RouteExportRow row) throws IOException {
+        int index = rowCount;
+        id.setSafe(index, row.id());
+        setText(name, index, row.name());
+        coordinatesX.setSafe(index, row.coordinatesX());
+        setDouble(coordinatesY, index, row.coordinatesY());
+        setDouble(fromX, index, row.fromX());
+        fromY.setSafe(index, row.fromY());
+        setText(fromName, index, row.fromName());
+        setDouble(toX, index, row.toX());
+        toY.setSafe(index, row.toY());
+        setText(toName, index, row.toName());
+        distance.setSafe(index, row.distance());
+        rating.setSafe(index, row.rating());
+        creationDate.setSafe(index, toMicros(row.creationDate().toInstant()));
+
+        if (++rowCount == BATCH_SIZE) {
+            writeBatch();
+        }
+    }
+
+    @Override
+    public void flush() {
+        // Пачка уходит клиенту, только когда заполнена: у каждой пачки свои метаданные и выравнивание буферов
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (rowCount > 0) {
+            writeBatch();
+        }
+        writer.end();
+        finished = true;
+    }
+
+    @Override
+    public void close() {
+        // ArrowStreamWriter.close() дописал бы маркер конца потока, поэтому после сбоя он не вызывается
+        if (finished) {
+            writer.close();
+        }
+        root.close();
+        allocator.close();
+    }
+
+    private void writeBatch() throws IOException {
+        root.setRowCount(rowCount);
+        writer.writeBatch();
+        for (FieldVector vector : root.getFieldVectors()) {
+            vector.reset();
+        }
+        rowCount = 0;
+    }
+
+    private static void setText(VarCharVector vector, int index, String value) {
+        if (value != null) {
+            vector.setSafe(index, value.getBytes(StandardCharsets.UTF_8));
+        } else {
+            vector.setNull(index);
+        }
+    }
+
+    private static void setDouble(Float8Vector vector, int index, Double value) {
+        if (value != null) {
+            vector.setSafe(index, value);
+        } else {
+            vector.setNull(index);
+        }
+    }
+
+    private static long toMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+
+    private static Field field(String name, ArrowType type, boolean nullable) {
+        return new Field(name, new FieldType(nullable, type, null), null);
+    }
+}
@@ -0,0 +1,107 @@
+package org.example.domain.route.service;
+
+import org.example.domain.import_history.service.RouteImportService;
+import org.example.domain.route.dto.RouteExportRow;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Выгрузка в CSV с колонками импорта. Текст берется в кавычки, только если в нем есть запятая, кавычка
+ * или перевод строки, - так же, как его разбирает CsvLineTokenizer
+ */
+public class CsvRouteExportWriter implements RouteExportWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer writer;
+
+    public CsvRouteExportWriter(OutputStream output) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Override
+    public void writeHeader() throws IOException {
+        writer.write(String.join(",", RouteImportService.csvHeaders()));
+        writer.write('\n');
+    }
+
+    @Override
+    public void write(RouteExportRow row) throws IOException {
+        writeText(row.name());
+        writer.write(',');
+        writer.write(Float.toString(row.coordinatesX()));
+        writer.write(',');
+        writeValue(row.coordinatesY());
+        writer.write(',');
+        writeValue(row.fromX());
+        writer.write(',');
+        writer.write(Double.toString(row.fromY()));
+        writer.write(',');
+        writeText(row.fromName());
+        writer.write(',');
+        writeValue(row.toX());
+        writer.write(',');
+        writer.write(Double.toString(row.toY()));
+        writer.write(',');
+        writeText(row.toName());
+        writer.write(',');
+        writeValue(row.distance());
+        writer.write(',');
+        writeValue(row.rating());
+        writer.write('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value != null) {
+            writer.write(value.toString());
+        }
+    }
+
+    private void writeText(String text) throws IOException {
+        if (text == null) {
+            return;
+        }
+        if (!needsQuotes(text)) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
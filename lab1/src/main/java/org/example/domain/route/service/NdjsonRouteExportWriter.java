@@ -0,0 +1,87 @@
+package org.example.domain.route.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.example.domain.route.dto.RouteExportRow;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Выгрузка в NDJSON: один плоский объект маршрута на строку, с теми же именами полей, что читает JSON импорт
+ */
+public class NdjsonRouteExportWriter implements RouteExportWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonGenerator generator;
+
+    public NdjsonRouteExportWriter(OutputStream output) {
+        try {
+            this.generator = JSON_FACTORY.createGenerator(output, JsonEncoding.UTF8)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    // Корневые объекты разделяются переводом строки из write, а не пробелом по умолчанию
+                    .setRootValueSeparator(null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void writeHeader() {
+    }
+
+    @Override
+    public void write(RouteExportRow row) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", row.id());
+        generator.writeStringField("name", row.name());
+        generator.writeNumberField("coordinates_x", row.coordinatesX());
+        writeNumber("coordinates_y", row.coordinatesY());
+        writeNumber("from_x", row.fromX());
+        generator.writeNumberField("from_y", row.fromY());
+        generator.writeStringField("from_name", row.fromName());
+        writeNumber("to_x", row.toX());
+        generator.writeNumberField("to_y", row.toY());
+        generator.writeStringField("to_name", row.toName());
+        writeNumber("distance", row.distance());
+        writeNumber("rating", row.rating());
+        generator.writeStringField("creation_date",
+                row.creationDate() != null ? row.creationDate().toOffsetDateTime().toString() : null);
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+    private void writeNumber(String field, Double value) throws IOException {
+        if (value != null) {
+            generator.writeNumberField(field, value);
+        } else {
+            generator.writeNullField(field);
+        }
+    }
+
+    private void writeNumber(String field, Long value) throws IOException {
+        if (value != null) {
+            generator.writeNumberField(field, value);
+        } else {
+            generator.writeNullField(field);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.domain.route.service;
+
+import jakarta.annotation.Resource;
+import jakarta.ejb.Lock;
+import jakarta.ejb.LockType;
+import jakarta.ejb.Singleton;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.example.service.AfterCommitCache;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Кэш точного числа маршрутов по фильтру имени. Любое изменение маршрутов может поменять число для любого
+ * фильтра, поэтому запись маршрута сбрасывает кэш целиком; TTL ограничивает устаревание при изменениях на других узлах
+ */
+@Singleton
+@Lock(LockType.READ)
+public class RouteCountCache {
+
+    private static final Duration TTL = Duration.ofSeconds(60);
+    // Фильтр вводит пользователь, поэтому число ключей ограничено
+    private static final int MAX_ENTRIES = 1000;
+
+    private final AfterCommitCache<String, Long> counts = new AfterCommitCache<>(TTL, MAX_ENTRIES);
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionRegistry;
+
+    public long get(String nameFilter, Supplier<Long> loader) {
+        String key = nameFilter != null ? nameFilter.trim().toLowerCase() : "";
+        return counts.get(key, loader);
+    }
+
+    /**
+     * Сбрасывает кэш после завершения текущей транзакции
+     */
+    public void invalidate() {
+        counts.invalidateAll(transactionRegistry);
+    }
+}
@@ -0,0 +1,23 @@
+package org.example.domain.route.service;
+
+import java.util.Locale;
+
+/**
+ * Способ подсчета общего числа маршрутов для страницы списка.
+ * EXACT - COUNT(*) на каждый запрос, CACHED - точный подсчет, закэшированный по фильтру до изменения маршрутов,
+ * ESTIMATED - оценка по статистике планировщика (только без фильтра, с фильтром как CACHED), NONE - без подсчета
+ */
+public enum RouteCountMode {
+    EXACT,
+    CACHED,
+    ESTIMATED,
+    NONE;
+
+    public static RouteCountMode fromString(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Unsupported count mode: " + value);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.domain.route.service;
+
+import org.apache.arrow.memory.BufferAllocator;
+
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Формат выгрузки маршрутов. CSV повторяет колонки импорта, NDJSON - поля JSON импорта плюс id и creation_date,
+ * поэтому обе выгрузки можно загрузить обратно. ARROW - колоночный Arrow IPC stream для аналитики
+ */
+public enum RouteExportFormat {
+    // Кодировка указывается только у текстовых форматов: Arrow - двоичный поток
+    CSV("text/csv; charset=UTF-8", "csv"),
+    NDJSON("application/x-ndjson; charset=UTF-8", "ndjson"),
+    ARROW("application/vnd.apache.arrow.stream", "arrows");
+
+    private final String mediaType;
+    private final String extension;
+
+    RouteExportFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    /**
+     * arrowAllocator вызывается только для ARROW
+     */
+    public RouteExportWriter newWriter(OutputStream output, Supplier<BufferAllocator> arrowAllocator) {
+        return switch (this) {
+            case CSV -> new CsvRouteExportWriter(output);
+            case NDJSON -> new NdjsonRouteExportWriter(output);
+            case ARROW -> new ArrowRouteExportWriter(output, arrowAllocator.get());
+        };
+    }
+
+    public static RouteExportFormat fromString(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Unsupported export format: " + value);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.domain.route.service;
+
+import jakarta.annotation.Resource;
+import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionManagement;
+import jakarta.ejb.TransactionManagementType;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.UserTransaction;
+import lombok.extern.slf4j.Slf4j;
+import org.example.domain.route.dto.RouteExportRow;
+import org.example.domain.route.repository.RouteRepositoryMB;
+import org.hibernate.ScrollableResults;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Потоковая выгрузка всех маршрутов. Курсор PostgreSQL живет только внутри транзакции, поэтому выгрузка
+ * управляет ею сама: большая выгрузка может идти дольше стандартного таймаута транзакции
+ */
+@Slf4j
+@Stateless
+@TransactionManagement(TransactionManagementType.BEAN)
+public class RouteExportServiceMB {
+
+    // Сколько строк драйвер получает с сервера за одно обращение к курсору
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final int EXPORT_TRANSACTION_TIMEOUT_SECONDS = 3600;
+
+    @Inject
+    private RouteRepositoryMB routeRepository;
+
+    @Inject
+    private ArrowAllocatorService arrowAllocators;
+
+    @Resource
+    private UserTransaction userTransaction;
+
+    /**
+     * Пишет все маршруты в output в порядке id и возвращает их число
+     */
+    public long export(RouteExportFormat format, OutputStream output) throws IOException {
+        long exported = 0;
+        try {
+            userTransaction.setTransactionTimeout(EXPORT_TRANSACTION_TIMEOUT_SECONDS);
+            userTransaction.begin();
+
+            try (RouteExportWriter writer = format.newWriter(output, () -> arrowAllocators.newChildAllocator(
+                    "route-export", ArrowRouteExportWriter.ALLOCATION_LIMIT));
+                 ScrollableResults<RouteExportRow> rows = routeRepository.scrollForExport(EXPORT_FETCH_SIZE)) {
+                writer.writeHeader();
+                while (rows.next()) {
+                    writer.write(rows.get());
+                    exported++;
+                    // Отдаем клиенту каждую прочитанную с сервера пачку, не дожидаясь конца выгрузки
+                    if (exported % EXPORT_FETCH_SIZE == 0) {
+                        writer.flush();
+                    }
+                }
+                writer.finish();
+            }
+
+            userTransaction.commit();
+            log.info("Exported {} routes as {}", exported, format);
+            return exported;
+        } catch (IOException e) {
+            // Обычно клиент закрыл соединение посреди выгрузки
+            log.warn("Route export interrupted after {} routes: {}", exported, e.getMessage());
+            rollback();
+            throw e;
+        } catch (Exception e) {
+            log.error("Route export failed after {} routes", exported, e);
+            rollback();
+            throw new IllegalStateException("Route export failed: " + e.getMessage(), e);
+        } finally {
+            try {
+                userTransaction.setTransactionTimeout(0);
+            } catch (Exception e) {
+                log.debug("Failed to reset export transaction timeout", e);
+            }
+        }
+    }
+
+    private void rollback() {
+        try {
+            if (userTransaction.getStatus() != Status.STATUS_NO_TRANSACTION) {
+                userTransaction.rollback();
+            }
+        } catch (Exception e) {
+            log.error("Failed to roll back export transaction", e);
+        }
+    }
+}
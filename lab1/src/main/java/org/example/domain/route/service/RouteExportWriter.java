@@ -0,0 +1,27 @@
+package org.example.domain.route.service;
+
+import org.example.domain.route.dto.RouteExportRow;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Потоковая запись выгрузки маршрутов: строки пишутся по одной, без накопления всей выгрузки в памяти.
+ * close() освобождает ресурсы писателя, но не закрывает выходной поток
+ */
+public interface RouteExportWriter extends Closeable {
+
+    void writeHeader() throws IOException;
+
+    void write(RouteExportRow row) throws IOException;
+
+    /**
+     * Отправляет накопленное клиенту, не завершая выгрузку
+     */
+    void flush() throws IOException;
+
+    /**
+     * Дописывает конец выгрузки; выходной поток закрывает вызывающий код
+     */
+    void finish() throws IOException;
+}
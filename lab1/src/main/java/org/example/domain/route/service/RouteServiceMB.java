@@ -28,6 +28,7 @@ import org.example.domain.route.dto.RouteCursorPageDto;
 import org.example.exception.RouteNameAlreadyExistsException;
 import org.example.exception.RouteZeroDistanceException;
 import org.example.config.cache.CacheStatsLogging;
+import org.example.service.NameIndexService;
 
 import java.util.HashMap;
 import java.util.List;
@@ -55,6 +56,12 @@ public class RouteServiceMB {
     @Inject
     private LocationRepositoryMB locationRepository;
 
+    @Inject
+    private RouteCountCache countCache;
+
+    @Inject
+    private NameIndexService nameIndex;
+
     @PersistenceContext(unitName = "RoutesPU")
     private EntityManager em;
     
@@ -155,6 +162,8 @@ public class RouteServiceMB {
     @CacheStatsLogging
     public RouteDto createRoute(RouteCreateDto dto) {
         log.info("SERVICE: Starting route creation: {}", dto);
+        // Сброс выполнится после завершения транзакции, откат лишь заставит пересчитать число
+        countCache.invalidate();
         
         try {
             // Проверяем уникальность имени на уровне бизнес-логики
@@ -263,7 +272,7 @@ public class RouteServiceMB {
     @Lock(LockType.READ)
     @CacheStatsLogging
     public RouteDto findById(Integer id) {
-        Route route = routeRepository.findById(id);
+        Route route = routeRepository.findFullById(id);
         if (route == null) {
             throw new IllegalArgumentException("Route not found with id: " + id);
         }
@@ -277,24 +286,22 @@ public class RouteServiceMB {
     @CacheStatsLogging
     public List<RouteDto> findAll() {
         log.info("Finding all routes");
-        List<Route> routes = routeRepository.findAll();
-        return routes.stream()
-                .map(RouteMapper::toDto)
-                .collect(Collectors.toList());
+        return routeRepository.findAll();
     }
 
     /**
-     * Простая offset/limit пагинация (заменяет cursor пагинацию)
+     * Offset пагинация для перехода на произвольную страницу; курсоры результата позволяют листать дальше по ключу
      */
     @Lock(LockType.READ)
-    public List<RouteDto> findPaginated(int page, int size, String nameFilter, String sortBy, String sortDirection) {
+    public RouteCursorPageDto findPaginated(int page, int size, String nameFilter, String sortBy, String sortDirection,
+                                            RouteCountMode countMode) {
         log.info("Finding paginated routes: page={}, size={}, filter='{}', sortBy={}, direction={}",
                 page, size, nameFilter, sortBy, sortDirection);
         
-        List<Route> routes = routeRepository.findPaginated(page, size, nameFilter, sortBy, sortDirection);
-        return routes.stream()
-                .map(RouteMapper::toDto)
-                .collect(Collectors.toList());
+        String sortField = CompositeCursor.normalizeSortField(sortBy);
+        List<RouteDto> routes = routeRepository.findPaginated(page * size, size + 1, nameFilter, sortField, sortDirection);
+        boolean hasNext = routes.size() > size;
+        return RouteCursorPageDto.of(hasNext ? routes.subList(0, size) : routes, hasNext, page > 0, countRoutes(nameFilter, countMode), sortField, sortDirection);
     }
 
     @Lock(LockType.READ)
@@ -307,131 +314,105 @@ public class RouteServiceMB {
         return routeRepository.countWithFilter(nameFilter);
     }
 
-    // Основная пагинация
-    
-    /**
-     * Получить первую страницу маршрутов
-     */
-    public RouteCursorPageDto findFirstPage(int size, String nameFilter) {
-        return findFirstPage(size, nameFilter, "id", "asc");
-    }
-    
-    public RouteCursorPageDto findFirstPage(int size, String nameFilter, String sortBy, String sortDirection) {
-        log.info("Finding first page: size={}, filter='{}', sortBy={}, direction={}",
-                size, nameFilter, sortBy, sortDirection);
-        
-        List<Route> routes = routeRepository.findFirstPage(size, nameFilter, sortBy, sortDirection);
-        List<RouteDto> routeDtos = routes.stream()
-                .map(RouteMapper::toDto)
-                .collect(Collectors.toList());
-        
-        // Для первой страницы вычисляем общий count
-        long totalCount = countWithFilter(nameFilter);
-        
-        return RouteCursorPageDto.first(routeDtos, size, totalCount, sortBy, sortDirection);
-    }
-    
     /**
-     * Получить следующую страницу после указанного cursor'а (с композитными курсорами)
+     * Общее число маршрутов для страницы списка выбранным способом
      */
-    public RouteCursorPageDto findNextPage(String encodedCursor, int size, String nameFilter) {
-        log.info("Finding next page: cursor={}, size={}, filter='{}'", encodedCursor, size, nameFilter);
-        
-        if (encodedCursor == null || !encodedCursor.startsWith("id:")) {
-            return findFirstPage(size, nameFilter, "id", "asc");
-        }
-        
-        try {
-            // Парсим простой cursor: "id:123"
-            Integer cursorId = Integer.parseInt(encodedCursor.substring(3));
-            
-            List<Route> routes = routeRepository.findFirstPage(size + 1, nameFilter, "id", "asc");
-            // Фильтруем routes после cursor
-            List<Route> filteredRoutes = routes.stream()
-                    .filter(route -> route.getId() > cursorId)
-                    .limit(size)
-                    .collect(Collectors.toList());
-            
-            List<RouteDto> routeDtos = filteredRoutes.stream()
-                    .map(RouteMapper::toDto)
-                    .collect(Collectors.toList());
-            
-            // Вычисляем общий count для корректной работы UI
-            long totalCount = countWithFilter(nameFilter);
-            return RouteCursorPageDto.next(routeDtos, size, totalCount, "id", "asc");
-            
-        } catch (Exception e) {
-            log.warn("Invalid cursor format, returning first page: {}", e.getMessage());
-            return findFirstPage(size, nameFilter, "id", "asc");
+    @Lock(LockType.READ)
+    public RouteCountDto countRoutes(String nameFilter, RouteCountMode mode) {
+        boolean filtered = nameFilter != null && !nameFilter.trim().isEmpty();
+        switch (mode) {
+            case NONE:
+                return RouteCountDto.none();
+            case EXACT:
+                return RouteCountDto.exact(countWithFilter(nameFilter));
+            case ESTIMATED:
+                // Для LIKE '%x%' статистика дает лишь грубую селективность, поэтому фильтр считается точно через кэш
+                if (!filtered) {
+                    long estimate = routeRepository.estimateCount();
+                    if (estimate >= 0) {
+                        return RouteCountDto.estimate(estimate);
+                    }
+                }
+                return RouteCountDto.exact(countCache.get(nameFilter, () -> countWithFilter(nameFilter)));
+            case CACHED:
+            default:
+                return RouteCountDto.exact(countCache.get(nameFilter, () -> countWithFilter(nameFilter)));
         }
     }
-    
-    public RouteCursorPageDto findNextPage(CompositeCursor cursor, int size, String nameFilter) {
-        // Для совместимости - используем простой cursor
-        return findNextPage("id:" + cursor.id(), size, nameFilter);
-    }
-    
+
+    // Keyset пагинация: страница читается по индексу от позиции курсора, цена не зависит от глубины листания
+
     /**
-     * Получить предыдущую страницу до указанного cursor'а (с композитными курсорами)
+     * Страница по курсору: без курсора - первая страница, иначе следующая или предыдущая относительно курсора.
+     * Курсор, выданный для другой сортировки, игнорируется. Бросает IllegalArgumentException для битого курсора
      */
-    public RouteCursorPageDto findPrevPage(String encodedCursor, int size, String nameFilter) {
-        log.info("Finding prev page: cursor={}, size={}, filter='{}'", encodedCursor, size, nameFilter);
-        
-        if (encodedCursor == null || !encodedCursor.startsWith("id:")) {
-            return findFirstPage(size, nameFilter, "id", "asc");
+    @Lock(LockType.READ)
+    public RouteCursorPageDto findPage(String encodedCursor, boolean backward, int size, String nameFilter,
+                                       String sortBy, String sortDirection, RouteCountMode countMode) {
+        String sortField = CompositeCursor.normalizeSortField(sortBy);
+        String direction = "desc".equalsIgnoreCase(sortDirection) ? "desc" : "asc";
+        CompositeCursor cursor = CompositeCursor.decode(encodedCursor);
+        if (cursor != null && (!cursor.sortField().equals(sortField) || !cursor.sortDirection().equals(direction))) {
+            log.debug("Cursor {} does not match sort {} {}, starting from the first page", cursor, sortField, direction);
+            cursor = null;
         }
-        
-        try {
-            // Парсим простой cursor: "id:123"
-            Integer cursorId = Integer.parseInt(encodedCursor.substring(3));
-            
-            List<Route> routes = routeRepository.findFirstPage(size + 1, nameFilter, "id", "desc");
-            // Фильтруем routes до cursor и разворачиваем обратно
-            List<Route> filteredRoutes = routes.stream()
-                    .filter(route -> route.getId() < cursorId)
-                    .limit(size)
-                    .sorted((r1, r2) -> Integer.compare(r1.getId(), r2.getId())) // Сортируем обратно по возрастанию
-                    .collect(Collectors.toList());
-            
-            List<RouteDto> routeDtos = filteredRoutes.stream()
-                    .map(RouteMapper::toDto)
-                    .collect(Collectors.toList());
-            
-            // Вычисляем общий count для корректной работы UI
-            long totalCount = countWithFilter(nameFilter);
-            return RouteCursorPageDto.prev(routeDtos, size, totalCount, "id", "asc");
-            
-        } catch (Exception e) {
-            log.warn("Invalid cursor format, returning first page: {}", e.getMessage());
-            return findFirstPage(size, nameFilter, "id", "asc");
+        log.info("Finding keyset page: cursor={}, backward={}, size={}, filter='{}', sortBy={}, direction={}",
+                cursor, backward, size, nameFilter, sortField, direction);
+
+        // Лишняя строка показывает, есть ли еще страница в направлении чтения
+        List<RouteDto> routes;
+        boolean hasNext;
+        boolean hasPrev;
+        if (cursor == null) {
+            routes = routeRepository.findFirstPage(size + 1, nameFilter, sortField, direction);
+            hasNext = routes.size() > size;
+            hasPrev = false;
+            if (hasNext) {
+                routes = routes.subList(0, size);
+            }
+        } else if (backward) {
+            // Результат уже развернут в порядок сортировки, лишняя строка оказывается первой
+            routes = routeRepository.findPrevPage(cursor, size + 1, nameFilter);
+            hasPrev = routes.size() > size;
+            hasNext = true;
+            if (hasPrev) {
+                routes = routes.subList(1, routes.size());
+            }
+        } else {
+            routes = routeRepository.findNextPage(cursor, size + 1, nameFilter);
+            hasNext = routes.size() > size;
+            hasPrev = true;
+            if (hasNext) {
+                routes = routes.subList(0, size);
+            }
         }
+
+        return RouteCursorPageDto.of(routes, hasNext, hasPrev, countRoutes(nameFilter, countMode), sortField, direction);
     }
-    
-    public RouteCursorPageDto findPrevPage(CompositeCursor cursor, int size, String nameFilter) {
-        // Для совместимости - используем простой cursor
-        return findPrevPage("id:" + cursor.id(), size, nameFilter);
-    }
-    
+
     /**
-     * Универсальный метод пагинации с композитными курсорами
+     * Поиск маршрутов по похожести имени с сохранением порядка ранжирования
      */
-    public RouteCursorPageDto findPage(String encodedCursor, int size, String nameFilter,
-                                      String sortBy, String sortDirection) {
-        if (encodedCursor == null || encodedCursor.trim().isEmpty()) {
-            // Первая страница
-            return findFirstPage(size, nameFilter, sortBy, sortDirection);
-        } else {
-            // Последующие страницы - пока только для ID сортировки
-            return findNextPage(encodedCursor, size, nameFilter);
+    @Lock(LockType.READ)
+    public List<RouteSearchResultDto> searchByName(String query, int limit) {
+        List<RouteRepositoryMB.NameMatch> matches = routeRepository.findSimilarByName(query, limit);
+        Map<Integer, RouteDto> routesById = new HashMap<>();
+        for (RouteDto route : routeRepository.findByIds(matches.stream().map(RouteRepositoryMB.NameMatch::id).toList())) {
+            routesById.put(route.id(), route);
         }
+        // Маршрут мог быть удален между запросами
+        return matches.stream()
+                .filter(match -> routesById.containsKey(match.id()))
+                .map(match -> new RouteSearchResultDto(routesById.get(match.id()), match.score()))
+                .collect(Collectors.toList());
     }
-    
 
     @Lock(LockType.WRITE)
     @AccessTimeout(value = 60, unit = TimeUnit.SECONDS)
     @CacheStatsLogging
     public RouteDto updateRoute(RouteUpdateDto dto) {
         log.info("UPDATE SERVICE: Starting route update for ID: {}", dto.id());
+        countCache.invalidate();
         
         try {
             log.info("UPDATE SERVICE: Validating route name uniqueness");
@@ -489,7 +470,7 @@ public class RouteServiceMB {
     public Map<String, Object> checkDependencies(Integer id) {
         log.info("Checking dependencies for route with id {}", id);
         
-        Route routeToDelete = routeRepository.findById(id);
+        Route routeToDelete = routeRepository.findFullById(id);
         if (routeToDelete == null) {
             throw new IllegalArgumentException("Route not found with id: " + id);
         }
@@ -569,6 +550,7 @@ public class RouteServiceMB {
     @CacheStatsLogging
     public void delete(Integer id) {
         log.info("DELETE SERVICE: Starting deletion for route with id {}", id);
+        countCache.invalidate();
         
         // Проверка существования маршрута в самом начале
         Route routeExists = routeRepository.findById(id);
@@ -634,6 +616,7 @@ public class RouteServiceMB {
                                    Integer fromLocationTargetRouteId, Integer toLocationTargetRouteId) {
         log.info("DELETE_REBIND SERVICE: Starting deletion with rebinding for route id {}, coordinates -> {}, from -> {}, to -> {}",
             id, coordinatesTargetRouteId, fromLocationTargetRouteId, toLocationTargetRouteId);
+        countCache.invalidate();
         
         // Проверка существования маршрута в самом начале
         Route routeExists = routeRepository.findById(id);
@@ -645,7 +628,7 @@ public class RouteServiceMB {
         
         try {
             // ИСПОЛЬЗУЕМ ЕДИНЫЙ EntityManager для всех операций
-            Route routeToDelete = em.find(Route.class, id);
+            Route routeToDelete = routeRepository.findForOwnershipTransfer(id);
             if (routeToDelete == null) {
                 throw new IllegalArgumentException("Route not found with id: " + id);
             }
@@ -765,6 +748,13 @@ public class RouteServiceMB {
         return route != null ? RouteMapper.toDto(route) : null;
     }
 
+    /**
+     * Автодополнение имени маршрута по префиксу без учета регистра из индекса имен
+     */
+    public List<String> findRouteNamesStartingWith(String prefix, int limit) {
+        return nameIndex.findRouteNamesStartingWith(prefix, limit);
+    }
+
     public long countRoutesWithRatingLessThan(Long ratingThreshold) {
         log.info("Counting routes with rating less than {}", ratingThreshold);
         return routeRepository.countRoutesWithRatingLessThan(ratingThreshold);
@@ -772,16 +762,12 @@ public class RouteServiceMB {
 
     public List<RouteDto> findRoutesWithRatingGreaterThan(Long ratingThreshold) {
         log.info("Finding routes with rating greater than {}", ratingThreshold);
-        return routeRepository.findRoutesWithRatingGreaterThan(ratingThreshold).stream()
-                .map(RouteMapper::toDto)
-                .collect(Collectors.toList());
+        return routeRepository.findRoutesWithRatingGreaterThan(ratingThreshold);
     }
 
     public List<RouteDto> findRoutesBetweenLocations(String fromLocationName, String toLocationName, String sortBy) {
         log.info("Finding routes between {} and {} sorted by {}", fromLocationName, toLocationName, sortBy);
-        return routeRepository.findRoutesBetweenLocations(fromLocationName, toLocationName, sortBy).stream()
-                .map(RouteMapper::toDto)
-                .collect(Collectors.toList());
+        return routeRepository.findRoutesBetweenLocations(fromLocationName, toLocationName, sortBy);
     }
 
 
@@ -807,6 +793,10 @@ public class RouteServiceMB {
         return locationService.findDistinctNames();
     }
 
+    public List<LocationDto> getAvailableLocationsByNamePrefix(String prefix, int limit) {
+        return locationService.findByNamePrefix(prefix, limit);
+    }
+
     public CoordinatesDto getOrCreateCoordinates(CoordinatesDto coordinatesDto) {
         return coordinatesService.findOrCreate(coordinatesDto);
     }
@@ -831,7 +821,7 @@ public class RouteServiceMB {
             id, coordinatesTargetId, fromLocationTargetId, toLocationTargetId);
         
         // Загружаем все объекты через ЕДИНЫЙ EntityManager
-        Route routeToDelete = em.find(Route.class, id);
+        Route routeToDelete = routeRepository.findForOwnershipTransfer(id);
         if (routeToDelete == null) {
             throw new IllegalArgumentException("Route not found with id: " + id);
         }
@@ -894,7 +884,7 @@ public class RouteServiceMB {
         log.info("Deleting route {} without ownership transfer", id);
         
         // Загружаем объект через единый EntityManager
-        Route routeToDelete = em.find(Route.class, id);
+        Route routeToDelete = routeRepository.findForOwnershipTransfer(id);
         if (routeToDelete == null) {
             throw new IllegalArgumentException("Route not found with id: " + id);
         }
@@ -1045,14 +1035,9 @@ public class RouteServiceMB {
             if (dto.name() != null) {
                 try {
                     // Ищем конфликтующий маршрут
-                    List<Route> conflictingRoutes = em.createQuery(
-                                    "SELECT r FROM Route r WHERE LOWER(r.name) = LOWER(:name)",
-                                    Route.class)
-                            .setParameter("name", dto.name().trim())
-                            .getResultList();
-
-                    if (!conflictingRoutes.isEmpty()) {
-                        Route conflictingRoute = conflictingRoutes.get(0);
+                    Route conflictingRoute = routeRepository.findByNameIgnoreCaseExcluding(dto.name().trim(), null);
+
+                    if (conflictingRoute != null) {
                         RouteDto conflictingRouteDto = RouteMapper.toDto(conflictingRoute);
                         log.info("Found conflicting route: ID={}, Name='{}'",
                                 conflictingRouteDto.id(), conflictingRouteDto.name());
@@ -1101,15 +1086,9 @@ public class RouteServiceMB {
             if (dto.name() != null) {
                 try {
                     // Ищем конфликтующий маршрут
-                    List<Route> conflictingRoutes = em.createQuery(
-                                    "SELECT r FROM Route r WHERE LOWER(r.name) = LOWER(:name) AND r.id != :excludeId",
-                                    Route.class)
-                            .setParameter("name", dto.name().trim())
-                            .setParameter("excludeId", dto.id())
-                            .getResultList();
-
-                    if (!conflictingRoutes.isEmpty()) {
-                        Route conflictingRoute = conflictingRoutes.get(0);
+                    Route conflictingRoute = routeRepository.findByNameIgnoreCaseExcluding(dto.name().trim(), dto.id());
+
+                    if (conflictingRoute != null) {
                         RouteDto conflictingRouteDto = RouteMapper.toDto(conflictingRoute);
                         log.info("Found conflicting route during update: ID={}, Name='{}'",
                                 conflictingRouteDto.id(), conflictingRouteDto.name());
@@ -0,0 +1,93 @@
+package org.example.service;
+
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кэш с TTL для результатов запросов, который сбрасывается после завершения транзакции, изменившей данные:
+ * сброс до коммита позволил бы параллельному запросу снова закэшировать старое значение. TTL ограничивает
+ * устаревание при изменениях на других узлах
+ */
+public class AfterCommitCache<K, V> {
+
+    private final Duration ttl;
+    private final int maxEntries;
+    private final Map<K, Cached<V>> entries = new ConcurrentHashMap<>();
+    // Растет при каждом сбросе: значение, загруженное до сброса, не кэшируется, даже если загрузка закончилась после него
+    private final AtomicLong generation = new AtomicLong();
+
+    public AfterCommitCache(Duration ttl, int maxEntries) {
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+    }
+
+    public V get(K key, Supplier<V> loader) {
+        long now = System.nanoTime();
+        Cached<V> cached = entries.get(key);
+        if (cached != null && now < cached.expiresAt()) {
+            return cached.value();
+        }
+        long loadGeneration = generation.get();
+        V loaded = loader.get();
+        if (generation.get() != loadGeneration) {
+            return loaded;
+        }
+        if (entries.size() >= maxEntries) {
+            entries.clear();
+        }
+        Cached<V> entry = new Cached<>(loaded, now + ttl.toNanos());
+        entries.put(key, entry);
+        // Сброс между проверкой и записью мог не увидеть эту запись - убираем ее сами
+        if (generation.get() != loadGeneration) {
+            entries.remove(key, entry);
+        }
+        return loaded;
+    }
+
+    /**
+     * Сбрасывает значение ключа после завершения текущей транзакции (сразу, если транзакции нет)
+     */
+    public void invalidate(TransactionSynchronizationRegistry transactionRegistry, K key) {
+        afterCompletion(transactionRegistry, () -> {
+            generation.incrementAndGet();
+            entries.remove(key);
+        });
+    }
+
+    /**
+     * Сбрасывает весь кэш после завершения текущей транзакции (сразу, если транзакции нет)
+     */
+    public void invalidateAll(TransactionSynchronizationRegistry transactionRegistry) {
+        afterCompletion(transactionRegistry, () -> {
+            generation.incrementAndGet();
+            entries.clear();
+        });
+    }
+
+    // Сброс и после отката: лишний промах кэша дешевле, чем разбор, что именно откатилось
+    private static void afterCompletion(TransactionSynchronizationRegistry transactionRegistry, Runnable reset) {
+        if (transactionRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            reset.run();
+            return;
+        }
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                reset.run();
+            }
+        });
+    }
+
+    private record Cached<V>(V value, long expiresAt) {}
+}
@@ -0,0 +1,176 @@
+package org.example.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Очередь импортов с общим ограничением числа одновременно выполняемых импортов и честным чередованием
+ * пользователей: у каждого пользователя своя очередь, следующий импорт берется у следующего пользователя по кругу,
+ * поэтому пользователь с десятком файлов не задерживает остальных больше, чем на один свой импорт
+ */
+public class FairImportQueue {
+
+    private final int maxRunning;
+    private final int maxQueued;
+    // Порядок ключей - порядок обхода пользователей; обслуженный пользователь переносится в конец
+    private final LinkedHashMap<String, Deque<QueuedImport>> queues = new LinkedHashMap<>();
+    private int running;
+    private int queued;
+
+    private long startedCount;
+    private long inlineStartedCount;
+    private long rejectedCount;
+    private long totalWaitMillis;
+    private long maxWaitMillis;
+
+    public FairImportQueue(int maxRunning, int maxQueued) {
+        this.maxRunning = maxRunning;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Ставит импорт в очередь пользователя; при заполненной очереди бросает RejectedExecutionException
+     */
+    public synchronized void enqueue(String username, Integer operationId, Runnable task) {
+        if (queued >= maxQueued) {
+            rejectedCount++;
+            throw new RejectedExecutionException("Import queue is full (" + maxQueued + " imports waiting)");
+        }
+        queues.computeIfAbsent(username, key -> new ArrayDeque<>())
+                .addLast(new QueuedImport(username, operationId, task, System.currentTimeMillis()));
+        queued++;
+    }
+
+    /**
+     * Следующий импорт, которому можно начать выполнение, или null, если слотов нет или очередь пуста.
+     * Возвращенный импорт занимает слот до вызова release() или requeue()
+     */
+    public synchronized QueuedImport pollNext() {
+        if (running >= maxRunning || queued == 0) {
+            return null;
+        }
+        Iterator<Map.Entry<String, Deque<QueuedImport>>> users = queues.entrySet().iterator();
+        Map.Entry<String, Deque<QueuedImport>> next = users.next();
+        users.remove();
+        QueuedImport queuedImport = next.getValue().pollFirst();
+        if (!next.getValue().isEmpty()) {
+            queues.put(next.getKey(), next.getValue());
+        }
+
+        queued--;
+        running++;
+        return queuedImport;
+    }
+
+    /**
+     * Учитывает время ожидания импорта, который передан исполнителю
+     */
+    public synchronized void started(QueuedImport queuedImport) {
+        startedCount++;
+        long waitMillis = System.currentTimeMillis() - queuedImport.enqueuedAt();
+        totalWaitMillis += waitMillis;
+        maxWaitMillis = Math.max(maxWaitMillis, waitMillis);
+    }
+
+    /**
+     * Возвращает импорт, который не удалось передать исполнителю, в начало очереди и освобождает его слот:
+     * он будет выдан первым, с прежним временем постановки в очередь
+     */
+    public synchronized void requeue(QueuedImport queuedImport) {
+        Deque<QueuedImport> userQueue = queues.remove(queuedImport.username());
+        if (userQueue == null) {
+            userQueue = new ArrayDeque<>();
+        }
+        userQueue.addFirst(queuedImport);
+        Map<String, Deque<QueuedImport>> others = new LinkedHashMap<>(queues);
+        queues.clear();
+        queues.put(queuedImport.username(), userQueue);
+        queues.putAll(others);
+        queued++;
+        running--;
+    }
+
+    /**
+     * Занимает слот для импорта, который выполняется сразу в потоке запроса; не обгоняет ожидающие импорты
+     */
+    public synchronized boolean tryAcquire() {
+        if (running >= maxRunning || queued > 0) {
+            rejectedCount++;
+            return false;
+        }
+        running++;
+        inlineStartedCount++;
+        return true;
+    }
+
+    public synchronized void release() {
+        running--;
+    }
+
+    public int getMaxRunning() {
+        return maxRunning;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    public synchronized int getQueuedUsers() {
+        return queues.size();
+    }
+
+    public synchronized long getStartedCount() {
+        return startedCount;
+    }
+
+    /**
+     * Импорты, выполненные сразу в потоке запроса; в среднее время ожидания не входят
+     */
+    public synchronized long getInlineStartedCount() {
+        return inlineStartedCount;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Среднее ожидание импортов, прошедших через очередь
+     */
+    public synchronized long getAverageWaitMillis() {
+        return startedCount == 0 ? 0 : totalWaitMillis / startedCount;
+    }
+
+    public synchronized long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Время ожидания самого старого импорта в очереди
+     */
+    public synchronized long getOldestWaitMillis() {
+        long now = System.currentTimeMillis();
+        long oldest = 0;
+        for (Deque<QueuedImport> userQueue : queues.values()) {
+            QueuedImport first = userQueue.peekFirst();
+            if (first != null) {
+                oldest = Math.max(oldest, now - first.enqueuedAt());
+            }
+        }
+        return oldest;
+    }
+
+    public record QueuedImport(String username, Integer operationId, Runnable task, long enqueuedAt) {}
+}
@@ -0,0 +1,69 @@
+package org.example.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Сжатие файлов импорта в хранилище. Кодек записывается в операцию импорта тем же токеном,
+ * что и в HTTP заголовке Content-Encoding; null означает файл без сжатия
+ */
+public final class FileCompression {
+
+    public static final String GZIP = "gzip";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private FileCompression() {
+    }
+
+    public static boolean isSupported(String contentEncoding) {
+        return contentEncoding == null || GZIP.equals(contentEncoding);
+    }
+
+    /**
+     * Поток, который сжимает записанные в него байты; закрытие дописывает конец архива и закрывает target
+     */
+    public static OutputStream compressing(OutputStream target, String contentEncoding) throws IOException {
+        if (contentEncoding == null) {
+            return target;
+        }
+        checkSupported(contentEncoding);
+        return new GZIPOutputStream(target, BUFFER_SIZE);
+    }
+
+    /**
+     * Поток распакованного содержимого хранимого файла
+     */
+    public static InputStream decompressing(InputStream source, String contentEncoding) throws IOException {
+        if (contentEncoding == null) {
+            return source;
+        }
+        checkSupported(contentEncoding);
+        return new GZIPInputStream(source, BUFFER_SIZE);
+    }
+
+    public static byte[] compress(byte[] content, String contentEncoding) {
+        if (contentEncoding == null) {
+            return content;
+        }
+        // CSV обычно сжимается в 5-10 раз, поэтому начальный буфер берется меньше исходного файла
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(BUFFER_SIZE, content.length / 4));
+        try (OutputStream output = compressing(compressed, contentEncoding)) {
+            output.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static void checkSupported(String contentEncoding) {
+        if (!isSupported(contentEncoding)) {
+            throw new IllegalArgumentException("Unsupported file content encoding: " + contentEncoding);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.example.service;
+
+import jakarta.ejb.Lock;
+import jakarta.ejb.LockType;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.example.domain.import_history.dto.ImportOperationDto;
+import org.example.domain.import_history.dto.ImportSagaStepDto;
+import org.example.domain.import_history.entity.ImportStatus;
+import org.example.domain.import_history.service.ImportOperationServiceMB;
+import org.example.domain.import_history.service.ImportSagaServiceMB;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Фоновая компенсация импортов: удаляет файлы откаченных и брошенных транзакций по журналу саги
+ * и периодически собирает объекты хранилища, на которые не ссылается ни одна операция импорта.
+ * Каждый вызов сервисов идет своей транзакцией, чтобы обращения к MinIO не держали транзакцию БД
+ */
+@Slf4j
+@Singleton
+// Состояния у бина нет: без блокировки чтения долгая сборка сирот держала бы таймер компенсации
+@Lock(LockType.READ)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class ImportCompensationService {
+
+    private static final int COMPENSATION_BATCH_SIZE = 100;
+    // Ограничение одного запуска, чтобы накопившийся журнал разбирался за несколько запусков, а не блокировал таймер
+    private static final int MAX_BATCHES_PER_RUN = 10;
+    // Шаг, который столько времени остается PENDING, считается брошенным (сервер упал посреди импорта)
+    private static final Duration ABANDONED_STEP_TIMEOUT = Duration.ofHours(1);
+    private static final Duration FINISHED_STEP_RETENTION = Duration.ofDays(7);
+
+    private static final String IMPORT_FILES_PREFIX = "imports/";
+    private static final int ORPHAN_CHECK_BATCH_SIZE = 500;
+    // Объект моложе этого может принадлежать импорту, который еще не записал ключ в операцию
+    private static final Duration ORPHAN_GRACE_PERIOD = Duration.ofHours(6);
+
+    @Inject
+    private ImportSagaServiceMB sagaService;
+
+    @Inject
+    private ImportOperationServiceMB importOperationService;
+
+    @Inject
+    private ImportJobService importJobService;
+
+    @Inject
+    private MinIOService minIOService;
+
+    @Inject
+    private ImportFileService importFileService;
+
+    /**
+     * Разбор очереди компенсации
+     */
+    @Schedule(hour = "*", minute = "*", second = "*/30", persistent = false)
+    public void compensatePendingSteps() {
+        ZonedDateTime abandonedBefore = ZonedDateTime.now().minus(ABANDONED_STEP_TIMEOUT);
+        int processed = 0;
+        for (int batch = 0; batch < MAX_BATCHES_PER_RUN; batch++) {
+            List<ImportSagaStepDto> steps = sagaService.findCompensationBatch(abandonedBefore, COMPENSATION_BATCH_SIZE);
+            int compensated = 0;
+            for (ImportSagaStepDto step : steps) {
+                if (compensate(step)) {
+                    compensated++;
+                }
+            }
+            processed += compensated;
+            // Пропущенные шаги вернутся в следующей пачке, поэтому без продвижения дальше не идем
+            if (steps.size() < COMPENSATION_BATCH_SIZE || compensated == 0) {
+                break;
+            }
+        }
+        if (processed > 0) {
+            log.info("Compensated {} import saga steps", processed);
+        }
+    }
+
+    /**
+     * Удаляет файл шага и приводит операцию в согласованное состояние; false - шаг пропущен или не удался
+     */
+    private boolean compensate(ImportSagaStepDto step) {
+        try {
+            ImportOperationDto operation = findOperation(step.operationId());
+            if (operation != null) {
+                boolean active = operation.status() == ImportStatus.IN_PROGRESS || operation.status() == ImportStatus.QUEUED;
+                if (active && importJobService.isRunning(operation.id())) {
+                    // Долгий импорт еще идет на этом узле - шаг не брошен
+                    return false;
+                }
+                if (operation.status() == ImportStatus.SUCCESS && step.fileKey().equals(operation.fileKey())) {
+                    // Импорт успел завершиться, но отметка COMMITTED не записалась
+                    sagaService.markStepCommitted(step.id());
+                    return true;
+                }
+                if (active) {
+                    importOperationService.failImportOperationIndependently(operation.id(), null,
+                            "Import was interrupted and rolled back");
+                }
+            }
+
+            importFileService.deleteIfUnreferenced(step.fileKey(), step.operationId());
+            if (operation != null && step.fileKey().equals(operation.fileKey())) {
+                importOperationService.detachFileIndependently(operation.id());
+            }
+            sagaService.markCompensated(step.id());
+            return true;
+        } catch (Exception e) {
+            log.warn("Compensation of saga step {} (file {}) failed: {}", step.id(), step.fileKey(), e.getMessage());
+            sagaService.markCompensationFailed(step.id(), e.getMessage());
+            return false;
+        }
+    }
+
+    private ImportOperationDto findOperation(Integer operationId) {
+        if (operationId == null) {
+            return null;
+        }
+        try {
+            return importOperationService.findById(operationId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Сборка объектов без операции импорта (загрузки, прерванные до записи в журнал, временные ключи
+     * потокового импорта) и очистка старых записей журнала
+     */
+    @Schedule(hour = "*", minute = "15", persistent = false)
+    public void collectOrphanFiles() {
+        Instant modifiedBefore = Instant.now().minus(ORPHAN_GRACE_PERIOD);
+        List<String> candidates = new ArrayList<>(ORPHAN_CHECK_BATCH_SIZE);
+        int[] deleted = {0};
+        try {
+            minIOService.forEachFile(IMPORT_FILES_PREFIX, file -> {
+                if (file.lastModified().isBefore(modifiedBefore)) {
+                    candidates.add(file.fileKey());
+                    if (candidates.size() == ORPHAN_CHECK_BATCH_SIZE) {
+                        deleted[0] += deleteUnreferenced(candidates);
+                        candidates.clear();
+                    }
+                }
+            });
+            deleted[0] += deleteUnreferenced(candidates);
+        } catch (Exception e) {
+            log.error("Orphan file collection failed", e);
+        }
+        if (deleted[0] > 0) {
+            log.info("Deleted {} orphan import files from MinIO", deleted[0]);
+        }
+
+        try {
+            int purged = sagaService.purgeFinished(ZonedDateTime.now().minus(FINISHED_STEP_RETENTION));
+            if (purged > 0) {
+                log.info("Purged {} finished import saga steps", purged);
+            }
+        } catch (Exception e) {
+            log.error("Failed to purge finished import saga steps", e);
+        }
+    }
+
+    private int deleteUnreferenced(List<String> fileKeys) {
+        Set<String> referenced = importOperationService.findReferencedFileKeys(fileKeys);
+        int deleted = 0;
+        for (String fileKey : fileKeys) {
+            if (referenced.contains(fileKey)) {
+                continue;
+            }
+            try {
+                // Ссылка могла появиться после проверки пачки - под блокировкой ключа она проверяется еще раз
+                if (importFileService.deleteIfUnreferenced(fileKey, null)) {
+                    deleted++;
+                }
+            } catch (Exception e) {
+                log.warn("Failed to delete orphan file {}: {}", fileKey, e.getMessage());
+            }
+        }
+        return deleted;
+    }
+}
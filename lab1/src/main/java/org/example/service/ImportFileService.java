@@ -0,0 +1,38 @@
+package org.example.service;
+
+import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.example.domain.import_history.service.ImportOperationServiceMB;
+
+/**
+ * Удаление файлов импорта из MinIO. Один объект с ключом по содержимому может понадобиться
+ * параллельному импорту, поэтому проверка ссылок и удаление идут под блокировкой ключа,
+ * которую берет и запись ссылки (ImportOperationServiceMB.attachFileIndependently)
+ */
+@Slf4j
+@Stateless
+public class ImportFileService {
+
+    @Inject
+    private ImportOperationServiceMB importOperationService;
+
+    @Inject
+    private MinIOService minIOService;
+
+    /**
+     * Удаляет файл, если на него не ссылается ни одна операция, кроме operationId; false - файл оставлен
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public boolean deleteIfUnreferenced(String fileKey, Integer operationId) throws Exception {
+        importOperationService.lockFileKey(fileKey);
+        if (importOperationService.isFileSharedWithOtherOperations(fileKey, operationId)) {
+            log.info("Keeping shared file in MinIO: {}", fileKey);
+            return false;
+        }
+        minIOService.deleteFile(fileKey);
+        return true;
+    }
+}
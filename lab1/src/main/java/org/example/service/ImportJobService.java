@@ -0,0 +1,239 @@
+package org.example.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Lock;
+import jakarta.ejb.LockType;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.inject.Inject;
+import lombok.extern.slf4j.Slf4j;
+import org.example.config.ImportQueueMonitor;
+import org.example.domain.import_history.dto.ImportOperationDto;
+import org.example.domain.import_history.dto.ImportRequestDto;
+import org.example.domain.import_history.dto.ImportResultDto;
+import org.example.domain.import_history.entity.ImportStatus;
+import org.example.domain.import_history.service.ImportOperationServiceMB;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+@Slf4j
+@Singleton
+@Startup
+@Lock(LockType.READ)
+public class ImportJobService {
+
+    // Импорт держит JTA транзакцию и соединение из пула (25 соединений) до конца,
+    // поэтому одновременно выполняется лишь несколько импортов, остальные ждут в очереди
+    private static final int MAX_CONCURRENT_IMPORTS = 4;
+    private static final int MAX_QUEUED_IMPORTS = 100;
+
+    // Операции, импорт которых сейчас выполняется или ждет в очереди на этом узле
+    private final Set<Integer> runningOperations = ConcurrentHashMap.newKeySet();
+    private final FairImportQueue importQueue = new FairImportQueue(MAX_CONCURRENT_IMPORTS, MAX_QUEUED_IMPORTS);
+    private ObjectName queueMonitorName;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    @Inject
+    private ImportOperationServiceMB importOperationService;
+
+    @Inject
+    private TransactionalFileImportService transactionalFileImportService;
+
+    @PostConstruct
+    public void init() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            queueMonitorName = new ObjectName("org.example:type=Import,name=ImportQueue");
+            if (server.isRegistered(queueMonitorName)) {
+                server.unregisterMBean(queueMonitorName);
+            }
+            server.registerMBean(new ImportQueueMonitor(importQueue), queueMonitorName);
+            log.info("Import queue JMX MBean registered: {}", queueMonitorName);
+        } catch (Exception e) {
+            log.error("Failed to register import queue JMX MBean: {}", e.getMessage(), e);
+        }
+        recoverInterruptedImports();
+    }
+
+    /**
+     * Очередь импортов живет только в памяти, поэтому операции, ждавшие или выполнявшиеся до перезапуска,
+     * иначе навсегда остались бы QUEUED/IN_PROGRESS. Чанковый импорт с контрольной точкой и сохраненным
+     * файлом продолжается с нее, остальные операции завершаются ошибкой
+     */
+    private void recoverInterruptedImports() {
+        List<ImportOperationDto> interrupted = new ArrayList<>(importOperationService.findByStatus(ImportStatus.QUEUED));
+        interrupted.addAll(importOperationService.findByStatus(ImportStatus.IN_PROGRESS));
+        int resumed = 0;
+        for (ImportOperationDto operation : interrupted) {
+            try {
+                if (operation.fileKey() != null && operation.lastCommittedLine() != null) {
+                    resumeImport(operation.id());
+                    resumed++;
+                } else {
+                    importOperationService.failImportOperationIndependently(operation.id(), null,
+                            "Import was interrupted by a server restart");
+                }
+            } catch (Exception e) {
+                log.error("Failed to recover interrupted import {}", operation.id(), e);
+            }
+        }
+        if (!interrupted.isEmpty()) {
+            log.info("Recovered {} interrupted imports: {} resumed, {} failed",
+                    interrupted.size(), resumed, interrupted.size() - resumed);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (queueMonitorName != null) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if (server.isRegistered(queueMonitorName)) {
+                    server.unregisterMBean(queueMonitorName);
+                }
+            } catch (Exception e) {
+                log.error("Failed to unregister import queue JMX MBean: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Регистрирует операцию импорта и ставит сам импорт в очередь; клиент следит за ним по ID операции.
+     * Если очередь заполнена, бросает RejectedExecutionException, а операция сохраняется как FAILED.
+     * force - импортировать, даже если пользователь уже импортировал файл с таким содержимым
+     */
+    public ImportOperationDto submitImport(ImportRequestDto request, boolean chunked, boolean force) {
+        ImportOperationDto operation = importOperationService.queueImportOperation(request.username(), request.filename());
+        log.info("Queueing background {} import {} for user {} with file {}",
+                chunked ? "chunked" : "transactional", operation.id(), request.username(), request.filename());
+
+        enqueue(operation, () -> chunked
+                ? transactionalFileImportService.importRoutesChunkedWithFileStorage(request, operation.id(), force)
+                : transactionalFileImportService.importRoutesWithFileStorage(request, operation.id(), force));
+        return operation;
+    }
+
+    /**
+     * Продолжение прерванного чанкового импорта с последней контрольной точки
+     */
+    public ImportOperationDto resumeImport(Integer operationId) {
+        ImportOperationDto operation = importOperationService.findById(operationId);
+        if (operation.fileKey() == null) {
+            throw new IllegalStateException("Import operation has no stored file to resume from");
+        }
+        if (operation.status() == ImportStatus.SUCCESS) {
+            throw new IllegalStateException("Import operation is already completed");
+        }
+        if (runningOperations.contains(operationId)) {
+            throw new IllegalStateException("Import operation is already running");
+        }
+
+        operation = importOperationService.restartImportOperation(operationId);
+        log.info("Queueing resume of chunked import {} after position {}", operationId, operation.lastCommittedLine());
+        String filename = operation.filename();
+        String fileKey = operation.fileKey();
+        String contentEncoding = operation.fileContentEncoding();
+        enqueue(operation,
+                () -> transactionalFileImportService.resumeChunkedImport(operationId, filename, fileKey, contentEncoding));
+        return operation;
+    }
+
+    /**
+     * Занимает слот для импорта, который выполняется сразу в потоке запроса (потоковый импорт);
+     * false - все слоты заняты или есть ожидающие импорты. Занятый слот освобождается finishInlineImport()
+     */
+    public boolean tryStartInlineImport() {
+        return importQueue.tryAcquire();
+    }
+
+    public void finishInlineImport() {
+        importQueue.release();
+        dispatch();
+    }
+
+    /**
+     * Выполняется ли импорт операции или ждет ли он в очереди на этом узле
+     */
+    public boolean isRunning(Integer operationId) {
+        return runningOperations.contains(operationId);
+    }
+
+    private void enqueue(ImportOperationDto operation, Supplier<ImportResultDto> importTask) {
+        Integer operationId = operation.id();
+        if (!runningOperations.add(operationId)) {
+            throw new IllegalStateException("Import operation is already running");
+        }
+        try {
+            importQueue.enqueue(operation.username(), operationId, () -> runImport(operationId, importTask));
+        } catch (RejectedExecutionException e) {
+            runningOperations.remove(operationId);
+            importOperationService.failImportOperationIndependently(operationId, null, e.getMessage());
+            throw e;
+        }
+        dispatch();
+    }
+
+    /**
+     * Запускает ожидающие импорты, пока есть свободные слоты. Если исполнитель отказал, импорт возвращается
+     * в начало очереди, а запуск откладывается до следующего освобождения слота или постановки в очередь
+     */
+    private void dispatch() {
+        FairImportQueue.QueuedImport next;
+        while ((next = importQueue.pollNext()) != null) {
+            try {
+                executor.execute(next.task());
+            } catch (RejectedExecutionException e) {
+                log.warn("Executor rejected import {}, it stays first in the queue", next.operationId(), e);
+                importQueue.requeue(next);
+                return;
+            }
+            importQueue.started(next);
+        }
+    }
+
+    /**
+     * Выполнение импорта в потоке исполнителя
+     */
+    private void runImport(Integer operationId, Supplier<ImportResultDto> importTask) {
+        try {
+            importOperationService.markImportStarted(operationId);
+            ImportResultDto result = importTask.get();
+            log.info("Background import {} finished with status {}", operationId, result.status());
+        } catch (Exception e) {
+            log.error("Background import {} failed", operationId, e);
+        } finally {
+            ensureFinished(operationId);
+            runningOperations.remove(operationId);
+            importQueue.release();
+            dispatch();
+        }
+    }
+
+    /**
+     * Операция не должна навсегда остаться незавершенной, если импорт упал до записи итогового статуса
+     */
+    private void ensureFinished(Integer operationId) {
+        try {
+            ImportStatus status = importOperationService.getProgress(operationId).status();
+            if (status == ImportStatus.IN_PROGRESS || status == ImportStatus.QUEUED) {
+                importOperationService.failImportOperationIndependently(operationId, null,
+                        "Import terminated without completing");
+            }
+        } catch (Exception e) {
+            log.error("Failed to finalize background import {}", operationId, e);
+        }
+    }
+}
@@ -2,7 +2,10 @@ package org.example.service;
 
 import io.minio.*;
 import io.minio.errors.*;
+import io.minio.messages.Item;
+import jakarta.annotation.Resource;
 import jakarta.ejb.Stateless;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
 import org.example.config.MinIOConfig;
@@ -11,17 +14,33 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.time.ZonedDateTime;
+import java.util.HexFormat;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Slf4j
 @Stateless
 public class MinIOService {
 
+    // Размер части multipart загрузки потока неизвестной длины (минимум для S3 - 5 МБ)
+    private static final long UPLOAD_PART_SIZE = 5L * 1024 * 1024;
+    // Буфер канала между импортом и потоком загрузки
+    private static final int UPLOAD_PIPE_SIZE = 256 * 1024;
+    private static final long UPLOAD_START_TIMEOUT_SECONDS = 30;
+
     @Inject
     private MinIOConfig minIOConfig;
 
+    @Resource
+    private ManagedExecutorService executor;
+
     /**
      * Инициализация bucket'а, если он не существует
      */
@@ -50,31 +69,40 @@ public class MinIOService {
     }
 
     /**
-     * Загрузка файла в MinIO
+     * Загрузка файла в MinIO под ключом, адресуемым содержимым; если такой объект уже есть, он не загружается повторно
      */
-    public FileUploadResult uploadFile(String filename, String contentType, byte[] fileContent) throws Exception {
+    public FileUploadResult uploadFile(String fileHash, String contentType, byte[] fileContent) throws Exception {
         initializeBucket();
         
-        String fileKey = generateFileKey(filename);
+        String contentEncoding = minIOConfig.getFileCompression();
+        String fileKey = contentKey(fileHash, contentEncoding);
+        long existingSize = storedSizeIfExists(fileKey);
+        if (existingSize >= 0) {
+            log.info("File with the same content is already stored: key={}", fileKey);
+            return new FileUploadResult(fileKey, fileContent.length, existingSize, contentType, null, fileHash,
+                    contentEncoding);
+        }
         MinioClient client = minIOConfig.getMinioClient();
         String bucketName = minIOConfig.getBucketName();
+        byte[] storedContent = FileCompression.compress(fileContent, contentEncoding);
         
-        try (InputStream inputStream = new ByteArrayInputStream(fileContent)) {
-            log.info("Uploading file to MinIO: bucket={}, key={}, size={} bytes", 
-                    bucketName, fileKey, fileContent.length);
+        try (InputStream inputStream = new ByteArrayInputStream(storedContent)) {
+            log.info("Uploading file to MinIO: bucket={}, key={}, size={} bytes, stored={} bytes", 
+                    bucketName, fileKey, fileContent.length, storedContent.length);
             
             ObjectWriteResponse response = client.putObject(
                     PutObjectArgs.builder()
                             .bucket(bucketName)
                             .object(fileKey)
-                            .stream(inputStream, fileContent.length, -1)
+                            .stream(inputStream, storedContent.length, -1)
                             .contentType(contentType != null ? contentType : "application/octet-stream")
                             .build()
             );
             
             log.info("File uploaded successfully: etag={}, key={}", response.etag(), fileKey);
             
-            return new FileUploadResult(fileKey, fileContent.length, contentType, response.etag());
+            return new FileUploadResult(fileKey, fileContent.length, storedContent.length, contentType, response.etag(),
+                    fileHash, contentEncoding);
             
         } catch (Exception e) {
             log.error("Failed to upload file: key={}", fileKey, e);
@@ -83,47 +111,219 @@ public class MinIOService {
     }
 
     /**
-     * Скачивание файла из MinIO
+     * Канальная загрузка: содержимое пишется в upload.outputStream() одновременно с его обработкой,
+     * поток загрузки отправляет его частями по UPLOAD_PART_SIZE
+     */
+    public StreamingUpload startStreamingUpload(String filename, String contentType) throws Exception {
+        initializeBucket();
+        return startUpload(StreamingUpload.piped(generateFileKey(filename), contentType,
+                minIOConfig.getFileCompression(), UPLOAD_PIPE_SIZE));
+    }
+
+    /**
+     * Фоновая загрузка уже прочитанного файла под ключом его содержимого, пока идет его импорт
+     */
+    public StreamingUpload startUpload(String fileHash, String contentType, byte[] fileContent) throws Exception {
+        initializeBucket();
+        String contentEncoding = minIOConfig.getFileCompression();
+        return startUpload(StreamingUpload.ofBytes(contentKey(fileHash, contentEncoding), contentType,
+                contentEncoding, fileContent, fileHash));
+    }
+
+    /**
+     * Переносит загруженный потоком файл под ключ его содержимого: хеш потока известен только после загрузки.
+     * Если такой объект уже есть, временная копия просто удаляется, а в результате - размер хранимого объекта
+     */
+    public FileUploadResult moveToContentKey(FileUploadResult upload) throws Exception {
+        MinioClient client = minIOConfig.getMinioClient();
+        String bucketName = minIOConfig.getBucketName();
+        String fileKey = contentKey(upload.fileHash(), upload.contentEncoding());
+        
+        try {
+            long storedSize = storedSizeIfExists(fileKey);
+            if (storedSize < 0) {
+                storedSize = upload.storedSize();
+                log.info("Copying uploaded file to content key: {} -> {}", upload.fileKey(), fileKey);
+                client.copyObject(
+                        CopyObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(fileKey)
+                                .source(CopySource.builder()
+                                        .bucket(bucketName)
+                                        .object(upload.fileKey())
+                                        .build())
+                                .build()
+                );
+            }
+            deleteFile(upload.fileKey());
+            return new FileUploadResult(fileKey, upload.fileSize(), storedSize, upload.contentType(), upload.etag(),
+                    upload.fileHash(), upload.contentEncoding());
+        } catch (Exception e) {
+            log.error("Failed to move file to content key: key={}", upload.fileKey(), e);
+            throw new RuntimeException("Failed to store file in MinIO", e);
+        }
+    }
+
+    /**
+     * Ключ объекта по SHA-256 содержимого: одинаковые файлы хранятся в одном экземпляре.
+     * Кодек входит в ключ, чтобы найденный по ключу объект всегда был сжат так же, как ожидается
+     */
+    public static String contentKey(String fileHash, String contentEncoding) {
+        return "imports/sha256/" + fileHash + (FileCompression.GZIP.equals(contentEncoding) ? ".gz" : "");
+    }
+
+    /**
+     * Кодек, которым сжимаются новые файлы (null - без сжатия)
+     */
+    public String fileCompression() {
+        return minIOConfig.getFileCompression();
+    }
+
+    public static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * SHA-256 потока, прочитанного до конца
+     */
+    public static String sha256(InputStream content) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private StreamingUpload startUpload(StreamingUpload upload) throws Exception {
+        MinioClient client = minIOConfig.getMinioClient();
+        String bucketName = minIOConfig.getBucketName();
+        log.info("Starting background upload to MinIO: bucket={}, key={}", bucketName, upload.fileKey());
+
+        CountDownLatch started = new CountDownLatch(1);
+        Future<ObjectWriteResponse> response = executor.submit(() -> {
+            started.countDown();
+            // Закрытие источника при ошибке освобождает пишущую сторону канала
+            try (InputStream source = upload.openSource()) {
+                long size = upload.storedSize();
+                return client.putObject(
+                        PutObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(upload.fileKey())
+                                .stream(source, size, size < 0 ? UPLOAD_PART_SIZE : -1)
+                                .contentType(upload.contentType() != null ? upload.contentType() : "application/octet-stream")
+                                .build()
+                );
+            }
+        });
+        upload.started(response);
+
+        // Канал блокирует запись, пока его никто не читает: без потока загрузки импорт бы завис
+        if (!started.await(UPLOAD_START_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            response.cancel(true);
+            throw new IllegalStateException("No executor thread available for MinIO upload");
+        }
+        return upload;
+    }
+
+    /**
+     * Скачивание файла или его части из MinIO потоком. Размер, тип и ETag берутся из заголовков ответа
+     * getObject, без отдельного statObject. length == null - до конца файла; поток закрывает вызывающий код.
+     * Сжатый файл отдается как есть, если клиент принимает его кодек (passthrough), и тогда offset и length
+     * относятся к хранимым сжатым байтам; иначе он распаковывается на лету и только целиком: часть
+     * распакованного содержимого потребовала бы распаковки с начала файла
      */
-    public FileDownloadResult downloadFile(String fileKey) throws Exception {
+    public FileDownloadResult openDownload(String fileKey, String contentEncoding, long offset, Long length,
+                                           boolean acceptsEncoding) throws Exception {
         MinioClient client = minIOConfig.getMinioClient();
         String bucketName = minIOConfig.getBucketName();
+        boolean ranged = offset > 0 || length != null;
+        boolean decode = contentEncoding != null && !acceptsEncoding;
+        if (ranged && decode) {
+            throw new IllegalStateException("Byte ranges of a compressed file are served only without decoding");
+        }
         
         try {
-            log.info("Downloading file from MinIO: bucket={}, key={}", bucketName, fileKey);
+            log.info("Downloading file from MinIO: bucket={}, key={}, offset={}, length={}, encoding={}, decode={}",
+                    bucketName, fileKey, offset, length, contentEncoding, decode);
             
-            // Получаем информацию об объекте
-            StatObjectResponse objectStat = client.statObject(
-                    StatObjectArgs.builder()
-                            .bucket(bucketName)
-                            .object(fileKey)
-                            .build()
+            GetObjectArgs.Builder args = GetObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(fileKey);
+            if (ranged) {
+                args.offset(offset).length(length);
+            }
+            GetObjectResponse response = client.getObject(args.build());
+            
+            InputStream content = response;
+            long contentLength;
+            if (decode) {
+                try {
+                    content = FileCompression.decompressing(response, contentEncoding);
+                } catch (Exception e) {
+                    response.close();
+                    throw e;
+                }
+                contentLength = -1;
+            } else {
+                String lengthHeader = response.headers().get("Content-Length");
+                contentLength = lengthHeader != null ? Long.parseLong(lengthHeader) : -1;
+            }
+            return new FileDownloadResult(
+                    fileKey,
+                    content,
+                    response.headers().get("Content-Type"),
+                    contentLength,
+                    decode ? null : contentEncoding,
+                    decode ? weakETag(response.headers().get("ETag")) : response.headers().get("ETag"),
+                    response.headers().get("Last-Modified")
             );
             
-            // Скачиваем объект
+        } catch (Exception e) {
+            log.error("Failed to download file: key={}", fileKey, e);
+            throw new RuntimeException("Failed to download file from MinIO", e);
+        }
+    }
+
+    // Распакованное содержимое - другое представление объекта, поэтому его ETag не может быть сильным
+    private static String weakETag(String etag) {
+        return etag == null || etag.startsWith("W/") ? etag : "W/" + etag;
+    }
+
+    /**
+     * Открытие файла из MinIO как потока распакованного содержимого без чтения в память;
+     * поток закрывает вызывающий код
+     */
+    public InputStream openFile(String fileKey, String contentEncoding) throws Exception {
+        MinioClient client = minIOConfig.getMinioClient();
+        String bucketName = minIOConfig.getBucketName();
+        
+        try {
+            log.info("Opening file stream from MinIO: bucket={}, key={}", bucketName, fileKey);
             GetObjectResponse response = client.getObject(
                     GetObjectArgs.builder()
                             .bucket(bucketName)
                             .object(fileKey)
                             .build()
             );
-            
-            byte[] fileContent = response.readAllBytes();
-            response.close();
-            
-            log.info("File downloaded successfully: key={}, size={} bytes", fileKey, fileContent.length);
-            
-            return new FileDownloadResult(
-                    fileKey,
-                    fileContent,
-                    objectStat.contentType(),
-                    objectStat.size(),
-                    objectStat.lastModified()
-            );
-            
+            try {
+                return FileCompression.decompressing(response, contentEncoding);
+            } catch (Exception e) {
+                response.close();
+                throw e;
+            }
         } catch (Exception e) {
-            log.error("Failed to download file: key={}", fileKey, e);
-            throw new RuntimeException("Failed to download file from MinIO", e);
+            log.error("Failed to open file: key={}", fileKey, e);
+            throw new RuntimeException("Failed to open file from MinIO", e);
         }
     }
 
@@ -156,21 +356,46 @@ public class MinIOService {
      * Проверка существования файла
      */
     public boolean fileExists(String fileKey) {
+        return storedSizeIfExists(fileKey) >= 0;
+    }
+
+    /**
+     * Размер объекта в хранилище (для сжатого файла - размер сжатых байт) или -1, если объекта нет
+     */
+    public long storedSizeIfExists(String fileKey) {
         try {
             MinioClient client = minIOConfig.getMinioClient();
             String bucketName = minIOConfig.getBucketName();
             
-            client.statObject(
+            return client.statObject(
                     StatObjectArgs.builder()
                             .bucket(bucketName)
                             .object(fileKey)
                             .build()
-            );
-            
-            return true;
+            ).size();
         } catch (Exception e) {
             log.debug("File does not exist or error checking: key={}", fileKey);
-            return false;
+            return -1;
+        }
+    }
+
+    /**
+     * Обход всех объектов с заданным префиксом; MinIO отдает список страницами, поэтому память не зависит от числа файлов
+     */
+    public void forEachFile(String prefix, Consumer<FileInfo> consumer) throws Exception {
+        MinioClient client = minIOConfig.getMinioClient();
+        Iterable<Result<Item>> objects = client.listObjects(
+                ListObjectsArgs.builder()
+                        .bucket(minIOConfig.getBucketName())
+                        .prefix(prefix)
+                        .recursive(true)
+                        .build()
+        );
+        for (Result<Item> object : objects) {
+            Item item = object.get();
+            if (!item.isDir()) {
+                consumer.accept(new FileInfo(item.objectName(), item.size(), item.lastModified().toInstant()));
+            }
         }
     }
 
@@ -193,23 +418,34 @@ public class MinIOService {
     }
 
     /**
-     * Результат загрузки файла
+     * Объект хранилища из списка
+     */
+    public static record FileInfo(String fileKey, long size, Instant lastModified) {}
+
+    /**
+     * Результат загрузки файла; fileSize - размер исходного содержимого, storedSize - размер объекта в хранилище
      */
     public static record FileUploadResult(
             String fileKey,
             long fileSize,
+            long storedSize,
             String contentType,
-            String etag
+            String etag,
+            String fileHash,
+            String contentEncoding
     ) {}
 
     /**
-     * Результат скачивания файла
+     * Открытый поток скачивания; contentLength - длина передаваемых байт (-1, если неизвестна),
+     * contentEncoding - кодек, если сжатый файл передается без распаковки, lastModified в формате HTTP даты
      */
     public static record FileDownloadResult(
             String fileKey,
-            byte[] content,
+            InputStream content,
             String contentType,
-            long size,
-            ZonedDateTime lastModified
+            long contentLength,
+            String contentEncoding,
+            String etag,
+            String lastModified
     ) {}
 }
\ No newline at end of file
@@ -0,0 +1,159 @@
+package org.example.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Упорядоченный индекс имен сущностей в памяти. Ключ - имя в нижнем регистре, поэтому имена с общим префиксом
+ * без учета регистра лежат подряд и автодополнение стоит O(log n + k). Внутри ключа имена упорядочены
+ * с учетом регистра, у каждого имени - отсортированные ID сущностей. Этот порядок годится только
+ * для автодополнения: с сортировкой по правилам сравнения (collation) базы он не совпадает.
+ * Чтение без блокировок; изменения сериализуются, а корзины имен неизменяемы и заменяются целиком
+ */
+public class NameIndex {
+
+    private final ConcurrentSkipListMap<String, Bucket> bucketsByKey = new ConcurrentSkipListMap<>();
+    private final Map<Integer, String> nameById = new ConcurrentHashMap<>();
+
+    public synchronized void put(Integer id, String name) {
+        if (name == null) {
+            remove(id);
+            return;
+        }
+        String previous = nameById.put(id, name);
+        if (name.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            detach(previous, id);
+        }
+        String key = key(name);
+        Bucket bucket = bucketsByKey.get(key);
+        bucketsByKey.put(key, bucket == null ? Bucket.of(name, id) : bucket.with(name, id));
+    }
+
+    public synchronized void remove(Integer id) {
+        String previous = nameById.remove(id);
+        if (previous != null) {
+            detach(previous, id);
+        }
+    }
+
+    public int size() {
+        return nameById.size();
+    }
+
+    /**
+     * Не более limit различных имен, начинающихся с prefix без учета регистра, в порядке индекса
+     */
+    public List<String> namesStartingWith(String prefix, int limit) {
+        String keyPrefix = key(prefix);
+        List<String> names = new ArrayList<>(Math.min(limit, 64));
+        for (Map.Entry<String, Bucket> entry : bucketsByKey.tailMap(keyPrefix, true).entrySet()) {
+            if (names.size() >= limit || !entry.getKey().startsWith(keyPrefix)) {
+                break;
+            }
+            entry.getValue().collectNames(names, limit);
+        }
+        return names;
+    }
+
+    /**
+     * ID не более чем limit сущностей, имя которых начинается с prefix без учета регистра, в порядке индекса
+     */
+    public List<Integer> idsStartingWith(String prefix, int limit) {
+        String keyPrefix = key(prefix);
+        List<Integer> ids = new ArrayList<>(Math.min(limit, 64));
+        for (Map.Entry<String, Bucket> entry : bucketsByKey.tailMap(keyPrefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(keyPrefix)) {
+                break;
+            }
+            for (int id : entry.getValue().ids()) {
+                if (ids.size() >= limit) {
+                    return ids;
+                }
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private void detach(String name, Integer id) {
+        String key = key(name);
+        Bucket bucket = bucketsByKey.get(key);
+        if (bucket == null) {
+            return;
+        }
+        Bucket remaining = bucket.without(name, id);
+        if (remaining == null) {
+            bucketsByKey.remove(key);
+        } else {
+            bucketsByKey.put(key, remaining);
+        }
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Пары (имя, ID) одного ключа, отсортированные по имени, затем по ID. Обычно это одна пара
+     */
+    private record Bucket(String[] names, int[] ids) {
+
+        static Bucket of(String name, int id) {
+            return new Bucket(new String[]{name}, new int[]{id});
+        }
+
+        Bucket with(String name, int id) {
+            int position = 0;
+            while (position < names.length && compare(names[position], ids[position], name, id) < 0) {
+                position++;
+            }
+            String[] newNames = new String[names.length + 1];
+            int[] newIds = new int[ids.length + 1];
+            System.arraycopy(names, 0, newNames, 0, position);
+            System.arraycopy(ids, 0, newIds, 0, position);
+            newNames[position] = name;
+            newIds[position] = id;
+            System.arraycopy(names, position, newNames, position + 1, names.length - position);
+            System.arraycopy(ids, position, newIds, position + 1, ids.length - position);
+            return new Bucket(newNames, newIds);
+        }
+
+        Bucket without(String name, int id) {
+            for (int i = 0; i < names.length; i++) {
+                if (ids[i] == id && names[i].equals(name)) {
+                    if (names.length == 1) {
+                        return null;
+                    }
+                    String[] newNames = new String[names.length - 1];
+                    int[] newIds = new int[ids.length - 1];
+                    System.arraycopy(names, 0, newNames, 0, i);
+                    System.arraycopy(ids, 0, newIds, 0, i);
+                    System.arraycopy(names, i + 1, newNames, i, names.length - i - 1);
+                    System.arraycopy(ids, i + 1, newIds, i, ids.length - i - 1);
+                    return new Bucket(newNames, newIds);
+                }
+            }
+            return this;
+        }
+
+        void collectNames(List<String> target, int limit) {
+            for (int i = 0; i < names.length && target.size() < limit; i++) {
+                if (i == 0 || !names[i].equals(names[i - 1])) {
+                    target.add(names[i]);
+                }
+            }
+        }
+
+        private static int compare(String leftName, int leftId, String rightName, int rightId) {
+            int byName = leftName.compareTo(rightName);
+            return byName != 0 ? byName : Integer.compare(leftId, rightId);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.example.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Lock;
+import jakarta.ejb.LockType;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Индексы имен маршрутов и локаций в памяти для автодополнения по префиксу.
+ * Строятся при старте приложения, дальше их поддерживают слушатели сущностей Route и Location
+ * и пакетный импорт. Изменения применяются только после коммита транзакции, которая их сделала.
+ * Слушатели видят только изменения этого узла, поэтому индексы периодически перестраиваются из базы
+ */
+@Slf4j
+@Singleton
+@Startup
+@Lock(LockType.READ)
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+public class NameIndexService {
+
+    private static final int LOAD_FETCH_SIZE = 10_000;
+
+    private static final String ROUTE_NAMES = "SELECT r.id, r.name FROM Route r";
+    private static final String LOCATION_NAMES = "SELECT l.id, l.name FROM Location l WHERE l.name IS NOT NULL";
+
+    private final IndexSlot routeNames = new IndexSlot();
+    private final IndexSlot locationNames = new IndexSlot();
+
+    @PersistenceContext(unitName = "RoutesPU")
+    private EntityManager em;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionRegistry;
+
+    @PostConstruct
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void init() {
+        rebuild();
+    }
+
+    /**
+     * Сверка с базой: подхватывает изменения других узлов кластера и прямые правки в базе
+     */
+    @Schedule(hour = "*", minute = "*/10", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        rebuild(ROUTE_NAMES, routeNames);
+        rebuild(LOCATION_NAMES, locationNames);
+        log.info("Name indexes built in {} ms: {} routes, {} named locations",
+                System.currentTimeMillis() - start, routeNames.index.size(), locationNames.index.size());
+    }
+
+    private void rebuild(String jpql, IndexSlot slot) {
+        // Изменения, закоммиченные во время чтения, могли не попасть в выборку - они повторяются на новом индексе
+        slot.beginRebuild();
+        NameIndex rebuilt = new NameIndex();
+        try (Stream<Object[]> rows = em.createQuery(jpql, Object[].class)
+                .setHint("org.hibernate.fetchSize", LOAD_FETCH_SIZE)
+                .setHint("org.hibernate.readOnly", true)
+                .getResultStream()) {
+            rows.forEach(row -> rebuilt.put((Integer) row[0], (String) row[1]));
+        } catch (RuntimeException e) {
+            slot.abortRebuild();
+            throw e;
+        }
+        slot.finishRebuild(rebuilt);
+    }
+
+    // Чтение
+
+    public List<String> findRouteNamesStartingWith(String prefix, int limit) {
+        return routeNames.index.namesStartingWith(prefix, limit);
+    }
+
+    public List<String> findLocationNamesStartingWith(String prefix, int limit) {
+        return locationNames.index.namesStartingWith(prefix, limit);
+    }
+
+    public List<Integer> findLocationIdsStartingWith(String prefix, int limit) {
+        return locationNames.index.idsStartingWith(prefix, limit);
+    }
+
+    // Изменения
+
+    public void routeSaved(Integer id, String name) {
+        afterCommit(index -> index.put(id, name), routeNames);
+    }
+
+    public void routeRemoved(Integer id) {
+        afterCommit(index -> index.remove(id), routeNames);
+    }
+
+    public void routesSaved(Map<Integer, String> namesById) {
+        if (!namesById.isEmpty()) {
+            afterCommit(index -> namesById.forEach(index::put), routeNames);
+        }
+    }
+
+    public void locationSaved(Integer id, String name) {
+        afterCommit(index -> index.put(id, name), locationNames);
+    }
+
+    public void locationRemoved(Integer id) {
+        afterCommit(index -> index.remove(id), locationNames);
+    }
+
+    public void locationsSaved(Map<Integer, String> namesById) {
+        if (!namesById.isEmpty()) {
+            afterCommit(index -> namesById.forEach(index::put), locationNames);
+        }
+    }
+
+    /**
+     * Откаченные изменения не должны попасть в индекс, поэтому внутри транзакции изменение откладывается до коммита
+     */
+    private void afterCommit(Consumer<NameIndex> change, IndexSlot slot) {
+        if (transactionRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            slot.apply(change);
+            return;
+        }
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    slot.apply(change);
+                }
+            }
+        });
+    }
+
+    /**
+     * Текущий индекс и журнал изменений, пришедших во время его перестроения
+     */
+    private static final class IndexSlot {
+
+        private volatile NameIndex index = new NameIndex();
+        private List<Consumer<NameIndex>> pending;
+
+        synchronized void apply(Consumer<NameIndex> change) {
+            change.accept(index);
+            if (pending != null) {
+                pending.add(change);
+            }
+        }
+
+        synchronized void beginRebuild() {
+            pending = new ArrayList<>();
+        }
+
+        synchronized void finishRebuild(NameIndex rebuilt) {
+            pending.forEach(change -> change.accept(rebuilt));
+            pending = null;
+            index = rebuilt;
+        }
+
+        synchronized void abortRebuild() {
+            pending = null;
+        }
+    }
+}
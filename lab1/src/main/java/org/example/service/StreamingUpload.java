@@ -0,0 +1,224 @@
+package org.example.service;
+
+import io.minio.ObjectWriteResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Загрузка файла в MinIO, идущая параллельно с импортом. В канальном режиме байты пишутся в outputStream,
+ * а поток загрузки читает их из канала и отправляет multipart загрузкой частями фиксированного размера,
+ * поэтому в памяти держатся только буфер канала и одна часть. При включенном сжатии в хранилище уходит
+ * сжатое содержимое, а размер и хеш считаются по исходным байтам
+ */
+@Slf4j
+public class StreamingUpload {
+
+    private final String fileKey;
+    private final String contentType;
+    private final String contentEncoding;
+    private final PipedInputStream pipeSource;
+    private final PipedOutputStream pipe;
+    private final CountingOutputStream counter;
+    private final byte[] content;
+    private final String knownHash;
+    private volatile boolean aborted;
+    private long storedSize = -1;
+    private AbortableInputStream source;
+    private Future<ObjectWriteResponse> upload;
+
+    private StreamingUpload(String fileKey, String contentType, String contentEncoding, PipedInputStream pipeSource,
+                            byte[] content, String knownHash) throws IOException {
+        this.fileKey = fileKey;
+        this.contentType = contentType;
+        this.contentEncoding = contentEncoding;
+        this.pipeSource = pipeSource;
+        this.content = content;
+        this.knownHash = knownHash;
+        if (pipeSource != null) {
+            this.pipe = new PipedOutputStream(pipeSource);
+            this.counter = new CountingOutputStream(FileCompression.compressing(pipe, contentEncoding));
+        } else {
+            this.pipe = null;
+            this.counter = null;
+        }
+    }
+
+    static StreamingUpload piped(String fileKey, String contentType, String contentEncoding, int pipeSize)
+            throws IOException {
+        return new StreamingUpload(fileKey, contentType, contentEncoding, new PipedInputStream(pipeSize), null, null);
+    }
+
+    static StreamingUpload ofBytes(String fileKey, String contentType, String contentEncoding, byte[] content,
+                                   String fileHash) throws IOException {
+        return new StreamingUpload(fileKey, contentType, contentEncoding, null, content, fileHash);
+    }
+
+    String contentType() {
+        return contentType;
+    }
+
+    /**
+     * Источник байт для загрузки; вызывается в потоке загрузки, поэтому сжатие уже прочитанного файла
+     * не задерживает импорт
+     */
+    InputStream openSource() {
+        if (pipeSource != null) {
+            source = new AbortableInputStream(pipeSource);
+        } else {
+            byte[] stored = FileCompression.compress(content, contentEncoding);
+            storedSize = stored.length;
+            source = new AbortableInputStream(new ByteArrayInputStream(stored));
+        }
+        return source;
+    }
+
+    /**
+     * Размер загружаемого объекта после openSource(); -1, если он станет известен только в конце потока
+     */
+    long storedSize() {
+        return storedSize;
+    }
+
+    void started(Future<ObjectWriteResponse> upload) {
+        this.upload = upload;
+    }
+
+    public String fileKey() {
+        return fileKey;
+    }
+
+    /**
+     * Поток для записи содержимого файла (только в канальном режиме)
+     */
+    public OutputStream outputStream() {
+        if (counter == null) {
+            throw new IllegalStateException("Upload content is not written through a stream");
+        }
+        return counter;
+    }
+
+    /**
+     * Закрывает канал и дожидается окончания загрузки
+     */
+    public MinIOService.FileUploadResult complete() throws Exception {
+        if (counter != null) {
+            counter.close();
+        }
+        try {
+            ObjectWriteResponse response = upload.get();
+            long size = counter != null ? counter.count : content.length;
+            // Загрузка завершена, поэтому источник прочитан до конца: прочитанное - размер объекта в хранилище
+            long stored = source.count;
+            String fileHash = counter != null ? HexFormat.of().formatHex(counter.digest.digest()) : knownHash;
+            log.info("Streaming upload completed: key={}, size={} bytes, stored={} bytes, encoding={}",
+                    fileKey, size, stored, contentEncoding);
+            return new MinIOService.FileUploadResult(fileKey, size, stored, contentType, response.etag(), fileHash,
+                    contentEncoding);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to upload file to MinIO: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Прерывает загрузку: поток загрузки получает ошибку чтения, и MinIO не собирает объект из частей
+     */
+    public void abort() {
+        aborted = true;
+        try {
+            if (pipe != null) {
+                pipe.close();
+            }
+            upload.get();
+        } catch (Exception e) {
+            log.debug("Streaming upload aborted: key={}", fileKey);
+        }
+    }
+
+    /**
+     * Считает размер и SHA-256 записанного содержимого по ходу записи
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private final OutputStream delegate;
+        private final MessageDigest digest;
+        private long count;
+
+        CountingOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            digest.update((byte) b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            digest.update(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private class AbortableInputStream extends InputStream {
+        private final InputStream delegate;
+        private long count;
+
+        AbortableInputStream(InputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkAborted();
+            int b = delegate.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkAborted();
+            int read = delegate.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        private void checkAborted() throws IOException {
+            if (aborted) {
+                throw new IOException("Upload aborted");
+            }
+        }
+    }
+}
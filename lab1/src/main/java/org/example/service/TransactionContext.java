@@ -1,5 +1,7 @@
 package org.example.service;
 
+import org.example.domain.import_history.service.ImportSagaServiceMB;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -10,9 +12,12 @@ public class TransactionContext {
     private final String transactionId;
     private final List<String> uploadedFiles;
     private final List<Runnable> rollbackOperations;
+    private final ImportSagaServiceMB sagaLog;
+    private Integer operationId;
 
-    public TransactionContext(String transactionId) {
+    public TransactionContext(String transactionId, ImportSagaServiceMB sagaLog) {
         this.transactionId = transactionId;
+        this.sagaLog = sagaLog;
         this.uploadedFiles = new ArrayList<>();
         this.rollbackOperations = new ArrayList<>();
     }
@@ -21,7 +26,20 @@ public class TransactionContext {
         return transactionId;
     }
 
+    public Integer getOperationId() {
+        return operationId;
+    }
+
+    public void setOperationId(Integer operationId) {
+        this.operationId = operationId;
+    }
+
+    /**
+     * Регистрирует файл до начала загрузки: шаг пишется в журнал саги отдельной транзакцией,
+     * поэтому файл будет найден и удален компенсацией, даже если сервер упадет посреди импорта
+     */
     public void addUploadedFile(String fileKey) {
+        sagaLog.recordFileUpload(transactionId, operationId, fileKey);
         uploadedFiles.add(fileKey);
     }
 
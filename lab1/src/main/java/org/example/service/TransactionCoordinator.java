@@ -6,6 +6,7 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
+import org.example.domain.import_history.service.ImportSagaServiceMB;
 
 import java.util.UUID;
 
@@ -14,7 +15,7 @@ import java.util.UUID;
 public class TransactionCoordinator {
 
     @Inject
-    private MinIOService minIOService;
+    private ImportSagaServiceMB sagaService;
 
     @PersistenceContext(unitName = "RoutesPU")
     private EntityManager entityManager;
@@ -27,7 +28,7 @@ public class TransactionCoordinator {
         String transactionId = UUID.randomUUID().toString();
         log.info("Starting distributed transaction: {}", transactionId);
         
-        TransactionContext context = new TransactionContext(transactionId);
+        TransactionContext context = new TransactionContext(transactionId, sagaService);
         
         try {
             // Фаза 1: Подготовка всех ресурсов
@@ -37,6 +38,7 @@ public class TransactionCoordinator {
             // Фаза 2: Коммит всех ресурсов
             log.info("Transaction {}: Phase 2 - Commit", transactionId);
             operation.commit(context);
+            sagaService.markCommitted(transactionId);
             
             log.info("Transaction {} completed successfully", transactionId);
             return result;
@@ -44,13 +46,18 @@ public class TransactionCoordinator {
         } catch (Exception e) {
             log.error("Transaction {} failed, initiating rollback", transactionId, e);
             
-            // Откат всех операций
+            // Откат операций в БД; загруженные файлы удалит фоновая компенсация по журналу саги
             try {
                 operation.rollback(context);
                 log.info("Transaction {} rollback completed", transactionId);
             } catch (Exception rollbackException) {
                 log.error("Transaction {} rollback failed", transactionId, rollbackException);
-                // В реальной системе здесь нужно запустить процесс восстановления
+            }
+            try {
+                sagaService.requestCompensation(transactionId);
+            } catch (Exception compensationException) {
+                // Шаги останутся PENDING, и компенсация подберет их как брошенные
+                log.error("Transaction {}: failed to request compensation", transactionId, compensationException);
             }
             
             throw e;
@@ -1,17 +1,25 @@
 package org.example.service;
 
+import jakarta.annotation.Resource;
+import jakarta.ejb.SessionContext;
 import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
 import jakarta.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
 import org.example.domain.import_history.dto.ImportOperationDto;
 import org.example.domain.import_history.dto.ImportRequestDto;
 import org.example.domain.import_history.dto.ImportResultDto;
 import org.example.domain.import_history.entity.ImportStatus;
+import org.example.domain.import_history.service.ImportFormat;
 import org.example.domain.import_history.service.ImportOperationServiceMB;
 import org.example.domain.import_history.service.RouteImportService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.List;
 
 @Slf4j
 @Stateless
@@ -29,15 +37,27 @@ public class TransactionalFileImportService {
     @Inject
     private RouteImportService routeImportService;
 
+    @Resource
+    private SessionContext sessionContext;
+
     /**
      * Выполняет транзакционный импорт с сохранением файла в MinIO
      */
     public ImportResultDto importRoutesWithFileStorage(ImportRequestDto request) {
+        return importRoutesWithFileStorage(request, null, false);
+    }
+
+    /**
+     * Выполняет транзакционный импорт для заранее созданной операции (фоновые задания импорта).
+     * Без force файл, который пользователь уже успешно импортировал, повторно не разбирается
+     */
+    public ImportResultDto importRoutesWithFileStorage(ImportRequestDto request, Integer existingOperationId,
+                                                       boolean force) {
         log.info("Starting transactional import with file storage for user: {}, file: {}", 
                 request.username(), request.filename());
 
         try {
-            return transactionCoordinator.executeTransaction(new FileImportOperation(request));
+            return transactionCoordinator.executeTransaction(new FileImportOperation(request, existingOperationId, force));
         } catch (Exception e) {
             log.error("Transactional import failed", e);
             return new ImportResultDto(
@@ -52,63 +72,342 @@ public class TransactionalFileImportService {
         }
     }
 
+    /**
+     * Потоковый импорт с сохранением файла: тело запроса одновременно разбирается и уходит в MinIO
+     * multipart загрузкой, поэтому время импорта близко к большему из времен загрузки и разбора, а не к их сумме
+     */
+    public ImportResultDto importRoutesFromStreamWithFileStorage(String username, String filename,
+                                                                 ImportFormat format, InputStream body,
+                                                                 String expectedHash, boolean force) {
+        log.info("Starting streaming import with file storage for user: {}, file: {}", username, filename);
+
+        // Хеш потока известен только в конце. Заявленному клиентом хешу не верим: если этот пользователь уже
+        // импортировал такой файл, тело только хешируется, и разбор пропускается, лишь когда хеш совпал
+        if (expectedHash != null && !force) {
+            ImportOperationDto source = importOperationService.findImportedByFileHash(username, expectedHash);
+            if (source != null) {
+                return skipIfSameContent(username, filename, body, expectedHash, source);
+            }
+        }
+
+        StreamingUpload upload;
+        try {
+            upload = minIOService.startStreamingUpload(filename, detectContentType(filename));
+        } catch (Exception e) {
+            log.error("Failed to start streaming upload", e);
+            return new ImportResultDto(
+                    null,
+                    ImportStatus.FAILED,
+                    0,
+                    0,
+                    0,
+                    Arrays.asList("System error: " + e.getMessage()),
+                    "Import failed due to system error"
+            );
+        }
+
+        ImportResultDto result;
+        try {
+            result = routeImportService.importRoutesFromStream(username, filename, format,
+                    new TeeInputStream(body, upload.outputStream()));
+        } catch (RuntimeException e) {
+            discardUpload(upload);
+            throw e;
+        }
+        if (result.status() != ImportStatus.SUCCESS) {
+            discardUpload(upload);
+            return result;
+        }
+
+        try {
+            MinIOService.FileUploadResult received = upload.complete();
+            if (expectedHash != null && !expectedHash.equals(received.fileHash())) {
+                sessionContext.setRollbackOnly();
+                discardUpload(upload);
+                return hashMismatch(result.operationId(), result.totalRecords());
+            }
+            // Ссылка пишется в транзакции импорта: операция уже завершена в ней, и ссылку из отдельной транзакции
+            // коммит затер бы. Блокировка ключа держится до коммита, поэтому компенсация не удалит объект
+            // после копирования, пока ссылка не зафиксирована
+            importOperationService.attachFile(
+                    result.operationId(),
+                    MinIOService.contentKey(received.fileHash(), received.contentEncoding()),
+                    received.fileSize(),
+                    received.contentType(),
+                    received.contentEncoding(),
+                    received.fileHash()
+            );
+            MinIOService.FileUploadResult stored = minIOService.moveToContentKey(received);
+            importOperationService.updateStoredSize(result.operationId(), stored.storedSize());
+            return result;
+        } catch (Exception e) {
+            // Данные без сохраненного файла не фиксируем, как и в транзакционном импорте
+            log.error("File storage failed for streaming import {}", result.operationId(), e);
+            sessionContext.setRollbackOnly();
+            discardUpload(upload);
+            importOperationService.failImportOperationIndependently(result.operationId(), result.totalRecords(),
+                    "File storage failed: " + e.getMessage());
+            return new ImportResultDto(
+                    result.operationId(),
+                    ImportStatus.FAILED,
+                    result.totalRecords(),
+                    0,
+                    result.totalRecords(),
+                    Arrays.asList("File storage failed: " + e.getMessage()),
+                    "Import failed due to system error"
+            );
+        }
+    }
+
+    /**
+     * Повтор уже импортированного пользователем файла: тело читается только ради хеша
+     */
+    private ImportResultDto skipIfSameContent(String username, String filename, InputStream body,
+                                              String expectedHash, ImportOperationDto source) {
+        Integer operationId = importOperationService.startImportOperation(username, filename).id();
+        String receivedHash;
+        try {
+            receivedHash = MinIOService.sha256(body);
+        } catch (IOException e) {
+            log.error("Failed to read streaming import {}", operationId, e);
+            importOperationService.failImportOperationIndependently(operationId, null,
+                    "Failed to read file: " + e.getMessage());
+            return new ImportResultDto(
+                    operationId,
+                    ImportStatus.FAILED,
+                    0,
+                    0,
+                    0,
+                    Arrays.asList("System error: " + e.getMessage()),
+                    "Import failed due to system error"
+            );
+        }
+        if (!receivedHash.equals(expectedHash)) {
+            return hashMismatch(operationId, null);
+        }
+        return alreadyImported(operationId, source);
+    }
+
+    private ImportResultDto hashMismatch(Integer operationId, Integer totalRecords) {
+        String message = "Declared sha256 does not match the received file";
+        log.warn("Import {} rejected: {}", operationId, message);
+        importOperationService.failImportOperationIndependently(operationId, totalRecords, message);
+        return new ImportResultDto(
+                operationId,
+                ImportStatus.FAILED,
+                totalRecords != null ? totalRecords : 0,
+                0,
+                0,
+                List.of(message),
+                "Import failed: file content does not match sha256"
+        );
+    }
+
+    /**
+     * Результат импорта файла, который уже был успешно импортирован: строки не разбираются повторно
+     */
+    private ImportResultDto alreadyImported(Integer operationId, ImportOperationDto source) {
+        log.info("Import {} skipped: identical file was already imported by operation {}", operationId, source.id());
+        importOperationService.completeAsAlreadyImported(operationId, source);
+        return new ImportResultDto(
+                operationId,
+                ImportStatus.SUCCESS,
+                source.totalRecords(),
+                0,
+                0,
+                List.of(),
+                "File already imported by operation #" + source.id() + "; use force=true to import it again"
+        );
+    }
+
+    /**
+     * Успешный импорт того же содержимого этим пользователем. Дедупликация не знает, живы ли еще маршруты
+     * того импорта, поэтому force позволяет импортировать файл заново
+     */
+    private ImportOperationDto findPreviousImport(String username, String fileHash, boolean force) {
+        return force ? null : importOperationService.findImportedByFileHash(username, fileHash);
+    }
+
+    private void discardUpload(StreamingUpload upload) {
+        upload.abort();
+        try {
+            minIOService.deleteFile(upload.fileKey());
+        } catch (Exception e) {
+            log.warn("Failed to delete aborted upload {}: {}", upload.fileKey(), e.getMessage());
+        }
+    }
+
+    /**
+     * Чанковый импорт: файл сохраняется в MinIO до начала записи и не удаляется при сбое,
+     * чтобы импорт можно было продолжить с последней контрольной точки
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public ImportResultDto importRoutesChunkedWithFileStorage(ImportRequestDto request, Integer operationId,
+                                                              boolean force) {
+        log.info("Starting chunked import {} for user: {}, file: {}",
+                operationId, request.username(), request.filename());
+
+        try {
+            byte[] fileContent = request.fileContent().getBytes(StandardCharsets.UTF_8);
+            String fileHash = MinIOService.sha256(fileContent);
+            ImportOperationDto source = findPreviousImport(request.username(), fileHash, force);
+            if (source != null) {
+                return alreadyImported(operationId, source);
+            }
+
+            String contentType = detectContentType(request.filename());
+            String contentEncoding = minIOService.fileCompression();
+            String fileKey = MinIOService.contentKey(fileHash, contentEncoding);
+            importOperationService.attachFileIndependently(operationId, fileKey, (long) fileContent.length,
+                    contentType, contentEncoding, fileHash);
+            MinIOService.FileUploadResult stored = minIOService.uploadFile(fileHash, contentType, fileContent);
+            importOperationService.updateStoredSize(operationId, stored.storedSize());
+            return resumeChunkedImport(operationId, request.filename(), fileKey, contentEncoding);
+        } catch (Exception e) {
+            log.error("Chunked import {} failed before data import", operationId, e);
+            importOperationService.failImportOperationIndependently(operationId, null, "Upload failed: " + e.getMessage());
+            return new ImportResultDto(
+                    operationId,
+                    ImportStatus.FAILED,
+                    0,
+                    0,
+                    0,
+                    Arrays.asList("System error: " + e.getMessage()),
+                    "Import failed due to system error"
+            );
+        }
+    }
+
+    /**
+     * Запуск или продолжение чанкового импорта по уже сохраненному файлу
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public ImportResultDto resumeChunkedImport(Integer operationId, String filename, String fileKey,
+                                               String contentEncoding) {
+        return routeImportService.importRoutesChunked(operationId, ImportFormat.fromFilename(filename),
+                () -> minIOService.openFile(fileKey, contentEncoding));
+    }
+
+    private String detectContentType(String filename) {
+        if (filename == null) return "application/octet-stream";
+        
+        String lowerFilename = filename.toLowerCase();
+        if (lowerFilename.endsWith(".csv")) {
+            return "text/csv";
+        } else if (lowerFilename.endsWith(".txt")) {
+            return "text/plain";
+        } else if (lowerFilename.endsWith(".json")) {
+            return "application/json";
+        } else if (lowerFilename.endsWith(".ndjson") || lowerFilename.endsWith(".jsonl")) {
+            return "application/x-ndjson";
+        } else if (lowerFilename.endsWith(".xml")) {
+            return "application/xml";
+        }
+        
+        return "application/octet-stream";
+    }
+
     /**
      * Реализация транзакционной операции импорта файла
      */
     private class FileImportOperation implements TransactionalOperation<ImportResultDto> {
         private final ImportRequestDto request;
+        private final Integer existingOperationId;
+        private final boolean force;
         private ImportOperationDto operation;
         private String fileKey;
 
-        public FileImportOperation(ImportRequestDto request) {
+        public FileImportOperation(ImportRequestDto request, Integer existingOperationId, boolean force) {
             this.request = request;
+            this.existingOperationId = existingOperationId;
+            this.force = force;
         }
 
         @Override
         public ImportResultDto prepare(TransactionContext context) throws Exception {
             log.info("Transaction {}: Preparing file import for {}", context.getTransactionId(), request.filename());
 
-            // Шаг 1: Загружаем файл в MinIO
+            // Шаг 1: Создаем операцию импорта (или берем созданную заданием) отдельной транзакцией,
+            // чтобы прогресс операции был виден во время импорта
+            log.info("Transaction {}: Registering import operation in database", context.getTransactionId());
+            Integer operationId = existingOperationId != null
+                    ? existingOperationId
+                    : importOperationService.startImportOperation(request.username(), request.filename()).id();
+
+            // Шаг 2: Такой же файл уже импортирован - повторный разбор только пропустил бы все строки как дубликаты
             byte[] fileContent = request.fileContent().getBytes(StandardCharsets.UTF_8);
+            String fileHash = MinIOService.sha256(fileContent);
+            ImportOperationDto source = findPreviousImport(request.username(), fileHash, force);
+            if (source != null) {
+                return alreadyImported(operationId, source);
+            }
+
+            // Шаг 3: Записываем ссылку на файл и запускаем его загрузку в MinIO, она идет параллельно с импортом данных.
+            // Объект с тем же содержимым уже может храниться после неудачного импорта - тогда он переиспользуется.
+            // Ссылка фиксируется до проверки наличия объекта: после этого компенсация его уже не удалит
             String contentType = detectContentType(request.filename());
-            
-            log.info("Transaction {}: Uploading file to MinIO", context.getTransactionId());
-            MinIOService.FileUploadResult uploadResult = minIOService.uploadFile(
-                    request.filename(), 
-                    contentType, 
-                    fileContent
-            );
-            
-            fileKey = uploadResult.fileKey();
-            context.addUploadedFile(fileKey);
-            log.info("Transaction {}: File uploaded to MinIO with key: {}", context.getTransactionId(), fileKey);
-
-            // Шаг 2: Создаем операцию импорта в БД с информацией о файле
-            log.info("Transaction {}: Creating import operation in database", context.getTransactionId());
-            operation = importOperationService.createImportOperation(
-                    request.username(),
-                    request.filename(),
-                    null, // totalRecords будет установлено после парсинга
+            String contentEncoding = minIOService.fileCompression();
+            fileKey = MinIOService.contentKey(fileHash, contentEncoding);
+            operation = importOperationService.attachFileIndependently(
+                    operationId,
                     fileKey,
-                    uploadResult.fileSize(),
-                    uploadResult.contentType()
+                    (long) fileContent.length,
+                    contentType,
+                    contentEncoding,
+                    fileHash
             );
+            StreamingUpload upload = null;
+            long existingSize = minIOService.storedSizeIfExists(fileKey);
+            if (existingSize >= 0) {
+                importOperationService.updateStoredSize(operationId, existingSize);
+            } else {
+                log.info("Transaction {}: Uploading file to MinIO", context.getTransactionId());
+                context.setOperationId(operationId);
+                context.addUploadedFile(fileKey);
+                upload = minIOService.startUpload(fileHash, contentType, fileContent);
+                log.info("Transaction {}: File upload started with key: {}", context.getTransactionId(), fileKey);
+            }
             
-            // Добавляем операцию отката для удаления записи из БД
+            // Добавляем операцию отката: статус операции должен пережить откат транзакции импорта
             context.addRollbackOperation(() -> {
                 try {
                     if (operation != null && operation.id() != null) {
                         log.info("Rolling back database operation: {}", operation.id());
-                        importOperationService.failImportOperation(operation.id(), "Transaction rolled back");
+                        importOperationService.failImportOperationIndependently(operation.id(), null, "Transaction rolled back");
                     }
                 } catch (Exception e) {
                     log.error("Failed to rollback database operation", e);
                 }
             });
 
-            // Шаг 3: Выполняем импорт данных (в рамках той же транзакции БД)
+            // Шаг 4: Выполняем импорт данных (в рамках той же транзакции БД)
             log.info("Transaction {}: Starting data import", context.getTransactionId());
-            ImportResultDto result = routeImportService.importRoutesWithOperation(request, operation.id());
+            ImportResultDto result;
+            try {
+                result = routeImportService.importRoutesWithOperation(request, operation.id());
+            } catch (Exception e) {
+                // Загрузку дожидаемся и при сбое импорта, но ее ошибка не должна скрыть исходную
+                if (upload != null) {
+                    try {
+                        upload.complete();
+                    } catch (Exception uploadFailure) {
+                        e.addSuppressed(uploadFailure);
+                    }
+                }
+                throw e;
+            }
+
+            // Шаг 5: Дожидаемся загрузки; если она не удалась, данные импорта не должны зафиксироваться
+            if (upload != null) {
+                try {
+                    MinIOService.FileUploadResult stored = upload.complete();
+                    importOperationService.updateStoredSize(operationId, stored.storedSize());
+                    log.info("Transaction {}: File uploaded to MinIO", context.getTransactionId());
+                } catch (Exception e) {
+                    sessionContext.setRollbackOnly();
+                    throw e;
+                }
+            }
             
             // RouteImportService теперь сам управляет состоянием операции
             return result;
@@ -126,15 +425,8 @@ public class TransactionalFileImportService {
         public void rollback(TransactionContext context) {
             log.warn("Transaction {}: Rolling back file import operation", context.getTransactionId());
 
-            // Удаляем файл из MinIO
-            for (String uploadedFileKey : context.getUploadedFiles()) {
-                try {
-                    log.info("Deleting file from MinIO: {}", uploadedFileKey);
-                    minIOService.deleteFile(uploadedFileKey);
-                } catch (Exception e) {
-                    log.error("Failed to delete file from MinIO during rollback: {}", uploadedFileKey, e);
-                }
-            }
+            // Загруженный файл здесь не удаляется: шаг саги уже переведен в COMPENSATE,
+            // и файл удалит ImportCompensationService, не задерживая ответ клиенту
 
             // Выполняем другие операции отката
             for (Runnable rollbackOp : context.getRollbackOperations()) {
@@ -147,22 +439,5 @@ public class TransactionalFileImportService {
 
             log.info("Transaction {}: File import rollback completed", context.getTransactionId());
         }
-
-        private String detectContentType(String filename) {
-            if (filename == null) return "application/octet-stream";
-            
-            String lowerFilename = filename.toLowerCase();
-            if (lowerFilename.endsWith(".csv")) {
-                return "text/csv";
-            } else if (lowerFilename.endsWith(".txt")) {
-                return "text/plain";
-            } else if (lowerFilename.endsWith(".json")) {
-                return "application/json";
-            } else if (lowerFilename.endsWith(".xml")) {
-                return "application/xml";
-            }
-            
-            return "application/octet-stream";
-        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package org.example.domain.import_history.controller;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AcceptEncodingTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "gzip                     | true",
+            "GZIP                     | true",
+            "deflate, gzip;q=0.5      | true",
+            "gzip;q=0                 | false",
+            "gzip; q=0.0, deflate     | false",
+            "*                        | true",
+            "*;q=0                    | false",
+            "*, gzip;q=0              | false",
+            "gzip;q=0, *              | false",
+            "br, deflate              | false",
+            "x-gzip                   | false",
+            "identity                 | false"
+    })
+    void acceptsGzip(String header, boolean expected) {
+        assertEquals(expected, AcceptEncoding.accepts(header, "gzip"));
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.domain.import_history.controller;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ByteRangeTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "bytes=0-99       | 1000 | 0   | 99  | bytes 0-99/1000",
+            "bytes=500-       | 1000 | 500 | 999 | bytes 500-999/1000",
+            "bytes=990-2000   | 1000 | 990 | 999 | bytes 990-999/1000",
+            "bytes=999-999    | 1000 | 999 | 999 | bytes 999-999/1000",
+            "bytes=-100       | 1000 | 900 | 999 | bytes 900-999/1000",
+            "bytes=-5000      | 1000 | 0   | 999 | bytes 0-999/1000",
+            "'bytes= 10 - 19 '| 1000 | 10  | 19  | bytes 10-19/1000",
+            "bytes=0-         | 1    | 0   | 0   | bytes 0-0/1"
+    })
+    void satisfiableRanges(String header, long size, long start, long end, String contentRange) {
+        ByteRange range = ByteRange.parse(header, size);
+
+        assertEquals(new ByteRange(start, end), range);
+        assertEquals(end - start + 1, range.length());
+        assertEquals(contentRange, range.contentRange(size));
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "bytes=1000-     | 1000",
+            "bytes=1000-1001 | 1000",
+            "bytes=-0        | 1000",
+            "bytes=0-        | 0",
+            "bytes=0-0       | 0",
+            "bytes=-10       | 0"
+    })
+    void unsatisfiableRanges(String header, long size) {
+        assertThrows(IllegalStateException.class, () -> ByteRange.parse(header, size));
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(strings = {"", "items=0-10", "bytes=0-10,20-30", "bytes=10", "bytes=abc-", "bytes=5-3", "bytes=-"})
+    void unsupportedOrInvalidHeadersMeanWholeFile(String header) {
+        assertNull(ByteRange.parse(header, 1000));
+    }
+}
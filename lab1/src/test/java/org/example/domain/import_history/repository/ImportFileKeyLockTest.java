@@ -0,0 +1,64 @@
+package org.example.domain.import_history.repository;
+
+import jakarta.persistence.EntityManager;
+import org.example.support.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Блокировка ключа файла держится до конца транзакции и не мешает другим ключам
+ */
+class ImportFileKeyLockTest {
+
+    private static final String FILE_KEY = "imports/sha256/0f1e2d3c.gz";
+
+    private EntityManager em;
+    private ImportOperationRepositoryMB repository;
+
+    @BeforeEach
+    void setUp() {
+        em = TestDatabase.entityManagerFactory().createEntityManager();
+        repository = TestDatabase.inject(new ImportOperationRepositoryMB(), em);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (em.getTransaction().isActive()) {
+            em.getTransaction().rollback();
+        }
+        em.close();
+    }
+
+    @Test
+    void lockIsHeldUntilTransactionEnds() throws SQLException {
+        em.getTransaction().begin();
+        repository.lockFileKey(FILE_KEY);
+
+        assertFalse(tryLock(FILE_KEY));
+        assertTrue(tryLock("imports/sha256/other"));
+
+        em.getTransaction().commit();
+        assertTrue(tryLock(FILE_KEY));
+    }
+
+    private static boolean tryLock(String fileKey) throws SQLException {
+        try (Connection connection = TestDatabase.dataSource().getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT pg_try_advisory_xact_lock(hashtextextended(?, 0))")) {
+            statement.setString(1, fileKey);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return rs.getBoolean(1);
+            }
+        }
+    }
+}
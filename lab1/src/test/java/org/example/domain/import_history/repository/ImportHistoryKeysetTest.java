@@ -0,0 +1,93 @@
+package org.example.domain.import_history.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.persistence.EntityManager;
+import org.example.domain.import_history.entity.ImportOperation;
+import org.example.support.ExplainingDataSource;
+import org.example.support.QueryPlans;
+import org.example.support.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Страница истории импорта читается с позиции в индексе (username, start_time DESC, id DESC)
+ */
+class ImportHistoryKeysetTest {
+
+    private static final String USER = "user-3";
+    private static final int PAGE = 50;
+
+    private EntityManager em;
+    private ImportOperationRepositoryMB repository;
+
+    @BeforeAll
+    static void seed() {
+        // По три операции на одну и ту же секунду, чтобы страницы резались внутри равных start_time;
+        // строки пишутся вперемешку, как от нескольких пользователей сразу, а не в порядке времени
+        TestDatabase.execute(
+                "TRUNCATE import_saga_steps, import_operations RESTART IDENTITY CASCADE",
+                "INSERT INTO import_operations (start_time, status, username, filename) "
+                        + "SELECT TIMESTAMPTZ '2025-01-01 00:00:00+00' + (i / 3) * INTERVAL '1 second', 'SUCCESS', "
+                        + "'user-' || (i % 10), 'routes-' || i || '.csv' FROM generate_series(1, 50000) i "
+                        + "ORDER BY random()",
+                "ANALYZE import_operations");
+    }
+
+    @BeforeEach
+    void setUp() {
+        em = TestDatabase.entityManagerFactory().createEntityManager();
+        repository = TestDatabase.inject(new ImportOperationRepositoryMB(), em);
+    }
+
+    @AfterEach
+    void tearDown() {
+        em.close();
+    }
+
+    @Test
+    void pagesWalkHistoryInOrderWithoutGapsOrRepeats() {
+        List<?> rows = em.createNativeQuery(
+                        "SELECT id FROM import_operations WHERE username = :username ORDER BY start_time DESC, id DESC",
+                        Integer.class)
+                .setParameter("username", USER)
+                .getResultList();
+        List<Integer> expected = rows.stream().map(Integer.class::cast).toList();
+
+        List<Integer> walked = new ArrayList<>();
+        ImportOperation last = null;
+        do {
+            List<ImportOperation> page = last == null
+                    ? repository.findByUsernameAfter(USER, null, null, PAGE)
+                    : repository.findByUsernameAfter(USER, last.getStartTime(), last.getId(), PAGE);
+            page.forEach(operation -> walked.add(operation.getId()));
+            last = page.size() == PAGE ? page.get(PAGE - 1) : null;
+            em.clear();
+        } while (last != null);
+
+        assertEquals(expected, walked);
+    }
+
+    @Test
+    void deepPageSeeksIndexByStartTimeAndId() {
+        ImportOperation deep = repository.findByUsernameAfter(USER, null, null, 4000).get(3999);
+
+        List<String> plans = ExplainingDataSource.explain(
+                () -> repository.findByUsernameAfter(USER, deep.getStartTime(), deep.getId(), PAGE));
+
+        assertEquals(1, plans.size());
+        JsonNode scan = QueryPlans.indexScan(plans.get(0), "idx_import_operations_username_start_time_id")
+                .orElseThrow(() -> new AssertionError("Keyset index is not used: " + plans.get(0)));
+        String condition = scan.path("Index Cond").asText();
+        assertTrue(condition.contains("username"), condition);
+        assertTrue(condition.contains("ROW(start_time, id) < ROW("), condition);
+        assertTrue(scan.path("Filter").isMissingNode(), scan.toString());
+    }
+}
@@ -0,0 +1,145 @@
+package org.example.domain.import_history.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Разбор строки CSV: поля в кавычках и быстрые пути чисел, которые обязаны давать те же биты, что парсеры JDK
+ */
+class CsvLineTokenizerTest {
+
+    @Test
+    void plainFieldsAreTrimmed() {
+        CsvLineTokenizer tokenizer = new CsvLineTokenizer(3);
+        tokenizer.tokenize("  Route A ,\t1.5,  ");
+
+        assertEquals("Route A", tokenizer.text(0));
+        assertEquals("1.5", tokenizer.text(1));
+        assertEquals("", tokenizer.text(2));
+    }
+
+    @Test
+    void quotedFieldsKeepCommasAndUnescapeQuotes() {
+        CsvLineTokenizer tokenizer = new CsvLineTokenizer(4);
+        tokenizer.tokenize(" \"Москва, центр\" ,\"say \"\"hi\"\"\",\"\"\"\",\" padded \"");
+
+        assertEquals("Москва, центр", tokenizer.text(0));
+        assertEquals("say \"hi\"", tokenizer.text(1));
+        assertEquals("\"", tokenizer.text(2));
+        assertEquals(" padded ", tokenizer.text(3));
+    }
+
+    @Test
+    void quotedFieldMaySpanLines() {
+        CsvLineTokenizer tokenizer = new CsvLineTokenizer(2);
+        tokenizer.tokenize("\"first\nsecond\",2");
+
+        assertEquals("first\nsecond", tokenizer.text(0));
+        assertEquals(2, tokenizer.longField(1));
+    }
+
+    @Test
+    void tokenizerIsReusedBetweenLines() {
+        CsvLineTokenizer tokenizer = new CsvLineTokenizer(2);
+        tokenizer.tokenize("\"a\"\"b\",1");
+        tokenizer.tokenize("plain,2");
+
+        assertEquals("plain", tokenizer.text(0));
+        assertEquals(2, tokenizer.longField(1));
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "'a,b'             | Line must have exactly 3 columns",
+            "'a,b,c,d'         | Line must have exactly 3 columns",
+            "'a,\"b,c'         | Unterminated quoted field in column 2",
+            "'a,\"b\" x,c'     | Unexpected character after quoted field in column 2"
+    })
+    void malformedLinesAreRejected(String line, String error) {
+        CsvLineTokenizer tokenizer = new CsvLineTokenizer(3);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> tokenizer.tokenize(line));
+        assertEquals(error, e.getMessage());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "0", "-0", "0.0", "-0.0", "+0.0", "1", "-1", "1.", ".5", "-.5", "+2.25", "0.1", "0.3", "123.456",
+            "000123.4500", "0.000000000000000000001", "0.0000000000000000000001", "0.00000000000000000000001",
+            "999999999999999", "9999999999999999", "99999999999999999999",
+            "1.23456789012345", "1.234567890123456", "1.2345678901234567",
+            "0.1234567890123456789", "9007199254740993", "4.35", "1e10", "-1.5E-3", "1e400", "-1e400", "4.9e-324",
+            "1e-400", "1.7976931348623157e308", "NaN", "Infinity", "-Infinity", "1d", "2.5f", "0x1p3"
+    })
+    void doubleFastPathMatchesJdk(String text) {
+        assertEquals(Double.doubleToRawLongBits(Double.parseDouble(text)),
+                Double.doubleToRawLongBits(single(text).doubleField(0)), text);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "0", "-0", "-0.0", "1", "-1", ".5", "0.1", "0.3", "3.4028235", "1234567", "12345678", "16777217",
+            "0.0000000001", "0.00000000001", "1.234567", "1.2345678", "123456.7", "9999999.9", "4.35",
+            "3.4028236e38", "1e39", "1.4e-45", "1e-46", "-1e5", "NaN", "-Infinity", "1f"
+    })
+    void floatFastPathMatchesJdk(String text) {
+        assertEquals(Float.floatToRawIntBits(Float.parseFloat(text)),
+                Float.floatToRawIntBits(single(text).floatField(0)), text);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "0", "-0", "+7", "42", "-42", "999999999999999999", "-999999999999999999",
+            "1000000000000000000", "9223372036854775807", "-9223372036854775808", "007"
+    })
+    void longFastPathMatchesJdk(String text) {
+        assertEquals(Long.parseLong(text), single(text).longField(0), text);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "-", "+", "1.5", "1e3", "abc", "9223372036854775808", "1 2"})
+    void invalidLongsFailLikeJdk(String text) {
+        CsvLineTokenizer tokenizer = single(text);
+        assertThrows(NumberFormatException.class, () -> tokenizer.longField(0));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "-", ".", "-.", "1.2.3", "abc", "1,5"})
+    void invalidDecimalsFailLikeJdk(String text) {
+        CsvLineTokenizer tokenizer = new CsvLineTokenizer(1);
+        tokenizer.tokenize("\"" + text + "\"");
+        assertThrows(NumberFormatException.class, () -> tokenizer.doubleField(0));
+        assertThrows(NumberFormatException.class, () -> tokenizer.floatField(0));
+    }
+
+    @Test
+    void randomDecimalsMatchJdk() {
+        Random random = new Random(20240601);
+        CsvLineTokenizer tokenizer = new CsvLineTokenizer(1);
+        for (int i = 0; i < 100_000; i++) {
+            int scale = random.nextInt(12);
+            String text = String.format(Locale.ROOT, "%." + scale + "f",
+                    (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(16)));
+            tokenizer.tokenize(text);
+
+            assertEquals(Double.doubleToRawLongBits(Double.parseDouble(text)),
+                    Double.doubleToRawLongBits(tokenizer.doubleField(0)), text);
+            assertEquals(Float.floatToRawIntBits(Float.parseFloat(text)),
+                    Float.floatToRawIntBits(tokenizer.floatField(0)), text);
+        }
+    }
+
+    private static CsvLineTokenizer single(String text) {
+        CsvLineTokenizer tokenizer = new CsvLineTokenizer(1);
+        tokenizer.tokenize(text);
+        return tokenizer;
+    }
+}
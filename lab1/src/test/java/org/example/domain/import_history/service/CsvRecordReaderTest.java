@@ -0,0 +1,83 @@
+package org.example.domain.import_history.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Чтение CSV по записям: запись с переводом строки в кавычках собирается целиком, номера строк физические
+ */
+class CsvRecordReaderTest {
+
+    @Test
+    void recordsCarryPhysicalLineNumbers() throws IOException {
+        List<ImportRecord.CsvLine> records = readAll("""
+                name,rating
+                First,1
+
+                   \t
+                Second,2
+                """);
+
+        assertEquals(List.of(new ImportRecord.CsvLine(2, "First,1"), new ImportRecord.CsvLine(5, "Second,2")), records);
+    }
+
+    @Test
+    void quotedNewlinesJoinPhysicalLinesIntoOneRecord() throws IOException {
+        List<ImportRecord.CsvLine> records = readAll("""
+                name,rating
+                "Multi
+                line
+
+                name",1
+                "Quote "" and
+                newline",2
+                After,3
+                """);
+
+        assertEquals(List.of(
+                new ImportRecord.CsvLine(2, "\"Multi\nline\n\nname\",1"),
+                new ImportRecord.CsvLine(6, "\"Quote \"\" and\nnewline\",2"),
+                new ImportRecord.CsvLine(8, "After,3")), records);
+    }
+
+    @Test
+    void unterminatedQuoteTakesRestOfFile() throws IOException {
+        List<ImportRecord.CsvLine> records = readAll("name,rating\n\"Open,1\nNext,2\n");
+
+        assertEquals(List.of(new ImportRecord.CsvLine(2, "\"Open,1\nNext,2")), records);
+    }
+
+    @Test
+    void headerIsCheckedIgnoringCaseAndSpaces() throws IOException {
+        try (CsvRecordReader reader = new CsvRecordReader(new StringReader(" Name , RATING\n"))) {
+            reader.readHeader("name", "rating");
+        }
+
+        IllegalArgumentException wrongName = assertThrows(IllegalArgumentException.class,
+                () -> new CsvRecordReader(new StringReader("name,score\n")).readHeader("name", "rating"));
+        assertEquals("Invalid header at column 2. Expected: rating, Found: score", wrongName.getMessage());
+        assertThrows(IllegalArgumentException.class,
+                () -> new CsvRecordReader(new StringReader("name\n")).readHeader("name", "rating"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CsvRecordReader(new StringReader("")).readHeader("name", "rating"));
+    }
+
+    private static List<ImportRecord.CsvLine> readAll(String csv) throws IOException {
+        List<ImportRecord.CsvLine> records = new ArrayList<>();
+        try (CsvRecordReader reader = new CsvRecordReader(new StringReader(csv))) {
+            reader.readHeader("name", "rating");
+            ImportRecord record;
+            while ((record = reader.next()) != null) {
+                records.add((ImportRecord.CsvLine) record);
+            }
+        }
+        return records;
+    }
+}
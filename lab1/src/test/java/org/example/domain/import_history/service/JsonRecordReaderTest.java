@@ -0,0 +1,134 @@
+package org.example.domain.import_history.service;
+
+import org.example.domain.import_history.repository.RouteBulkImportRepositoryMB.BulkRouteRow;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Чтение JSON импорта: массив и NDJSON дают одни и те же записи, ошибка в поле отклоняет только свою запись
+ */
+class JsonRecordReaderTest {
+
+    private static final String ROUTE = """
+            {"name": " Route A ", "coordinates_x": 1.5, "coordinates_y": -2.25, "from_x": 3, "from_y": 4,
+             "from_name": "From", "to_x": 5, "to_y": 6, "to_name": "", "distance": 100, "rating": 7}""";
+    private static final String OTHER = """
+            {"name": "Route B", "coordinates_x": "0.1", "coordinates_y": 1e2, "from_x": -0.0, "from_y": 0,
+             "from_name": null, "to_x": 1, "to_y": 2, "to_name": "To", "distance": "42", "rating": 1, "id": 9}""";
+
+    @Test
+    void arrayAndNdjsonYieldSameRecords() throws IOException {
+        List<ImportRecord> fromArray = readAll("[" + ROUTE + ",\n" + OTHER + "]");
+        List<ImportRecord> fromNdjson = readAll(ROUTE + "\n" + OTHER + "\n");
+
+        assertEquals(2, fromArray.size());
+        assertEquals(2, fromNdjson.size());
+        for (int i = 0; i < 2; i++) {
+            assertEquals(i + 1, fromArray.get(i).position());
+            assertSameRow(parsed(fromArray.get(i)), parsed(fromNdjson.get(i)));
+        }
+    }
+
+    @Test
+    void fieldsAreTrimmedAndNumbersParsedLikeCsv() throws IOException {
+        List<ImportRecord> records = readAll(ROUTE + "\n" + OTHER);
+
+        BulkRouteRow first = parsed(records.get(0));
+        assertEquals("Route A", first.name());
+        assertEquals(1.5f, first.coordinatesX());
+        assertEquals(-2.25, first.coordinatesY());
+        assertEquals("From", first.fromName());
+        assertNull(first.toName());
+        assertEquals(100, first.distance());
+
+        BulkRouteRow second = parsed(records.get(1));
+        assertEquals(Float.parseFloat("0.1"), second.coordinatesX());
+        assertEquals(100.0, second.coordinatesY());
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(second.fromX()));
+        assertNull(second.fromName());
+        assertEquals(42, second.distance());
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "distance | 92233720368547758070 | Invalid number format in field 'distance': 92233720368547758070",
+            "distance | 1.5                  | Field 'distance' must be an integer",
+            "distance | \"ten\"            | Invalid number format in field 'distance': ten",
+            "from_x   | true                 | Field 'from_x' must be a number",
+            "from_x   | [1, 2]               | Field 'from_x' must be a number",
+            "name     | 5                    | Field 'name' must be a string",
+            "rating   | null                 | Missing field 'rating'"
+    })
+    void badFieldRejectsOnlyItsRecord(String field, String value, String error) throws IOException {
+        String broken = ROUTE.replaceFirst("\"" + field + "\": [^,}]+", "\"" + field + "\": " + value);
+
+        List<ImportRecord> records = readAll("[" + broken + ", " + OTHER + "]");
+
+        assertEquals(2, records.size());
+        ImportRecord.Rejected rejected = assertInstanceOf(ImportRecord.Rejected.class, records.get(0));
+        assertEquals(error, rejected.error());
+        assertEquals("Route B", parsed(records.get(1)).name());
+    }
+
+    @Test
+    void nonObjectRecordIsRejected() throws IOException {
+        List<ImportRecord> records = readAll("[1, " + ROUTE + "]");
+
+        assertEquals("Record must be a JSON object",
+                assertInstanceOf(ImportRecord.Rejected.class, records.get(0)).error());
+        assertEquals("Route A", parsed(records.get(1)).name());
+    }
+
+    @Test
+    void contentAfterArrayIsAnError() {
+        assertThrows(IllegalArgumentException.class, () -> readAll("[" + ROUTE + "] {}"));
+    }
+
+    @Test
+    void recordLineNumbersPointAtObjectStart() throws IOException {
+        List<ImportRecord> records = readAll(ROUTE + "\n\n" + OTHER);
+
+        assertEquals(1, records.get(0).lineNumber());
+        assertEquals(4, records.get(1).lineNumber());
+    }
+
+    private static List<ImportRecord> readAll(String json) throws IOException {
+        List<ImportRecord> records = new ArrayList<>();
+        try (JsonRecordReader reader = new JsonRecordReader(new StringReader(json))) {
+            ImportRecord record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private static BulkRouteRow parsed(ImportRecord record) {
+        return assertInstanceOf(ImportRecord.Parsed.class, record).data();
+    }
+
+    private static void assertSameRow(BulkRouteRow expected, BulkRouteRow actual) {
+        assertEquals(expected.name(), actual.name());
+        assertEquals(expected.coordinatesX(), actual.coordinatesX());
+        assertEquals(expected.coordinatesY(), actual.coordinatesY());
+        assertEquals(expected.fromX(), actual.fromX());
+        assertEquals(expected.fromY(), actual.fromY());
+        assertEquals(expected.fromName(), actual.fromName());
+        assertEquals(expected.toX(), actual.toX());
+        assertEquals(expected.toY(), actual.toY());
+        assertEquals(expected.toName(), actual.toName());
+        assertEquals(expected.distance(), actual.distance());
+        assertEquals(expected.rating(), actual.rating());
+    }
+}
@@ -0,0 +1,128 @@
+package org.example.domain.import_history.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Параллельная проверка строк: результаты в порядке строк при любом планировании, а если пул отказал -
+ * пачки проверяет вызывающий поток
+ */
+class ParallelRowValidatorTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void resultsFollowRowOrderWhenChunksFinishOutOfOrder() {
+        // Случайные задержки перемешивают порядок завершения пачек
+        Function<Integer, Integer> slowSquare = row -> {
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(50_000));
+            return row * row;
+        };
+
+        List<Integer> results = validateAll(new ParallelRowValidator<>(pool, () -> slowSquare, 7, 3), 1_000);
+
+        assertEquals(IntStream.range(0, 1_000).map(row -> row * row).boxed().toList(), results);
+    }
+
+    @Test
+    void rejectedChunksAreValidatedByCallerThread() {
+        Thread caller = Thread.currentThread();
+        AtomicInteger chunks = new AtomicInteger();
+        ParallelRowValidator<Integer, Integer> validator = new ParallelRowValidator<>(
+                command -> {
+                    throw new RejectedExecutionException("queue full");
+                },
+                () -> {
+                    chunks.incrementAndGet();
+                    return row -> {
+                        assertSame(caller, Thread.currentThread());
+                        return -row;
+                    };
+                },
+                10, 2);
+
+        List<Integer> results = validateAll(validator, 95);
+
+        assertEquals(IntStream.range(0, 95).map(row -> -row).boxed().toList(), results);
+        assertEquals(10, chunks.get(), "one validator per chunk");
+    }
+
+    @Test
+    void chunksInFlightAreBounded() {
+        List<Runnable> queued = new ArrayList<>();
+        ParallelRowValidator<Integer, Integer> validator = new ParallelRowValidator<>(queued::add, () -> row -> row, 5, 2);
+
+        for (int row = 0; row < 14; row++) {
+            assertTrue(validator.submit(row).isEmpty());
+        }
+        // Третья пачка превышает лимит в две: самую раннюю проверяет вызывающий поток
+        List<Integer> ready = validator.submit(14);
+
+        assertEquals(List.of(0, 1, 2, 3, 4), ready);
+        assertEquals(IntStream.range(5, 15).boxed().toList(), validator.finish());
+        // Задачи, уже проверенные вызывающим потоком, пулу ничего не делают
+        queued.forEach(Runnable::run);
+    }
+
+    @Test
+    void validationErrorIsRethrownToCaller() {
+        ParallelRowValidator<Integer, Integer> validator = new ParallelRowValidator<>(pool, () -> row -> {
+            if (row == 13) {
+                throw new IllegalStateException("row " + row);
+            }
+            return row;
+        }, 4, 2);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> validateAll(validator, 20));
+        assertEquals("row 13", e.getMessage());
+    }
+
+    @Test
+    void closeCancelsChunksNotStartedYet() {
+        List<Runnable> queued = new ArrayList<>();
+        AtomicInteger validated = new AtomicInteger();
+        ParallelRowValidator<Integer, Integer> validator = new ParallelRowValidator<>(queued::add,
+                () -> row -> validated.incrementAndGet(), 3, 4);
+        for (int row = 0; row < 9; row++) {
+            validator.submit(row);
+        }
+
+        validator.close();
+        queued.forEach(Runnable::run);
+
+        assertEquals(3, queued.size());
+        assertEquals(0, validated.get());
+    }
+
+    private static List<Integer> validateAll(ParallelRowValidator<Integer, Integer> validator, int rows) {
+        try (validator) {
+            List<Integer> results = new ArrayList<>();
+            for (int row = 0; row < rows; row++) {
+                results.addAll(validator.submit(row));
+            }
+            results.addAll(validator.finish());
+            return results;
+        }
+    }
+}
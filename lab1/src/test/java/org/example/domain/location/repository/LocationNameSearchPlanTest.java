@@ -0,0 +1,64 @@
+package org.example.domain.location.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.persistence.EntityManager;
+import org.example.domain.location.entity.Location;
+import org.example.support.ExplainingDataSource;
+import org.example.support.QueryPlans;
+import org.example.support.RouteTestData;
+import org.example.support.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Поиск локаций по подстроке имени читает триграммный индекс по lower(name)
+ */
+class LocationNameSearchPlanTest {
+
+    private static final int ROUTES = 20_000;
+    private static final String TRIGRAM_INDEX = "idx_locations_name_trgm";
+
+    private EntityManager em;
+    private LocationRepositoryMB repository;
+
+    @BeforeAll
+    static void seed() {
+        RouteTestData.seed(ROUTES);
+    }
+
+    @BeforeEach
+    void setUp() {
+        em = TestDatabase.entityManagerFactory().createEntityManager();
+        repository = TestDatabase.inject(new LocationRepositoryMB(), em);
+    }
+
+    @AfterEach
+    void tearDown() {
+        em.close();
+    }
+
+    @Test
+    void findByExampleWithNameUsesTrigramIndex() {
+        List<String> plans = ExplainingDataSource.explain(() -> repository.findByExample(null, null, "TION 31415"));
+
+        assertEquals(1, plans.size());
+        JsonNode scan = QueryPlans.indexScan(plans.get(0), TRIGRAM_INDEX)
+                .orElseThrow(() -> new AssertionError("No scan of " + TRIGRAM_INDEX + " in " + plans.get(0)));
+        assertTrue(scan.path("Index Cond").asText().contains("lower("), scan.toString());
+        List<Location> found = repository.findByExample(null, null, "TION 31415");
+        assertEquals(List.of("Location 31415"), found.stream().map(Location::getName).toList());
+    }
+
+    @Test
+    void likeWildcardsInInputAreSearchedLiterally() {
+        assertTrue(repository.findByExample(null, null, "Location_1").isEmpty());
+        assertTrue(repository.findByExample(null, null, "%").isEmpty());
+    }
+}
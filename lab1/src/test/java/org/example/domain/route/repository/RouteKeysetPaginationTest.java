@@ -0,0 +1,99 @@
+package org.example.domain.route.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.persistence.EntityManager;
+import org.example.domain.route.dto.CompositeCursor;
+import org.example.domain.route.dto.RouteDto;
+import org.example.support.ExplainingDataSource;
+import org.example.support.QueryPlans;
+import org.example.support.RouteTestData;
+import org.example.support.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Страница по курсору читается с позиции курсора в индексе (поле, id), а не фильтрацией всех предыдущих строк
+ */
+class RouteKeysetPaginationTest {
+
+    private static final int ROUTES = 20_000;
+    private static final int DEEP_ROUTE_ID = 15_000;
+    private static final int PAGE = 21;
+
+    private EntityManager em;
+    private RouteRepositoryMB repository;
+
+    @BeforeAll
+    static void seed() {
+        RouteTestData.seed(ROUTES);
+    }
+
+    @BeforeEach
+    void setUp() {
+        em = TestDatabase.entityManagerFactory().createEntityManager();
+        repository = TestDatabase.inject(new RouteRepositoryMB(), em);
+    }
+
+    @AfterEach
+    void tearDown() {
+        em.close();
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "name, asc, idx_routes_name_id, name",
+            "name, desc, idx_routes_name_id, name",
+            "distance, asc, idx_routes_distance_id, distance",
+            "rating, desc, idx_routes_rating_id, rating",
+            "creationDate, asc, idx_routes_creation_date_id, creation_date",
+            "creationDate, desc, idx_routes_creation_date_id, creation_date"
+    })
+    void deepPageSeeksIndexByBothColumns(String sortBy, String direction, String index, String column) {
+        CompositeCursor cursor = CompositeCursor.of(deepRoute(), sortBy, direction);
+
+        List<String> plans = ExplainingDataSource.explain(() -> repository.findNextPage(cursor, PAGE, null));
+
+        assertEquals(1, plans.size());
+        JsonNode scan = QueryPlans.indexScan(plans.get(0), index)
+                .orElseThrow(() -> new AssertionError("No scan of " + index + " in " + plans.get(0)));
+        assertTrue(scan.path("Node Type").asText().startsWith("Index"), scan.toString());
+        String condition = scan.path("Index Cond").asText();
+        assertTrue(condition.matches("\\(ROW\\(\\(?" + column + "\\)?(::text)?, id\\) [<>] ROW\\(.*"), condition);
+        assertTrue(scan.path("Filter").isMissingNode(), scan.toString());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "name, asc, name ASC, id ASC",
+            "name, desc, name DESC, id DESC",
+            "distance, asc, distance ASC, id ASC",
+            "rating, desc, rating DESC, id DESC",
+            "creationDate, desc, creation_date DESC, id DESC"
+    })
+    void nextAndPreviousPagesMatchOffsetOrder(String sortBy, String direction, String valueOrder, String idOrder) {
+        List<?> rows = em.createNativeQuery(
+                        "SELECT id FROM routes ORDER BY " + valueOrder + ", " + idOrder, Integer.class)
+                .getResultList();
+        List<Integer> ordered = rows.stream().map(Integer.class::cast).toList();
+        int position = ordered.indexOf(DEEP_ROUTE_ID);
+        CompositeCursor cursor = CompositeCursor.of(deepRoute(), sortBy, direction);
+
+        List<Integer> next = repository.findNextPage(cursor, PAGE, null).stream().map(RouteDto::id).toList();
+        List<Integer> prev = repository.findPrevPage(cursor, PAGE, null).stream().map(RouteDto::id).toList();
+
+        assertEquals(ordered.subList(position + 1, Math.min(position + 1 + PAGE, ordered.size())), next);
+        assertEquals(ordered.subList(Math.max(position - PAGE, 0), position), prev);
+    }
+
+    private RouteDto deepRoute() {
+        return repository.findByIds(List.of(DEEP_ROUTE_ID)).get(0);
+    }
+}
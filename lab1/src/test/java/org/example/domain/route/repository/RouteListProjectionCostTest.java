@@ -0,0 +1,104 @@
+package org.example.domain.route.repository;
+
+import jakarta.persistence.EntityManager;
+import org.example.domain.route.dto.RouteDto;
+import org.example.domain.route.entity.Route;
+import org.example.domain.route.mapper.RouteMapper;
+import org.example.support.RouteTestData;
+import org.example.support.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Список маршрутов через проекцию в RouteDto против загрузки сущностей с графом и маппинга: тот же результат,
+ * меньше выделенной памяти. Замеры памяти и времени на запрос выводятся в лог теста
+ */
+class RouteListProjectionCostTest {
+
+    private static final int ROUTES = 5_000;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 15;
+
+    private EntityManager em;
+    private RouteRepositoryMB repository;
+
+    @BeforeAll
+    static void seed() {
+        RouteTestData.seed(ROUTES);
+    }
+
+    @BeforeEach
+    void setUp() {
+        em = TestDatabase.entityManagerFactory().createEntityManager();
+        repository = TestDatabase.inject(new RouteRepositoryMB(), em);
+    }
+
+    @AfterEach
+    void tearDown() {
+        em.close();
+    }
+
+    @Test
+    void projectionMatchesEntityPathWithFewerAllocations() {
+        assertEquals(loadThroughEntities(), repository.findAll());
+
+        Cost projection = measure(repository::findAll);
+        Cost entities = measure(this::loadThroughEntities);
+
+        System.out.printf("Route list of %d: projection %d KB, %.1f ms; entities %d KB, %.1f ms%n",
+                ROUTES, projection.bytes() / 1024, projection.millis(), entities.bytes() / 1024, entities.millis());
+        assertTrue(projection.bytes() < entities.bytes(),
+                "Projection allocated " + projection.bytes() + " bytes, entity path " + entities.bytes());
+    }
+
+    private List<RouteDto> loadThroughEntities() {
+        try {
+            return em.createQuery("SELECT r FROM Route r ORDER BY r.id", Route.class)
+                    .setHint("jakarta.persistence.loadgraph", em.getEntityGraph(Route.GRAPH_FULL))
+                    .getResultList().stream()
+                    .map(RouteMapper::toDto)
+                    .toList();
+        } finally {
+            em.clear();
+        }
+    }
+
+    /**
+     * Медиана выделенной потоком памяти и времени по нескольким прогонам после прогрева
+     */
+    private static Cost measure(Supplier<List<RouteDto>> action) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP; i++) {
+            action.get();
+        }
+        long[] bytes = new long[RUNS];
+        long[] nanos = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long startedAt = System.nanoTime();
+            action.get();
+            nanos[i] = System.nanoTime() - startedAt;
+            bytes[i] = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        }
+        return new Cost(median(bytes), median(nanos) / 1_000_000.0);
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private record Cost(long bytes, double millis) {}
+}
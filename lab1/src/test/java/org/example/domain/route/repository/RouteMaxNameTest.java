@@ -0,0 +1,76 @@
+package org.example.domain.route.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.persistence.EntityManager;
+import org.example.domain.route.entity.Route;
+import org.example.support.ExplainingDataSource;
+import org.example.support.QueryPlans;
+import org.example.support.RouteTestData;
+import org.example.support.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Максимальное имя считается по правилам сравнения базы и читается спуском по индексу, а не полным проходом
+ */
+class RouteMaxNameTest {
+
+    private static final int ROUTES = 20_000;
+
+    private EntityManager em;
+    private RouteRepositoryMB repository;
+
+    @BeforeAll
+    static void seed() {
+        RouteTestData.seed(ROUTES);
+        // Имена, порядок которых зависит от регистра, и повтор максимального имени
+        TestDatabase.execute(
+                "UPDATE routes SET name = 'Zeta' WHERE id = 100",
+                "UPDATE routes SET name = 'alpha' WHERE id = 200",
+                "UPDATE routes SET name = 'zeta' WHERE id IN (300, 400)",
+                "ANALYZE routes");
+    }
+
+    @BeforeEach
+    void setUp() {
+        em = TestDatabase.entityManagerFactory().createEntityManager();
+        repository = TestDatabase.inject(new RouteRepositoryMB(), em);
+    }
+
+    @AfterEach
+    void tearDown() {
+        em.close();
+    }
+
+    @Test
+    void matchesDatabaseMaxWithLowestId() {
+        Integer expected = (Integer) em.createNativeQuery(
+                        "SELECT id FROM routes WHERE name = (SELECT MAX(name) FROM routes) ORDER BY id LIMIT 1",
+                        Integer.class)
+                .getSingleResult();
+
+        Route route = repository.findRouteWithMaxName();
+
+        assertEquals(expected, route.getId());
+    }
+
+    @Test
+    void seeksNameIndexWithoutSeqScan() {
+        List<String> plans = ExplainingDataSource.explain(repository::findRouteWithMaxName);
+
+        assertEquals(1, plans.size());
+        JsonNode scan = QueryPlans.indexScan(plans.get(0), "idx_routes_name_id")
+                .orElseThrow(() -> new AssertionError("No scan of idx_routes_name_id in " + plans.get(0)));
+        assertTrue(scan.path("Node Type").asText().startsWith("Index"), scan.toString());
+        assertFalse(QueryPlans.nodes(plans.get(0)).stream()
+                .anyMatch(node -> "Seq Scan".equals(node.path("Node Type").asText())), plans.get(0));
+    }
+}
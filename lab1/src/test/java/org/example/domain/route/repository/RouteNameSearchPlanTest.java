@@ -0,0 +1,94 @@
+package org.example.domain.route.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.persistence.EntityManager;
+import org.example.domain.route.dto.RouteDto;
+import org.example.support.ExplainingDataSource;
+import org.example.support.QueryPlans;
+import org.example.support.RouteTestData;
+import org.example.support.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Поиск маршрутов по подстроке имени читает триграммный индекс по lower(name), а не всю таблицу
+ */
+class RouteNameSearchPlanTest {
+
+    private static final int ROUTES = 20_000;
+    private static final int SEARCHED_ROUTE_ID = 7_777;
+    private static final String TRIGRAM_INDEX = "idx_routes_name_trgm";
+
+    private EntityManager em;
+    private RouteRepositoryMB repository;
+
+    @BeforeAll
+    static void seed() {
+        RouteTestData.seed(ROUTES);
+    }
+
+    @BeforeEach
+    void setUp() {
+        em = TestDatabase.entityManagerFactory().createEntityManager();
+        repository = TestDatabase.inject(new RouteRepositoryMB(), em);
+    }
+
+    @AfterEach
+    void tearDown() {
+        em.close();
+    }
+
+    @Test
+    void countWithFilterUsesTrigramIndex() {
+        // Регистр ввода не мешает индексу: шаблон приводится к нижнему регистру в приложении
+        String term = nameFragment().toUpperCase();
+
+        List<String> plans = ExplainingDataSource.explain(() -> repository.countWithFilter(term));
+
+        assertEquals(1, plans.size());
+        assertTrigramScan(plans.get(0));
+        assertEquals(1, repository.countWithFilter(term));
+    }
+
+    @Test
+    void firstPageWithFilterUsesTrigramIndex() {
+        String term = nameFragment();
+
+        List<String> plans = ExplainingDataSource.explain(() -> repository.findFirstPage(21, term, "id", "asc"));
+
+        assertEquals(1, plans.size());
+        assertTrigramScan(plans.get(0));
+        List<RouteDto> page = repository.findFirstPage(21, term, "id", "asc");
+        assertEquals(List.of(SEARCHED_ROUTE_ID), page.stream().map(RouteDto::id).toList());
+    }
+
+    private static void assertTrigramScan(String plan) {
+        JsonNode scan = QueryPlans.indexScan(plan, TRIGRAM_INDEX)
+                .orElseThrow(() -> new AssertionError("No scan of " + TRIGRAM_INDEX + " in " + plan));
+        assertTrue(scan.path("Index Cond").asText().contains("lower("), scan.toString());
+    }
+
+    /**
+     * Восемь символов из середины md5 имени одного маршрута
+     */
+    private static String nameFragment() {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5")
+                    .digest(String.valueOf(SEARCHED_ROUTE_ID).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest).substring(10, 18);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.example.domain.route.repository;
+
+import jakarta.persistence.EntityManager;
+import org.example.domain.route.dto.CompositeCursor;
+import org.example.domain.route.dto.RouteDto;
+import org.example.domain.route.entity.Route;
+import org.example.domain.route.mapper.RouteMapper;
+import org.example.support.RouteTestData;
+import org.example.support.TestDatabase;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Число SQL запросов на каждый метод репозитория: связи, нужные для RouteDto, приходят тем же запросом,
+ * а не отдельным запросом на каждую строку
+ */
+class RouteStatementCountTest {
+
+    private static final int ROUTES = 100;
+    private static final int PAGE = 21;
+
+    private EntityManager em;
+    private RouteRepositoryMB repository;
+    private Statistics statistics;
+
+    @BeforeAll
+    static void seed() {
+        RouteTestData.seed(ROUTES);
+        // Маршруты 2 и 3 делят координаты и начальную локацию маршрута 1 - кандидаты на передачу владения
+        TestDatabase.execute(
+                "UPDATE routes SET coordinates_id = 1, from_location_id = 1 WHERE id IN (2, 3)",
+                "UPDATE routes SET name = 'Shared Name' WHERE id = 5");
+    }
+
+    @BeforeEach
+    void setUp() {
+        em = TestDatabase.entityManagerFactory().createEntityManager();
+        repository = TestDatabase.inject(new RouteRepositoryMB(), em);
+        statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        em.close();
+    }
+
+    @Test
+    void findByIdLoadsOnlyTheRouteRow() {
+        Route route = countStatements(1, () -> repository.findById(10));
+
+        assertFalse(Hibernate.isInitialized(route.getCoordinates()));
+        assertFalse(Hibernate.isInitialized(route.getFrom()));
+        assertFalse(Hibernate.isInitialized(route.getTo()));
+    }
+
+    @Test
+    void findFullByIdLoadsDtoGraphInOneStatement() {
+        Route route = countStatements(1, () -> repository.findFullById(10));
+
+        countStatements(0, () -> RouteMapper.toDto(route));
+    }
+
+    @Test
+    void findForOwnershipTransferLoadsAssociationsInOneStatement() {
+        Route route = countStatements(1, () -> repository.findForOwnershipTransfer(10));
+
+        countStatements(0, () -> List.of(route.getCoordinates().getX(), route.getFrom().getName(),
+                route.getTo().getName()));
+    }
+
+    @Test
+    void candidateLookupsLoadDtoGraphInOneStatement() {
+        List<Route> byCoordinates = countStatements(1, () -> repository.findByCoordinatesIdExcluding(1, 1));
+        List<Route> byLocation = countStatements(1, () -> repository.findByLocationIdExcluding(1, 1));
+
+        assertEquals(2, byCoordinates.size());
+        assertEquals(2, byLocation.size());
+        countStatements(0, () -> byCoordinates.stream().map(RouteMapper::toDto).toList());
+        countStatements(0, () -> byLocation.stream().map(RouteMapper::toDto).toList());
+    }
+
+    @Test
+    void nameLookupsLoadDtoGraphInOneStatement() {
+        Route byName = countStatements(1, () -> repository.findByName("Shared Name"));
+        em.clear();
+        Route excluding = countStatements(1, () -> repository.findByNameExcluding("Shared Name", 1));
+        em.clear();
+        Route ignoringCase = countStatements(1, () -> repository.findByNameIgnoreCaseExcluding("SHARED NAME", null));
+
+        assertNotNull(byName);
+        assertNotNull(excluding);
+        countStatements(0, () -> RouteMapper.toDto(ignoringCase));
+    }
+
+    @Test
+    void pagesAreOneStatementEach() {
+        List<RouteDto> first = countStatements(1, () -> repository.findFirstPage(PAGE, null, "name", "asc"));
+        CompositeCursor cursor = CompositeCursor.of(first.get(first.size() - 1), "name", "asc");
+        List<RouteDto> next = countStatements(1, () -> repository.findNextPage(cursor, PAGE, null));
+        countStatements(1, () -> repository.findPrevPage(CompositeCursor.of(next.get(0), "name", "asc"), PAGE, null));
+        countStatements(1, () -> repository.findPaginated(PAGE, PAGE, "route", "distance", "desc"));
+        countStatements(1, () -> repository.findByIds(List.of(1, 2, 3)));
+        List<RouteDto> all = countStatements(1, () -> repository.findAll());
+
+        assertEquals(PAGE, first.size());
+        assertEquals(ROUTES, all.size());
+    }
+
+    private <T> T countStatements(long expected, Supplier<T> action) {
+        statistics.clear();
+        T result = action.get();
+        assertEquals(expected, statistics.getPrepareStatementCount(),
+                () -> "Statements: " + List.of(statistics.getQueries()));
+        return result;
+    }
+}
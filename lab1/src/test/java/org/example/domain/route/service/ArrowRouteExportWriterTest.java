@@ -0,0 +1,98 @@
+package org.example.domain.route.service;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.example.domain.route.dto.RouteExportRow;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Полная выгрузка заканчивается маркером конца потока, оборванная - нет; память выгрузки возвращается в корень
+ */
+class ArrowRouteExportWriterTest {
+
+    // Маркер конца Arrow IPC stream: продолжение 0xFFFFFFFF и нулевая длина метаданных
+    private static final byte[] END_OF_STREAM = {-1, -1, -1, -1, 0, 0, 0, 0};
+    private static final int ROWS = 10_000;
+
+    private BufferAllocator rootAllocator;
+
+    @BeforeEach
+    void setUp() {
+        rootAllocator = new RootAllocator();
+    }
+
+    @AfterEach
+    void tearDown() {
+        assertEquals(0, rootAllocator.getAllocatedMemory());
+        rootAllocator.close();
+    }
+
+    @Test
+    void finishedExportEndsWithEndOfStream() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ArrowRouteExportWriter writer = newWriter(output)) {
+            writer.writeHeader();
+            for (int i = 1; i <= ROWS; i++) {
+                writer.write(row(i));
+            }
+            writer.finish();
+        }
+
+        byte[] bytes = output.toByteArray();
+        assertArrayEquals(END_OF_STREAM, tail(bytes));
+        assertEquals(ROWS, countRows(bytes));
+    }
+
+    @Test
+    void failedExportIsNotTerminated() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ArrowRouteExportWriter writer = newWriter(output)) {
+            writer.writeHeader();
+            for (int i = 1; i <= ROWS; i++) {
+                writer.write(row(i));
+            }
+            // Сбой посреди выгрузки: finish() не вызывается
+        }
+
+        assertFalse(Arrays.equals(END_OF_STREAM, tail(output.toByteArray())));
+    }
+
+    private ArrowRouteExportWriter newWriter(ByteArrayOutputStream output) {
+        return new ArrowRouteExportWriter(output,
+                rootAllocator.newChildAllocator("export", 0, ArrowRouteExportWriter.ALLOCATION_LIMIT));
+    }
+
+    private long countRows(byte[] bytes) throws IOException {
+        long rows = 0;
+        try (ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(bytes), rootAllocator)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            while (reader.loadNextBatch()) {
+                rows += root.getRowCount();
+            }
+        }
+        return rows;
+    }
+
+    private static byte[] tail(byte[] bytes) {
+        return Arrays.copyOfRange(bytes, bytes.length - END_OF_STREAM.length, bytes.length);
+    }
+
+    private static RouteExportRow row(int i) {
+        return new RouteExportRow(i, "Route " + i, i, (double) -i, null, i, "From " + i, (double) i, -i, null,
+                (long) i + 2, (long) i % 50 + 1, ZonedDateTime.parse("2025-01-01T00:00:00Z").plusMinutes(i));
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.service;
+
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Кэш со сбросом после коммита: значение, загруженное до сброса, не остается в кэше
+ */
+class AfterCommitCacheTest {
+
+    private final Registry transaction = new Registry();
+    private final AfterCommitCache<String, Integer> cache = new AfterCommitCache<>(Duration.ofMinutes(1), 100);
+
+    @Test
+    void valueIsCachedUntilInvalidated() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(1, cache.get("alice", loads::incrementAndGet));
+        assertEquals(1, cache.get("alice", loads::incrementAndGet));
+        cache.invalidate(transaction.registry(), "alice");
+
+        assertEquals(2, cache.get("alice", loads::incrementAndGet));
+    }
+
+    @Test
+    void invalidationInsideTransactionWaitsForCompletion() {
+        cache.get("alice", () -> 1);
+        transaction.active = true;
+
+        cache.invalidate(transaction.registry(), "alice");
+        assertEquals(1, cache.get("alice", () -> 2), "old value stays visible until commit");
+
+        transaction.complete(Status.STATUS_COMMITTED);
+        assertEquals(3, cache.get("alice", () -> 3));
+    }
+
+    @Test
+    void valueLoadedBeforeInvalidationIsNotCached() {
+        // Сброс приходит, пока загрузка еще читает старые данные
+        Integer loaded = cache.get("alice", () -> {
+            cache.invalidate(transaction.registry(), "alice");
+            return 1;
+        });
+
+        assertEquals(1, loaded);
+        assertEquals(2, cache.get("alice", () -> 2));
+    }
+
+    @Test
+    void invalidateAllDropsEveryKeyAndLoadsInFlight() {
+        cache.get("alice", () -> 1);
+        cache.get("bob", () -> {
+            cache.invalidateAll(transaction.registry());
+            return 1;
+        });
+
+        assertEquals(2, cache.get("alice", () -> 2));
+        assertEquals(2, cache.get("bob", () -> 2));
+    }
+
+    @Test
+    void expiredValueIsReloaded() {
+        AfterCommitCache<String, Integer> shortLived = new AfterCommitCache<>(Duration.ZERO, 100);
+
+        shortLived.get("alice", () -> 1);
+
+        assertEquals(2, shortLived.get("alice", () -> 2));
+    }
+
+    @Test
+    void fullCacheStartsOver() {
+        AfterCommitCache<String, Integer> small = new AfterCommitCache<>(Duration.ofMinutes(1), 2);
+        small.get("a", () -> 1);
+        small.get("b", () -> 1);
+        small.get("c", () -> 1);
+
+        assertEquals(2, small.get("a", () -> 2));
+        assertEquals(1, small.get("c", () -> 2));
+    }
+
+    /**
+     * Реестр синхронизаций одной транзакции, которую тест завершает сам
+     */
+    private static final class Registry {
+        private final List<Synchronization> synchronizations = new ArrayList<>();
+        private boolean active;
+
+        TransactionSynchronizationRegistry registry() {
+            return (TransactionSynchronizationRegistry) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{TransactionSynchronizationRegistry.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "getTransactionStatus" -> active ? Status.STATUS_ACTIVE : Status.STATUS_NO_TRANSACTION;
+                        case "registerInterposedSynchronization" -> synchronizations.add((Synchronization) args[0]);
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        void complete(int status) {
+            active = false;
+            synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+            synchronizations.clear();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Очередь импортов: пользователи обслуживаются по кругу, число выполняемых и ожидающих импортов ограничено
+ */
+class FairImportQueueTest {
+
+    private static final Runnable NOTHING = () -> {};
+
+    @Test
+    void usersAreServedRoundRobin() {
+        FairImportQueue queue = new FairImportQueue(10, 10);
+        queue.enqueue("alice", 1, NOTHING);
+        queue.enqueue("alice", 2, NOTHING);
+        queue.enqueue("alice", 3, NOTHING);
+        queue.enqueue("bob", 4, NOTHING);
+        queue.enqueue("carol", 5, NOTHING);
+        queue.enqueue("bob", 6, NOTHING);
+
+        assertEquals(List.of(1, 4, 5, 2, 6, 3), drain(queue));
+        assertEquals(0, queue.getQueuedUsers());
+    }
+
+    @Test
+    void userReturningAfterEmptyQueueGoesToBackOfRotation() {
+        FairImportQueue queue = new FairImportQueue(10, 10);
+        queue.enqueue("alice", 1, NOTHING);
+        queue.enqueue("bob", 2, NOTHING);
+        assertEquals(1, queue.pollNext().operationId());
+
+        queue.enqueue("alice", 3, NOTHING);
+        queue.enqueue("carol", 4, NOTHING);
+
+        assertEquals(List.of(2, 3, 4), drain(queue));
+    }
+
+    @Test
+    void runningImportsAreCapped() {
+        FairImportQueue queue = new FairImportQueue(2, 10);
+        for (int id = 1; id <= 3; id++) {
+            queue.enqueue("user" + id, id, NOTHING);
+        }
+
+        assertEquals(1, queue.pollNext().operationId());
+        assertEquals(2, queue.pollNext().operationId());
+        assertNull(queue.pollNext());
+        assertEquals(2, queue.getRunning());
+
+        queue.release();
+        assertEquals(3, queue.pollNext().operationId());
+        assertNull(queue.pollNext());
+    }
+
+    @Test
+    void fullQueueRejectsImports() {
+        FairImportQueue queue = new FairImportQueue(1, 2);
+        queue.enqueue("alice", 1, NOTHING);
+        queue.enqueue("bob", 2, NOTHING);
+
+        assertThrows(RejectedExecutionException.class, () -> queue.enqueue("carol", 3, NOTHING));
+        assertEquals(2, queue.getQueued());
+        assertEquals(1, queue.getRejectedCount());
+
+        queue.pollNext();
+        queue.enqueue("carol", 3, NOTHING);
+        assertEquals(2, queue.getQueued());
+    }
+
+    @Test
+    void inlineImportDoesNotOvertakeQueuedImports() {
+        FairImportQueue queue = new FairImportQueue(2, 10);
+        assertTrue(queue.tryAcquire());
+
+        queue.enqueue("alice", 1, NOTHING);
+        assertFalse(queue.tryAcquire());
+        queue.started(queue.pollNext());
+        assertFalse(queue.tryAcquire());
+
+        queue.release();
+        assertTrue(queue.tryAcquire());
+        assertEquals(2, queue.getInlineStartedCount());
+        assertEquals(1, queue.getStartedCount());
+    }
+
+    @Test
+    void requeuedImportIsServedFirst() {
+        FairImportQueue queue = new FairImportQueue(1, 10);
+        queue.enqueue("alice", 1, NOTHING);
+        queue.enqueue("alice", 2, NOTHING);
+        queue.enqueue("bob", 3, NOTHING);
+
+        FairImportQueue.QueuedImport rejected = queue.pollNext();
+        queue.requeue(rejected);
+
+        assertEquals(0, queue.getRunning());
+        assertEquals(3, queue.getQueued());
+        assertEquals(0, queue.getStartedCount());
+        assertEquals(List.of(1, 3, 2), drain(queue));
+    }
+
+    @Test
+    void inlineStartsDoNotLowerAverageWait() throws InterruptedException {
+        FairImportQueue queue = new FairImportQueue(5, 10);
+        queue.enqueue("alice", 1, NOTHING);
+        Thread.sleep(50);
+        queue.started(queue.pollNext());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(queue.tryAcquire());
+        }
+
+        assertTrue(queue.getAverageWaitMillis() >= 50, "average wait " + queue.getAverageWaitMillis());
+        assertEquals(queue.getMaxWaitMillis(), queue.getAverageWaitMillis());
+    }
+
+    /**
+     * Выдает все ожидающие импорты, освобождая слот после каждого
+     */
+    private static List<Integer> drain(FairImportQueue queue) {
+        List<Integer> order = new ArrayList<>();
+        FairImportQueue.QueuedImport next;
+        while ((next = queue.pollNext()) != null) {
+            queue.started(next);
+            order.add(next.operationId());
+            queue.release();
+        }
+        return order;
+    }
+}
@@ -0,0 +1,122 @@
+package org.example.service;
+
+import io.minio.ObjectWriteResponse;
+import okhttp3.Headers;
+import org.example.domain.import_history.dto.ImportResultDto;
+import org.example.domain.import_history.entity.ImportStatus;
+import org.example.domain.import_history.service.ImportFormat;
+import org.example.support.RouteTestData;
+import org.example.support.TestContainer;
+import org.example.support.TestDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Ссылка на файл потокового импорта и его размеры переживают коммит транзакции импорта, которая завершает операцию
+ */
+class StreamingImportFileReferenceTest {
+
+    private static final String CSV = """
+            name,coordinates_x,coordinates_y,from_x,from_y,from_name,to_x,to_y,to_name,distance,rating
+            Stream Route 1,1.5,-2.5,10,20,From 1,30,40,To 1,100,5
+            Stream Route 2,2.5,-3.5,11,21,From 2,31,41,To 2,200,6
+            """;
+
+    private TestContainer container;
+
+    @BeforeEach
+    void setUp() {
+        RouteTestData.seed(0);
+        TestDatabase.execute("TRUNCATE import_operations RESTART IDENTITY CASCADE");
+    }
+
+    @AfterEach
+    void tearDown() {
+        container.close();
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(strings = FileCompression.GZIP)
+    void streamedFileReferenceIsStoredWithCompletedOperation(String contentEncoding) throws SQLException {
+        container = new TestContainer(TestDatabase.entityManagerFactory())
+                .register(MinIOService.class, new InMemoryMinIOService(contentEncoding));
+        byte[] content = CSV.getBytes(StandardCharsets.UTF_8);
+        String fileHash = MinIOService.sha256(content);
+
+        ImportResultDto result = container.bean(TransactionalFileImportService.class)
+                .importRoutesFromStreamWithFileStorage("tester", "routes.csv", ImportFormat.CSV,
+                        new ByteArrayInputStream(content), null, false);
+
+        assertEquals(ImportStatus.SUCCESS, result.status(), String.valueOf(result.errors()));
+        assertEquals(2, result.successfulRecords());
+        try (Connection connection = TestDatabase.dataSource().getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT status, file_key, file_hash, file_size, file_stored_size FROM import_operations"
+                             + " WHERE id = ?")) {
+            statement.setInt(1, result.operationId());
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                assertEquals("SUCCESS", rs.getString("status"));
+                assertEquals(MinIOService.contentKey(fileHash, contentEncoding), rs.getString("file_key"));
+                assertEquals(fileHash, rs.getString("file_hash"));
+                assertEquals(content.length, rs.getLong("file_size"));
+                assertEquals(FileCompression.compress(content, contentEncoding).length, rs.getLong("file_stored_size"));
+            }
+        }
+    }
+
+    /**
+     * Хранилище без MinIO: канальная загрузка просто вычитывает поток, перенос под ключ содержимого ничего не копирует
+     */
+    private static final class InMemoryMinIOService extends MinIOService {
+
+        private final String contentEncoding;
+
+        InMemoryMinIOService(String contentEncoding) {
+            this.contentEncoding = contentEncoding;
+        }
+
+        @Override
+        public StreamingUpload startStreamingUpload(String filename, String contentType) throws Exception {
+            StreamingUpload upload = StreamingUpload.piped("imports/tmp/" + filename, contentType, contentEncoding,
+                    64 * 1024);
+            InputStream source = upload.openSource();
+            upload.started(CompletableFuture.supplyAsync(() -> {
+                try (source) {
+                    source.transferTo(OutputStream.nullOutputStream());
+                    return new ObjectWriteResponse(Headers.of(), "imports", null, upload.fileKey(), "etag", null);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+            return upload;
+        }
+
+        @Override
+        public FileUploadResult moveToContentKey(FileUploadResult upload) {
+            return new FileUploadResult(contentKey(upload.fileHash(), upload.contentEncoding()), upload.fileSize(),
+                    upload.storedSize(), upload.contentType(), upload.etag(), upload.fileHash(),
+                    upload.contentEncoding());
+        }
+
+        @Override
+        public void deleteFile(String fileKey) {
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.support;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * DataSource, который по запросу снимает план каждого SELECT перед его выполнением: тот же SQL, что
+ * сгенерировал Hibernate, с теми же параметрами уходит в EXPLAIN (FORMAT JSON)
+ */
+public final class ExplainingDataSource {
+
+    private static final ThreadLocal<List<String>> PLANS = new ThreadLocal<>();
+
+    private ExplainingDataSource() {
+    }
+
+    public static DataSource wrap(DataSource target) {
+        return proxy(DataSource.class, target, (method, args, result) ->
+                "getConnection".equals(method.getName()) ? connection((Connection) result) : result);
+    }
+
+    /**
+     * Выполняет action и возвращает планы (JSON) всех запросов, выполненных в этом потоке
+     */
+    public static <T> List<String> explain(Supplier<T> action) {
+        List<String> plans = new ArrayList<>();
+        PLANS.set(plans);
+        try {
+            action.get();
+        } finally {
+            PLANS.remove();
+        }
+        return plans;
+    }
+
+    private static Connection connection(Connection target) {
+        return proxy(Connection.class, target, (method, args, result) ->
+                "prepareStatement".equals(method.getName())
+                        ? statement(target, (String) args[0], (PreparedStatement) result)
+                        : result);
+    }
+
+    private static PreparedStatement statement(Connection connection, String sql, PreparedStatement target) {
+        List<Object[]> bindings = new ArrayList<>();
+        return (PreparedStatement) Proxy.newProxyInstance(ExplainingDataSource.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    if (method.getName().startsWith("set") && args != null && args.length >= 2
+                            && args[0] instanceof Integer) {
+                        bindings.add(new Object[]{method, args});
+                    } else if ("executeQuery".equals(method.getName()) && args == null && PLANS.get() != null) {
+                        PLANS.get().add(plan(connection, sql, bindings));
+                    }
+                    return invoke(method, target, args);
+                });
+    }
+
+    private static String plan(Connection connection, String sql, List<Object[]> bindings) throws Exception {
+        try (PreparedStatement explain = connection.prepareStatement("EXPLAIN (FORMAT JSON) " + sql)) {
+            for (Object[] binding : bindings) {
+                ((Method) binding[0]).invoke(explain, (Object[]) binding[1]);
+            }
+            try (ResultSet rs = explain.executeQuery()) {
+                rs.next();
+                return rs.getString(1);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, ResultMapper mapper) {
+        InvocationHandler handler = (proxy, method, args) -> mapper.map(method, args, invoke(method, target, args));
+        return (T) Proxy.newProxyInstance(ExplainingDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResultMapper {
+        Object map(Method method, Object[] args, Object result) throws Exception;
+    }
+}
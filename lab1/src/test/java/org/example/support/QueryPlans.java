@@ -0,0 +1,50 @@
+package org.example.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Разбор планов EXPLAIN (FORMAT JSON)
+ */
+public final class QueryPlans {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private QueryPlans() {
+    }
+
+    /**
+     * Все узлы плана в порядке обхода в глубину
+     */
+    public static List<JsonNode> nodes(String planJson) {
+        try {
+            List<JsonNode> nodes = new ArrayList<>();
+            collect(MAPPER.readTree(planJson).get(0).get("Plan"), nodes);
+            return nodes;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Узел, читающий индекс indexName (Index Scan, Index Only Scan или Bitmap Index Scan)
+     */
+    public static Optional<JsonNode> indexScan(String planJson, String indexName) {
+        return nodes(planJson).stream()
+                .filter(node -> indexName.equals(node.path("Index Name").asText(null)))
+                .findFirst();
+    }
+
+    private static void collect(JsonNode node, List<JsonNode> nodes) {
+        nodes.add(node);
+        for (JsonNode child : node.path("Plans")) {
+            collect(child, nodes);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.support;
+
+/**
+ * Набор маршрутов для тестов запросов: у каждого маршрута свои координаты и две локации, которыми он владеет
+ */
+public final class RouteTestData {
+
+    private RouteTestData() {
+    }
+
+    public static void seed(int routes) {
+        TestDatabase.execute(
+                "TRUNCATE routes, coordinates, locations RESTART IDENTITY CASCADE",
+                "INSERT INTO coordinates (x, y) SELECT i, -i FROM generate_series(1, " + routes + ") i",
+                "INSERT INTO locations (x, y, name) SELECT i, -i, 'Location ' || i FROM generate_series(1, "
+                        + 2 * routes + ") i",
+                "INSERT INTO routes (name, distance, rating, creation_date, coordinates_id, from_location_id, to_location_id) "
+                        + "SELECT 'Route ' || md5(i::text), i % 1000 + 2, i % 50 + 1, "
+                        + "TIMESTAMPTZ '2025-01-01 00:00:00+00' + i * INTERVAL '1 minute', i, 2 * i - 1, 2 * i "
+                        + "FROM generate_series(1, " + routes + ") i",
+                "UPDATE coordinates SET owner_route_id = id",
+                "UPDATE locations SET owner_route_id = (id + 1) / 2",
+                // VACUUM переносит строки из pending list GIN индексов в сам индекс, как это делает autovacuum
+                "VACUUM ANALYZE routes",
+                "VACUUM ANALYZE coordinates",
+                "VACUUM ANALYZE locations");
+    }
+}
@@ -0,0 +1,324 @@
+package org.example.support;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.EJB;
+import jakarta.ejb.SessionContext;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.Transactional;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.implementation.MethodDelegation;
+import net.bytebuddy.implementation.bind.annotation.Origin;
+import net.bytebuddy.implementation.bind.annotation.RuntimeType;
+import net.bytebuddy.implementation.bind.annotation.SuperCall;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static net.bytebuddy.matcher.ElementMatchers.isDeclaredBy;
+import static net.bytebuddy.matcher.ElementMatchers.isPublic;
+import static net.bytebuddy.matcher.ElementMatchers.not;
+
+/**
+ * Минимальный контейнер для тестов сервисов: внедряет @Inject/@EJB, @PersistenceContext и @Resource
+ * и выполняет публичные методы бинов с транзакционной семантикой EJB (REQUIRED, REQUIRES_NEW, NOT_SUPPORTED).
+ * У каждой транзакции свой EntityManager RoutesTestPU, как у JTA транзакции свой контекст персистентности.
+ * Вызовы внутри бина, как и в EJB, не перехватываются
+ */
+public final class TestContainer implements AutoCloseable {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final Map<Class<?>, Object> beans = new HashMap<>();
+    private final ThreadLocal<Deque<Transaction>> transactions = ThreadLocal.withInitial(ArrayDeque::new);
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    public TestContainer(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Подменяет бин готовым объектом (заглушкой внешней системы); зависимости в него не внедряются
+     */
+    public <T> TestContainer register(Class<T> type, T instance) {
+        beans.put(type, instance);
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T bean(Class<T> type) {
+        Object bean = beans.get(type);
+        if (bean == null) {
+            bean = create(type);
+        }
+        return (T) bean;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> T create(Class<T> type) {
+        T bean;
+        try {
+            bean = new ByteBuddy()
+                    .subclass(type)
+                    .method(isPublic().and(not(isDeclaredBy(Object.class))))
+                    .intercept(MethodDelegation.to(new TransactionInterceptor(this)))
+                    .make()
+                    .load(type.getClassLoader(), ClassLoadingStrategy.Default.WRAPPER)
+                    .getLoaded()
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create bean " + type.getName(), e);
+        }
+        beans.put(type, bean);
+        inject(bean);
+        for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(PostConstruct.class)) {
+                    invoke(bean, method);
+                }
+            }
+        }
+        return bean;
+    }
+
+    private void inject(Object bean) {
+        for (Class<?> c = bean.getClass(); c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                Object value = null;
+                if (field.isAnnotationPresent(Inject.class) || field.isAnnotationPresent(EJB.class)) {
+                    // Интерфейсы (Validator и т.п.) внедряются, только если зарегистрированы
+                    value = field.getType().isInterface() ? beans.get(field.getType()) : bean(field.getType());
+                } else if (field.isAnnotationPresent(PersistenceContext.class)) {
+                    value = proxy(EntityManager.class, (method, args) -> call(currentEntityManager(), method, args));
+                } else if (field.isAnnotationPresent(Resource.class)) {
+                    value = resource(field.getType());
+                }
+                if (value != null && !Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    try {
+                        field.set(bean, value);
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        }
+    }
+
+    private Object resource(Class<?> type) {
+        if (type == SessionContext.class) {
+            return proxy(SessionContext.class, (method, args) -> switch (method.getName()) {
+                case "setRollbackOnly" -> {
+                    currentTransaction().rollbackOnly = true;
+                    yield null;
+                }
+                case "getRollbackOnly" -> currentTransaction().rollbackOnly;
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+        }
+        if (type == TransactionSynchronizationRegistry.class) {
+            return proxy(TransactionSynchronizationRegistry.class, (method, args) -> switch (method.getName()) {
+                case "getTransactionStatus" -> activeTransaction() != null ? Status.STATUS_ACTIVE : Status.STATUS_NO_TRANSACTION;
+                case "registerInterposedSynchronization" -> {
+                    currentTransaction().synchronizations.add((Synchronization) args[0]);
+                    yield null;
+                }
+                case "setRollbackOnly" -> {
+                    currentTransaction().rollbackOnly = true;
+                    yield null;
+                }
+                case "getRollbackOnly" -> currentTransaction().rollbackOnly;
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+        }
+        if (type == ManagedExecutorService.class) {
+            return proxy(ManagedExecutorService.class, (method, args) -> call(executor, method, args));
+        }
+        return null;
+    }
+
+    Object invokeInTransaction(Method method, Callable<?> call) throws Exception {
+        Deque<Transaction> stack = transactions.get();
+        switch (transactionAttribute(method)) {
+            case REQUIRES_NEW:
+                return inNewTransaction(stack, call);
+            case NOT_SUPPORTED:
+            case NEVER:
+                stack.push(Transaction.NONE);
+                try {
+                    return call.call();
+                } finally {
+                    stack.pop();
+                }
+            case SUPPORTS:
+                return call.call();
+            case MANDATORY:
+                currentTransaction();
+                return call.call();
+            default:
+                return activeTransaction() != null ? call.call() : inNewTransaction(stack, call);
+        }
+    }
+
+    private Object inNewTransaction(Deque<Transaction> stack, Callable<?> call) throws Exception {
+        Transaction transaction = new Transaction(entityManagerFactory.createEntityManager());
+        transaction.entityManager.getTransaction().begin();
+        stack.push(transaction);
+        try {
+            Object result;
+            try {
+                result = call.call();
+            } catch (RuntimeException | Error e) {
+                // Системное исключение EJB откатывает транзакцию
+                transaction.complete(false);
+                throw e;
+            } catch (Exception e) {
+                transaction.complete(!transaction.rollbackOnly);
+                throw e;
+            }
+            transaction.complete(!transaction.rollbackOnly);
+            return result;
+        } finally {
+            stack.pop();
+            transaction.entityManager.close();
+        }
+    }
+
+    private static TransactionAttributeType transactionAttribute(Method method) {
+        TransactionAttribute attribute = method.getAnnotation(TransactionAttribute.class);
+        if (attribute == null) {
+            attribute = method.getDeclaringClass().getAnnotation(TransactionAttribute.class);
+        }
+        if (attribute != null) {
+            return attribute.value();
+        }
+        Transactional transactional = method.getAnnotation(Transactional.class);
+        if (transactional != null) {
+            return TransactionAttributeType.valueOf(transactional.value().name());
+        }
+        return TransactionAttributeType.REQUIRED;
+    }
+
+    private Transaction activeTransaction() {
+        Transaction transaction = transactions.get().peek();
+        return transaction != null && transaction != Transaction.NONE ? transaction : null;
+    }
+
+    private Transaction currentTransaction() {
+        Transaction transaction = activeTransaction();
+        if (transaction == null) {
+            throw new IllegalStateException("No active transaction");
+        }
+        return transaction;
+    }
+
+    private EntityManager currentEntityManager() {
+        return currentTransaction().entityManager;
+    }
+
+    private void invoke(Object bean, Method method) {
+        try {
+            method.setAccessible(true);
+            method.invoke(bean);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("@PostConstruct failed for " + method.getDeclaringClass().getName(), e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(TestContainer.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "toString" -> type.getSimpleName() + " proxy";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> handler.handle(method, args);
+                });
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(Method method, Object[] args) throws Throwable;
+    }
+
+    private static final class Transaction {
+        static final Transaction NONE = new Transaction(null);
+
+        final EntityManager entityManager;
+        final List<Synchronization> synchronizations = new ArrayList<>();
+        boolean rollbackOnly;
+
+        Transaction(EntityManager entityManager) {
+            this.entityManager = entityManager;
+        }
+
+        void complete(boolean commit) {
+            int status = Status.STATUS_ROLLEDBACK;
+            try {
+                if (commit) {
+                    synchronizations.forEach(Synchronization::beforeCompletion);
+                    entityManager.getTransaction().commit();
+                    status = Status.STATUS_COMMITTED;
+                } else if (entityManager.getTransaction().isActive()) {
+                    entityManager.getTransaction().rollback();
+                }
+            } finally {
+                for (Synchronization synchronization : synchronizations) {
+                    synchronization.afterCompletion(status);
+                }
+            }
+        }
+    }
+
+    /**
+     * Перехватчик публичных методов бина: вызов выполняется в транзакции по его @TransactionAttribute
+     */
+    public static final class TransactionInterceptor {
+        private final TestContainer container;
+
+        TransactionInterceptor(TestContainer container) {
+            this.container = container;
+        }
+
+        @RuntimeType
+        public Object intercept(@Origin Method method, @SuperCall Callable<?> call) throws Exception {
+            return container.invokeInTransaction(method, call);
+        }
+    }
+}
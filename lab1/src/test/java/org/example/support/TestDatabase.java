@@ -0,0 +1,133 @@
+package org.example.support;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import jakarta.persistence.PersistenceContext;
+import liquibase.Scope;
+import liquibase.command.CommandScope;
+import liquibase.command.core.UpdateCommandStep;
+import liquibase.command.core.helpers.DbUrlConnectionArgumentsCommandStep;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.DirectoryResourceAccessor;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * PostgreSQL для тестов запросов: схема накатывается теми же миграциями Liquibase, что и в docker-compose.
+ * По умолчанию поднимается встроенный сервер; системное свойство test.jdbc.url подключает тесты
+ * к уже запущенной базе
+ */
+public final class TestDatabase {
+
+    private static final Path CHANGELOG_ROOT = Path.of("db", "liquibase");
+
+    private static DataSource dataSource;
+    private static EntityManagerFactory entityManagerFactory;
+
+    private TestDatabase() {
+    }
+
+    public static synchronized DataSource dataSource() {
+        if (dataSource == null) {
+            DataSource raw = start();
+            migrate(raw);
+            dataSource = ExplainingDataSource.wrap(raw);
+        }
+        return dataSource;
+    }
+
+    /**
+     * Фабрика единицы RoutesTestPU поверх тестовой базы, со статистикой Hibernate и без L2 кэша
+     */
+    public static synchronized EntityManagerFactory entityManagerFactory() {
+        if (entityManagerFactory == null) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("hibernate.connection.datasource", dataSource());
+            entityManagerFactory = Persistence.createEntityManagerFactory("RoutesTestPU", properties);
+        }
+        return entityManagerFactory;
+    }
+
+    public static void execute(String... statements) {
+        try (Connection connection = dataSource().getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to execute test SQL", e);
+        }
+    }
+
+    /**
+     * Подставляет EntityManager в поле с @PersistenceContext, как это делает контейнер
+     */
+    public static <T> T inject(T target, EntityManager em) {
+        for (Field field : target.getClass().getDeclaredFields()) {
+            if (field.isAnnotationPresent(PersistenceContext.class)) {
+                try {
+                    field.setAccessible(true);
+                    field.set(target, em);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return target;
+    }
+
+    private static DataSource start() {
+        String url = System.getProperty("test.jdbc.url");
+        if (url != null && !url.isBlank()) {
+            PGSimpleDataSource external = new PGSimpleDataSource();
+            external.setUrl(url);
+            external.setUser(System.getProperty("test.jdbc.user", "postgres"));
+            external.setPassword(System.getProperty("test.jdbc.password", ""));
+            return external;
+        }
+        try {
+            EmbeddedPostgres postgres = EmbeddedPostgres.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    postgres.close();
+                } catch (IOException ignored) {
+                    // процесс завершается вместе с JVM
+                }
+            }));
+            return postgres.getPostgresDatabase();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to start embedded PostgreSQL", e);
+        }
+    }
+
+    private static void migrate(DataSource target) {
+        // Changelog ссылается на файлы как db/changelogs/..., корень - каталог, где db указывает на db/liquibase
+        try (Connection connection = target.getConnection()) {
+            Path root = Files.createTempDirectory("liquibase");
+            Files.createSymbolicLink(root.resolve("db"), CHANGELOG_ROOT.toAbsolutePath());
+            Database database = DatabaseFactory.getInstance()
+                    .findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            Scope.child(Scope.Attr.resourceAccessor.name(), new DirectoryResourceAccessor(root), () ->
+                    new CommandScope(UpdateCommandStep.COMMAND_NAME)
+                            .addArgumentValue(DbUrlConnectionArgumentsCommandStep.DATABASE_ARG, database)
+                            .addArgumentValue(UpdateCommandStep.CHANGELOG_FILE_ARG, "db/db.changelog-master.yaml")
+                            .execute());
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to migrate test database", e);
+        }
+    }
+}